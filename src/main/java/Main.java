@@ -1,18 +1,19 @@
-import edu.byu.cs.autograder.GradingException;
+import edu.byu.cs.autograder.compile.MavenRepository;
+import edu.byu.cs.autograder.resources.WorkspaceAllocator;
+import edu.byu.cs.autograder.test.PrecompiledTests;
+import edu.byu.cs.controller.TrafficController;
 import edu.byu.cs.server.endpointprovider.EndpointProvider;
 import edu.byu.cs.server.endpointprovider.EndpointProviderImpl;
 import edu.byu.cs.dataAccess.DaoService;
 import edu.byu.cs.dataAccess.DataAccessException;
 import edu.byu.cs.properties.ApplicationProperties;
 import edu.byu.cs.server.Server;
-import edu.byu.cs.service.SubmissionService;
 import edu.byu.cs.util.ResourceUtils;
 import org.apache.commons.cli.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.Properties;
 
 public class Main {
@@ -31,13 +32,17 @@ public class Main {
             throw new RuntimeException(e);
         }
 
-        new Server(endpointProvider).start(8080);
+        WorkspaceAllocator.getInstance().start();
+        MavenRepository.getInstance().start();
+        PrecompiledTests.getInstance().start();
 
-        try {
-            SubmissionService.reRunSubmissionsInQueue();
-        } catch (IOException | DataAccessException | GradingException e) {
-            LOGGER.error("Error rerunning submissions already in queue", e);
+        boolean graderOnly = ApplicationProperties.graderOnly();
+        if (!graderOnly) {
+            new Server(endpointProvider).start(8080);
         }
+
+        TrafficController.getInstance().start(!graderOnly);
+        Runtime.getRuntime().addShutdownHook(new Thread(TrafficController.getInstance()::stop));
     }
 
     private static void setupProperties(String[] args) {
@@ -78,6 +83,54 @@ public class Main {
             if (cmd.hasOption("disable-compilation")) {
                 properties.setProperty("run-compilation", "false");
             }
+            if (cmd.hasOption("grader-threads")) {
+                properties.setProperty("grader-threads", cmd.getOptionValue("grader-threads"));
+            }
+            if (cmd.hasOption("max-student-jvms")) {
+                properties.setProperty("max-student-jvms", cmd.getOptionValue("max-student-jvms"));
+            }
+            if (cmd.hasOption("scheduling-policy")) {
+                properties.setProperty("scheduling-policy", cmd.getOptionValue("scheduling-policy"));
+            }
+            if (cmd.hasOption("maven-repository")) {
+                properties.setProperty("maven-repository", cmd.getOptionValue("maven-repository"));
+            }
+            if (cmd.hasOption("disable-junit-workers")) {
+                properties.setProperty("junit-workers", "false");
+            }
+            if (cmd.hasOption("disable-combined-tests")) {
+                properties.setProperty("combined-tests", "false");
+            }
+            if (cmd.hasOption("disable-previous-phase-fail-fast")) {
+                properties.setProperty("previous-phase-fail-fast", "false");
+            }
+            if (cmd.hasOption("test-parallelism")) {
+                properties.setProperty("test-parallelism", cmd.getOptionValue("test-parallelism"));
+            }
+            if (cmd.hasOption("build-cache")) {
+                properties.setProperty("build-cache", cmd.getOptionValue("build-cache"));
+            }
+            if (cmd.hasOption("build-cache-mb")) {
+                properties.setProperty("build-cache-mb", cmd.getOptionValue("build-cache-mb"));
+            }
+            if (cmd.hasOption("disable-direct-build")) {
+                properties.setProperty("direct-build", "false");
+            }
+            if (cmd.hasOption("starter-code")) {
+                properties.setProperty("starter-code", cmd.getOptionValue("starter-code"));
+            }
+            if (cmd.hasOption("cgroup-root")) {
+                properties.setProperty("cgroup-root", cmd.getOptionValue("cgroup-root"));
+            }
+            if (cmd.hasOption("cgroup-memory-mb")) {
+                properties.setProperty("cgroup-memory-mb", cmd.getOptionValue("cgroup-memory-mb"));
+            }
+            if (cmd.hasOption("cgroup-cpus")) {
+                properties.setProperty("cgroup-cpus", cmd.getOptionValue("cgroup-cpus"));
+            }
+            if (cmd.hasOption("grader-only")) {
+                properties.setProperty("grader-only", "true");
+            }
         } catch (ParseException e) {
             throw new RuntimeException("Error parsing command line arguments", e);
         }
@@ -97,6 +150,22 @@ public class Main {
         options.addOption(null, "canvas-token", true, "Canvas Token");
         options.addOption(null, "use-canvas", true, "Using Canvas");
         options.addOption(null, "disable-compilation", false, "Turn off student code compilation");
+        options.addOption(null, "grader-threads", true, "Number of submissions graded concurrently");
+        options.addOption(null, "max-student-jvms", true, "Number of student JVMs allowed to run concurrently");
+        options.addOption(null, "scheduling-policy", true, "Order of the grading queue: fair (default) or fifo");
+        options.addOption(null, "maven-repository", true, "Local maven repository warmed at startup so grading builds run offline (default ./maven-repository)");
+        options.addOption(null, "disable-junit-workers", false, "Start a new JVM for every test run instead of one test runner per grading run");
+        options.addOption(null, "disable-combined-tests", false, "Launch each test grader's tests separately instead of all of a run's tests at once");
+        options.addOption(null, "disable-previous-phase-fail-fast", false, "Run every previous phase test even after one has failed");
+        options.addOption(null, "test-parallelism", true, "Test classes of the phase 0 and 1 passoff tests run at once on a test worker (default 2, 1 for one at a time)");
+        options.addOption(null, "build-cache", true, "Directory holding recent builds for reruns of identical code (default: build-cache)");
+        options.addOption(null, "build-cache-mb", true, "Disk budget in MB for the build cache (default 2048, 0 to turn it off)");
+        options.addOption(null, "disable-direct-build", false, "Always build submissions with maven instead of compiling the modules directly");
+        options.addOption(null, "starter-code", true, "Starter code built with the canonical poms, to precompile the official tests against at startup");
+        options.addOption(null, "cgroup-root", true, "Delegated cgroup v2 directory used to cap the memory and CPU of each grading run");
+        options.addOption(null, "cgroup-memory-mb", true, "Memory cap in MB for each grading run when cgroup-root is set (default 2048, 0 for none)");
+        options.addOption(null, "cgroup-cpus", true, "CPU cap in cores for each grading run when cgroup-root is set (default 2, 0 for none)");
+        options.addOption(null, "grader-only", false, "Only grade submissions from the shared queue, without serving the web app");
         return options;
     }
 
@@ -0,0 +1,70 @@
+package edu.byu.cs.autograder;
+
+/**
+ * Signals that a grading run should stop. The grader checks the token between stages, and cancelling
+ * interrupts the thread running the current stage, which makes
+ * {@link edu.byu.cs.util.ProcessUtils#runProcess(ProcessBuilder, String, long)} kill the process tree it is
+ * waiting on.
+ */
+public class CancellationToken {
+
+    private volatile String reason;
+
+    /**
+     * The thread running the grading stages. Only read and written while holding the token's lock, so a thread
+     * is never interrupted after it was unbound.
+     */
+    private Thread runner;
+
+    /**
+     * Marks the calling thread as the one running the grading stages, so {@link #cancel(String)} can interrupt it.
+     * If the token was already cancelled, the thread is interrupted immediately.
+     */
+    public synchronized void bind() {
+        runner = Thread.currentThread();
+        if (isCancelled()) runner.interrupt();
+    }
+
+    /**
+     * Releases the thread bound by {@link #bind()}. Once this returns, no cancellation interrupts it, so the thread
+     * can clear its interrupt and move on to other work.
+     */
+    public synchronized void unbind() {
+        runner = null;
+    }
+
+    /**
+     * Cancels the run. Only the first reason is kept.
+     *
+     * @param reason why the run was cancelled, shown in the logs
+     */
+    public void cancel(String reason) {
+        synchronized (this) {
+            if (this.reason != null) return;
+            this.reason = reason;
+            if (runner != null) runner.interrupt();
+        }
+    }
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    /**
+     * @return why the run was cancelled, or null if it wasn't
+     */
+    public String reason() {
+        return reason;
+    }
+
+    /**
+     * Stops the current stage if the run was cancelled
+     *
+     * @throws GradingException if the run was cancelled
+     */
+    public void throwIfCancelled() throws GradingException {
+        if (isCancelled()) {
+            throw new GradingException("Grading was cancelled: " + reason);
+        }
+    }
+}
@@ -5,12 +5,15 @@ import edu.byu.cs.autograder.database.DatabaseHelper;
 import edu.byu.cs.autograder.git.CommitVerificationConfig;
 import edu.byu.cs.autograder.git.CommitVerificationResult;
 import edu.byu.cs.autograder.git.GitHelper;
+import edu.byu.cs.autograder.resources.Workspace;
+import edu.byu.cs.autograder.resources.WorkspaceAllocator;
+import edu.byu.cs.autograder.scheduling.GradingTimings;
+import edu.byu.cs.autograder.scheduling.WaitTimeEstimator;
+import edu.byu.cs.autograder.test.CombinedTestRun;
 import edu.byu.cs.autograder.test.GitHubAssignmentGrader;
+import edu.byu.cs.autograder.test.JUnitWorkerPool;
 import edu.byu.cs.autograder.test.QualityGrader;
 import edu.byu.cs.autograder.score.Scorer;
-import edu.byu.cs.autograder.test.PassoffTestGrader;
-import edu.byu.cs.autograder.test.PreviousPhasePassoffTestGrader;
-import edu.byu.cs.autograder.test.UnitTestGrader;
 import edu.byu.cs.dataAccess.DaoService;
 import edu.byu.cs.dataAccess.DataAccessException;
 import edu.byu.cs.model.Phase;
@@ -18,15 +21,16 @@ import edu.byu.cs.model.Rubric;
 import edu.byu.cs.model.RubricConfig;
 import edu.byu.cs.model.Submission;
 import edu.byu.cs.properties.ApplicationProperties;
-import edu.byu.cs.util.FileUtils;
+import edu.byu.cs.util.Cgroup;
 import edu.byu.cs.util.PhaseUtils;
+import edu.byu.cs.util.ProcessAccount;
 import edu.byu.cs.util.RepoUrlValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.time.Instant;
+import java.nio.file.Path;
 import java.util.EnumMap;
 
 /**
@@ -38,15 +42,32 @@ public class Grader implements Runnable {
     /** DEV ONLY. Default: true. Skips compilation and evaluation of student projects. */
     private final boolean RUN_COMPILATION = ApplicationProperties.runCompilation();
 
-    private final DatabaseHelper dbHelper;
+    private final String repoUrl;
+    private final String netId;
+    private final Phase phase;
+    private final boolean admin;
+    private final String phasesPath;
+    private final CommitVerificationConfig cvConfig;
 
-    private final GitHelper gitHelper;
-    private final CompileHelper compileHelper;
-
-    protected final GradingContext gradingContext;
+    /**
+     * The context of the current run. Only set once a workspace has been leased in {@link #run()},
+     * so submissions waiting in the queue don't hold a workspace.
+     */
+    protected GradingContext gradingContext;
 
     protected GradingObserver observer;
 
+    /**
+     * Set when the run is cancelled, e.g. because a newer submission superseded this one. A cancelled grader
+     * stops at the next stage boundary, kills any student process it is waiting on, and doesn't record results.
+     */
+    private final CancellationToken cancellation = new CancellationToken();
+
+    /**
+     * How long each stage of the current run took, used to estimate how long queued submissions will wait
+     */
+    private GradingTimings timings;
+
     /**
      * Creates a new grader
      *
@@ -60,57 +81,152 @@ public class Grader implements Runnable {
         if (!admin) {
             repoUrl = RepoUrlValidator.clean(repoUrl);
         }
-        String phasesPath = new File("./phases").getCanonicalPath();
-        long salt = Instant.now().getEpochSecond();
-        String stagePath = new File("./tmp-" + repoUrl.hashCode() + "-" + salt).getCanonicalPath();
+        this.repoUrl = repoUrl;
+        this.netId = netId;
+        this.phase = phase;
+        this.admin = admin;
+        this.phasesPath = new File("./phases").getCanonicalPath();
+        this.cvConfig = PhaseUtils.shouldVerifyCommits(phase) ? PhaseUtils.verificationConfig(phase) : null;
+        this.observer = observer;
+    }
+
+    /**
+     * Stops grading this submission. Any student process running for it is killed along with its children.
+     *
+     * @param reason why the run was cancelled
+     */
+    public void cancel(String reason) {
+        cancellation.cancel(reason);
+    }
+
+    public boolean isCancelled() {
+        return cancellation.isCancelled();
+    }
+
+    public void run() {
+        cancellation.bind();
+        try {
+            runWorkspace();
+        } finally {
+            cancellation.unbind();
+        }
+    }
+
+    private void runWorkspace() {
+        if (cancellation.isCancelled()) return;
+        observer.notifyStarted();
+        Workspace workspace;
+        try {
+            workspace = WorkspaceAllocator.getInstance().allocate();
+        } catch (GradingException e) {
+            observer.notifyError(e.getMessage());
+            LOGGER.error("Error leasing a workspace for user {} and repository {}", netId, repoUrl, e);
+            return;
+        }
+
+        try {
+            grade(workspace);
+        } finally {
+            WorkspaceAllocator.getInstance().release(workspace);
+        }
+    }
+
+    private void grade(Workspace workspace) {
+        String stagePath = workspace.directory().getAbsolutePath();
         File stageRepo = new File(stagePath, "repo");
 
         // Init Grading Context
-        CommitVerificationConfig cvConfig = PhaseUtils.shouldVerifyCommits(phase) ?
-                PhaseUtils.verificationConfig(phase) : null;
-        this.observer = observer;
         this.gradingContext = new GradingContext(
                     netId, phase, phasesPath, stagePath, repoUrl, stageRepo,
-                    cvConfig, observer, admin);
+                    cvConfig, observer, admin, workspace, cancellation);
 
         // Init helpers
-        this.dbHelper = new DatabaseHelper(salt, gradingContext);
-        this.gitHelper = new GitHelper(gradingContext);
-        this.compileHelper = new CompileHelper(gradingContext);
-    }
+        DatabaseHelper dbHelper = new DatabaseHelper(workspace, gradingContext);
+        GitHelper gitHelper = new GitHelper(gradingContext);
+        CompileHelper compileHelper = new CompileHelper(gradingContext);
+        CombinedTestRun tests = new CombinedTestRun(gradingContext);
 
-    public void run() {
-        observer.notifyStarted();
         CommitVerificationResult commitVerificationResult = null;
+        timings = new GradingTimings(phase);
+        JUnitWorkerPool testWorkers = RUN_COMPILATION && phase != Phase.GitHub ? JUnitWorkerPool.getInstance() : null;
+        Cgroup cgroup = createCgroup(workspace);
+        ProcessAccount processAccount = new ProcessAccount(cgroup, timings::addProcess);
+        processAccount.bind();
+        // The workers run student code, so they are started once the run's cgroup exists and its account is bound
+        if (testWorkers != null) testWorkers.prepare(workspace);
         try {
-            // FIXME: remove this sleep. currently the grader is too quick for the client to keep up
-            Thread.sleep(1000);
+            timings.begin(GradingTimings.Stage.CLONE);
             commitVerificationResult = gitHelper.setUpAndVerifyHistory();
+            cancellation.throwIfCancelled();
+            timings.begin(GradingTimings.Stage.DATABASE_SETUP);
             dbHelper.setUp();
+            RubricConfig rubricConfig = DaoService.getRubricConfigDao().getRubricConfig(gradingContext.phase());
             if (RUN_COMPILATION && gradingContext.phase() != Phase.GitHub) {
+                timings.begin(GradingTimings.Stage.COMPILE);
                 compileHelper.compile();
-                new PreviousPhasePassoffTestGrader(gradingContext).runTests();
+                cancellation.throwIfCancelled();
+                timings.begin(GradingTimings.Stage.PREVIOUS_PHASE_TESTS);
+                tests.launch(rubricConfig);
+                tests.runPreviousPhaseTests();
+                cancellation.throwIfCancelled();
             }
 
-            RubricConfig rubricConfig = DaoService.getRubricConfigDao().getRubricConfig(gradingContext.phase());
-            Rubric rubric = evaluateProject(RUN_COMPILATION ? rubricConfig : null, commitVerificationResult);
+            Rubric rubric = evaluateProject(RUN_COMPILATION ? rubricConfig : null, commitVerificationResult, tests);
+            // Scoring may send the grade to Canvas, which can't be undone
+            cancellation.throwIfCancelled();
 
+            timings.begin(GradingTimings.Stage.SCORE);
             Submission submission = new Scorer(gradingContext).score(rubric, commitVerificationResult);
+            // The scorer checks for cancellation right before sending to Canvas. Once it returns, the grade may be in
+            // Canvas, so the submission is saved even if the run was cancelled since, keeping the two in sync.
             DaoService.getSubmissionDao().insertSubmission(submission);
+            if (cancellation.isCancelled()) {
+                LOGGER.info("Grading for user {} was cancelled after it was scored: {}", gradingContext.netId(),
+                        cancellation.reason());
+                return;
+            }
 
+            timings.finish(WaitTimeEstimator.getInstance());
             observer.notifyDone(submission);
         } catch (Exception e) {
+            if (cancellation.isCancelled()) {
+                LOGGER.info("Grading for user {} was cancelled: {}", gradingContext.netId(), cancellation.reason());
+                return;
+            }
+            // Failed runs still occupied a grader, so they count towards the estimates
+            timings.finish(WaitTimeEstimator.getInstance());
             GradingException ge = e instanceof GradingException ? (GradingException) e : new GradingException(e);
             handleException(ge, commitVerificationResult);
             LOGGER.error("Error running grader for user {} and repository {}", gradingContext.netId(),
                     gradingContext.repoUrl(), e);
         } finally {
+            processAccount.unbind();
+            if (testWorkers != null) testWorkers.recycle(workspace);
+            if (cgroup != null) cgroup.close();
             dbHelper.cleanUp();
-            FileUtils.removeDirectory(new File(gradingContext.stagePath()));
         }
     }
 
-    private Rubric evaluateProject(RubricConfig rubricConfig, CommitVerificationResult commitVerificationResult) throws GradingException, DataAccessException {
+    /**
+     * Creates the cgroup capping the memory and CPU of everything this run launches, if caps are configured
+     *
+     * @param workspace the workspace the run uses, which names the cgroup
+     * @return the cgroup, or null if caps aren't configured or the cgroup couldn't be created
+     */
+    private Cgroup createCgroup(Workspace workspace) {
+        String cgroupRoot = ApplicationProperties.cgroupRoot();
+        if (cgroupRoot == null) return null;
+        try {
+            return Cgroup.create(Path.of(cgroupRoot), "grader-" + workspace.directory().getName(),
+                    ApplicationProperties.cgroupMemoryMb(), ApplicationProperties.cgroupCpus());
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't create a cgroup in {}; grading {} without memory and CPU caps", cgroupRoot, netId, e);
+            return null;
+        }
+    }
+
+    private Rubric evaluateProject(RubricConfig rubricConfig, CommitVerificationResult commitVerificationResult,
+                                   CombinedTestRun tests) throws GradingException, DataAccessException {
         EnumMap<Rubric.RubricType, Rubric.RubricItem> rubricItems = new EnumMap<>(Rubric.RubricType.class);
         if (rubricConfig == null) {
             return new Rubric(new EnumMap<>(Rubric.RubricType.class), false, "No Rubric Config");
@@ -119,11 +235,13 @@ public class Grader implements Runnable {
         for(Rubric.RubricType type : Rubric.RubricType.values()) {
             RubricConfig.RubricConfigItem configItem = rubricConfig.items().get(type);
             if(configItem != null) {
+                gradingContext.cancellation().throwIfCancelled();
+                timings.begin(GradingTimings.Stage.forRubricType(type));
                 Rubric.Results results = switch (type) {
                     // TODO: How can we fully remove this switch statement and rely on passed-in definitions instead
                     // This code is violating the open-closed principle.
-                    case PASSOFF_TESTS -> new PassoffTestGrader(gradingContext).runTests();
-                    case UNIT_TESTS -> new UnitTestGrader(gradingContext).runTests();
+                    case PASSOFF_TESTS -> tests.runPassoffTests();
+                    case UNIT_TESTS -> tests.runUnitTests();
                     case QUALITY -> new QualityGrader(gradingContext).runQualityChecks();
                     case GITHUB_REPO -> new GitHubAssignmentGrader().grade(commitVerificationResult);
                     case GIT_COMMITS, GRADING_ISSUE -> null;
@@ -1,6 +1,7 @@
 package edu.byu.cs.autograder;
 
 import edu.byu.cs.autograder.git.CommitVerificationConfig;
+import edu.byu.cs.autograder.resources.Workspace;
 import edu.byu.cs.model.Phase;
 
 import java.io.File;
@@ -15,6 +16,8 @@ import java.io.File;
  * @param verificationConfig Several variables related to commit verification
  * @param observer        Used to notify the user of changes as the game is played.
  * @param admin           If the submission is an admin submission
+ * @param workspace       The resources leased to this run. The stagePath is the workspace's directory.
+ * @param cancellation    Signals that the run should stop, e.g. when an admin cancels it
  */
 public record GradingContext(
         String netId,
@@ -29,5 +32,15 @@ public record GradingContext(
 
         // Others
         GradingObserver observer,
-        boolean admin
-) { }
+        boolean admin,
+        Workspace workspace,
+        CancellationToken cancellation
+) {
+    /**
+     * @return this run's private copy of the official phase tests (child of stagePath).
+     * Graders compile from this copy so per-submission modifications never touch the shared phasesPath.
+     */
+    public File stagePhasesPath() {
+        return new File(stagePath, "phases");
+    }
+}
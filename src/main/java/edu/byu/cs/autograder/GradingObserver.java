@@ -1,6 +1,7 @@
 package edu.byu.cs.autograder;
 
 import edu.byu.cs.model.Submission;
+import edu.byu.cs.model.TestNode;
 
 public interface GradingObserver {
     /**
@@ -42,6 +43,15 @@ public interface GradingObserver {
      */
     void notifyWarning(String message);
 
+    /**
+     * Sends the result of a single test to the user as soon as it finishes, while the rest are still running.
+     * The user is sent the running tally of the test's set, so only the latest tally of each set matters.
+     * @param tests The name of the set of tests the test belongs to, e.g. "passoff".
+     * @param testClass The simple name of the test's class.
+     * @param test The test's result.
+     */
+    void notifyTestResult(String tests, String testClass, TestNode test);
+
     /**
      * **TERMINALLY** Closes the connection to the student while reporting success.
      * <br>
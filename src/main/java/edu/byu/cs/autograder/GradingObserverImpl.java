@@ -4,6 +4,7 @@ import edu.byu.cs.controller.TrafficController;
 import edu.byu.cs.dataAccess.DaoService;
 import edu.byu.cs.dataAccess.DataAccessException;
 import edu.byu.cs.model.Submission;
+import edu.byu.cs.model.TestNode;
 import edu.byu.cs.util.Serializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,26 +18,30 @@ public class GradingObserverImpl implements GradingObserver {
 
     private final String netId;
 
+    /**
+     * The worker holding the claim on the submission, or null if not graded from the queue
+     */
+    private final String workerId;
+
+    /**
+     * The passed and failed counts of each set of tests so far, so each result is sent as the set's running tally
+     */
+    private final Map<String, int[]> testTallies = new HashMap<>();
+
     public GradingObserverImpl(String netId) {
+        this(netId, null);
+    }
+
+    public GradingObserverImpl(String netId, String workerId) {
         this.netId = netId;
+        this.workerId = workerId;
     }
 
     @Override
     public void notifyStarted() {
-        try {
-            DaoService.getQueueDao().markStarted(netId);
-        } catch (DataAccessException e) {
-            LOGGER.error("Error marking queue item as started", e);
-            return;
-        }
-
+        // Claiming the submission already marked it started. Marking it again here, without checking the claim, could
+        // flip a row that was just superseded back to started.
         notifySubscribers(Map.of("type", "started"));
-
-        try {
-            TrafficController.broadcastQueueStatus();
-        } catch (Exception e) {
-            LOGGER.error("Error broadcasting queue status", e);
-        }
     }
 
     @Override
@@ -67,6 +72,18 @@ public class GradingObserverImpl implements GradingObserver {
         notifySubscribers(Map.of("type", "warning", "message", message));
     }
 
+    @Override
+    public void notifyTestResult(String tests, String testClass, TestNode test) {
+        boolean passed = Boolean.TRUE.equals(test.getPassed());
+        // Published while holding the lock, so a set's tallies are never sent out of order
+        synchronized (testTallies) {
+            int[] tally = testTallies.computeIfAbsent(tests, k -> new int[2]);
+            tally[passed ? 0 : 1]++;
+            notifySubscribers(Map.of("type", "testResult", "tests", tests, "passed", tally[0], "failed", tally[1],
+                    "latest", String.format("%s: %s %s", testClass, test.getTestName(), passed ? "passed" : "failed")));
+        }
+    }
+
     @Override
     public void notifyDone(Submission submission) {
         notifySubscribers(Map.of("type", "results", "results", Serializer.serialize(submission)));
@@ -75,16 +92,21 @@ public class GradingObserverImpl implements GradingObserver {
 
     private void notifySubscribers(Map<String, Object> contents) {
         try {
-            TrafficController.getInstance().notifySubscribers(netId, contents);
+            TrafficController.getInstance().publish(netId, contents);
         } catch (Exception e) {
             LOGGER.error("Error updating subscribers", e);
         }
     }
 
     private void removeFromQueue() {
-        TrafficController.sessions.remove(netId);
+        TrafficController.getInstance().finish(netId);
         try {
-            DaoService.getQueueDao().remove(netId);
+            if (workerId != null) {
+                // The submission may have been superseded since it was claimed
+                DaoService.getQueueDao().removeClaimed(netId, workerId);
+            } else {
+                DaoService.getQueueDao().remove(netId);
+            }
         } catch (DataAccessException e) {
             LOGGER.error("Error removing queue item", e);
         }
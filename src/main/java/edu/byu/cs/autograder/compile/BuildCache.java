@@ -0,0 +1,356 @@
+package edu.byu.cs.autograder.compile;
+
+import edu.byu.cs.properties.ApplicationProperties;
+import edu.byu.cs.util.FileUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the test-dependencies jars of recent builds on disk, along with the tests compiled against them, keyed by
+ * what went into them, so rerunning a submission (an admin rerun, the queue being rerun after a restart, regrading
+ * after a config change) doesn't build the same code or compile the same tests again.
+ * <br>
+ * A build's key combines the git tree ids of the student's modules at HEAD with the fingerprint of the canonical
+ * poms and passoff jar, which is everything the modifiers put in their place. A set of compiled tests is keyed by
+ * the build it was compiled against and a hash of the test sources, which covers tests modified per submission.
+ * The least recently used entries are removed once the cache outgrows its disk budget. Only successful builds and
+ * compiles are kept.
+ * <br>
+ * Some resources are written into the working tree by each run before it builds, such as the server's
+ * db.properties holding the run's own database and credentials. They aren't part of the key, so they are removed
+ * from the jars before they are kept and the current run's are put back in when they are restored.
+ */
+public class BuildCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuildCache.class);
+
+    /**
+     * Changes whenever the layout of an entry or the way keys are computed changes
+     */
+    private static final String FORMAT = "2";
+
+    /**
+     * The directory in a compiled tests entry holding the class files
+     */
+    private static final String TESTS = "tests";
+
+    /**
+     * Resources, by module, that each run writes into its working tree before building
+     */
+    private static final Map<String, List<String>> RUN_RESOURCES = Map.of("server", List.of("db.properties"));
+
+    private static BuildCache instance;
+
+    /**
+     * @param hits      how many builds and sets of compiled tests were restored from the cache
+     * @param misses    how many builds and sets of compiled tests weren't in the cache
+     * @param stores    how many builds and sets of compiled tests were added to the cache
+     * @param evictions how many entries were removed to stay within the disk budget
+     * @param entries   how many entries the cache holds
+     * @param bytes     how much disk the cache uses
+     */
+    public record Statistics(long hits, long misses, long stores, long evictions, int entries, long bytes) { }
+
+    private final File directory;
+    private final long budgetBytes;
+
+    /**
+     * Entry sizes in bytes by key, least recently used first
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long stores = 0;
+    private long evictions = 0;
+
+    /**
+     * @param directory   where entries are kept. Entries already there are picked up, oldest use first.
+     * @param budgetBytes how much disk the entries may use
+     */
+    BuildCache(File directory, long budgetBytes) {
+        this.directory = directory;
+        this.budgetBytes = budgetBytes;
+        File[] existing = directory.listFiles(File::isDirectory);
+        if (existing == null) return;
+        Arrays.sort(existing, Comparator.comparingLong(File::lastModified));
+        for (File entry : existing) {
+            // Entries being stored have a suffix, and are left behind only if the autograder stopped mid-store
+            if (entry.getName().contains(".")) {
+                FileUtils.removeDirectory(entry);
+                continue;
+            }
+            long size = size(entry.toPath());
+            entries.put(entry.getName(), size);
+            bytes += size;
+        }
+        evict();
+    }
+
+    /**
+     * @return the cache, or null if its budget is 0
+     */
+    public static synchronized BuildCache getInstance() {
+        if (instance == null && ApplicationProperties.buildCacheMb() > 0) {
+            instance = new BuildCache(new File(ApplicationProperties.buildCache()).getAbsoluteFile(),
+                    ApplicationProperties.buildCacheMb() * 1024L * 1024L);
+        }
+        return instance;
+    }
+
+    /**
+     * @param stageRepo a freshly cloned student repository
+     * @return the key of the repository's build with the current canonical poms and passoff jar, or null if HEAD
+     * can't be read
+     * @throws IOException if the repository or the poms couldn't be read
+     */
+    public static String key(File stageRepo) throws IOException {
+        return key(stageRepo, MavenRepository.getInstance().fingerprint());
+    }
+
+    /**
+     * @param stageRepo      a freshly cloned student repository
+     * @param pomFingerprint the fingerprint of the canonical poms and passoff jar
+     * @return the key of the repository's build, or null if HEAD can't be read
+     * @throws IOException if the repository couldn't be read
+     */
+    public static String key(File stageRepo, String pomFingerprint) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(FORMAT.getBytes(StandardCharsets.UTF_8));
+        digest.update(pomFingerprint.getBytes(StandardCharsets.UTF_8));
+
+        try (Repository repository = new FileRepositoryBuilder().setGitDir(new File(stageRepo, ".git"))
+                .setMustExist(true).build()) {
+            ObjectId tree = repository.resolve("HEAD^{tree}");
+            if (tree == null) return null;
+            for (String module : MavenRepository.MODULES) {
+                try (TreeWalk walk = TreeWalk.forPath(repository, module, tree)) {
+                    String id = walk == null ? "missing" : walk.getObjectId(0).name();
+                    digest.update((module + "=" + id + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @param buildKey   the key of the build the tests are compiled against, from {@link #key(File)}
+     * @param sourceHash a hash of the test sources
+     * @return the key of the tests compiled against the build
+     */
+    public static String testsKey(String buildKey, String sourceHash) {
+        MessageDigest digest = newDigest();
+        digest.update((FORMAT + "\n" + TESTS + "\n" + buildKey + "\n" + sourceHash).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Puts a cached build's jars where a build would have written them
+     *
+     * @param key       the build's key
+     * @param stageRepo the repository to restore the jars into
+     * @return true if the build was cached and restored
+     */
+    public synchronized boolean restore(String key, File stageRepo) {
+        if (entries.get(key) == null) {
+            misses++;
+            LOGGER.debug("Build cache miss for {}", key);
+            return false;
+        }
+        Path entry = directory.toPath().resolve(key);
+        try {
+            for (String module : MavenRepository.MODULES) {
+                Path jar = entry.resolve(jarName(module));
+                if (!Files.exists(jar)) continue;
+                Path target = stageRepo.toPath().resolve(module).resolve("target");
+                Files.createDirectories(target);
+                Files.copy(jar, target.resolve(jarName(module)), StandardCopyOption.REPLACE_EXISTING);
+                replaceRunResources(target.resolve(jarName(module)), module, stageRepo, true);
+            }
+            entry.toFile().setLastModified(System.currentTimeMillis());
+            hits++;
+            LOGGER.debug("Build cache hit for {}", key);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't restore build {} from the cache; removing it", key, e);
+            remove(key);
+            misses++;
+            return false;
+        }
+    }
+
+    /**
+     * Adds a successful build's jars to the cache
+     *
+     * @param key       the build's key
+     * @param stageRepo the repository that was built
+     */
+    public void store(String key, File stageRepo) {
+        Path staging = directory.toPath().resolve(key + "." + UUID.randomUUID());
+        try {
+            Files.createDirectories(staging);
+            for (String module : MavenRepository.MODULES) {
+                Path jar = stageRepo.toPath().resolve(module).resolve("target").resolve(jarName(module));
+                if (!Files.exists(jar)) continue;
+                Files.copy(jar, staging.resolve(jarName(module)));
+                replaceRunResources(staging.resolve(jarName(module)), module, stageRepo, false);
+            }
+            add(key, staging);
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't add build {} to the cache", key, e);
+        } finally {
+            FileUtils.removeDirectory(staging.toFile());
+        }
+    }
+
+    /**
+     * Copies cached compiled tests into the output directory, alongside anything already there
+     *
+     * @param key             the tests' key, from {@link #testsKey(String, String)}
+     * @param outputDirectory where to write the class files
+     * @return true if the tests were cached and restored
+     */
+    public synchronized boolean restoreTests(String key, File outputDirectory) {
+        if (entries.get(key) == null) {
+            misses++;
+            LOGGER.debug("Build cache miss for tests {}", key);
+            return false;
+        }
+        Path entry = directory.toPath().resolve(key);
+        try {
+            copyTree(entry.resolve(TESTS), outputDirectory.toPath());
+            entry.toFile().setLastModified(System.currentTimeMillis());
+            hits++;
+            LOGGER.debug("Build cache hit for tests {}", key);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't restore tests {} from the cache; removing them", key, e);
+            remove(key);
+            misses++;
+            return false;
+        }
+    }
+
+    /**
+     * Adds tests that compiled to the cache
+     *
+     * @param key           the tests' key, from {@link #testsKey(String, String)}
+     * @param compiledTests the directory holding only the compiled tests
+     */
+    public void storeTests(String key, File compiledTests) {
+        Path staging = directory.toPath().resolve(key + "." + UUID.randomUUID());
+        try {
+            copyTree(compiledTests.toPath(), staging.resolve(TESTS));
+            add(key, staging);
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't add tests {} to the cache", key, e);
+        } finally {
+            FileUtils.removeDirectory(staging.toFile());
+        }
+    }
+
+    /**
+     * Moves a fully written entry into the cache, unless it is empty, too big or already cached
+     */
+    private synchronized void add(String key, Path staging) throws IOException {
+        long size = size(staging);
+        if (size == 0 || size > budgetBytes || entries.containsKey(key)) return;
+        Files.move(staging, directory.toPath().resolve(key));
+        entries.put(key, size);
+        bytes += size;
+        stores++;
+        evict();
+    }
+
+    public synchronized Statistics statistics() {
+        return new Statistics(hits, misses, stores, evictions, entries.size(), bytes);
+    }
+
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (bytes > budgetBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            bytes -= entry.getValue();
+            evictions++;
+            FileUtils.removeDirectory(directory.toPath().resolve(entry.getKey()).toFile());
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) bytes -= size;
+        FileUtils.removeDirectory(directory.toPath().resolve(key).toFile());
+    }
+
+    /**
+     * Removes the module's run resources from a jar, then puts the run's own back in if asked to. Resources the run
+     * didn't write are left alone.
+     */
+    private static void replaceRunResources(Path jar, String module, File stageRepo, boolean putBack)
+            throws IOException {
+        Path resources = stageRepo.toPath().resolve(module).resolve("src/main/resources");
+        List<String> written = new ArrayList<>();
+        for (String resource : RUN_RESOURCES.getOrDefault(module, List.of())) {
+            if (Files.exists(resources.resolve(resource))) written.add(resource);
+        }
+        if (written.isEmpty()) return;
+        try (FileSystem zip = FileSystems.newFileSystem(jar)) {
+            for (String resource : written) {
+                Path entry = zip.getPath(resource);
+                Files.deleteIfExists(entry);
+                if (putBack) Files.copy(resources.resolve(resource), entry);
+            }
+        }
+    }
+
+    private static void copyTree(Path source, Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : paths.toList()) {
+                Path destination = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(destination);
+                } else {
+                    Files.copy(path, destination, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String jarName(String module) {
+        return module + "-test-dependencies.jar";
+    }
+
+    private static long size(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -3,17 +3,32 @@ package edu.byu.cs.autograder.compile;
 import edu.byu.cs.autograder.GradingContext;
 import edu.byu.cs.autograder.GradingException;
 import edu.byu.cs.autograder.compile.modifiers.PassoffJarModifier;
+import edu.byu.cs.autograder.compile.modifiers.PassoffTestsModifier;
 import edu.byu.cs.autograder.compile.modifiers.PomModifier;
 import edu.byu.cs.autograder.compile.modifiers.TestFactoryModifier;
 import edu.byu.cs.autograder.compile.verifers.*;
+import edu.byu.cs.autograder.resources.ResourceBudget;
 import edu.byu.cs.model.Rubric;
+import edu.byu.cs.properties.ApplicationProperties;
+import edu.byu.cs.util.OutputCapture;
 import edu.byu.cs.util.ProcessUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Predicate;
 
 public class CompileHelper {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompileHelper.class);
+
+    /**
+     * How much of the start and of the end of maven's error output is shown to the student
+     */
+    private static final int MAX_ERROR_OUTPUT = 16 * 1024;
+
     private final GradingContext gradingContext;
 
     public CompileHelper(GradingContext gradingContext) {
@@ -26,12 +41,32 @@ public class CompileHelper {
 
 
     private final Collection<StudentCodeModifier> currentModifiers =
-            List.of(new PomModifier(), new PassoffJarModifier(), new TestFactoryModifier());
+            List.of(new PassoffTestsModifier(), new PomModifier(), new PassoffJarModifier(), new TestFactoryModifier());
 
     public void compile() throws GradingException {
         verify();
         modify();
+
+        BuildCache cache = BuildCache.getInstance();
+        String key = cache == null ? null : buildKey();
+        if (key != null && cache.restore(key, gradingContext.stageRepo())) {
+            gradingContext.observer().update("Reusing compiled code...");
+            return;
+        }
         packageRepo();
+        if (key != null) cache.store(key, gradingContext.stageRepo());
+    }
+
+    /**
+     * @return the key of this submission's build in the {@link BuildCache}, or null if it can't be computed
+     */
+    private String buildKey() {
+        try {
+            return BuildCache.key(gradingContext.stageRepo());
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't compute the build cache key for {}; building without the cache", gradingContext.netId(), e);
+            return null;
+        }
     }
 
     public void verify() throws GradingException {
@@ -60,11 +95,21 @@ public class CompileHelper {
     private void packageRepo() throws GradingException {
         gradingContext.observer().update("Compiling code...");
 
-        ProcessBuilder processBuilder = new ProcessBuilder();
-        processBuilder.directory(gradingContext.stageRepo());
-        processBuilder.command("mvn", "package", "-DskipTests");
-        try {
-            ProcessUtils.ProcessOutput output = ProcessUtils.runProcess(processBuilder, 90000); //90 seconds
+        MavenRepository repository = MavenRepository.getInstance();
+        boolean offline = repository.isWarm();
+        if (!offline) repository.warmInBackground();
+
+        try (ResourceBudget.Lease ignored = ResourceBudget.getInstance().acquire(ResourceBudget.Stage.COMPILE)) {
+            if (ApplicationProperties.directBuild() && new DirectModuleBuild(gradingContext.stageRepo(), repository).build()) {
+                return;
+            }
+            ProcessUtils.ProcessOutput output = runMavenPackage(repository, offline);
+            if (output.statusCode() != 0 && offline && MavenRepository.isOfflineResolutionFailure(output.stdOut())) {
+                // The repository is missing something after all; build online, and warm it again for later builds
+                repository.invalidate();
+                repository.warmInBackground();
+                output = runMavenPackage(repository, false);
+            }
             if (output.statusCode() != 0) {
                 Rubric.Results results = Rubric.Results.textError("Your Java source code could not be compiled", getMavenError(output.stdOut()));
                 throw new GradingException("Failed to compile", results);
@@ -74,24 +119,47 @@ public class CompileHelper {
         }
     }
 
+    private ProcessUtils.ProcessOutput runMavenPackage(MavenRepository repository, boolean offline)
+            throws ProcessUtils.ProcessException {
+        List<String> arguments = new ArrayList<>(List.of("package", "-DskipTests"));
+        arguments.addAll(repository.mavenArguments(offline));
+
+        // Only maven's error lines are kept, filtered as they are printed
+        OutputCapture stdOut = OutputCapture.bounded(MAX_ERROR_OUTPUT, MAX_ERROR_OUTPUT).filter(new MavenErrorFilter());
+        List<String> command = new ArrayList<>();
+        command.add("mvn");
+        command.addAll(arguments);
+        ProcessBuilder processBuilder = new ProcessBuilder();
+        processBuilder.directory(gradingContext.stageRepo());
+        processBuilder.command(command);
+        OutputCapture stdErr = OutputCapture.bounded(MAX_ERROR_OUTPUT, MAX_ERROR_OUTPUT);
+        return ProcessUtils.runProcess(processBuilder, null, 90000, stdOut, stdErr); //90 seconds
+    }
+
     /**
      * Retrieves maven error output from maven package stdout
      *
-     * @param output A string containing maven standard output
+     * @param output maven's error lines, as kept by a {@link MavenErrorFilter}
      * @return A string containing maven package error lines
      */
     private String getMavenError(String output) {
-        StringBuilder builder = new StringBuilder();
-        for (String line : output.split("\n")) {
-            if (line.contains("[ERROR] -> [Help 1]")) {
-                break;
-            }
+        return output.replace(gradingContext.stageRepo().getAbsolutePath(), "");
+    }
 
-            if(line.contains("[ERROR]")) {
-                String trimLine = line.replace(gradingContext.stageRepo().getAbsolutePath(), "");
-                builder.append(trimLine).append("\n");
+    /**
+     * Keeps the [ERROR] lines of maven output, up to the help link that ends maven's error summary
+     */
+    private static class MavenErrorFilter implements Predicate<String> {
+        private boolean done = false;
+
+        @Override
+        public boolean test(String line) {
+            if (done) return false;
+            if (line.contains("[ERROR] -> [Help 1]")) {
+                done = true;
+                return false;
             }
+            return line.contains("[ERROR]");
         }
-        return builder.toString();
     }
 }
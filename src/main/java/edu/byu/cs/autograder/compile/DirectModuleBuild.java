@@ -0,0 +1,255 @@
+package edu.byu.cs.autograder.compile;
+
+import edu.byu.cs.autograder.test.TestCompiler;
+import edu.byu.cs.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Builds a student's modules with the autograder's own Java compiler instead of maven.
+ * <br>
+ * {@link edu.byu.cs.autograder.compile.modifiers.PomModifier} replaces the students' poms with the canonical
+ * ones, so every project has the same modules, the same dependency graph and the same dependencies. Shared is
+ * compiled first, then server and client at the same time, each against its layer from the warm
+ * {@link MavenRepository}. Each module's test-dependencies jar is assembled from its layer, its own classes and
+ * the classes of the modules it depends on, which is what the canonical assembly produces.
+ * <br>
+ * Anything the fast path can't handle, including a compile error, is left to maven, so students see maven's
+ * output just as before.
+ */
+public class DirectModuleBuild {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectModuleBuild.class);
+
+    /**
+     * The modules each module compiles against
+     */
+    private static final Map<String, List<String>> DEPENDENCIES =
+            Map.of("shared", List.of(), "server", List.of("shared"), "client", List.of("shared"));
+
+    /**
+     * The modules in build order. The modules in each group only depend on earlier groups, so they are built
+     * at the same time.
+     */
+    private static final List<List<String>> BUILD_ORDER = List.of(List.of("shared"), List.of("server", "client"));
+
+    private static final Pattern JAVA_VERSION =
+            Pattern.compile("<maven\\.compiler\\.(?:release|source)>\\s*(\\d+)\\s*</");
+
+    private final File stageRepo;
+    private final Function<String, File> layers;
+
+    /**
+     * @param stageRepo  the student's repository, with the canonical poms in place
+     * @param repository the warm repository holding the module layers
+     */
+    public DirectModuleBuild(File stageRepo, MavenRepository repository) {
+        this(stageRepo, repository::layer);
+    }
+
+    /**
+     * @param stageRepo the student's repository, with the canonical poms in place
+     * @param layers    finds a module's layer, or returns null if it has none
+     */
+    DirectModuleBuild(File stageRepo, Function<String, File> layers) {
+        this.stageRepo = stageRepo;
+        this.layers = layers;
+    }
+
+    /**
+     * Builds every module and assembles their test-dependencies jars
+     *
+     * @return true if every module was built, or false if the project must be built with maven. Nothing the
+     * fast path wrote is left behind when it returns false.
+     */
+    public boolean build() {
+        if (!TestCompiler.isAvailable()) return false;
+        Map<String, File> moduleLayers = new HashMap<>();
+        for (List<String> group : BUILD_ORDER) {
+            for (String module : group) {
+                File layer = layers.apply(module);
+                if (layer == null) {
+                    LOGGER.debug("No layer for {}; building with maven", module);
+                    return false;
+                }
+                moduleLayers.put(module, layer);
+            }
+        }
+
+        List<String> options = compilerOptions();
+        boolean success = false;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            success = true;
+            for (List<String> group : BUILD_ORDER) {
+                List<Future<Boolean>> builds = new ArrayList<>();
+                for (String module : group) {
+                    builds.add(executor.submit(() -> buildModule(module, moduleLayers.get(module), options)));
+                }
+                for (Future<Boolean> build : builds) {
+                    success &= build.get();
+                }
+                if (!success) break;
+            }
+        } catch (ExecutionException e) {
+            LOGGER.warn("Direct build failed; building with maven", e.getCause());
+            success = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            success = false;
+        } finally {
+            if (!success) clean();
+        }
+        return success;
+    }
+
+    /**
+     * Compiles a module's main and test sources, then assembles its test-dependencies jar
+     *
+     * @return false if the module didn't compile
+     */
+    private boolean buildModule(String module, File layer, List<String> options) throws IOException {
+        File moduleDirectory = new File(stageRepo, module);
+        File target = new File(moduleDirectory, "target");
+        File classes = new File(target, "classes");
+        FileUtils.removeDirectory(target);
+        Files.createDirectories(classes.toPath());
+
+        List<File> classpath = new ArrayList<>();
+        for (String dependency : DEPENDENCIES.get(module)) {
+            classpath.add(classesOf(dependency));
+        }
+        classpath.add(layer);
+        classpath.addAll(libraries(moduleDirectory));
+
+        if (!compile(module, new File(moduleDirectory, "src/main/java"), classpath, classes, options)) return false;
+        File resources = new File(moduleDirectory, "src/main/resources");
+        if (resources.isDirectory()) FileUtils.copyDirectory(resources, classes);
+
+        // Maven compiles the tests even when it doesn't run them, so a build with broken tests fails there too
+        List<File> testClasspath = new ArrayList<>();
+        testClasspath.add(classes);
+        testClasspath.addAll(classpath);
+        File testClasses = new File(target, "test-classes");
+        if (!compile(module, new File(moduleDirectory, "src/test/java"), testClasspath, testClasses, options)) {
+            return false;
+        }
+
+        assemble(module, layer);
+        return true;
+    }
+
+    private static boolean compile(String module, File sources, List<File> classpath, File output,
+                                   List<String> options) throws IOException {
+        if (!sources.isDirectory()) return true;
+        TestCompiler.Result result = TestCompiler.compile(sources, classpath, output, options);
+        if (!result.success()) {
+            LOGGER.debug("{} didn't compile directly; building with maven:\n{}", module, result.errors());
+        }
+        return result.success();
+    }
+
+    /**
+     * Writes the module's test-dependencies jar: the module's and its dependencies' classes, then everything
+     * in its layer except the warmup placeholders. A student's class takes the place of a layer entry with the
+     * same name, as the project's own artifact does in the assembly.
+     */
+    private void assemble(String module, File layer) throws IOException {
+        Map<String, Path> ownEntries = new LinkedHashMap<>();
+        addEntries(classesOf(module).toPath(), ownEntries);
+        for (String dependency : DEPENDENCIES.get(module)) {
+            addEntries(classesOf(dependency).toPath(), ownEntries);
+        }
+
+        File jar = new File(stageRepo, module + "/target/" + module + "-test-dependencies.jar");
+        try (JarFile layerJar = new JarFile(layer);
+             JarOutputStream out = new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(jar.toPath())))) {
+            // The layer goes first so its manifest stays the jar's first entry
+            for (JarEntry entry : Collections.list(layerJar.entries())) {
+                String name = entry.getName();
+                if (name.startsWith(MavenRepository.WARMUP_PACKAGE + "/") || ownEntries.containsKey(name)) continue;
+                out.putNextEntry(new JarEntry(name));
+                if (!entry.isDirectory()) {
+                    try (InputStream in = layerJar.getInputStream(entry)) {
+                        in.transferTo(out);
+                    }
+                }
+                out.closeEntry();
+            }
+            for (Map.Entry<String, Path> entry : ownEntries.entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey()));
+                Files.copy(entry.getValue(), out);
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static void addEntries(Path classes, Map<String, Path> entries) throws IOException {
+        try (Stream<Path> files = Files.walk(classes)) {
+            for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                String name = classes.relativize(file).toString().replace(File.separatorChar, '/');
+                entries.putIfAbsent(name, file);
+            }
+        }
+    }
+
+    private File classesOf(String module) {
+        return new File(stageRepo, module + "/target/classes");
+    }
+
+    /**
+     * @return the jars a module's pom references from its lib directory, e.g. the passoff dependencies
+     */
+    private static List<File> libraries(File moduleDirectory) {
+        File[] jars = new File(moduleDirectory, "lib").listFiles((dir, name) -> name.endsWith(".jar"));
+        return jars == null ? List.of() : List.of(jars);
+    }
+
+    /**
+     * @return javac options matching the canonical poms' compiler settings, without annotation processing. A
+     * project that needs a processor, e.g. Lombok, doesn't compile here and is built with maven instead.
+     */
+    List<String> compilerOptions() {
+        List<String> options = new ArrayList<>(List.of("-g", "-proc:none"));
+        for (String pom : List.of("pom.xml", "shared/pom.xml", "server/pom.xml", "client/pom.xml")) {
+            try {
+                Path path = new File(stageRepo, pom).toPath();
+                if (!Files.exists(path)) continue;
+                Matcher matcher = JAVA_VERSION.matcher(Files.readString(path));
+                if (matcher.find()) {
+                    options.addAll(List.of("--release", matcher.group(1)));
+                    break;
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Couldn't read {}", pom, e);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Removes every module's build output, so maven starts from the same state it would have without the fast path
+     */
+    private void clean() {
+        for (List<String> group : BUILD_ORDER) {
+            for (String module : group) {
+                FileUtils.removeDirectory(new File(stageRepo, module + "/target"));
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package edu.byu.cs.autograder.compile;
+
+import edu.byu.cs.properties.ApplicationProperties;
+import edu.byu.cs.util.FileUtils;
+import edu.byu.cs.util.OutputCapture;
+import edu.byu.cs.util.ProcessUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * A local maven repository shared by every grading build, warmed ahead of time so builds can run offline.
+ * <br>
+ * Student poms are replaced with the canonical ones in phases/pom, so every build needs the same dependencies
+ * and plugins. Warming builds an empty project with those poms into the repository, which downloads all of them,
+ * and records a fingerprint of the poms. While the fingerprint matches the current poms, grading builds run
+ * offline; if the poms change, builds go online until the repository is warmed again.
+ * <br>
+ * Warming also keeps each module's assembled test-dependencies jar as a layer. Apart from the placeholder
+ * classes in {@link #WARMUP_PACKAGE}, a layer holds exactly what the canonical poms bundle with a student's
+ * classes, which lets {@link DirectModuleBuild} assemble the jars without maven.
+ */
+public class MavenRepository {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MavenRepository.class);
+
+    /**
+     * The file in the repository holding the fingerprint of the poms it was warmed with
+     */
+    static final String MARKER = ".autograder-warm";
+
+    /**
+     * The directory in the repository holding the module layers
+     */
+    static final String LAYERS = ".autograder-layers";
+
+    /**
+     * The package of the placeholder classes the warmup project compiles, which the layers must not be used with
+     */
+    static final String WARMUP_PACKAGE = "autograder_warmup";
+
+    static final String[] MODULES = {"shared", "client", "server"};
+
+    private static final long WARM_TIMEOUT = 15 * 60 * 1000; // 15 minutes
+
+    private static MavenRepository instance;
+
+    private final File repository;
+    private final File phasesDirectory;
+    private final AtomicBoolean warming = new AtomicBoolean(false);
+
+    /**
+     * @param repository      the local repository directory
+     * @param phasesDirectory the directory holding the canonical poms (pom) and the passoff jar (libs)
+     */
+    MavenRepository(File repository, File phasesDirectory) {
+        this.repository = repository;
+        this.phasesDirectory = phasesDirectory;
+    }
+
+    public static synchronized MavenRepository getInstance() {
+        if (instance == null) {
+            instance = new MavenRepository(new File(ApplicationProperties.mavenRepository()).getAbsoluteFile(),
+                    new File("phases").getAbsoluteFile());
+        }
+        return instance;
+    }
+
+    /**
+     * Warms the repository in the background if it isn't warm for the current poms
+     */
+    public void start() {
+        if (!isWarm()) warmInBackground();
+    }
+
+    /**
+     * @return true if the repository was warmed with the current poms, so builds can run offline
+     */
+    public boolean isWarm() {
+        try {
+            Path marker = repository.toPath().resolve(MARKER);
+            return Files.exists(marker) && Files.readString(marker).trim().equals(fingerprint());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Forgets that the repository is warm, e.g. after an offline build couldn't find an artifact
+     */
+    public void invalidate() {
+        try {
+            Files.deleteIfExists(repository.toPath().resolve(MARKER));
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't remove the warm marker from {}", repository, e);
+        }
+    }
+
+    /**
+     * Warms the repository on a background thread, unless it is already being warmed
+     */
+    public void warmInBackground() {
+        if (!warming.compareAndSet(false, true)) return;
+        Thread.ofVirtual().name("maven-warmup").start(() -> {
+            try {
+                warm();
+            } finally {
+                warming.set(false);
+            }
+        });
+    }
+
+    /**
+     * @param module the module, e.g. server
+     * @return the module's test-dependencies jar from the last warmup, or null if the repository isn't warm for
+     * the current poms
+     */
+    public File layer(String module) {
+        File layer = new File(new File(repository, LAYERS), module + ".jar");
+        return layer.isFile() && isWarm() ? layer : null;
+    }
+
+    /**
+     * @param offline true to build without network access
+     * @return the maven arguments that build against this repository
+     */
+    public List<String> mavenArguments(boolean offline) {
+        List<String> arguments = new ArrayList<>();
+        arguments.add("-Dmaven.repo.local=" + repository.getAbsolutePath());
+        if (offline) arguments.add("--offline");
+        return arguments;
+    }
+
+    /**
+     * @param mavenErrors the error lines of a failed offline build
+     * @return true if the build failed because an artifact hadn't been downloaded, rather than because of the code
+     */
+    public static boolean isOfflineResolutionFailure(String mavenErrors) {
+        return mavenErrors.contains("offline mode");
+    }
+
+    /**
+     * Builds an empty project with the canonical poms into the repository, then records the poms' fingerprint
+     *
+     * @return true if the repository was warmed
+     */
+    synchronized boolean warm() {
+        String fingerprint;
+        Path project = null;
+        try {
+            fingerprint = fingerprint();
+            project = Files.createTempDirectory("maven-warmup");
+            createProject(project.toFile());
+
+            LOGGER.info("Warming maven repository {}", repository);
+            List<String> command = new ArrayList<>(List.of("mvn", "-B", "package", "-DskipTests"));
+            command.addAll(mavenArguments(false));
+            ProcessBuilder processBuilder = new ProcessBuilder(command).directory(project.toFile());
+            OutputCapture stdOut = OutputCapture.bounded(8 * 1024, 8 * 1024).filter(line -> line.contains("[ERROR]"));
+            ProcessUtils.ProcessOutput output = ProcessUtils.runProcess(processBuilder, null, WARM_TIMEOUT, stdOut,
+                    OutputCapture.bounded(8 * 1024, 8 * 1024));
+            if (output.statusCode() != 0) {
+                LOGGER.warn("Couldn't warm maven repository {}; builds stay online:\n{}", repository, output.stdOut());
+                return false;
+            }
+
+            Path layers = repository.toPath().resolve(LAYERS);
+            FileUtils.removeDirectory(layers.toFile());
+            Files.createDirectories(layers);
+            for (String module : MODULES) {
+                Path jar = project.resolve(module).resolve("target").resolve(module + "-test-dependencies.jar");
+                if (Files.exists(jar)) Files.copy(jar, layers.resolve(module + ".jar"));
+            }
+            Files.writeString(repository.toPath().resolve(MARKER), fingerprint);
+            LOGGER.info("Maven repository {} is warm; grading builds run offline", repository);
+            return true;
+        } catch (IOException | ProcessUtils.ProcessException e) {
+            LOGGER.warn("Couldn't warm maven repository {}; builds stay online", repository, e);
+            return false;
+        } finally {
+            if (project != null) FileUtils.removeDirectory(project.toFile());
+        }
+    }
+
+    /**
+     * Lays out a project with the canonical poms and one class per module
+     */
+    private void createProject(File project) throws IOException {
+        FileUtils.copyDirectory(new File(phasesDirectory, "pom"), project);
+        for (String module : MODULES) {
+            Path source = project.toPath().resolve(module).resolve("src/main/java")
+                    .resolve(WARMUP_PACKAGE).resolve("Warmup" + module + ".java");
+            Files.createDirectories(source.getParent());
+            Files.writeString(source, "package " + WARMUP_PACKAGE + "; public class Warmup" + module + " { }");
+        }
+        File passoffJar = new File(phasesDirectory, "libs/passoff-dependencies.jar");
+        if (passoffJar.exists()) {
+            Path target = project.toPath().resolve("server/lib/passoff-dependencies.jar");
+            Files.createDirectories(target.getParent());
+            Files.copy(passoffJar.toPath(), target);
+        }
+    }
+
+    /**
+     * @return a hash of the canonical poms, which decide what the repository must hold, and of the passoff jar,
+     * which the layers may bundle
+     */
+    String fingerprint() throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        Path poms = new File(phasesDirectory, "pom").toPath();
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(poms)) {
+            files = paths.filter(Files::isRegularFile).sorted().toList();
+        }
+        for (Path file : files) {
+            digest.update(poms.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Files.readAllBytes(file));
+            digest.update((byte) 0);
+        }
+        File passoffJar = new File(phasesDirectory, "libs/passoff-dependencies.jar");
+        if (passoffJar.exists()) {
+            digest.update(Files.readAllBytes(passoffJar.toPath()));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
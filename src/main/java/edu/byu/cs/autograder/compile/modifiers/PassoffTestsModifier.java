@@ -0,0 +1,24 @@
+package edu.byu.cs.autograder.compile.modifiers;
+
+import edu.byu.cs.autograder.GradingContext;
+import edu.byu.cs.autograder.compile.StudentCodeModifier;
+import edu.byu.cs.util.FileUtils;
+
+import java.io.File;
+
+/**
+ * Copies the official phase tests into the stage directory. Other modifiers and the test graders
+ * work on this copy, so concurrently running graders never see each other's changes.
+ */
+public class PassoffTestsModifier implements StudentCodeModifier {
+    @Override
+    public void modify(GradingContext context) {
+        File[] phaseDirectories = new File(context.phasesPath()).listFiles(
+                file -> file.isDirectory() && file.getName().startsWith("phase"));
+        if (phaseDirectories == null) return;
+
+        for (File phaseDirectory : phaseDirectories) {
+            FileUtils.copyDirectory(phaseDirectory, new File(context.stagePhasesPath(), phaseDirectory.getName()));
+        }
+    }
+}
@@ -16,12 +16,15 @@ public class TestFactoryModifier implements StudentCodeModifier {
     @Override
     public void modify(GradingContext context) throws GradingException {
         File phaseTestFactory = new File(context.phasesPath(), "phase6/passoff/server/TestFactory.java");
+        File stageTestFactory = new File(context.stagePhasesPath(), "phase6/passoff/server/TestFactory.java");
         File backupTestFactory = new File(context.phasesPath(), "backup/BackupTestFactory.java");
         File studentTestFactory = new File(context.stageRepo(), "server/src/test/java/passoff/server/TestFactory.java");
 
-        if(!backupTestFactory.exists()) {
-            if(!phaseTestFactory.exists()) throw new GradingException("Could not find phase test factory");
-            FileUtils.copyFile(backupTestFactory, phaseTestFactory);
+        synchronized (TestFactoryModifier.class) {
+            if(!backupTestFactory.exists()) {
+                if(!phaseTestFactory.exists()) throw new GradingException("Could not find phase test factory");
+                FileUtils.copyFile(backupTestFactory, phaseTestFactory);
+            }
         }
 
         String contents = FileUtils.readStringFromFile(studentTestFactory.exists() ? studentTestFactory : backupTestFactory);
@@ -31,6 +34,6 @@ public class TestFactoryModifier implements StudentCodeModifier {
         }
 
         contents = contents.replaceAll(GET_MESSAGE_TIME_REGEX, REPLACEMENT);
-        FileUtils.writeStringToFile(contents, phaseTestFactory);
+        FileUtils.writeStringToFile(contents, stageTestFactory);
     }
 }
@@ -2,6 +2,7 @@ package edu.byu.cs.autograder.database;
 
 import edu.byu.cs.autograder.GradingContext;
 import edu.byu.cs.autograder.GradingException;
+import edu.byu.cs.autograder.resources.Workspace;
 import edu.byu.cs.properties.ApplicationProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,11 +37,24 @@ public class DatabaseHelper {
     private final String studentPass;
     private final GradingContext gradingContext;
 
-    public DatabaseHelper(long salt, GradingContext gradingContext) {
+    public DatabaseHelper(Workspace workspace, GradingContext gradingContext) {
         this.gradingContext = gradingContext;
-        this.databaseName = "chessDb" + salt;
-        this.studentUser = "dbUser" + salt;
-        this.studentPass = "dbPass" + salt;
+        this.databaseName = workspace.databaseName();
+        this.studentUser = workspace.databaseUser();
+        this.studentPass = workspace.databasePassword();
+    }
+
+    /**
+     * Drops a student database and its user. Used to reclaim the resources of runs which
+     * never reached {@link #cleanUp()}, such as when the autograder crashed mid-run.
+     *
+     * @param databaseName the database to drop
+     * @param studentUser  the user to drop
+     * @throws GradingException if either could not be dropped
+     */
+    public static void dropDatabase(String databaseName, String studentUser) throws GradingException {
+        executeUpdate("DROP DATABASE IF EXISTS `" + databaseName + "`", "Failed to cleanup database");
+        executeUpdate("DROP USER IF EXISTS ?@'%'", "Failed to cleanup environment", studentUser);
     }
 
     public void setUp() throws GradingException {
@@ -51,8 +65,7 @@ public class DatabaseHelper {
 
     public void cleanUp() {
         try {
-            cleanupDatabase();
-            deleteUser();
+            dropDatabase(databaseName, studentUser);
         } catch (GradingException e) {
             LOGGER.error("Error cleaning up after user {} and repository {}", gradingContext.netId(),
                     gradingContext.repoUrl(), e);
@@ -93,17 +106,7 @@ public class DatabaseHelper {
                 studentUser);
     }
 
-    private void cleanupDatabase() throws GradingException {
-        executeUpdate("DROP DATABASE IF EXISTS " + databaseName, "Failed to cleanup database");
-    }
-
-    private void deleteUser() throws GradingException {
-        executeUpdate("DROP USER IF EXISTS ?@'%'",
-                "Failed to cleanup environment",
-                studentUser);
-    }
-
-    private void executeUpdate(String statement, String errorMessage, String... params) throws GradingException {
+    private static void executeUpdate(String statement, String errorMessage, String... params) throws GradingException {
         try (Connection conn = DriverManager.getConnection(connectionString, ADMIN_USER, ADMIN_PASS);
              PreparedStatement ps = conn.prepareStatement(statement)) {
             for (var i = 0; i < params.length; i++) {
@@ -1,6 +1,8 @@
 package edu.byu.cs.autograder.quality;
 
 import edu.byu.cs.autograder.GradingException;
+import edu.byu.cs.autograder.resources.ResourceBudget;
+import edu.byu.cs.util.OutputCapture;
 import edu.byu.cs.util.ProcessUtils;
 import edu.byu.cs.util.Serializer;
 
@@ -9,6 +11,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class QualityAnalyzer {
 
@@ -19,6 +22,11 @@ public class QualityAnalyzer {
 
     private static final QualityRubric qualityRubricItems;
 
+    /**
+     * How many lines are shown for each reporter, and for warnings. Every error still counts against its category.
+     */
+    private static final int MAX_LINES_SHOWN = 100;
+
     static {
         Path libsPath = new File("phases", "libs").toPath();
         try {
@@ -40,53 +48,27 @@ public class QualityAnalyzer {
         ProcessBuilder processBuilder = new ProcessBuilder().directory(stageRepo.getParentFile())
                 .command("java", "-jar", checkStyleJarPath, "-c", "cs240_checks.xml", "repo/shared", "repo/server", "repo/client");
 
-        String output;
-        try {
-            output = ProcessUtils.runProcess(processBuilder).stdOut();
+        // Parsed as it streams, so errors in the middle of huge output still count though the capture drops them
+        CheckstyleParser parser = new CheckstyleParser(stageRepo);
+        OutputCapture stdOut = OutputCapture.bounded(ProcessUtils.MAX_OUTPUT, ProcessUtils.MAX_OUTPUT).onLine(parser);
+        OutputCapture stdErr = OutputCapture.bounded(ProcessUtils.MAX_OUTPUT, ProcessUtils.MAX_OUTPUT);
+        try (ResourceBudget.Lease ignored = ResourceBudget.getInstance().acquire(ResourceBudget.Stage.QUALITY)) {
+            ProcessUtils.runProcess(processBuilder, stdOut, stdErr);
         } catch (ProcessUtils.ProcessException e) {
             throw new GradingException("Error running code quality: " + e.getMessage(), e);
         }
 
-        if(!checkstyleFinished(output)) {
+        if(!parser.finished()) {
             return new QualityAnalysis(0, "", "Could not complete code quality analysis. Please go see a TA.");
         }
 
-        output = output.replaceAll(stageRepo.getAbsolutePath(), "");
-        output = output.replaceAll(stageRepo.getPath(), "");
-
-        QualityOutput qualityOutput = parseOutput(output);
+        QualityOutput qualityOutput = parser.output();
         float score = evaluateScore(qualityOutput);
         String results = getResults(qualityOutput);
         String notes = getNotes(qualityOutput);
         return new QualityAnalysis(score, results, notes);
     }
 
-    /**
-     * Parses the checkstyle process output string
-     *
-     * @param output String of checkstyle process output
-     * @return QualityOutput containing errors and warnings from quality analysis
-     */
-    private QualityOutput parseOutput(String output) {
-        Map<String, List<String>> errors = new HashMap<>();
-        List<String> warnings = new ArrayList<>();
-        String[] lines = output.split("\n");
-        for (String line : lines) {
-            String trimmed = line.trim();
-            if (trimmed.startsWith("[ERROR]")) {
-                String cause = trimmed.substring(trimmed.lastIndexOf('[') + 1, trimmed.lastIndexOf(']'));
-                if (!errors.containsKey(cause)) {
-                    errors.put(cause, new ArrayList<>());
-                }
-                errors.get(cause).add(trimmed);
-            }
-            if (trimmed.startsWith("[WARN]")) {
-                warnings.add(trimmed);
-            }
-        }
-        return new QualityOutput(errors, warnings);
-    }
-
     /**
      * Evaluates the score for a quality analysis
      *
@@ -119,6 +101,10 @@ public class QualityAnalyzer {
                     output.errors().get(reporter)
                             .forEach(s -> reporterResultsBuilder.append("\t\t").append(s).append("\n"));
                 }
+                int omitted = output.omittedErrors().getOrDefault(reporter, 0);
+                if (omitted > 0) {
+                    reporterResultsBuilder.append("\t\t... and ").append(omitted).append(" more\n");
+                }
                 if (!reporterResultsBuilder.isEmpty()) {
                     categoryResultsBuilder.append("\t").append(reporter).append(":\n").append(reporterResultsBuilder);
                 }
@@ -131,6 +117,9 @@ public class QualityAnalyzer {
         if (!output.warnings().isEmpty()) {
             resultsBuilder.append("Warnings:\n");
             output.warnings().forEach(s -> resultsBuilder.append("\t").append(s).append("\n"));
+            if (output.omittedWarnings() > 0) {
+                resultsBuilder.append("\t... and ").append(output.omittedWarnings()).append(" more\n");
+            }
         }
 
         if (resultsBuilder.isEmpty()) resultsBuilder.append("Good job!");
@@ -167,8 +156,46 @@ public class QualityAnalyzer {
         return true;
     }
 
-    private boolean checkstyleFinished(String output) {
-        return output.endsWith("Audit done.\n");
+    /**
+     * Collects the errors and warnings from checkstyle's output one line at a time
+     */
+    private static class CheckstyleParser implements Consumer<String> {
+        private final String absolutePath;
+        private final String path;
+        private final Map<String, List<String>> errors = new HashMap<>();
+        private final Map<String, Integer> omittedErrors = new HashMap<>();
+        private final List<String> warnings = new ArrayList<>();
+        private int omittedWarnings = 0;
+        private String lastLine = null;
+
+        private CheckstyleParser(File stageRepo) {
+            this.absolutePath = stageRepo.getAbsolutePath();
+            this.path = stageRepo.getPath();
+        }
+
+        @Override
+        public void accept(String line) {
+            lastLine = line;
+            String trimmed = line.replace(absolutePath, "").replace(path, "").trim();
+            if (trimmed.startsWith("[ERROR]")) {
+                String cause = trimmed.substring(trimmed.lastIndexOf('[') + 1, trimmed.lastIndexOf(']'));
+                List<String> causeErrors = errors.computeIfAbsent(cause, k -> new ArrayList<>());
+                if (causeErrors.size() < MAX_LINES_SHOWN) causeErrors.add(trimmed);
+                else omittedErrors.merge(cause, 1, Integer::sum);
+            }
+            if (trimmed.startsWith("[WARN]")) {
+                if (warnings.size() < MAX_LINES_SHOWN) warnings.add(trimmed);
+                else omittedWarnings++;
+            }
+        }
+
+        private boolean finished() {
+            return "Audit done.".equals(lastLine);
+        }
+
+        private QualityOutput output() {
+            return new QualityOutput(errors, omittedErrors, warnings, omittedWarnings);
+        }
     }
 
     /**
@@ -180,7 +207,8 @@ public class QualityAnalyzer {
      */
     public record QualityAnalysis(float score, String results, String notes) {}
 
-    private record QualityOutput(Map<String, List<String>> errors, List<String> warnings) {}
+    private record QualityOutput(Map<String, List<String>> errors, Map<String, Integer> omittedErrors,
+                                 List<String> warnings, int omittedWarnings) {}
 
     private record QualityRubricCategory(String name, float value, Set<String> reporters) {}
 
@@ -0,0 +1,186 @@
+package edu.byu.cs.autograder.resources;
+
+import edu.byu.cs.autograder.GradingException;
+import edu.byu.cs.properties.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Coordinates the machine resources shared by concurrently running graders.
+ * <br>
+ * Every grading stage that launches a student JVM holds a {@link Lease} while it runs.
+ * A lease is granted once a student JVM slot is free and the machine has enough
+ * free memory and idle CPU for the stage's budget. When nothing else is running,
+ * a lease is always granted so a small machine can still make progress.
+ */
+public class ResourceBudget {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceBudget.class);
+
+    /**
+     * How often a waiting stage re-checks the machine's resources
+     */
+    private static final long POLL_MILLIS = 500;
+
+    private static ResourceBudget resourceBudget;
+
+    private final int maxStudentJvms;
+    private final int availableProcessors;
+    private final ResourceProbe probe;
+
+    private int activeLeases = 0;
+    private double reservedCpus = 0;
+
+    /**
+     * The budget of a single grading stage.
+     * The memory budget is what one student JVM of this kind typically needs,
+     * and the cpu budget is the number of cores it keeps busy.
+     */
+    public enum Stage {
+        COMPILE(1024, 2),
+        TEST_COMPILE(256, 1),
+        TEST(768, 1),
+        QUALITY(384, 1);
+
+        private final long memoryMb;
+        private final double cpus;
+
+        Stage(long memoryMb, double cpus) {
+            this.memoryMb = memoryMb;
+            this.cpus = cpus;
+        }
+
+        public long memoryMb() {
+            return memoryMb;
+        }
+
+        public double cpus() {
+            return cpus;
+        }
+    }
+
+    /**
+     * Reports the current state of the machine
+     */
+    public interface ResourceProbe {
+        /**
+         * @return the free physical memory in megabytes, or a negative number if unknown
+         */
+        long freeMemoryMb();
+
+        /**
+         * @return the system load average over the last minute, or a negative number if unknown
+         */
+        double loadAverage();
+    }
+
+    /**
+     * Proof that a stage was admitted. Closing the lease returns its resources to the budget.
+     */
+    public class Lease implements AutoCloseable {
+        private final Stage stage;
+        private boolean released = false;
+
+        private Lease(Stage stage) {
+            this.stage = stage;
+        }
+
+        public Stage stage() {
+            return stage;
+        }
+
+        @Override
+        public void close() {
+            synchronized (ResourceBudget.this) {
+                if (released) return;
+                released = true;
+                activeLeases--;
+                reservedCpus -= stage.cpus;
+                ResourceBudget.this.notifyAll();
+            }
+        }
+    }
+
+    public ResourceBudget(int maxStudentJvms, int availableProcessors, ResourceProbe probe) {
+        this.maxStudentJvms = Math.max(1, maxStudentJvms);
+        this.availableProcessors = Math.max(1, availableProcessors);
+        this.probe = probe;
+    }
+
+    public static synchronized ResourceBudget getInstance() {
+        if (resourceBudget == null) {
+            resourceBudget = new ResourceBudget(ApplicationProperties.maxStudentJvms(),
+                    Runtime.getRuntime().availableProcessors(), new SystemResourceProbe());
+        }
+        return resourceBudget;
+    }
+
+    /**
+     * Blocks until the stage fits within the budget, then reserves its resources
+     *
+     * @param stage the stage about to run
+     * @return a lease which must be closed once the stage finishes
+     * @throws GradingException if the grader is interrupted while waiting
+     */
+    public Lease acquire(Stage stage) throws GradingException {
+        try {
+            return acquireInterruptibly(stage);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradingException("Interrupted while waiting for grading resources", e);
+        }
+    }
+
+    private synchronized Lease acquireInterruptibly(Stage stage) throws InterruptedException {
+        boolean logged = false;
+        while (!fits(stage)) {
+            if (!logged) {
+                LOGGER.info("Waiting for resources to run stage {} ({} student JVMs running)", stage, activeLeases);
+                logged = true;
+            }
+            wait(POLL_MILLIS);
+        }
+        activeLeases++;
+        reservedCpus += stage.cpus;
+        return new Lease(stage);
+    }
+
+    private boolean fits(Stage stage) {
+        if (activeLeases == 0) return true;
+        if (activeLeases >= maxStudentJvms) return false;
+        if (reservedCpus + stage.cpus > availableProcessors) return false;
+
+        double load = probe.loadAverage();
+        if (load >= 0 && load >= availableProcessors) return false;
+
+        long freeMemory = probe.freeMemoryMb();
+        return freeMemory < 0 || freeMemory >= stage.memoryMb;
+    }
+
+    /**
+     * @return the number of stages currently holding a lease
+     */
+    public synchronized int activeLeases() {
+        return activeLeases;
+    }
+
+    private static class SystemResourceProbe implements ResourceProbe {
+        private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+        @Override
+        public long freeMemoryMb() {
+            if (os instanceof com.sun.management.OperatingSystemMXBean sunOs) {
+                return sunOs.getFreeMemorySize() / (1024 * 1024);
+            }
+            return -1;
+        }
+
+        @Override
+        public double loadAverage() {
+            return os.getSystemLoadAverage();
+        }
+    }
+}
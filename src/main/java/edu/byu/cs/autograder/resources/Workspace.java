@@ -0,0 +1,21 @@
+package edu.byu.cs.autograder.resources;
+
+import java.io.File;
+
+/**
+ * The resources leased to a single grading run by the {@link WorkspaceAllocator}.
+ * No two live workspaces share a directory, database, or database user.
+ *
+ * @param id               Unique identifier of the lease
+ * @param directory        The stage directory for the run
+ * @param databaseName     The MySQL schema the student's server may use
+ * @param databaseUser     The MySQL user that owns the schema
+ * @param databasePassword The password for the MySQL user
+ */
+public record Workspace(
+        String id,
+        File directory,
+        String databaseName,
+        String databaseUser,
+        String databasePassword
+) { }
@@ -0,0 +1,239 @@
+package edu.byu.cs.autograder.resources;
+
+import edu.byu.cs.autograder.GradingException;
+import edu.byu.cs.autograder.database.DatabaseHelper;
+import edu.byu.cs.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Hands each grading run a unique, leased {@link Workspace}.
+ * <br>
+ * Every workspace directory contains a lease file recording the database resources it owns.
+ * While a run is active, its lease is renewed periodically. If the grader crashes or the
+ * autograder restarts mid-run, the lease stops being renewed and the reaper eventually
+ * drops the database, deletes the user, and removes the directory.
+ */
+public class WorkspaceAllocator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceAllocator.class);
+
+    private static final String DIRECTORY_PREFIX = "tmp-grade-";
+
+    /**
+     * Stage directories created by graders before workspaces were leased: tmp-[repo hash]-[epoch second]
+     */
+    private static final Pattern LEGACY_DIRECTORY = Pattern.compile("tmp--?\\d+-\\d+");
+    private static final String LEASE_FILE = ".lease";
+
+    /**
+     * A lease which has not been renewed for this long is considered abandoned
+     */
+    private static final Duration LEASE_TTL = Duration.ofMinutes(10);
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofMinutes(1);
+    private static final Duration REAPER_INTERVAL = Duration.ofMinutes(5);
+
+    private static final String OWNER = String.valueOf(ProcessHandle.current().pid());
+
+    private static WorkspaceAllocator workspaceAllocator;
+
+    private final File root;
+    private final DatabaseCleaner databaseCleaner;
+    private final Map<String, Workspace> activeWorkspaces = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Removes the database resources held by an abandoned workspace
+     */
+    @FunctionalInterface
+    public interface DatabaseCleaner {
+        void clean(String databaseName, String databaseUser) throws GradingException;
+    }
+
+    public WorkspaceAllocator(File root, DatabaseCleaner databaseCleaner) {
+        this.root = root;
+        this.databaseCleaner = databaseCleaner;
+    }
+
+    public static synchronized WorkspaceAllocator getInstance() {
+        if (workspaceAllocator == null) {
+            try {
+                workspaceAllocator = new WorkspaceAllocator(new File(".").getCanonicalFile(), DatabaseHelper::dropDatabase);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not resolve workspace root", e);
+            }
+        }
+        return workspaceAllocator;
+    }
+
+    /**
+     * Reaps workspaces abandoned by a previous crash, then begins renewing active leases
+     * and periodically reaping abandoned ones
+     */
+    public synchronized void start() {
+        if (scheduler != null) return;
+        reapAbandoned();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "workspace-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::renewLeases, HEARTBEAT_INTERVAL.toMillis(),
+                HEARTBEAT_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::reapAbandoned, REAPER_INTERVAL.toMillis(),
+                REAPER_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Leases a new workspace. The directory is created immediately.
+     *
+     * @return the leased workspace
+     * @throws GradingException if the directory cannot be created
+     */
+    public synchronized Workspace allocate() throws GradingException {
+        String id = newId();
+        Workspace workspace = new Workspace(id, new File(root, DIRECTORY_PREFIX + id), "chessDb_" + id,
+                "dbUser_" + id, newPassword());
+
+        if (!workspace.directory().mkdirs()) {
+            throw new GradingException("Could not create workspace directory " + workspace.directory());
+        }
+        activeWorkspaces.put(id, workspace);
+        writeLease(workspace);
+        return workspace;
+    }
+
+    /**
+     * Returns a workspace to the allocator, deleting its directory.
+     * The caller is responsible for dropping the workspace's database.
+     *
+     * @param workspace the workspace to release
+     */
+    public void release(Workspace workspace) {
+        if (activeWorkspaces.remove(workspace.id()) == null) return;
+        FileUtils.removeDirectory(workspace.directory());
+    }
+
+    /**
+     * @return the number of workspaces currently leased by this instance
+     */
+    public int activeCount() {
+        return activeWorkspaces.size();
+    }
+
+    /**
+     * Reclaims every workspace whose lease has expired, including stage directories left behind
+     * by versions of the autograder that did not lease workspaces
+     *
+     * @return the number of workspaces reclaimed
+     */
+    public int reapAbandoned() {
+        File[] directories = root.listFiles(file -> file.isDirectory() &&
+                (file.getName().startsWith(DIRECTORY_PREFIX) || LEGACY_DIRECTORY.matcher(file.getName()).matches()));
+        if (directories == null) return 0;
+
+        int reaped = 0;
+        Instant expiration = Instant.now().minus(LEASE_TTL);
+        for (File directory : directories) {
+            try {
+                if (reapIfAbandoned(directory, expiration)) reaped++;
+            } catch (Exception e) {
+                LOGGER.error("Error reaping workspace {}", directory, e);
+            }
+        }
+        if (reaped > 0) LOGGER.info("Reaped {} abandoned grading workspaces", reaped);
+        return reaped;
+    }
+
+    private boolean reapIfAbandoned(File directory, Instant expiration) throws GradingException {
+        String id = directory.getName().replaceFirst("^" + DIRECTORY_PREFIX, "");
+        if (activeWorkspaces.containsKey(id)) return false;
+
+        File leaseFile = new File(directory, LEASE_FILE);
+        if (!leaseFile.exists()) {
+            // Either a legacy directory or a workspace whose lease was never written
+            if (Instant.ofEpochMilli(directory.lastModified()).isAfter(expiration)) return false;
+            FileUtils.removeDirectory(directory);
+            return true;
+        }
+
+        Properties lease = readLease(leaseFile);
+        Instant heartbeat = Instant.ofEpochMilli(Long.parseLong(lease.getProperty("heartbeat", "0")));
+        boolean ownedByThisProcess = OWNER.equals(lease.getProperty("owner"));
+        if (!ownedByThisProcess && heartbeat.isAfter(expiration)) return false;
+
+        LOGGER.warn("Reclaiming abandoned workspace {} (last heartbeat {})", id, heartbeat);
+        databaseCleaner.clean(lease.getProperty("database"), lease.getProperty("user"));
+        FileUtils.removeDirectory(directory);
+        return true;
+    }
+
+    private void renewLeases() {
+        for (Workspace workspace : activeWorkspaces.values()) {
+            try {
+                writeLease(workspace);
+            } catch (GradingException e) {
+                LOGGER.error("Error renewing lease for workspace {}", workspace.id(), e);
+            }
+        }
+    }
+
+    private void writeLease(Workspace workspace) throws GradingException {
+        Properties lease = new Properties();
+        lease.setProperty("id", workspace.id());
+        lease.setProperty("database", workspace.databaseName());
+        lease.setProperty("user", workspace.databaseUser());
+        lease.setProperty("owner", OWNER);
+        lease.setProperty("heartbeat", String.valueOf(Instant.now().toEpochMilli()));
+
+        File leaseFile = new File(workspace.directory(), LEASE_FILE);
+        try (FileOutputStream os = new FileOutputStream(leaseFile)) {
+            lease.store(os, "Grading workspace lease");
+        } catch (IOException e) {
+            throw new GradingException("Could not write workspace lease", e);
+        }
+    }
+
+    private static Properties readLease(File leaseFile) throws GradingException {
+        Properties lease = new Properties();
+        try (FileInputStream is = new FileInputStream(leaseFile)) {
+            lease.load(is);
+        } catch (IOException e) {
+            throw new GradingException("Could not read workspace lease", e);
+        }
+        return lease;
+    }
+
+    /**
+     * MySQL limits user names to 32 characters, so ids are kept short
+     * while still being unique across autograder instances sharing a database.
+     */
+    private String newId() {
+        String id;
+        do {
+            id = Long.toString(System.currentTimeMillis(), 36) + Integer.toString(random.nextInt(36 * 36 * 36 * 36), 36);
+        } while (activeWorkspaces.containsKey(id) || new File(root, DIRECTORY_PREFIX + id).exists());
+        return id;
+    }
+
+    private String newPassword() {
+        byte[] bytes = new byte[18];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
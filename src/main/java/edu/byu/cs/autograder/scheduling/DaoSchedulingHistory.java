@@ -0,0 +1,88 @@
+package edu.byu.cs.autograder.scheduling;
+
+import edu.byu.cs.canvas.CanvasService;
+import edu.byu.cs.dataAccess.DaoService;
+import edu.byu.cs.model.Phase;
+import edu.byu.cs.model.Submission;
+import edu.byu.cs.model.User;
+import edu.byu.cs.properties.ApplicationProperties;
+import edu.byu.cs.util.PhaseUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads scheduling history from the submission table and due dates from Canvas.
+ * <br>
+ * The queue is reordered every time a submission is claimed or the queue status is broadcast,
+ * so submissions are cached briefly and due dates for longer. Lookup failures are logged and
+ * treated as "no adjustment" so a Canvas outage never blocks grading. Lookups happen before the
+ * {@link WaitingQueue} is locked, so a cold cache only slows the caller that needed it.
+ */
+public class DaoSchedulingHistory implements SchedulingHistory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DaoSchedulingHistory.class);
+
+    private static final Duration SUBMISSIONS_TTL = Duration.ofSeconds(30);
+    private static final Duration DUE_DATE_TTL = Duration.ofHours(1);
+
+    private record Cached<T>(T value, Instant expires) { }
+
+    private final Map<String, Cached<Collection<Submission>>> submissions = new ConcurrentHashMap<>();
+    private final Map<String, Cached<Instant>> dueDates = new ConcurrentHashMap<>();
+
+    @Override
+    public int gradedSince(String netId, Instant since) {
+        Collection<Submission> userSubmissions = submissions(netId);
+        return (int) userSubmissions.stream().filter(submission -> submission.timestamp().isAfter(since)).count();
+    }
+
+    @Override
+    public boolean hasSubmitted(String netId, Phase phase) {
+        return submissions(netId).stream().anyMatch(submission -> submission.phase() == phase);
+    }
+
+    @Override
+    public Instant dueDate(String netId, Phase phase) {
+        if (!ApplicationProperties.useCanvas()) return null;
+
+        String key = netId + "/" + phase;
+        Cached<Instant> cached = dueDates.get(key);
+        if (cached != null && cached.expires().isAfter(Instant.now())) return cached.value();
+
+        Instant dueDate = null;
+        try {
+            User user = DaoService.getUserDao().getUser(netId);
+            if (user != null) {
+                int assignmentNum = PhaseUtils.getPhaseAssignmentNumber(phase);
+                dueDate = CanvasService.getCanvasIntegration()
+                        .getAssignmentDueDateForStudent(user.canvasUserId(), assignmentNum).toInstant();
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Could not get due date of {} for {}", phase, netId, e);
+        }
+        dueDates.put(key, new Cached<>(dueDate, Instant.now().plus(DUE_DATE_TTL)));
+        return dueDate;
+    }
+
+    private Collection<Submission> submissions(String netId) {
+        Cached<Collection<Submission>> cached = submissions.get(netId);
+        if (cached != null && cached.expires().isAfter(Instant.now())) return cached.value();
+
+        Collection<Submission> userSubmissions;
+        try {
+            userSubmissions = DaoService.getSubmissionDao().getSubmissionsForUser(netId);
+        } catch (Exception e) {
+            LOGGER.warn("Could not get submissions for {}", netId, e);
+            return List.of();
+        }
+        submissions.put(netId, new Cached<>(userSubmissions, Instant.now().plus(SUBMISSIONS_TTL)));
+        return userSubmissions;
+    }
+}
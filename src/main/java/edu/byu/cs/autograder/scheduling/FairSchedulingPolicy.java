@@ -0,0 +1,65 @@
+package edu.byu.cs.autograder.scheduling;
+
+import edu.byu.cs.model.QueueItem;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Orders submissions so a few students resubmitting constantly can't starve everyone else.
+ * <br>
+ * Admin submissions always go first. Student submissions are ordered by a virtual submission time:
+ * the time the submission was made, pushed later for each submission the student had graded recently,
+ * and pulled earlier for a student's first submission of a phase and for phases that are almost due.
+ * The adjustments are bounded, so no submission waits more than
+ * {@link #MAX_FAIR_SHARE_PENALTY} + {@link #FIRST_SUBMISSION_BOOST} + {@link #MAX_DEADLINE_BOOST}
+ * behind one made after it.
+ */
+public class FairSchedulingPolicy implements SchedulingPolicy {
+
+    static final Duration FAIR_SHARE_WINDOW = Duration.ofHours(1);
+    static final Duration PENALTY_PER_RECENT_GRADE = Duration.ofMinutes(5);
+    static final Duration MAX_FAIR_SHARE_PENALTY = Duration.ofMinutes(30);
+    static final Duration FIRST_SUBMISSION_BOOST = Duration.ofMinutes(10);
+    static final Duration DEADLINE_WINDOW = Duration.ofHours(24);
+    static final Duration MAX_DEADLINE_BOOST = Duration.ofMinutes(5);
+
+    private final SchedulingHistory history;
+
+    public FairSchedulingPolicy(SchedulingHistory history) {
+        this.history = history;
+    }
+
+    @Override
+    public Priority priority(QueueItem item, Instant now) {
+        return new Priority(item.admin(), virtualTime(item, now), item.queuedAt(), item.netId());
+    }
+
+    private Instant virtualTime(QueueItem item, Instant now) {
+        if (item.admin()) return item.queuedAt();
+
+        Instant virtualTime = item.queuedAt();
+
+        int recentlyGraded = history.gradedSince(item.netId(), now.minus(FAIR_SHARE_WINDOW));
+        Duration penalty = PENALTY_PER_RECENT_GRADE.multipliedBy(recentlyGraded);
+        virtualTime = virtualTime.plus(min(penalty, MAX_FAIR_SHARE_PENALTY));
+
+        if (!history.hasSubmitted(item.netId(), item.phase())) {
+            virtualTime = virtualTime.minus(FIRST_SUBMISSION_BOOST);
+        }
+
+        Instant dueDate = history.dueDate(item.netId(), item.phase());
+        if (dueDate != null && dueDate.isAfter(now)) {
+            Duration untilDue = Duration.between(now, dueDate);
+            if (untilDue.compareTo(DEADLINE_WINDOW) < 0) {
+                double urgency = 1 - (double) untilDue.toSeconds() / DEADLINE_WINDOW.toSeconds();
+                virtualTime = virtualTime.minusSeconds(Math.round(MAX_DEADLINE_BOOST.toSeconds() * urgency));
+            }
+        }
+        return virtualTime;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,15 @@
+package edu.byu.cs.autograder.scheduling;
+
+import edu.byu.cs.model.QueueItem;
+
+import java.time.Instant;
+
+/**
+ * Grades submissions in the order they were made
+ */
+public class FifoSchedulingPolicy implements SchedulingPolicy {
+    @Override
+    public Priority priority(QueueItem item, Instant now) {
+        return new Priority(false, item.queuedAt(), item.queuedAt(), item.netId());
+    }
+}
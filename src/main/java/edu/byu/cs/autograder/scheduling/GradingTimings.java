@@ -0,0 +1,112 @@
+package edu.byu.cs.autograder.scheduling;
+
+import edu.byu.cs.model.Phase;
+import edu.byu.cs.model.Rubric;
+import edu.byu.cs.util.ProcessMetrics;
+import edu.byu.cs.util.ResourceUsage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Measures how long each stage of one grading run takes, and the CPU time and peak memory of the processes each
+ * stage launches. Stages are timed back to back: starting a stage ends the one before it. Once the run finishes,
+ * the timings are recorded with the {@link WaitTimeEstimator}.
+ */
+public class GradingTimings {
+
+    public enum Stage {
+        CLONE,
+        DATABASE_SETUP,
+        COMPILE,
+        PREVIOUS_PHASE_TESTS,
+        PASSOFF_TESTS,
+        UNIT_TESTS,
+        QUALITY,
+        SCORE;
+
+        /**
+         * @param type a rubric item being evaluated
+         * @return the stage that evaluates it
+         */
+        public static Stage forRubricType(Rubric.RubricType type) {
+            return switch (type) {
+                case PASSOFF_TESTS -> PASSOFF_TESTS;
+                case UNIT_TESTS -> UNIT_TESTS;
+                case QUALITY -> QUALITY;
+                default -> SCORE;
+            };
+        }
+    }
+
+    private final Phase phase;
+    private final Clock clock;
+    private final Instant started;
+    private final Map<Stage, Duration> stages = new EnumMap<>(Stage.class);
+    private final Map<Stage, ResourceUsage> usage = new EnumMap<>(Stage.class);
+
+    private Stage current;
+    private Instant currentStarted;
+
+    public GradingTimings(Phase phase) {
+        this(phase, Clock.systemUTC());
+    }
+
+    GradingTimings(Phase phase, Clock clock) {
+        this.phase = phase;
+        this.clock = clock;
+        this.started = clock.instant();
+    }
+
+    /**
+     * Ends the current stage and starts timing the given one
+     *
+     * @param stage the stage that is starting
+     */
+    public synchronized void begin(Stage stage) {
+        Instant now = clock.instant();
+        endCurrent(now);
+        current = stage;
+        currentStarted = now;
+    }
+
+    /**
+     * Adds a process launched during the current stage to the stage's resource usage
+     *
+     * @param metrics the process, once it has exited
+     */
+    public synchronized void addProcess(ProcessMetrics metrics) {
+        if (current != null) {
+            usage.merge(current, metrics.usage(), ResourceUsage::plus);
+        }
+    }
+
+    /**
+     * Ends the current stage and records the run
+     *
+     * @param estimator where to record the run
+     */
+    public synchronized void finish(WaitTimeEstimator estimator) {
+        Instant now = clock.instant();
+        endCurrent(now);
+        estimator.record(phase, stages, usage, Duration.between(started, now));
+    }
+
+    public Map<Stage, Duration> stages() {
+        return Map.copyOf(stages);
+    }
+
+    public synchronized Map<Stage, ResourceUsage> usage() {
+        return Map.copyOf(usage);
+    }
+
+    private void endCurrent(Instant now) {
+        if (current != null) {
+            stages.merge(current, Duration.between(currentStarted, now), Duration::plus);
+            current = null;
+        }
+    }
+}
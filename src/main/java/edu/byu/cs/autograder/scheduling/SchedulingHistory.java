@@ -0,0 +1,32 @@
+package edu.byu.cs.autograder.scheduling;
+
+import edu.byu.cs.model.Phase;
+
+import java.time.Instant;
+
+/**
+ * The information about past submissions and due dates a {@link SchedulingPolicy} bases its decisions on
+ */
+public interface SchedulingHistory {
+
+    /**
+     * @param netId the student
+     * @param since the start of the window
+     * @return the number of the student's submissions graded since the given time
+     */
+    int gradedSince(String netId, Instant since);
+
+    /**
+     * @param netId the student
+     * @param phase the phase
+     * @return true if the student has a graded submission for the phase
+     */
+    boolean hasSubmitted(String netId, Phase phase);
+
+    /**
+     * @param netId the student
+     * @param phase the phase
+     * @return when the phase is due for the student, or null if unknown
+     */
+    Instant dueDate(String netId, Phase phase);
+}
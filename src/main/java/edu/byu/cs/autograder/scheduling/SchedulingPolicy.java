@@ -0,0 +1,67 @@
+package edu.byu.cs.autograder.scheduling;
+
+import edu.byu.cs.model.QueueItem;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Decides the order in which waiting submissions are graded.
+ * Grader threads claim submissions in this order, and students are shown their position in it.
+ */
+public interface SchedulingPolicy {
+
+    /**
+     * Where a submission falls in the grading order. Admin submissions come first, then submissions
+     * are graded by virtual time, with ties broken by place in line and netId.
+     *
+     * @param admin       if the submission goes ahead of every student submission
+     * @param virtualTime the time the policy treats the submission as made
+     * @param queuedAt    the time the submission actually took its place in line
+     * @param netId       the student who submitted
+     */
+    record Priority(boolean admin, Instant virtualTime, Instant queuedAt, String netId)
+            implements Comparable<Priority> {
+        private static final Comparator<Priority> ORDER = Comparator.comparing((Priority p) -> !p.admin())
+                .thenComparing(Priority::virtualTime)
+                .thenComparing(Priority::queuedAt)
+                .thenComparing(Priority::netId);
+
+        @Override
+        public int compareTo(Priority other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    /**
+     * @param item a submission waiting to be graded
+     * @param now  the current time
+     * @return where the submission falls in the grading order
+     */
+    Priority priority(QueueItem item, Instant now);
+
+    /**
+     * @param waiting the submissions waiting to be graded
+     * @param now     the current time
+     * @return the waiting submissions, in the order they should be graded
+     */
+    default List<QueueItem> order(Collection<QueueItem> waiting, Instant now) {
+        Map<QueueItem, Priority> priorities = new HashMap<>();
+        for (QueueItem item : waiting) {
+            priorities.put(item, priority(item, now));
+        }
+        return waiting.stream().sorted(Comparator.comparing(priorities::get)).toList();
+    }
+
+    /**
+     * @param name the name of a policy, either "fifo" or "fair"
+     * @return the policy with the given name, backed by the database and Canvas
+     */
+    static SchedulingPolicy fromName(String name) {
+        return switch (name.toLowerCase()) {
+            case "fifo" -> new FifoSchedulingPolicy();
+            case "fair" -> new FairSchedulingPolicy(new DaoSchedulingHistory());
+            default -> throw new IllegalArgumentException("Unknown scheduling policy: " + name);
+        };
+    }
+}
@@ -0,0 +1,184 @@
+package edu.byu.cs.autograder.scheduling;
+
+import edu.byu.cs.model.Phase;
+import edu.byu.cs.model.QueueItem;
+import edu.byu.cs.util.ResourceUsage;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Predicts when queued submissions will start and finish grading, from how long recent runs of each phase took.
+ * <br>
+ * The most recent {@link #WINDOW} runs of each phase are kept. To estimate the queue, the grader threads are
+ * simulated: each waiting submission, in scheduling order, starts on the first worker to free up and holds it
+ * for the average duration of its phase.
+ */
+public class WaitTimeEstimator {
+
+    /**
+     * How many recent runs of each phase the averages are taken over
+     */
+    static final int WINDOW = 50;
+
+    /**
+     * The expected duration of a run when no run has been recorded yet
+     */
+    static final Duration DEFAULT_DURATION = Duration.ofMinutes(2);
+
+    private static final WaitTimeEstimator INSTANCE = new WaitTimeEstimator();
+
+    private record Run(Map<GradingTimings.Stage, Duration> stages, Map<GradingTimings.Stage, ResourceUsage> usage,
+                       Duration total) { }
+
+    /**
+     * A submission being graded
+     *
+     * @param phase   the phase being graded
+     * @param started when grading started
+     */
+    public record Running(Phase phase, Instant started) { }
+
+    /**
+     * @param start      when the submission is expected to start grading
+     * @param completion when the submission is expected to finish grading
+     */
+    public record Estimate(Instant start, Instant completion) { }
+
+    private final Map<Phase, Deque<Run>> runs = new EnumMap<>(Phase.class);
+
+    WaitTimeEstimator() {
+    }
+
+    public static WaitTimeEstimator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a finished grading run
+     *
+     * @param phase  the phase that was graded
+     * @param stages how long each stage took
+     * @param total  how long the whole run took
+     */
+    public void record(Phase phase, Map<GradingTimings.Stage, Duration> stages, Duration total) {
+        record(phase, stages, Map.of(), total);
+    }
+
+    /**
+     * Records a finished grading run
+     *
+     * @param phase  the phase that was graded
+     * @param stages how long each stage took
+     * @param usage  the CPU time and peak memory of the processes each stage launched
+     * @param total  how long the whole run took
+     */
+    public synchronized void record(Phase phase, Map<GradingTimings.Stage, Duration> stages,
+                                    Map<GradingTimings.Stage, ResourceUsage> usage, Duration total) {
+        Deque<Run> phaseRuns = runs.computeIfAbsent(phase, k -> new ArrayDeque<>());
+        if (phaseRuns.size() >= WINDOW) phaseRuns.removeFirst();
+        phaseRuns.addLast(new Run(Map.copyOf(stages), Map.copyOf(usage), total));
+    }
+
+    /**
+     * @param phase the phase
+     * @return the average duration of recent runs of the phase. If the phase has no runs yet, the average
+     * over every phase, or {@link #DEFAULT_DURATION} if nothing has been graded yet.
+     */
+    public synchronized Duration expectedDuration(Phase phase) {
+        Deque<Run> phaseRuns = runs.get(phase);
+        if (phaseRuns != null && !phaseRuns.isEmpty()) {
+            return average(phaseRuns);
+        }
+        List<Run> allRuns = runs.values().stream().flatMap(Collection::stream).toList();
+        return allRuns.isEmpty() ? DEFAULT_DURATION : average(allRuns);
+    }
+
+    /**
+     * @param phase the phase
+     * @return the average duration of each stage over recent runs of the phase that reached it
+     */
+    public synchronized Map<GradingTimings.Stage, Duration> expectedStageDurations(Phase phase) {
+        Map<GradingTimings.Stage, Duration> totals = new EnumMap<>(GradingTimings.Stage.class);
+        Map<GradingTimings.Stage, Integer> counts = new EnumMap<>(GradingTimings.Stage.class);
+        for (Run run : runs.getOrDefault(phase, new ArrayDeque<>())) {
+            run.stages().forEach((stage, duration) -> {
+                totals.merge(stage, duration, Duration::plus);
+                counts.merge(stage, 1, Integer::sum);
+            });
+        }
+        Map<GradingTimings.Stage, Duration> averages = new EnumMap<>(GradingTimings.Stage.class);
+        totals.forEach((stage, total) -> averages.put(stage, total.dividedBy(counts.get(stage))));
+        return averages;
+    }
+
+    /**
+     * @param phase the phase
+     * @return the average CPU time and average peak memory of each stage over recent runs of the phase that
+     * launched processes in it
+     */
+    public synchronized Map<GradingTimings.Stage, ResourceUsage> expectedStageUsage(Phase phase) {
+        Map<GradingTimings.Stage, Duration> cpuTotals = new EnumMap<>(GradingTimings.Stage.class);
+        Map<GradingTimings.Stage, Long> peakTotals = new EnumMap<>(GradingTimings.Stage.class);
+        Map<GradingTimings.Stage, Integer> counts = new EnumMap<>(GradingTimings.Stage.class);
+        for (Run run : runs.getOrDefault(phase, new ArrayDeque<>())) {
+            run.usage().forEach((stage, usage) -> {
+                cpuTotals.merge(stage, usage.cpuTime(), Duration::plus);
+                peakTotals.merge(stage, usage.peakRssBytes(), Long::sum);
+                counts.merge(stage, 1, Integer::sum);
+            });
+        }
+        Map<GradingTimings.Stage, ResourceUsage> averages = new EnumMap<>(GradingTimings.Stage.class);
+        counts.forEach((stage, count) -> averages.put(stage,
+                new ResourceUsage(cpuTotals.get(stage).dividedBy(count), peakTotals.get(stage) / count)));
+        return averages;
+    }
+
+    /**
+     * @param phase the phase
+     * @return how many recent runs of the phase the estimates are based on
+     */
+    public synchronized int samples(Phase phase) {
+        Deque<Run> phaseRuns = runs.get(phase);
+        return phaseRuns == null ? 0 : phaseRuns.size();
+    }
+
+    /**
+     * Estimates when each waiting submission will start and finish grading
+     *
+     * @param waiting the waiting submissions, in the order they will be graded
+     * @param running the submissions being graded
+     * @param workers how many submissions can be graded at once
+     * @param now     the current time
+     * @return the estimate for each waiting submission by netId, in the order given
+     */
+    public Map<String, Estimate> estimate(List<QueueItem> waiting, Collection<Running> running, int workers,
+                                          Instant now) {
+        PriorityQueue<Instant> freeAt = new PriorityQueue<>();
+        for (Running run : running) {
+            Instant expectedEnd = run.started().plus(expectedDuration(run.phase()));
+            freeAt.add(expectedEnd.isAfter(now) ? expectedEnd : now);
+        }
+        while (freeAt.size() < Math.max(workers, 1)) {
+            freeAt.add(now);
+        }
+
+        Map<String, Estimate> estimates = new LinkedHashMap<>();
+        for (QueueItem item : waiting) {
+            Instant start = freeAt.remove();
+            Instant completion = start.plus(expectedDuration(item.phase()));
+            freeAt.add(completion);
+            estimates.put(item.netId(), new Estimate(start, completion));
+        }
+        return estimates;
+    }
+
+    private static Duration average(Collection<Run> runs) {
+        Duration total = Duration.ZERO;
+        for (Run run : runs) {
+            total = total.plus(run.total());
+        }
+        return total.dividedBy(runs.size());
+    }
+}
@@ -0,0 +1,143 @@
+package edu.byu.cs.autograder.scheduling;
+
+import edu.byu.cs.model.QueueItem;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * An in-memory index of the submissions waiting to be graded, kept in the order of a {@link SchedulingPolicy}.
+ * <br>
+ * Looking up a student's position is a binary search. Each change reports only the students whose position
+ * moved, so telling everyone their place in line doesn't require reloading and re-sorting the whole queue.
+ * <br>
+ * A submission's priority is computed when it is added. Fair share adjustments drift as time passes and
+ * other instances change the queue, so the index is periodically rebuilt from the database with {@link #sync}.
+ * Priorities are computed before the index is locked, since the policy may look up submission history and due
+ * dates, and a lookup must never hold up positions or claims.
+ */
+public class WaitingQueue {
+
+    private record Entry(QueueItem item, SchedulingPolicy.Priority priority) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            return priority.compareTo(other.priority);
+        }
+    }
+
+    private final SchedulingPolicy policy;
+
+    private final List<Entry> ordered = new ArrayList<>();
+
+    private final Map<String, Entry> byNetId = new HashMap<>();
+
+    public WaitingQueue(SchedulingPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Adds a waiting submission, replacing any submission from the same student
+     *
+     * @param item the waiting submission
+     * @param now  the current time
+     * @return the new positions of the students whose position changed
+     */
+    public Map<String, Integer> add(QueueItem item, Instant now) {
+        Entry entry = new Entry(item, policy.priority(item, now));
+        synchronized (this) {
+            int from = removeEntry(item.netId());
+            int index = -Collections.binarySearch(ordered, entry) - 1;
+            ordered.add(index, entry);
+            byNetId.put(item.netId(), entry);
+            return positionsFrom(from < 0 ? index : Math.min(from, index), from < 0 ? ordered.size() : Math.max(from, index) + 1);
+        }
+    }
+
+    /**
+     * Removes a student's submission, e.g. once it has been claimed for grading
+     *
+     * @param netId the student
+     * @return the new positions of the students whose position changed
+     */
+    public synchronized Map<String, Integer> remove(String netId) {
+        int index = removeEntry(netId);
+        if (index < 0) return Map.of();
+        return positionsFrom(index, ordered.size());
+    }
+
+    /**
+     * Replaces the contents of the index with the submissions waiting in the database
+     *
+     * @param waiting every submission waiting to be graded
+     * @param now     the current time
+     * @return the new positions of the students whose position changed, including new students
+     */
+    public Map<String, Integer> sync(Collection<QueueItem> waiting, Instant now) {
+        List<Entry> entries = new ArrayList<>();
+        for (QueueItem item : waiting) {
+            entries.add(new Entry(item, policy.priority(item, now)));
+        }
+        Collections.sort(entries);
+        return replaceAll(entries);
+    }
+
+    private synchronized Map<String, Integer> replaceAll(List<Entry> entries) {
+        Map<String, Integer> before = new HashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            before.put(ordered.get(i).item().netId(), i + 1);
+        }
+
+        ordered.clear();
+        byNetId.clear();
+        ordered.addAll(entries);
+        for (Entry entry : entries) {
+            byNetId.put(entry.item().netId(), entry);
+        }
+
+        Map<String, Integer> changed = new HashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            String netId = ordered.get(i).item().netId();
+            if (!Objects.equals(before.get(netId), i + 1)) {
+                changed.put(netId, i + 1);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param netId the student
+     * @return the student's 1-based position in line, or 0 if they have no submission waiting
+     */
+    public synchronized int position(String netId) {
+        Entry entry = byNetId.get(netId);
+        if (entry == null) return 0;
+        return Collections.binarySearch(ordered, entry) + 1;
+    }
+
+    public synchronized int size() {
+        return ordered.size();
+    }
+
+    /**
+     * @return the waiting submissions, in the order they will be graded
+     */
+    public synchronized List<QueueItem> inOrder() {
+        return ordered.stream().map(Entry::item).toList();
+    }
+
+    private int removeEntry(String netId) {
+        Entry entry = byNetId.remove(netId);
+        if (entry == null) return -1;
+        int index = Collections.binarySearch(ordered, entry);
+        ordered.remove(index);
+        return index;
+    }
+
+    private Map<String, Integer> positionsFrom(int from, int to) {
+        Map<String, Integer> changed = new HashMap<>();
+        for (int i = from; i < Math.min(to, ordered.size()); i++) {
+            changed.put(ordered.get(i).item().netId(), i + 1);
+        }
+        return changed;
+    }
+}
@@ -188,6 +188,8 @@ public class Scorer {
         if (newPoints <= totalPoints(existingAssessment)) {
             notes = "Submission did not improve current score. Score not saved to Canvas.\n";
         } else {
+            // Sending is the last step that can't be undone, so a run cancelled by now stops before it
+            gradingContext.cancellation().throwIfCancelled();
             didSend = true;
             sendToCanvas(canvasUserId, assignmentNum, newAssessment, rubric.notes());
         }
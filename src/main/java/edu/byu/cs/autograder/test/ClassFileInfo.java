@@ -0,0 +1,223 @@
+package edu.byu.cs.autograder.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * The parts of a class that code compiled against it links to: its supertypes and members, and for a class file,
+ * the classes and members it references. Built from a class file's bytes, or from a loaded class for JDK classes.
+ *
+ * @param name       the internal name of the class, e.g. chess/ChessGame
+ * @param access     the class's access flags, see {@link Modifier}
+ * @param superName  the internal name of the superclass, or null for java/lang/Object
+ * @param interfaces the internal names of the directly implemented interfaces
+ * @param fields     the declared fields
+ * @param methods    the declared methods and constructors
+ * @param classRefs  the classes this class refers to, excluding itself. Empty for loaded classes.
+ * @param memberRefs the fields and methods this class refers to. Empty for loaded classes.
+ */
+record ClassFileInfo(String name, int access, String superName, List<String> interfaces, List<Member> fields,
+                     List<Member> methods, Set<String> classRefs, List<MemberRef> memberRefs) {
+
+    /**
+     * The access flag marking an interface in a class file
+     */
+    private static final int ACC_INTERFACE = 0x0200;
+
+    /**
+     * @param name       the member's name, e.g. getBoard or &lt;init&gt;
+     * @param descriptor the member's type descriptor, e.g. ()Lchess/ChessBoard;
+     * @param access     the member's access flags
+     */
+    record Member(String name, String descriptor, int access) { }
+
+    /**
+     * A reference from compiled code to a field or method of another class
+     *
+     * @param owner           the internal name of the class the member is looked up in
+     * @param name            the member's name
+     * @param descriptor      the member's type descriptor
+     * @param field           true for a field, false for a method
+     * @param interfaceMethod true if the owner is referenced as an interface
+     */
+    record MemberRef(String owner, String name, String descriptor, boolean field, boolean interfaceMethod) { }
+
+    boolean isInterface() {
+        return (access & ACC_INTERFACE) != 0;
+    }
+
+    /**
+     * @return the package of the class, in internal form, e.g. chess
+     */
+    String packageName() {
+        int slash = name.lastIndexOf('/');
+        return slash < 0 ? "" : name.substring(0, slash);
+    }
+
+    /**
+     * Reads a class file
+     *
+     * @param bytes the contents of a class file
+     * @return the class described by the file
+     * @throws IOException if the bytes aren't a valid class file
+     */
+    static ClassFileInfo parse(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != 0xCAFEBABE) throw new IOException("Not a class file");
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        int count = in.readUnsignedShort();
+        int[] tags = new int[count];
+        Object[] values = new Object[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            tags[i] = tag;
+            switch (tag) {
+                case 1 -> values[i] = in.readUTF();
+                case 3, 4 -> in.readInt();
+                case 5, 6 -> {
+                    in.readLong();
+                    i++; // Longs and doubles take two slots
+                }
+                case 7, 8, 16, 19, 20 -> values[i] = new int[]{in.readUnsignedShort()};
+                case 9, 10, 11, 12, 17, 18 -> values[i] = new int[]{in.readUnsignedShort(), in.readUnsignedShort()};
+                case 15 -> {
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                }
+                default -> throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+        ConstantPool pool = new ConstantPool(tags, values);
+
+        int access = in.readUnsignedShort();
+        String name = pool.className(in.readUnsignedShort());
+        int superIndex = in.readUnsignedShort();
+        String superName = superIndex == 0 ? null : pool.className(superIndex);
+        List<String> interfaces = new ArrayList<>();
+        int interfaceCount = in.readUnsignedShort();
+        for (int i = 0; i < interfaceCount; i++) {
+            interfaces.add(pool.className(in.readUnsignedShort()));
+        }
+        List<Member> fields = readMembers(in, pool);
+        List<Member> methods = readMembers(in, pool);
+
+        Set<String> classRefs = new TreeSet<>();
+        List<MemberRef> memberRefs = new ArrayList<>();
+        for (int i = 1; i < count; i++) {
+            switch (tags[i]) {
+                case 7 -> addClassRef(classRefs, pool.className(i));
+                case 9, 10, 11 -> {
+                    int[] ref = (int[]) values[i];
+                    int[] nameAndType = (int[]) values[ref[1]];
+                    MemberRef memberRef = new MemberRef(pool.className(ref[0]), pool.utf8(nameAndType[0]),
+                            pool.utf8(nameAndType[1]), tags[i] == 9, tags[i] == 11);
+                    memberRefs.add(memberRef);
+                    addDescriptorRefs(classRefs, memberRef.descriptor());
+                }
+                default -> { }
+            }
+        }
+        for (Member member : fields) addDescriptorRefs(classRefs, member.descriptor());
+        for (Member member : methods) addDescriptorRefs(classRefs, member.descriptor());
+        classRefs.remove(name);
+
+        return new ClassFileInfo(name, access, superName, interfaces, fields, methods, classRefs, memberRefs);
+    }
+
+    /**
+     * Describes a class loaded in this JVM, used for JDK classes that compiled code links against
+     *
+     * @param type the class
+     * @return its supertypes and members
+     */
+    static ClassFileInfo of(Class<?> type) {
+        String superName = type.getSuperclass() == null ? null : internalName(type.getSuperclass());
+        List<String> interfaces = Arrays.stream(type.getInterfaces()).map(ClassFileInfo::internalName).toList();
+        List<Member> fields = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            fields.add(new Member(field.getName(), field.getType().descriptorString(), field.getModifiers()));
+        }
+        List<Member> methods = new ArrayList<>();
+        for (Method method : type.getDeclaredMethods()) {
+            String descriptor = MethodType.methodType(method.getReturnType(), method.getParameterTypes())
+                    .descriptorString();
+            methods.add(new Member(method.getName(), descriptor, method.getModifiers()));
+        }
+        for (var constructor : type.getDeclaredConstructors()) {
+            String descriptor = MethodType.methodType(void.class, constructor.getParameterTypes()).descriptorString();
+            methods.add(new Member("<init>", descriptor, constructor.getModifiers()));
+        }
+        int access = type.getModifiers() | (type.isInterface() ? ACC_INTERFACE : 0);
+        return new ClassFileInfo(internalName(type), access, superName, interfaces, fields, methods, Set.of(),
+                List.of());
+    }
+
+    private static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    private static List<Member> readMembers(DataInputStream in, ConstantPool pool) throws IOException {
+        int count = in.readUnsignedShort();
+        List<Member> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int access = in.readUnsignedShort();
+            String name = pool.utf8(in.readUnsignedShort());
+            String descriptor = pool.utf8(in.readUnsignedShort());
+            members.add(new Member(name, descriptor, access));
+            skipAttributes(in);
+        }
+        return members;
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            in.readUnsignedShort();
+            in.skipNBytes(Integer.toUnsignedLong(in.readInt()));
+        }
+    }
+
+    /**
+     * Adds a class, or the element class of an array, to the referenced classes
+     */
+    private static void addClassRef(Set<String> classRefs, String name) {
+        if (name.startsWith("[")) {
+            addDescriptorRefs(classRefs, name);
+        } else {
+            classRefs.add(name);
+        }
+    }
+
+    /**
+     * Adds every class named in a type descriptor, e.g. (Lchess/ChessMove;[I)V
+     */
+    private static void addDescriptorRefs(Set<String> classRefs, String descriptor) {
+        int start = descriptor.indexOf('L');
+        while (start >= 0) {
+            int end = descriptor.indexOf(';', start);
+            if (end < 0) return;
+            classRefs.add(descriptor.substring(start + 1, end));
+            start = descriptor.indexOf('L', end);
+        }
+    }
+
+    private record ConstantPool(int[] tags, Object[] values) {
+        String utf8(int index) throws IOException {
+            if (tags[index] != 1) throw new IOException("Expected a string at constant " + index);
+            return (String) values[index];
+        }
+
+        String className(int index) throws IOException {
+            if (tags[index] != 7) throw new IOException("Expected a class at constant " + index);
+            return utf8(((int[]) values[index])[0]);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package edu.byu.cs.autograder.test;
+
+import edu.byu.cs.autograder.GradingContext;
+import edu.byu.cs.autograder.GradingException;
+import edu.byu.cs.dataAccess.DataAccessException;
+import edu.byu.cs.model.Rubric;
+import edu.byu.cs.model.RubricConfig;
+import edu.byu.cs.model.TestAnalysis;
+import edu.byu.cs.properties.ApplicationProperties;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * The test graders of a grading run, whose tests can be launched together.
+ * <br>
+ * Each grader compiles a distinct set of sources, but launching each set on its own pays for discovery, class
+ * loading and reporting again. {@link #launch(RubricConfig)} compiles every set up front into its own directory and
+ * runs them in a single launch on the run's test worker, the previous phases' tests first. Each set still runs in
+ * its own class loader with its own report and output, so a student's copy of a passoff test can't shadow the real
+ * one, and each grader scores exactly the results it would have gotten alone. If the previous phases' tests stop at
+ * their first failure, the later sets don't run, since that failure fails the submission; asking for their results
+ * is an error rather than an empty score.
+ * <br>
+ * Graders whose tests weren't launched together, because combined launches are off or there is no test worker, run
+ * their own tests when asked for their results.
+ */
+public class CombinedTestRun {
+
+    private final GradingContext gradingContext;
+
+    private final TestGrader previousPhaseTests;
+    private final TestGrader passoffTests;
+    private final TestGrader unitTests;
+
+    private final Map<TestGrader, TestAnalysis> results = new HashMap<>();
+
+    /**
+     * Errors of graders after the first, such as compile errors or their tests not running, thrown when their results
+     * are asked for so students see errors in the same order as when each grader runs its own tests
+     */
+    private final Map<TestGrader, GradingException> deferredErrors = new HashMap<>();
+
+    public CombinedTestRun(GradingContext gradingContext) {
+        this.gradingContext = gradingContext;
+        this.previousPhaseTests = new PreviousPhasePassoffTestGrader(gradingContext);
+        this.passoffTests = new PassoffTestGrader(gradingContext);
+        this.unitTests = new UnitTestGrader(gradingContext);
+    }
+
+    /**
+     * Compiles and runs the previous phases' tests and the tests the rubric grades in a single launch, if the run
+     * has a test worker
+     *
+     * @param rubricConfig the rubric of the phase being graded
+     * @throws GradingException if the previous phases' tests didn't compile or the tests couldn't run
+     */
+    public void launch(RubricConfig rubricConfig) throws GradingException {
+        JUnitWorkerPool workers = ApplicationProperties.combinedTests() ? JUnitWorkerPool.getInstance() : null;
+        if (workers == null || gradingContext.workspace() == null) return;
+
+        List<TestGrader> graders = new ArrayList<>(List.of(previousPhaseTests));
+        if (rubricConfig.items().get(Rubric.RubricType.PASSOFF_TESTS) != null) graders.add(passoffTests);
+        if (rubricConfig.items().get(Rubric.RubricType.UNIT_TESTS) != null) graders.add(unitTests);
+
+        List<TestGrader> launched = new ArrayList<>();
+        List<TestHelper.TestSet> testSets = new ArrayList<>();
+        for (TestGrader grader : graders) {
+            File compiledTests = new File(gradingContext.stagePath(), "tests-" + grader.rubricType().name().toLowerCase());
+            try {
+                grader.compileTests(compiledTests);
+            } catch (GradingException e) {
+                if (grader == previousPhaseTests) throw e;
+                deferredErrors.put(grader, e);
+                continue;
+            }
+            if (!compiledTests.exists()) {
+                results.put(grader, TestGrader.noTests());
+                continue;
+            }
+            launched.add(grader);
+            testSets.add(grader.testSet(compiledTests));
+        }
+        if (testSets.isEmpty()) return;
+
+        gradingContext.observer().update("Running tests...");
+        List<TestAnalysis> analyses = new TestHelper().runJUnitTests(previousPhaseTests.uberJar(), testSets,
+                gradingContext.workspace(), workers);
+        for (int i = 0; i < launched.size(); i++) {
+            TestGrader grader = launched.get(i);
+            if (analyses.get(i) != null) {
+                results.put(grader, analyses.get(i));
+            } else {
+                deferredErrors.put(grader, new GradingException("The " + grader.name()
+                        + " tests didn't run because an earlier test failed"));
+            }
+        }
+    }
+
+    public Rubric.Results runPreviousPhaseTests() throws GradingException, DataAccessException {
+        return runTests(previousPhaseTests);
+    }
+
+    public Rubric.Results runPassoffTests() throws GradingException, DataAccessException {
+        return runTests(passoffTests);
+    }
+
+    public Rubric.Results runUnitTests() throws GradingException, DataAccessException {
+        return runTests(unitTests);
+    }
+
+    private Rubric.Results runTests(TestGrader grader) throws GradingException, DataAccessException {
+        GradingException compileError = deferredErrors.get(grader);
+        if (compileError != null) throw compileError;
+        TestAnalysis analysis = results.get(grader);
+        return analysis == null ? grader.runTests() : grader.gradeResults(analysis);
+    }
+}
@@ -0,0 +1,434 @@
+package edu.byu.cs.autograder.test;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * The entry point of a long-lived test runner JVM started by {@link JUnitWorkerPool}.
+ * <br>
+ * Runs on the JUnit console launcher's classpath rather than the autograder's, so it only uses the JDK and reaches
+ * the JUnit Platform through reflection. Each line read from standard in is a request: a nonce, followed by one or
+ * more partitions of four fields each, all separated by tabs. A partition is the directory to write its XML report
+ * to, the classpath of its tests, the packages to run, separated by commas, and configuration parameters for the
+ * launch as key=value pairs, separated by commas.
+ * <br>
+ * A request's partitions run in order in one launcher session. Each runs in a new class loader holding its
+ * classpath, exactly as the console launcher would run it, so partitions can't see each other's classes. Before
+ * every partition but the first, a line starting with {@link #PARTITION_PREFIX}, the nonce and the partition's index
+ * is written to standard out and standard error. When all have finished, a line starting with {@link #DONE_PREFIX}
+ * and the nonce is written to standard error, then to standard out followed by "clean", or "dirty" if the tests
+ * left threads running.
+ * <br>
+ * As each test finishes, its outcome is written to standard out on a line starting with {@link #OUTCOME_PREFIX}.
+ * A partition with {@link #FAIL_FAST} set stops at its first failing test: the tests that finished are written to
+ * its report, the done lines are written with "aborted", and the worker exits without running anything else.
+ * Failures of tests whose class name ends with one of {@link #FAIL_FAST_EXEMPT} don't stop it.
+ */
+public class JUnitWorkerMain {
+
+    static final String DONE_PREFIX = "@@autograder-junit-done ";
+
+    static final String PARTITION_PREFIX = "@@autograder-junit-partition ";
+
+    static final String OUTCOME_PREFIX = "@@autograder-junit-outcome ";
+
+    /**
+     * The configuration parameter that makes a partition stop at its first failing test
+     */
+    static final String FAIL_FAST = "autograder.failfast";
+
+    /**
+     * The configuration parameter listing, separated by semicolons, the ends of the class names whose failures don't
+     * stop a {@link #FAIL_FAST} partition, such as extra credit tests
+     */
+    static final String FAIL_FAST_EXEMPT = "autograder.failfast.exempt";
+
+    static final String REPORT_NAME = "TEST-junit-jupiter.xml";
+
+    /**
+     * How much of a failure's stack trace is reported as its test finishes, so an outcome line stays well under the
+     * line length {@link JUnitWorkerPool} reads
+     */
+    static final int MAX_FAILURE_LENGTH = 16 * 1024;
+
+    /**
+     * How long threads the tests started get to finish before the worker counts as dirty
+     */
+    private static final long THREAD_GRACE_MILLIS = 1000;
+
+    public static void main(String[] args) throws IOException {
+        PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(new FileOutputStream(FileDescriptor.err), true, StandardCharsets.UTF_8);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+
+        String request;
+        while ((request = in.readLine()) != null) {
+            String[] fields = request.split("\t", -1);
+            Set<Thread> threadsBefore = new HashSet<>(Thread.getAllStackTraces().keySet());
+            boolean clean = true;
+            AutoCloseable session = null;
+            try {
+                // Engines are loaded once for the session, from the worker's own classpath
+                session = (AutoCloseable) Class.forName("org.junit.platform.launcher.core.LauncherFactory")
+                        .getMethod("openSession").invoke(null);
+                Object launcher = Class.forName("org.junit.platform.launcher.LauncherSession")
+                        .getMethod("getLauncher").invoke(session);
+                for (int partition = 0; 1 + partition * 4 < fields.length; partition++) {
+                    if (partition > 0) {
+                        System.out.flush();
+                        System.err.flush();
+                        out.println();
+                        out.println(PARTITION_PREFIX + fields[0] + " " + partition);
+                        err.println();
+                        err.println(PARTITION_PREFIX + fields[0] + " " + partition);
+                    }
+                    int first = 1 + partition * 4;
+                    run(launcher, fields[0], Path.of(fields[first]), fields[first + 1].split(File.pathSeparator),
+                            fields[first + 2].split(","), configuration(fields[first + 3]), out, err);
+                }
+            } catch (InvocationTargetException e) {
+                e.getCause().printStackTrace(err);
+                clean = false;
+            } catch (Exception e) {
+                e.printStackTrace(err);
+                clean = false;
+            } finally {
+                if (session != null) {
+                    try {
+                        session.close();
+                    } catch (Exception e) {
+                        clean = false;
+                    }
+                }
+            }
+            System.out.flush();
+            System.err.flush();
+            clean &= threadsFinished(threadsBefore);
+
+            err.println();
+            err.println(DONE_PREFIX + fields[0]);
+            out.println();
+            out.println(DONE_PREFIX + fields[0] + (clean ? " clean" : " dirty"));
+        }
+    }
+
+    private static Map<String, String> configuration(String field) {
+        Map<String, String> configuration = new HashMap<>();
+        for (String pair : field.split(",")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) configuration.put(pair.substring(0, equals), pair.substring(equals + 1));
+        }
+        return configuration;
+    }
+
+    /**
+     * @return the start of a failure, followed by a note of how much was omitted if it was too long
+     */
+    static String truncateFailure(String failure) {
+        if (failure.length() <= MAX_FAILURE_LENGTH) return failure;
+        return failure.substring(0, MAX_FAILURE_LENGTH) + "\n[... " + (failure.length() - MAX_FAILURE_LENGTH)
+                + " characters of the failure omitted ...]";
+    }
+
+    private static void run(Object launcher, String nonce, Path reportsDirectory, String[] classpath,
+                            String[] packages, Map<String, String> configuration, PrintStream out, PrintStream err)
+            throws Exception {
+        URL[] urls = new URL[classpath.length];
+        for (int i = 0; i < classpath.length; i++) {
+            urls[i] = new File(classpath[i]).toURI().toURL();
+        }
+
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        try (URLClassLoader loader = new URLClassLoader(urls, JUnitWorkerMain.class.getClassLoader())) {
+            thread.setContextClassLoader(loader);
+
+            Method selectPackage = Class.forName("org.junit.platform.engine.discovery.DiscoverySelectors")
+                    .getMethod("selectPackage", String.class);
+            List<Object> selectors = new ArrayList<>();
+            for (String packageName : packages) {
+                if (!packageName.isEmpty()) selectors.add(selectPackage.invoke(null, packageName));
+            }
+
+            Class<?> builderClass = Class.forName("org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder");
+            Object builder = builderClass.getMethod("request").invoke(null);
+            builderClass.getMethod("selectors", List.class).invoke(builder, selectors);
+            builderClass.getMethod("configurationParameters", Map.class).invoke(builder, configuration);
+            Object discoveryRequest = builderClass.getMethod("build").invoke(builder);
+
+            Class<?> listenerType = Class.forName("org.junit.platform.launcher.TestExecutionListener");
+            List<Object> listenerList = new ArrayList<>();
+            try {
+                listenerList.add(Class.forName("org.junit.platform.reporting.legacy.xml.LegacyXmlReportGeneratingListener")
+                        .getConstructor(Path.class, PrintWriter.class)
+                        .newInstance(reportsDirectory, new PrintWriter(err, true)));
+            } catch (ClassNotFoundException e) {
+                // Only a worker running without the console launcher's jar lacks the XML report; anything printed
+                // here would be shown to students as their tests' output
+            }
+            Outcomes outcomes = new Outcomes(nonce, out);
+            listenerList.add(Proxy.newProxyInstance(listenerType.getClassLoader(), new Class<?>[]{listenerType},
+                    outcomes));
+            if (Boolean.parseBoolean(configuration.get(FAIL_FAST))) {
+                listenerList.add(Proxy.newProxyInstance(listenerType.getClassLoader(), new Class<?>[]{listenerType},
+                        new FailFast(nonce, reportsDirectory, configuration.getOrDefault(FAIL_FAST_EXEMPT, ""),
+                                outcomes, out, err)));
+            }
+            Object listeners = Array.newInstance(listenerType, listenerList.size());
+            for (int i = 0; i < listenerList.size(); i++) {
+                Array.set(listeners, i, listenerList.get(i));
+            }
+
+            Class.forName("org.junit.platform.launcher.Launcher")
+                    .getMethod("execute", Class.forName("org.junit.platform.launcher.LauncherDiscoveryRequest"),
+                            listeners.getClass())
+                    .invoke(launcher, discoveryRequest, listeners);
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    /**
+     * A test execution listener implemented through a proxy, since the listener interface is only known at runtime
+     */
+    private abstract static class Listener implements InvocationHandler {
+        protected Object testPlan;
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+            switch (method.getName()) {
+                case "testPlanExecutionStarted" -> testPlan = args[0];
+                case "executionFinished" -> executionFinished(args[0], args[1]);
+                case "executionSkipped" -> executionSkipped(args[0]);
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return getClass().getSimpleName();
+                }
+                default -> { }
+            }
+            return null;
+        }
+
+        protected abstract void executionFinished(Object testIdentifier, Object result) throws Exception;
+
+        protected void executionSkipped(Object testIdentifier) throws Exception { }
+
+        /**
+         * @return the tests held by a container, which the legacy XML report gives the container's result
+         */
+        protected List<Object> descendantTests(Object container) throws Exception {
+            Set<?> descendants = (Set<?>) Class.forName("org.junit.platform.launcher.TestPlan")
+                    .getMethod("getDescendants", container.getClass()).invoke(testPlan, container);
+            List<Object> tests = new ArrayList<>();
+            for (Object descendant : descendants) {
+                if ((Boolean) call(descendant, "isTest")) tests.add(descendant);
+            }
+            return tests;
+        }
+
+        protected String className(Object testIdentifier) throws Exception {
+            return (String) Class.forName("org.junit.platform.launcher.listeners.LegacyReportingUtils")
+                    .getMethod("getClassName", Class.forName("org.junit.platform.launcher.TestPlan"),
+                            Class.forName("org.junit.platform.launcher.TestIdentifier"))
+                    .invoke(null, testPlan, testIdentifier);
+        }
+
+        protected static boolean failed(Object result) throws Exception {
+            return "FAILED".equals(call(result, "getStatus").toString());
+        }
+
+        /**
+         * @return the failure of a failed result, or null
+         */
+        protected static Throwable failure(Object result) throws Exception {
+            if (!failed(result)) return null;
+            return (Throwable) ((Optional<?>) call(result, "getThrowable")).orElse(null);
+        }
+
+        protected static String stackTrace(Throwable throwable) {
+            StringWriter stackTrace = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(stackTrace));
+            return stackTrace.toString();
+        }
+
+        protected static Object call(Object target, String method) throws Exception {
+            return target.getClass().getMethod(method).invoke(target);
+        }
+    }
+
+    /**
+     * Writes a line starting with {@link #OUTCOME_PREFIX} and the nonce to standard out as each test finishes,
+     * followed by its class name, legacy reporting name, display name and failure, each Base64 encoded. Passing
+     * tests have an empty failure. Tests are reported as the legacy XML report would have them.
+     */
+    private static class Outcomes extends Listener {
+        private final String prefix;
+        private final PrintStream out;
+        private final Set<Object> reported = new HashSet<>();
+
+        private Outcomes(String nonce, PrintStream out) {
+            this.prefix = OUTCOME_PREFIX + nonce;
+            this.out = out;
+        }
+
+        @Override
+        protected void executionFinished(Object testIdentifier, Object result) throws Exception {
+            Throwable failure = failure(result);
+            if ((Boolean) call(testIdentifier, "isTest")) {
+                report(testIdentifier, failure);
+            } else if (failed(result)) {
+                // A container failing, e.g. in @BeforeAll, fails the tests it holds that didn't finish
+                for (Object test : descendantTests(testIdentifier)) {
+                    report(test, failure);
+                }
+            }
+        }
+
+        @Override
+        protected void executionSkipped(Object testIdentifier) throws Exception {
+            if ((Boolean) call(testIdentifier, "isTest")) {
+                report(testIdentifier, null);
+            } else {
+                for (Object test : descendantTests(testIdentifier)) {
+                    report(test, null);
+                }
+            }
+        }
+
+        private void report(Object testIdentifier, Throwable failure) throws Exception {
+            if (!reported.add(call(testIdentifier, "getUniqueId"))) return;
+            Base64.Encoder encoder = Base64.getEncoder();
+            StringBuilder line = new StringBuilder(prefix);
+            for (String field : new String[]{className(testIdentifier), (String) call(testIdentifier, "getLegacyReportingName"),
+                    (String) call(testIdentifier, "getDisplayName"), failure == null ? "" : truncateFailure(stackTrace(failure))}) {
+                line.append(' ').append(encoder.encodeToString(field.getBytes(StandardCharsets.UTF_8)));
+            }
+            System.out.flush();
+            out.println();
+            out.println(line);
+        }
+    }
+
+    /**
+     * A test execution listener that ends the worker at the first failure, unless the failing class is exempt. Tests
+     * that haven't run yet aren't in the report, so they can't be counted as passing.
+     */
+    private static class FailFast extends Listener {
+        private final String nonce;
+        private final Path reportsDirectory;
+        private final List<String> exempt = new ArrayList<>();
+        private final Outcomes outcomes;
+        private final PrintStream out;
+        private final PrintStream err;
+        private final List<Object[]> finished = new ArrayList<>();
+
+        private FailFast(String nonce, Path reportsDirectory, String exempt, Outcomes outcomes, PrintStream out,
+                         PrintStream err) {
+            this.nonce = nonce;
+            this.reportsDirectory = reportsDirectory;
+            for (String suffix : exempt.split(";")) {
+                if (!suffix.isEmpty()) this.exempt.add(suffix);
+            }
+            this.outcomes = outcomes;
+            this.out = out;
+            this.err = err;
+        }
+
+        @Override
+        protected void executionFinished(Object testIdentifier, Object result) throws Exception {
+            // Listeners hear of a test finishing in the reverse of the order they were registered in, so the
+            // outcome of the failure that ends the worker is reported here
+            synchronized (outcomes) {
+                outcomes.executionFinished(testIdentifier, result);
+            }
+            boolean isTest = (Boolean) call(testIdentifier, "isTest");
+            if (isTest) finished.add(new Object[]{testIdentifier, result});
+            if (!failed(result)) return;
+
+            if (!isTest) {
+                for (Object test : descendantTests(testIdentifier)) {
+                    finished.add(new Object[]{test, result});
+                }
+            }
+            String className = className(testIdentifier);
+            for (String suffix : exempt) {
+                if (className.endsWith(suffix)) return;
+            }
+            writeReport();
+
+            System.out.flush();
+            System.err.flush();
+            err.println();
+            err.println("Stopped at the first failing test; the remaining tests didn't run.");
+            err.println(DONE_PREFIX + nonce);
+            out.println();
+            out.println(DONE_PREFIX + nonce + " aborted");
+            Runtime.getRuntime().halt(0);
+        }
+
+        /**
+         * Writes the finished tests in the layout of the legacy XML report, which the autograder reads
+         */
+        private void writeReport() throws Exception {
+            Files.createDirectories(reportsDirectory);
+            try (Writer writer = Files.newBufferedWriter(reportsDirectory.resolve(REPORT_NAME), StandardCharsets.UTF_8)) {
+                XMLStreamWriter xml = XMLOutputFactory.newFactory().createXMLStreamWriter(writer);
+                xml.writeStartDocument("UTF-8", "1.0");
+                xml.writeStartElement("testsuite");
+                xml.writeAttribute("name", "JUnit Jupiter");
+                xml.writeAttribute("tests", String.valueOf(finished.size()));
+                for (Object[] test : finished) {
+                    xml.writeStartElement("testcase");
+                    xml.writeAttribute("name", (String) call(test[0], "getLegacyReportingName"));
+                    xml.writeAttribute("classname", className(test[0]));
+                    Throwable cause = failure(test[1]);
+                    if (cause != null) {
+                        xml.writeStartElement(cause instanceof AssertionError ? "failure" : "error");
+                        if (cause.getMessage() != null) xml.writeAttribute("message", cause.getMessage());
+                        xml.writeAttribute("type", cause.getClass().getName());
+                        xml.writeCharacters(stackTrace(cause));
+                        xml.writeEndElement();
+                    }
+                    xml.writeStartElement("system-out");
+                    xml.writeCharacters("\nunique-id: " + call(test[0], "getUniqueId")
+                            + "\ndisplay-name: " + call(test[0], "getDisplayName") + "\n");
+                    xml.writeEndElement();
+                    xml.writeEndElement();
+                }
+                xml.writeEndElement();
+                xml.writeEndDocument();
+                xml.close();
+            }
+        }
+    }
+
+    /**
+     * @return true if every non-daemon thread started since the snapshot finished within the grace period
+     */
+    private static boolean threadsFinished(Set<Thread> threadsBefore) {
+        long deadline = System.currentTimeMillis() + THREAD_GRACE_MILLIS;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (threadsBefore.contains(thread) || thread.isDaemon()) continue;
+            try {
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                return false;
+            }
+            if (thread.isAlive()) return false;
+        }
+        return true;
+    }
+}
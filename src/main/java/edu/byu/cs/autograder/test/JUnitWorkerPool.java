@@ -0,0 +1,294 @@
+package edu.byu.cs.autograder.test;
+
+import edu.byu.cs.autograder.resources.Workspace;
+import edu.byu.cs.properties.ApplicationProperties;
+import edu.byu.cs.util.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a test runner JVM ready for each workspace, so a grading run's test graders don't each pay for starting a
+ * JVM, loading the JUnit Platform and warming up the JIT.
+ * <br>
+ * A workspace's worker is started when its run begins, alongside cloning and compiling, and runs each of the run's
+ * test graders with {@link JUnitWorkerMain}. It is started in the run's cgroup, so the student's tests are capped and
+ * measured like any other process of the run. It is stopped when the run ends, so nothing a student's tests leave behind reaches the
+ * next student. A worker whose tests time out, exit the JVM, or leave threads running is stopped right away, and the
+ * next request starts a fresh one.
+ */
+public class JUnitWorkerPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JUnitWorkerPool.class);
+
+    private static JUnitWorkerPool instance;
+
+    private final List<File> runtime;
+    private final Map<String, Worker> workers = new ConcurrentHashMap<>();
+    private final ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+
+    private File workerClasspath;
+
+    private static class Worker {
+        private final MeteredProcess process;
+        private final Instant started;
+        private final BufferedWriter requests;
+        private final BoundedLineReader stdOut;
+        private final BoundedLineReader stdErr;
+
+        private Worker(MeteredProcess process, Instant started) {
+            this.process = process;
+            this.started = started;
+            this.requests = new BufferedWriter(new OutputStreamWriter(process.process().getOutputStream(), StandardCharsets.UTF_8));
+            this.stdOut = new BoundedLineReader(new InputStreamReader(process.process().getInputStream(), StandardCharsets.UTF_8));
+            this.stdErr = new BoundedLineReader(new InputStreamReader(process.process().getErrorStream(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Tests run in their own class loader as part of a request, with their own report and output
+     *
+     * @param classpath        the tests' classpath
+     * @param packages         the packages to run
+     * @param configuration    JUnit configuration parameters for the tests, such as {@link JUnitWorkerMain#FAIL_FAST}
+     * @param reportsDirectory where the XML report is written
+     * @param stdOut           collects what the tests print to standard out
+     * @param stdErr           collects what the tests print to standard error
+     * @param outcomes         receives each test's outcome as soon as it finishes
+     */
+    record Partition(List<File> classpath, Collection<String> packages, Map<String, String> configuration,
+                     File reportsDirectory, OutputCapture stdOut, OutputCapture stdErr,
+                     Consumer<TestOutcome> outcomes) { }
+
+    /**
+     * How a test ended, as the legacy XML report would have it
+     *
+     * @param className   the name of the test's class
+     * @param name        the test's legacy reporting name, e.g. "pawnCaptureBlack()"
+     * @param displayName the test's display name
+     * @param failure     the stack trace of the test's failure, or null if it passed
+     */
+    record TestOutcome(String className, String name, String displayName, String failure) { }
+
+    /**
+     * How a request ended
+     *
+     * @param exitCode      0 if the worker finished the request, or 1 if it exited first
+     * @param partitionsRun how many of the partitions ran. A partition that stopped at its first failure is the
+     *                      last to run; otherwise all of them ran.
+     */
+    record Result(int exitCode, int partitionsRun) { }
+
+    /**
+     * @param runtime the jars the workers run on: the JUnit Platform launcher, its engines and XML reporting
+     */
+    JUnitWorkerPool(List<File> runtime) {
+        this.runtime = runtime;
+    }
+
+    /**
+     * @return the pool, or null if test runs start a new JVM each time
+     */
+    public static synchronized JUnitWorkerPool getInstance() {
+        if (instance == null && ApplicationProperties.junitWorkers()) {
+            instance = new JUnitWorkerPool(List.of(new File(TestHelper.standaloneJunitJarPath)));
+        }
+        return instance;
+    }
+
+    /**
+     * Starts the workspace's worker in the background, if it doesn't have one. It is launched in the cgroup of the
+     * account bound to the calling thread, and its tests are reported to that account.
+     *
+     * @param workspace a workspace whose run is starting
+     */
+    public void prepare(Workspace workspace) {
+        workers.computeIfAbsent(workspace.id(), id -> {
+            try {
+                return startWorker(workspace);
+            } catch (IOException e) {
+                LOGGER.warn("Couldn't start a test worker for workspace {}", workspace.id(), e);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Stops the workspace's worker
+     *
+     * @param workspace a workspace whose run has ended
+     */
+    public void recycle(Workspace workspace) {
+        Worker worker = workers.remove(workspace.id());
+        if (worker != null) stop(worker);
+    }
+
+    /**
+     * Stops every worker
+     */
+    public void shutdown() {
+        for (String id : List.copyOf(workers.keySet())) {
+            Worker worker = workers.remove(id);
+            if (worker != null) stop(worker);
+        }
+    }
+
+    /**
+     * Runs several sets of tests in one request on the workspace's worker, in order
+     *
+     * @param workspace  the workspace of the run
+     * @param partitions the sets of tests
+     * @param timeout    how long all the tests may take in milliseconds
+     * @return how the request ended
+     * @throws ProcessUtils.ProcessException if the tests timed out, the run was interrupted or no worker could start
+     */
+    Result run(Workspace workspace, List<Partition> partitions, long timeout) throws ProcessUtils.ProcessException {
+        Worker worker = workers.remove(workspace.id());
+        Instant started = Instant.now();
+        boolean clean = false;
+        int exitCode = -1;
+        try {
+            if (worker == null || !worker.process.process().isAlive()) {
+                if (worker != null) stop(worker);
+                worker = startWorker(workspace);
+            }
+
+            String nonce = UUID.randomUUID().toString();
+            List<String> fields = new ArrayList<>(List.of(nonce));
+            for (Partition partition : partitions) {
+                List<String> paths = new ArrayList<>();
+                for (File entry : partition.classpath()) {
+                    paths.add(entry.getAbsolutePath());
+                }
+                fields.add(partition.reportsDirectory().getAbsolutePath());
+                fields.add(String.join(File.pathSeparator, paths));
+                fields.add(String.join(",", partition.packages()));
+                List<String> configuration = new ArrayList<>();
+                partition.configuration().forEach((key, value) -> configuration.add(key + "=" + value));
+                fields.add(String.join(",", configuration));
+            }
+            worker.requests.write(String.join("\t", fields));
+            worker.requests.newLine();
+            worker.requests.flush();
+
+            Worker current = worker;
+            AtomicInteger reached = new AtomicInteger();
+            Future<String> outDone = readers.submit(() -> readUntilDone(current.stdOut, nonce, partitions, reached));
+            Future<String> errDone = readers.submit(() -> readUntilDone(current.stdErr, nonce, partitions, null));
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            String status = outDone.get(timeout, TimeUnit.MILLISECONDS);
+            errDone.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+            // A worker that died during the request, e.g. because a test called System.exit, finished it as the
+            // console launcher would have
+            exitCode = status == null ? 1 : 0;
+            clean = "clean".equals(status);
+            return new Result(exitCode, "aborted".equals(status) ? reached.get() + 1 : partitions.size());
+        } catch (TimeoutException e) {
+            throw new ProcessUtils.ProcessException("Process timed out. Try again or come see a TA if this error persists");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessUtils.ProcessException(e);
+        } catch (IOException | ExecutionException e) {
+            throw new ProcessUtils.ProcessException(e);
+        } finally {
+            if (worker != null) {
+                worker.process.record("java (junit worker)", started, exitCode);
+                if (clean && workers.putIfAbsent(workspace.id(), worker) == null) {
+                    LOGGER.debug("Test worker for workspace {} is ready for another run", workspace.id());
+                } else {
+                    stop(worker);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a stream of the worker's until the end of the current request, handing each partition's lines to its
+     * output and its test outcomes to its consumer
+     *
+     * @param reached set to the index of each partition as it starts if the stream is standard out, or null if it is
+     *                standard error
+     * @return what followed the nonce on the done line, or null if the worker exited first
+     */
+    private static String readUntilDone(BoundedLineReader reader, String nonce, List<Partition> partitions,
+                                        AtomicInteger reached) throws IOException {
+        boolean stdOut = reached != null;
+        String done = JUnitWorkerMain.DONE_PREFIX + nonce;
+        String partitionMarker = JUnitWorkerMain.PARTITION_PREFIX + nonce + " ";
+        String outcomeMarker = JUnitWorkerMain.OUTCOME_PREFIX + nonce + " ";
+        Partition partition = partitions.getFirst();
+        OutputCapture output = stdOut ? partition.stdOut() : partition.stdErr();
+        String previous = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            boolean isDone = line.startsWith(done);
+            boolean isOutcome = line.startsWith(outcomeMarker);
+            if (isDone || isOutcome || line.startsWith(partitionMarker)) {
+                // The worker ends the tests' output with a line break before each marker
+                if (previous != null && !previous.isEmpty()) output.accept(previous);
+                previous = null;
+                if (isDone) return line.substring(done.length()).trim();
+                if (isOutcome) {
+                    partition.outcomes().accept(outcome(line.substring(outcomeMarker.length())));
+                } else {
+                    int index = Integer.parseInt(line.substring(partitionMarker.length()).trim());
+                    partition = partitions.get(index);
+                    if (stdOut) reached.set(index);
+                    output = stdOut ? partition.stdOut() : partition.stdErr();
+                }
+                continue;
+            }
+            if (previous != null) output.accept(previous);
+            previous = line;
+        }
+        if (previous != null) output.accept(previous);
+        return null;
+    }
+
+    private static TestOutcome outcome(String fields) {
+        Base64.Decoder decoder = Base64.getDecoder();
+        String[] encoded = fields.trim().split(" ", -1);
+        String[] decoded = new String[4];
+        for (int i = 0; i < decoded.length; i++) {
+            decoded[i] = i < encoded.length ? new String(decoder.decode(encoded[i]), StandardCharsets.UTF_8) : "";
+        }
+        return new TestOutcome(decoded[0], decoded[1], decoded[2], decoded[3].isEmpty() ? null : decoded[3]);
+    }
+
+    private static void stop(Worker worker) {
+        try {
+            worker.requests.close();
+        } catch (IOException e) {
+            LOGGER.debug("Test worker's input was already closed", e);
+        }
+        worker.process.destroy();
+        LOGGER.debug("Stopped test worker started at {}", worker.started);
+    }
+
+    private Worker startWorker(Workspace workspace) throws IOException {
+        String javaPath = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> classpath = new ArrayList<>();
+        classpath.add(workerClasspath().getAbsolutePath());
+        for (File entry : runtime) {
+            classpath.add(entry.getAbsolutePath());
+        }
+        ProcessBuilder processBuilder = new ProcessBuilder(javaPath, "-cp", String.join(File.pathSeparator, classpath),
+                JUnitWorkerMain.class.getName());
+        LOGGER.debug("Starting test worker for workspace {}", workspace.id());
+        return new Worker(MeteredProcess.start(processBuilder), Instant.now());
+    }
+
+    private synchronized File workerClasspath() throws IOException {
+        if (workerClasspath == null) workerClasspath = FileUtils.extractClass(JUnitWorkerMain.class);
+        return workerClasspath;
+    }
+}
@@ -0,0 +1,54 @@
+package edu.byu.cs.autograder.test;
+
+import edu.byu.cs.autograder.GradingObserver;
+import edu.byu.cs.model.TestAnalysis;
+import edu.byu.cs.model.TestNode;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Builds a set of tests' results as the test worker reports each test finishing, and passes each result on to the
+ * student. The tree is the same one {@link TestAnalyzer} builds from the set's XML reports, so the reports don't
+ * have to be parsed once the tests are done.
+ */
+class LiveTestResults implements Consumer<JUnitWorkerPool.TestOutcome> {
+
+    private final TestAnalyzer analyzer = new TestAnalyzer();
+    private final TestNode root = TestAnalyzer.newRoot();
+    private final TestNode extraCredit = TestAnalyzer.newExtraCreditRoot();
+
+    private final String tests;
+    private final Set<String> extraCreditTests;
+    private final GradingObserver observer;
+
+    /**
+     * @param tests            the name of the set of tests, e.g. "passoff"
+     * @param extraCreditTests the names of the test files (excluding .java) worth bonus points
+     * @param observer         the observer to report each result to, or null if no one is watching
+     */
+    LiveTestResults(String tests, Set<String> extraCreditTests, GradingObserver observer) {
+        this.tests = tests;
+        this.extraCreditTests = extraCreditTests;
+        this.observer = observer;
+    }
+
+    @Override
+    public synchronized void accept(JUnitWorkerPool.TestOutcome outcome) {
+        // The worker has already cut long failures down to what the report parser keeps
+        TestNode node = analyzer.addTestCase(root, extraCredit, extraCreditTests, outcome.className(), outcome.name(),
+                outcome.displayName(), outcome.failure());
+        if (observer != null) {
+            String testClass = outcome.className().substring(outcome.className().lastIndexOf('.') + 1);
+            observer.notifyTestResult(tests, testClass, node);
+        }
+    }
+
+    /**
+     * @param error what the tests printed to standard error
+     * @return the results of every test reported so far
+     */
+    synchronized TestAnalysis analysis(String error) {
+        return analyzer.compileAnalysis(root, extraCredit, error);
+    }
+}
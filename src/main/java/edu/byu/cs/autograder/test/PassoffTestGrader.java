@@ -31,6 +31,11 @@ public class PassoffTestGrader extends TestGrader {
         return PhaseUtils.passoffPackagesToTest(gradingContext.phase());
     }
 
+    @Override
+    protected Set<String> concurrentPackages() throws GradingException {
+        return PhaseUtils.passoffTestsRunConcurrently(gradingContext.phase()) ? packagesToTest() : Set.of();
+    }
+
     @Override
     protected Set<String> extraCreditTests() {
         return PhaseUtils.extraCreditTests(gradingContext.phase());
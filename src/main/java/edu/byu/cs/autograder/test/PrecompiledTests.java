@@ -0,0 +1,324 @@
+package edu.byu.cs.autograder.test;
+
+import edu.byu.cs.model.Phase;
+import edu.byu.cs.properties.ApplicationProperties;
+import edu.byu.cs.util.FileUtils;
+import edu.byu.cs.util.PhaseUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Caches compiled official tests, so identical tests aren't recompiled for every submission.
+ * <br>
+ * At startup, each phase's tests are compiled against a built copy of the starter code, whose API every student
+ * starts from, and cached by a hash of their sources. A submission reuses the class files if every class and member
+ * the tests link to exists, accessibly, in the student's jar or the JDK. If anything is missing, the tests are
+ * compiled against that student's code as before, which reports the error. Without a starter code copy configured,
+ * nothing is cached here, and only a rerun of an identical tree reuses its compiled tests, from the
+ * {@link edu.byu.cs.autograder.compile.BuildCache}.
+ * <br>
+ * Linking isn't the same as compiling against the student's code, and the rest of the difference remains:
+ * <ul>
+ *     <li>javac picks each overload against the starter API. If a student adds a more specific overload, the
+ *     cached tests still call the starter's, where a fresh compile would call the student's.</li>
+ *     <li>Constants from the starter code are inlined into the cached tests, so a student's changed value for a
+ *     compile-time constant isn't seen.</li>
+ *     <li>Tests modified per submission, such as the phase 6 TestFactory, hash differently from the starter's
+ *     unless the student kept it unchanged, so they are compiled for every submission.</li>
+ * </ul>
+ */
+public class PrecompiledTests {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrecompiledTests.class);
+
+    /**
+     * How many compiled sets of tests are kept
+     */
+    static final int MAX_ENTRIES = 32;
+
+    private static final PrecompiledTests INSTANCE = new PrecompiledTests();
+
+    /**
+     * @param classes    the class files, by path relative to the output directory
+     * @param testClasses the parsed class files, with the classes and members each links to
+     */
+    private record Entry(Map<String, byte[]> classes, List<ClassFileInfo> testClasses) { }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    PrecompiledTests() {
+    }
+
+    public static PrecompiledTests getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Precompiles the official tests against the starter code in the background, if a built copy is configured
+     */
+    public void start() {
+        String starterCode = ApplicationProperties.starterCode();
+        if (starterCode == null) return;
+        Thread.ofVirtual().name("precompile-tests")
+                .start(() -> seed(new File("phases"), new File(starterCode)));
+    }
+
+    /**
+     * Compiles each phase's tests against the starter code's jar of the phase's module and caches them. Tests that
+     * don't compile against the starter code aren't cached.
+     *
+     * @param phasesDirectory the directory holding each phase's tests, e.g. phase3
+     * @param starterCode     the starter code, built like a student's repository
+     */
+    void seed(File phasesDirectory, File starterCode) {
+        for (Phase phase : Phase.values()) {
+            String module = PhaseUtils.getModuleUnderTest(phase);
+            File tests = new File(phasesDirectory, "phase" + PhaseUtils.getPhaseAsString(phase));
+            if (module == null || !tests.isDirectory()) continue;
+
+            File starterJar = new File(starterCode, module + "/target/" + module + "-test-dependencies.jar");
+            File output = null;
+            try {
+                output = Files.createTempDirectory("precompile-tests").toFile();
+                TestCompiler.Result result = TestCompiler.compile(tests, TestHelper.testClasspath(starterJar), output);
+                if (!result.success()) {
+                    LOGGER.warn("Tests for {} don't compile against the starter code, so they aren't precompiled:\n{}",
+                            phase, result.errors());
+                } else {
+                    store(hashSources(tests), output);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Couldn't precompile the tests for {}", phase, e);
+            } finally {
+                if (output != null) FileUtils.removeDirectory(output);
+            }
+        }
+    }
+
+    /**
+     * @param sourceDirectory a directory of test sources
+     * @return a hash of the path and contents of every java file under the directory
+     * @throws IOException if the sources couldn't be read
+     */
+    static String hashSources(File sourceDirectory) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        Path root = sourceDirectory.toPath();
+        List<Path> sources;
+        try (Stream<Path> files = Files.walk(root)) {
+            sources = files.filter(path -> path.toString().endsWith(".java")).sorted().toList();
+        }
+        for (Path source : sources) {
+            digest.update(root.relativize(source).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Files.readAllBytes(source));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Writes cached class files for the tests to the output directory, if they link against the student's code
+     *
+     * @param sourceHash      the hash of the test sources, from {@link #hashSources(File)}
+     * @param classpath       the jars the tests would be compiled against, the student's first
+     * @param outputDirectory where to write the class files
+     * @return true if the class files were written, false if the tests must be compiled
+     * @throws IOException if the class files couldn't be written
+     */
+    boolean restore(String sourceHash, List<File> classpath, File outputDirectory) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(sourceHash);
+        }
+        if (entry == null) return false;
+
+        try (ClassResolver resolver = new ClassResolver(entry, classpath)) {
+            for (ClassFileInfo testClass : entry.testClasses()) {
+                String problem = resolver.check(testClass);
+                if (problem != null) {
+                    LOGGER.debug("Compiling tests instead of using cached classes: {}", problem);
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            // e.g. the student's jar is missing or corrupt. Compiling reports the problem properly.
+            LOGGER.debug("Compiling tests instead of using cached classes", e);
+            return false;
+        }
+
+        for (Map.Entry<String, byte[]> classFile : entry.classes().entrySet()) {
+            File file = new File(outputDirectory, classFile.getKey());
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), classFile.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Caches tests compiled against the starter code, unless tests with the same sources are already cached
+     *
+     * @param sourceHash      the hash of the test sources, from {@link #hashSources(File)}
+     * @param outputDirectory the directory holding only the compiled tests
+     * @throws IOException if the class files couldn't be read
+     */
+    void store(String sourceHash, File outputDirectory) throws IOException {
+        synchronized (this) {
+            if (entries.containsKey(sourceHash)) return;
+        }
+        Map<String, byte[]> classes = new TreeMap<>();
+        List<ClassFileInfo> testClasses = new ArrayList<>();
+        Path root = outputDirectory.toPath();
+        List<Path> classFiles;
+        try (Stream<Path> files = Files.walk(root)) {
+            classFiles = files.filter(path -> path.toString().endsWith(".class")).toList();
+        }
+        for (Path classFile : classFiles) {
+            byte[] bytes = Files.readAllBytes(classFile);
+            classes.put(root.relativize(classFile).toString(), bytes);
+            testClasses.add(ClassFileInfo.parse(bytes));
+        }
+        synchronized (this) {
+            entries.putIfAbsent(sourceHash, new Entry(classes, testClasses));
+        }
+    }
+
+    /**
+     * Looks up the classes compiled tests link to, in the tests themselves, the classpath jars, and the JDK
+     */
+    private static class ClassResolver implements AutoCloseable {
+        private final Set<String> testClasses = new HashSet<>();
+        private final List<ZipFile> jars = new ArrayList<>();
+        private final Map<String, Optional<ClassFileInfo>> resolved = new HashMap<>();
+
+        private ClassResolver(Entry entry, List<File> classpath) throws IOException {
+            for (ClassFileInfo testClass : entry.testClasses()) {
+                testClasses.add(testClass.name());
+            }
+            try {
+                for (File jar : classpath) {
+                    jars.add(new ZipFile(jar));
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * @param testClass a compiled test class
+         * @return a description of the first reference that won't link, or null if every reference links
+         */
+        private String check(ClassFileInfo testClass) throws IOException {
+            for (String className : testClass.classRefs()) {
+                if (testClasses.contains(className)) continue;
+                Optional<ClassFileInfo> target = resolve(className);
+                if (target.isEmpty()) return testClass.name() + " needs missing class " + className;
+                if (!accessible(target.get().access(), target.get().packageName(), testClass)) {
+                    return testClass.name() + " can't access class " + className;
+                }
+            }
+            for (ClassFileInfo.MemberRef ref : testClass.memberRefs()) {
+                // Members of arrays (clone, length) and of the tests themselves always link
+                if (ref.owner().startsWith("[") || testClasses.contains(ref.owner())) continue;
+                Optional<ClassFileInfo> owner = resolve(ref.owner());
+                if (owner.isEmpty()) return testClass.name() + " needs missing class " + ref.owner();
+                if (!ref.field() && owner.get().isInterface() != ref.interfaceMethod()) {
+                    return testClass.name() + " expects " + ref.owner() + " to " +
+                            (ref.interfaceMethod() ? "be" : "not be") + " an interface";
+                }
+                if (!hasMember(owner.get(), ref, testClass, new HashSet<>())) {
+                    return testClass.name() + " needs missing member " + ref.owner() + "." + ref.name() +
+                            ref.descriptor();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Searches a class, its superclasses and its superinterfaces for an accessible member
+         */
+        private boolean hasMember(ClassFileInfo owner, ClassFileInfo.MemberRef ref, ClassFileInfo from,
+                                  Set<String> visited) throws IOException {
+            if (!visited.add(owner.name())) return false;
+            for (ClassFileInfo.Member member : ref.field() ? owner.fields() : owner.methods()) {
+                if (member.name().equals(ref.name()) && member.descriptor().equals(ref.descriptor())) {
+                    return accessible(member.access(), owner.packageName(), from);
+                }
+            }
+            if (ref.name().equals("<init>")) return false; // Constructors aren't inherited
+
+            List<String> supertypes = new ArrayList<>();
+            if (owner.superName() != null) supertypes.add(owner.superName());
+            supertypes.addAll(owner.interfaces());
+            if (owner.isInterface() && owner.superName() == null) supertypes.add("java/lang/Object");
+            for (String supertype : supertypes) {
+                Optional<ClassFileInfo> superInfo = resolve(supertype);
+                if (superInfo.isPresent() && hasMember(superInfo.get(), ref, from, visited)) return true;
+            }
+            return false;
+        }
+
+        private static boolean accessible(int access, String ownerPackage, ClassFileInfo from) {
+            if (Modifier.isPublic(access) || Modifier.isProtected(access)) return true;
+            return !Modifier.isPrivate(access) && ownerPackage.equals(from.packageName());
+        }
+
+        private Optional<ClassFileInfo> resolve(String className) throws IOException {
+            Optional<ClassFileInfo> cached = resolved.get(className);
+            if (cached != null) return cached;
+
+            Optional<ClassFileInfo> info = Optional.empty();
+            for (ZipFile jar : jars) {
+                ZipEntry entry = jar.getEntry(className + ".class");
+                if (entry != null) {
+                    try (InputStream in = jar.getInputStream(entry)) {
+                        info = Optional.of(ClassFileInfo.parse(in.readAllBytes()));
+                    }
+                    break;
+                }
+            }
+            if (info.isEmpty()) {
+                try {
+                    Class<?> type = Class.forName(className.replace('/', '.'), false,
+                            ClassLoader.getPlatformClassLoader());
+                    info = Optional.of(ClassFileInfo.of(type));
+                } catch (ClassNotFoundException | LinkageError e) {
+                    // Not a JDK class either
+                }
+            }
+            resolved.put(className, info);
+            return info;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (ZipFile jar : jars) {
+                jar.close();
+            }
+        }
+    }
+}
@@ -5,11 +5,13 @@ import edu.byu.cs.autograder.GradingException;
 import edu.byu.cs.dataAccess.DaoService;
 import edu.byu.cs.dataAccess.DataAccessException;
 import edu.byu.cs.model.*;
+import edu.byu.cs.properties.ApplicationProperties;
 import edu.byu.cs.util.PhaseUtils;
 
 import java.io.File;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 public class PreviousPhasePassoffTestGrader extends TestGrader {
@@ -26,7 +28,7 @@ public class PreviousPhasePassoffTestGrader extends TestGrader {
 
     @Override
     protected Set<File> testsToCompile() throws GradingException {
-        return allPreviousPhases((p) -> Set.of(new File("./phases/phase" + PhaseUtils.getPhaseAsString(p))));
+        return allPreviousPhases((p) -> Set.of(new File(gradingContext.stagePhasesPath(), "phase" + PhaseUtils.getPhaseAsString(p))));
     }
 
     @Override
@@ -34,6 +36,11 @@ public class PreviousPhasePassoffTestGrader extends TestGrader {
         return allPreviousPhases(PhaseUtils::passoffPackagesToTest);
     }
 
+    @Override
+    protected Set<String> concurrentPackages() throws GradingException {
+        return allPreviousPhases(p -> PhaseUtils.passoffTestsRunConcurrently(p) ? PhaseUtils.passoffPackagesToTest(p) : Set.of());
+    }
+
     @Override
     protected Set<String> extraCreditTests() throws GradingException {
         return allPreviousPhases(PhaseUtils::extraCreditTests);
@@ -94,4 +101,14 @@ public class PreviousPhasePassoffTestGrader extends TestGrader {
     protected Rubric.RubricType rubricType() {
         return Rubric.RubricType.GRADING_ISSUE;
     }
+
+    /**
+     * Any failure but an extra credit one fails the submission, so there's no need to run the tests after it
+     */
+    @Override
+    protected Map<String, String> configuration() throws GradingException {
+        if (!ApplicationProperties.previousPhaseFailFast()) return Map.of();
+        return Map.of(JUnitWorkerMain.FAIL_FAST, "true",
+                JUnitWorkerMain.FAIL_FAST_EXEMPT, String.join(";", extraCreditTests()));
+    }
 }
@@ -1,21 +1,38 @@
 package edu.byu.cs.autograder.test;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import edu.byu.cs.autograder.GradingException;
 import edu.byu.cs.model.TestAnalysis;
 import edu.byu.cs.model.TestNode;
-import edu.byu.cs.util.FileUtils;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Set;
 
 /**
  * Parses the output of the JUnit Console Runner
  * <b>Important: this class is ONLY compatible with the xml output on the JUnit standalone client</b><br/>
+ * The report is read as a stream, one test case at a time, so a report whose tests printed a lot never has to be
+ * held in memory. Only the display name is kept from a test's output, and only the start of a long failure.
  */
 public class TestAnalyzer {
 
+    /**
+     * How much of a test's failure is kept, the same as a test worker reports
+     */
+    static final int MAX_FAILURE_LENGTH = JUnitWorkerMain.MAX_FAILURE_LENGTH;
+
+    private static final String DISPLAY_NAME_PREFIX = "display-name: ";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
+
     /**
      * Parses the output of the JUnit Console Runner
      *
@@ -24,61 +41,229 @@ public class TestAnalyzer {
      * @return the root of the test tree
      */
     public TestAnalysis parse(File junitXmlOutput, Set<String> extraCreditTests, String error) throws GradingException {
-        TestNode root = new TestNode();
-        root.setTestName("JUnit Jupiter");
-        TestNode extraCredit = new TestNode();
-        extraCredit.setTestName("JUnit Jupiter Extra Credit");
+        return parse(List.of(junitXmlOutput), extraCreditTests, error);
+    }
 
-        if(!junitXmlOutput.exists()) {
-            return compileAnalysis(root, extraCredit, error);
-        }
+    /**
+     * Parses the outputs of several launches of one set of tests into a single tree
+     *
+     * @param junitXmlOutputs  files containing test output. Files that don't exist are skipped.
+     * @param extraCreditTests the names of the test files (excluding .java) worth bonus points. This cannot be null, but can be empty
+     * @return the root of the test tree
+     */
+    public TestAnalysis parse(List<File> junitXmlOutputs, Set<String> extraCreditTests, String error)
+            throws GradingException {
+        TestNode root = newRoot();
+        TestNode extraCredit = newExtraCreditRoot();
 
-        String xml = FileUtils.readStringFromFile(junitXmlOutput);
-        TestSuite suite;
-        try {
-             suite = new XmlMapper().readValue(xml, TestSuite.class);
-        } catch (JsonProcessingException e) {
-            throw new GradingException("Error parsing test output", e);
+        for (File junitXmlOutput : junitXmlOutputs) {
+            if (junitXmlOutput.exists()) addTestCases(junitXmlOutput, extraCreditTests, root, extraCredit);
         }
+        return compileAnalysis(root, extraCredit, error);
+    }
 
-        for (TestSuite.TestCase testCase : suite.getTestcase()) {
-            TestNode base = root;
-            String ecCategory = null;
-            for(String category : extraCreditTests) {
-                if (testCase.getClassname().endsWith(category)) {
-                    ecCategory = category;
-                    base = extraCredit;
-                    break;
+    private void addTestCases(File junitXmlOutput, Set<String> extraCreditTests, TestNode root, TestNode extraCredit)
+            throws GradingException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(junitXmlOutput))) {
+            XMLStreamReader reader;
+            // Not every StAX implementation's factory may create readers from several threads at once
+            synchronized (XML_INPUT_FACTORY) {
+                reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            }
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("testcase")) {
+                        addTestCase(reader, extraCreditTests, root, extraCredit);
+                    }
                 }
+            } finally {
+                reader.close();
             }
+        } catch (IOException | XMLStreamException e) {
+            throw new GradingException("Error parsing test output", e);
+        }
+    }
+
+    /**
+     * Reads a testcase element, from its start to its end, into the tree
+     */
+    private void addTestCase(XMLStreamReader reader, Set<String> extraCreditTests, TestNode root,
+                             TestNode extraCredit) throws XMLStreamException {
+        String className = reader.getAttributeValue(null, "classname");
+        String name = reader.getAttributeValue(null, "name");
+        String displayName = null;
+        String failure = null;
+        String error = null;
 
-            String name = testCase.getName();
-            String[] systemOut = testCase.getSystemOut().getData().split("\n");
-            for(String str : systemOut) {
-                if(str.startsWith("display-name: ")) {
-                    str = str.substring(14);
-                    if(name.contains("()")) name = str;
-                    else name = String.format("%s %s", str, name);
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                if (depth > 1) {
+                    depth++;
+                    continue;
+                }
+                // Each of these is read up to and including its end
+                switch (reader.getLocalName()) {
+                    case "failure" -> failure = readFailure(reader);
+                    case "error" -> error = readFailure(reader);
+                    case "system-out" -> {
+                        DisplayNameScanner scanner = new DisplayNameScanner();
+                        readText(reader, scanner);
+                        if (displayName == null) displayName = scanner.displayName();
+                    }
+                    default -> depth++;
                 }
             }
+        }
 
-            TestNode node = new TestNode();
-            node.setTestName(name);
-            TestNode parent = nodeForClass(base, testCase.getClassname());
-            parent.getChildren().put(name, node);
+        addTestCase(root, extraCredit, extraCreditTests, className, name, displayName,
+                failure != null ? failure : error);
+    }
 
-            node.setPassed(testCase.getFailure() == null);
-            if(testCase.getFailure() != null) {
-                node.setErrorMessage(testCase.getFailure().getData());
+    private static String readFailure(XMLStreamReader reader) throws XMLStreamException {
+        FailureText failure = new FailureText();
+        readText(reader, failure);
+        return failure.toString();
+    }
+
+    /**
+     * Hands the text of the current element to the sink, chunk by chunk, up to the element's end
+     */
+    private static void readText(XMLStreamReader reader, TextSink sink) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> depth++;
+                case XMLStreamConstants.END_ELEMENT -> depth--;
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE ->
+                        sink.accept(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                default -> { }
+            }
+        }
+    }
+
+    /**
+     * Adds a test to the tree under its class
+     *
+     * @param className   the name of the test's class
+     * @param name        the test's name in the XML report, e.g. "pawnCaptureBlack()"
+     * @param displayName the test's display name, or null if it has none
+     * @param failure     the test's failure, or null if it passed
+     * @return the test's node
+     */
+    TestNode addTestCase(TestNode root, TestNode extraCredit, Set<String> extraCreditTests, String className,
+                         String name, String displayName, String failure) {
+        TestNode base = root;
+        String ecCategory = null;
+        for(String category : extraCreditTests) {
+            if (className.endsWith(category)) {
+                ecCategory = category;
+                base = extraCredit;
+                break;
             }
+        }
+
+        if(displayName != null) {
+            if(name.contains("()")) name = displayName;
+            else name = String.format("%s %s", displayName, name);
+        }
+
+        TestNode node = new TestNode();
+        node.setTestName(name);
+        TestNode parent = nodeForClass(base, className);
+        parent.getChildren().put(name, node);
+
+        node.setPassed(failure == null);
+        if(failure != null) {
+            node.setErrorMessage(failure);
+        }
+
+        if(ecCategory != null) {
+            node.setEcCategory(ecCategory);
+            parent.setEcCategory(ecCategory);
+        }
+        return node;
+    }
+
+    private interface TextSink {
+        void accept(char[] text, int start, int length);
+    }
+
+    /**
+     * Keeps the start of a failure, and how much of the rest was dropped
+     */
+    private static class FailureText implements TextSink {
+        private final StringBuilder kept = new StringBuilder();
+        private long omitted;
+
+        @Override
+        public void accept(char[] text, int start, int length) {
+            int keep = Math.min(length, MAX_FAILURE_LENGTH - kept.length());
+            kept.append(text, start, keep);
+            omitted += length - keep;
+        }
 
-            if(ecCategory != null) {
-                node.setEcCategory(ecCategory);
-                parent.setEcCategory(ecCategory);
+        @Override
+        public String toString() {
+            if (omitted == 0) return kept.toString();
+            return kept + "\n[... " + omitted + " characters of the failure omitted ...]";
+        }
+    }
+
+    /**
+     * Finds the first line of a test's output starting with "display-name: " without splitting the output into
+     * lines. Only the display name itself is copied.
+     */
+    private static class DisplayNameScanner implements TextSink {
+        private int matched;
+        private StringBuilder value;
+        private String displayName;
+
+        @Override
+        public void accept(char[] text, int start, int length) {
+            for (int i = start; i < start + length && displayName == null; i++) {
+                char c = text[i];
+                if (c == '\n') {
+                    if (value != null) displayName = value.toString();
+                    matched = 0;
+                } else if (value != null) {
+                    value.append(c);
+                } else if (matched >= 0) {
+                    matched = c == DISPLAY_NAME_PREFIX.charAt(matched) ? matched + 1 : -1;
+                    if (matched == DISPLAY_NAME_PREFIX.length()) value = new StringBuilder();
+                }
             }
         }
 
-        return compileAnalysis(root, extraCredit, error);
+        String displayName() {
+            if (displayName == null && value != null) displayName = value.toString();
+            return displayName;
+        }
+    }
+
+    /**
+     * Reports are written by the launcher and have no DTD; external entities aren't resolved
+     */
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    static TestNode newRoot() {
+        TestNode root = new TestNode();
+        root.setTestName("JUnit Jupiter");
+        return root;
+    }
+
+    static TestNode newExtraCreditRoot() {
+        TestNode extraCredit = new TestNode();
+        extraCredit.setTestName("JUnit Jupiter Extra Credit");
+        return extraCredit;
     }
 
     private TestNode nodeForClass(TestNode base, String name) {
@@ -99,7 +284,7 @@ public class TestAnalyzer {
         else return nodeForClass(node, extra);
     }
 
-    private TestAnalysis compileAnalysis(TestNode root, TestNode extraCredit, String error) {
+    TestAnalysis compileAnalysis(TestNode root, TestNode extraCredit, String error) {
         TestNode.collapsePackages(root);
         TestNode.countTests(root);
         TestNode.collapsePackages(extraCredit);
@@ -0,0 +1,158 @@
+package edu.byu.cs.autograder.test;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+/**
+ * Compiles test sources inside the autograder's JVM with the system Java compiler, instead of starting a javac
+ * process for every set of tests. The direct module build uses it for students' sources too.
+ * <br>
+ * File managers are pooled so concurrent graders each get their own, and are reused between compilations.
+ * Each is closed after a compilation, which releases the jars it opened; javac's file manager reopens what it
+ * needs on its next use, so a student jar rebuilt at the same path is always read fresh.
+ * <br>
+ * Annotation processing is always off, and the processor path is empty. Processors run inside the compiler, and so
+ * inside the autograder, so one a student's code or jar declares could otherwise read anything the autograder can.
+ */
+public class TestCompiler {
+
+    private static final JavaCompiler COMPILER = ToolProvider.getSystemJavaCompiler();
+
+    private static final ConcurrentLinkedQueue<StandardJavaFileManager> FILE_MANAGERS = new ConcurrentLinkedQueue<>();
+
+    /**
+     * A problem javac reported
+     *
+     * @param file    the name of the source file, relative to the directory being compiled, or null if the
+     *                problem isn't in a file
+     * @param line    the line of the problem, or -1 if it has none
+     * @param kind    the kind of problem, e.g. ERROR or WARNING
+     * @param message javac's description of the problem
+     */
+    public record CompilerMessage(String file, long line, Diagnostic.Kind kind, String message) {
+        @Override
+        public String toString() {
+            String location = file == null ? "" : file + (line < 0 ? "" : ":" + line) + ": ";
+            return location + kind.name().toLowerCase(Locale.ROOT) + ": " + message;
+        }
+    }
+
+    /**
+     * @param success     true if every source compiled
+     * @param messages the errors and warnings javac reported
+     */
+    public record Result(boolean success, List<CompilerMessage> messages) {
+        /**
+         * @return the errors, formatted like javac's command line output
+         */
+        public String errors() {
+            StringBuilder errors = new StringBuilder();
+            for (CompilerMessage message : messages) {
+                if (message.kind() == Diagnostic.Kind.ERROR) {
+                    errors.append(message).append('\n');
+                }
+            }
+            return errors.toString();
+        }
+    }
+
+    /**
+     * @return true if this JVM has a Java compiler. A JRE without one falls back to running javac.
+     */
+    public static boolean isAvailable() {
+        return COMPILER != null;
+    }
+
+    /**
+     * Compiles every java file under a directory
+     *
+     * @param sourceDirectory the directory to compile. Like javac run from it, it is also on the classpath.
+     * @param classpath       jars the sources compile against
+     * @param outputDirectory where to write the class files
+     * @return whether compilation succeeded, and what javac reported
+     * @throws IOException if the sources couldn't be listed or the output couldn't be written
+     */
+    public static Result compile(File sourceDirectory, List<File> classpath, File outputDirectory) throws IOException {
+        return compile(sourceDirectory, classpath, outputDirectory, List.of());
+    }
+
+    /**
+     * Compiles every java file under a directory
+     *
+     * @param sourceDirectory the directory to compile. Like javac run from it, it is also on the classpath.
+     * @param classpath       jars and directories the sources compile against
+     * @param outputDirectory where to write the class files
+     * @param options         javac options, e.g. --release 21. -proc:none is added if they don't have it.
+     * @return whether compilation succeeded, and what javac reported
+     * @throws IOException if the sources couldn't be listed or the output couldn't be written
+     */
+    public static Result compile(File sourceDirectory, List<File> classpath, File outputDirectory,
+                                 List<String> options) throws IOException {
+        List<Path> sources;
+        try (Stream<Path> files = Files.walk(sourceDirectory.toPath())) {
+            sources = files.filter(path -> path.toString().endsWith(".java") && Files.isRegularFile(path)).toList();
+        }
+        if (sources.isEmpty()) {
+            return new Result(true, List.of());
+        }
+
+        Files.createDirectories(outputDirectory.toPath());
+        List<File> fullClasspath = new ArrayList<>();
+        fullClasspath.add(sourceDirectory);
+        fullClasspath.addAll(classpath);
+
+        StandardJavaFileManager fileManager = borrowFileManager();
+        try {
+            fileManager.setLocation(StandardLocation.CLASS_PATH, fullClasspath);
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, List.of(outputDirectory));
+            fileManager.setLocation(StandardLocation.ANNOTATION_PROCESSOR_PATH, List.of());
+            List<String> compilerOptions = new ArrayList<>(options);
+            if (!compilerOptions.contains("-proc:none")) compilerOptions.add("-proc:none");
+
+            DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+            // Anything javac prints that isn't a diagnostic, e.g. an annotation processor's output
+            StringWriter otherOutput = new StringWriter();
+            boolean success = COMPILER.getTask(otherOutput, fileManager, collector, compilerOptions, null,
+                    fileManager.getJavaFileObjectsFromPaths(sources)).call();
+
+            List<CompilerMessage> messages = new ArrayList<>();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : collector.getDiagnostics()) {
+                messages.add(convert(diagnostic, sourceDirectory.toPath()));
+            }
+            if (!success && messages.isEmpty() && !otherOutput.toString().isBlank()) {
+                messages.add(new CompilerMessage(null, -1, Diagnostic.Kind.ERROR, otherOutput.toString()));
+            }
+            return new Result(success, messages);
+        } finally {
+            fileManager.close();
+            FILE_MANAGERS.add(fileManager);
+        }
+    }
+
+    private static StandardJavaFileManager borrowFileManager() {
+        StandardJavaFileManager fileManager = FILE_MANAGERS.poll();
+        return fileManager != null ? fileManager : COMPILER.getStandardFileManager(null, Locale.ROOT, null);
+    }
+
+    private static CompilerMessage convert(Diagnostic<? extends JavaFileObject> diagnostic, Path sourceDirectory) {
+        String file = null;
+        JavaFileObject source = diagnostic.getSource();
+        if (source != null && "file".equals(source.toUri().getScheme())) {
+            Path path = Path.of(source.toUri());
+            file = path.startsWith(sourceDirectory) ? sourceDirectory.relativize(path).toString() : path.toString();
+        } else if (source != null) {
+            file = source.getName();
+        }
+        long line = diagnostic.getLineNumber() == Diagnostic.NOPOS ? -1 : diagnostic.getLineNumber();
+        return new CompilerMessage(file, line, diagnostic.getKind(), diagnostic.getMessage(Locale.ROOT));
+    }
+}
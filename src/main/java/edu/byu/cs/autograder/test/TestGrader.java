@@ -13,13 +13,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.Map;
 import java.util.Set;
 
 public abstract class TestGrader {
     private static final Logger LOGGER = LoggerFactory.getLogger(TestGrader.class);
 
     /**
-     * The path where the official tests are stored
+     * The path where this run's copy of the official tests is stored
      */
     protected final File phaseTests;
 
@@ -40,25 +41,31 @@ public abstract class TestGrader {
     public TestGrader(GradingContext gradingContext) {
         this.gradingContext = gradingContext;
         this.stageTestsPath = new File(gradingContext.stagePath() + "/tests");
-        this.phaseTests = new File("./phases/phase" + PhaseUtils.getPhaseAsString(gradingContext.phase()));
+        this.phaseTests = new File(gradingContext.stagePhasesPath(), "phase" + PhaseUtils.getPhaseAsString(gradingContext.phase()));
         this.module = PhaseUtils.getModuleUnderTest(gradingContext.phase());
     }
 
 
     public Rubric.Results runTests() throws GradingException, DataAccessException {
-        compileTests();
+        compileTests(stageTestsPath);
         gradingContext.observer().update("Running " + name() + " tests...");
 
         TestAnalysis results;
-        if (!new File(gradingContext.stagePath(), "tests").exists()) {
-            results = new TestAnalysis(new TestNode(), null, null);
-            TestNode.countTests(results.root());
+        if (!stageTestsPath.exists()) {
+            results = noTests();
         } else {
-            results = new TestHelper().runJUnitTests(new File(gradingContext.stageRepo(),
-                            "/" + module + "/target/" + module + "-test-dependencies.jar"), stageTestsPath,
-                    packagesToTest(), extraCreditTests());
+            results = new TestHelper().runJUnitTests(uberJar(), testSet(stageTestsPath), gradingContext.workspace());
         }
+        return gradeResults(results);
+    }
 
+    /**
+     * Scores the results of this grader's tests, which may have run alongside other graders' tests
+     *
+     * @param results the results of the tests compiled from {@link #testsToCompile()}
+     * @return the rubric results
+     */
+    Rubric.Results gradeResults(TestAnalysis results) throws GradingException, DataAccessException {
         if (results.root() == null) {
             results = new TestAnalysis(new TestNode(), null, results.error());
             TestNode.countTests(results.root());
@@ -83,9 +90,30 @@ public abstract class TestGrader {
         return new Rubric.Results(notes, score, possiblePoints, results, null);
     }
 
-    private void compileTests() throws GradingException {
+    /**
+     * @param testsOutput the directory to write the compiled tests to. It isn't created if there are no tests.
+     */
+    void compileTests(File testsOutput) throws GradingException {
         gradingContext.observer().update("Compiling " + name() + " tests...");
-        testHelper.compileTests(gradingContext.stageRepo(), module, testsToCompile(), gradingContext.stagePath());
+        testHelper.compileTests(gradingContext.stageRepo(), module, testsToCompile(), testsOutput);
+    }
+
+    /**
+     * @return the jar holding the student's code and its dependencies, which the tests run against
+     */
+    File uberJar() {
+        return new File(gradingContext.stageRepo(), "/" + module + "/target/" + module + "-test-dependencies.jar");
+    }
+
+    TestHelper.TestSet testSet(File compiledTests) throws GradingException {
+        return new TestHelper.TestSet(compiledTests, packagesToTest(), concurrentPackages(), extraCreditTests(),
+                configuration(), name(), gradingContext.observer());
+    }
+
+    static TestAnalysis noTests() {
+        TestAnalysis results = new TestAnalysis(new TestNode(), null, null);
+        TestNode.countTests(results.root());
+        return results;
     }
 
     protected abstract String name();
@@ -104,4 +132,18 @@ public abstract class TestGrader {
 
     protected abstract Rubric.RubricType rubricType();
 
+    /**
+     * @return the packages of {@link #packagesToTest()} whose test classes can run at the same time
+     */
+    protected Set<String> concurrentPackages() throws GradingException {
+        return Set.of();
+    }
+
+    /**
+     * @return JUnit configuration parameters for launching this grader's tests
+     */
+    protected Map<String, String> configuration() throws GradingException {
+        return Map.of();
+    }
+
 }
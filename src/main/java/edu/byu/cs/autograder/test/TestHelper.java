@@ -1,9 +1,15 @@
 package edu.byu.cs.autograder.test;
 
 import edu.byu.cs.autograder.GradingException;
+import edu.byu.cs.autograder.GradingObserver;
+import edu.byu.cs.autograder.compile.BuildCache;
+import edu.byu.cs.autograder.resources.ResourceBudget;
+import edu.byu.cs.autograder.resources.Workspace;
 import edu.byu.cs.model.Rubric;
 import edu.byu.cs.model.TestAnalysis;
+import edu.byu.cs.properties.ApplicationProperties;
 import edu.byu.cs.util.FileUtils;
+import edu.byu.cs.util.OutputCapture;
 import edu.byu.cs.util.ProcessUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,10 +17,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.regex.Pattern;
 
 /**
  * A helper class for running common test operations
@@ -23,17 +27,28 @@ public class TestHelper {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TestHelper.class);
 
+    /**
+     * Log lines Spark prints while students' servers run, which aren't useful to students
+     */
+    private static final Pattern SPARK_LINE = Pattern.compile("^\\[(main|Thread-\\d*)] INFO.*$");
+
+    /**
+     * How much of the start and of the end of the tests' output is kept
+     */
+    private static final int MAX_TEST_OUTPUT = ProcessUtils.MAX_OUTPUT;
+
+    private static final long TEST_TIMEOUT = 90000;
+
     /**
      * The path to the standalone JUnit jar
      */
-    private static final String standaloneJunitJarPath;
+    static final String standaloneJunitJarPath;
 
     /**
      * The path to the JUnit Jupiter API jar
      */
     private static final String junitJupiterApiJarPath;
 
-
     static {
         Path libsPath = new File("phases", "libs").toPath();
         try {
@@ -50,51 +65,116 @@ public class TestHelper {
      * @param stageRepoPath     The path to the student's repository
      * @param module            The module to compile
      * @param testsLocations    The location of the tests
-     * @param stagePath         The path to the stage directory
+     * @param testsOutput       The directory the compiled tests are written to
      */
-    void compileTests(File stageRepoPath, String module, Set<File> testsLocations, String stagePath)
+    void compileTests(File stageRepoPath, String module, Set<File> testsLocations, File testsOutput)
             throws GradingException {
         // remove any existing tests
-        FileUtils.removeDirectory(new File(stagePath + "/tests"));
+        FileUtils.removeDirectory(testsOutput);
 
+        File locationOutput = new File(testsOutput.getParentFile(), testsOutput.getName() + "-compiling");
+        BuildCache cache = BuildCache.getInstance();
+        String buildKey = cache == null ? null : buildKey(stageRepoPath);
         try {
             for(File testsLocation : testsLocations) {
                 if (!testsLocation.exists()) continue;
-                /* Find files to compile */
-                List<String> findCommands = getFindCommands();
-
-                ProcessBuilder findProcessBuilder = new ProcessBuilder()
-                        .directory(testsLocation)
-                        .command(findCommands);
-
-                String findOutput = ProcessUtils.runProcess(findProcessBuilder).stdOut().replace("\n", " ");
+                File chessJarWithDeps = new File(stageRepoPath, "/" + module + "/target/" + module + "-test-dependencies.jar")
+                        .getCanonicalFile();
+                List<File> classpath = testClasspath(chessJarWithDeps);
 
-                /* Compile files */
-                String chessJarWithDeps = new File(stageRepoPath, "/" + module + "/target/" + module + "-test-dependencies.jar")
-                        .getCanonicalPath();
-
-                List<String> compileCommands = getCompileCommands(stagePath, chessJarWithDeps);
-
-                ProcessBuilder compileProcessBuilder =
-                        new ProcessBuilder()
-                                .directory(testsLocation)
-                                .command(compileCommands);
-
-                ProcessUtils.ProcessOutput compileOutput = ProcessUtils.runProcess(compileProcessBuilder, findOutput);
+                String sourceHash = PrecompiledTests.hashSources(testsLocation);
+                if (PrecompiledTests.getInstance().restore(sourceHash, classpath, testsOutput)) continue;
+                String testsKey = buildKey == null ? null : BuildCache.testsKey(buildKey, sourceHash);
+                if (testsKey != null && cache.restoreTests(testsKey, testsOutput)) continue;
 
+                // Each location is compiled on its own, as each is restored from the cache on its own
+                FileUtils.removeDirectory(locationOutput);
+                String errors;
+                try (ResourceBudget.Lease ignored = ResourceBudget.getInstance().acquire(ResourceBudget.Stage.TEST_COMPILE)) {
+                    errors = TestCompiler.isAvailable()
+                            ? compileInProcess(testsLocation, classpath, locationOutput)
+                            : compileWithJavac(testsLocation, chessJarWithDeps, locationOutput);
+                }
 
-                if (compileOutput.statusCode() != 0) {
-                    LOGGER.error("Error compiling tests: {}", compileOutput.stdErr());
-                    Rubric.Results results = Rubric.Results.textError("Error compiling tests", compileOutput.stdErr());
+                if (errors != null) {
+                    LOGGER.error("Error compiling tests: {}", errors);
+                    Rubric.Results results = Rubric.Results.textError("Error compiling tests", errors);
                     throw new GradingException(results.notes(), results);
                 }
+                if (locationOutput.exists()) {
+                    if (testsKey != null) cache.storeTests(testsKey, locationOutput);
+                    FileUtils.copyDirectory(locationOutput, testsOutput);
+                }
             }
         } catch (IOException | ProcessUtils.ProcessException e) {
             LOGGER.error("Error compiling tests", e);
             throw new GradingException("Error compiling tests", e);
+        } finally {
+            FileUtils.removeDirectory(locationOutput);
+        }
+    }
+
+    /**
+     * @return the key of the repository's build in the {@link BuildCache}, or null if it can't be computed
+     */
+    private static String buildKey(File stageRepoPath) {
+        try {
+            return BuildCache.key(stageRepoPath);
+        } catch (IOException e) {
+            LOGGER.debug("Couldn't compute the build cache key for {}; compiling tests without the cache", stageRepoPath, e);
+            return null;
         }
     }
 
+    /**
+     * @param moduleJar the jar of the module under test, with its dependencies
+     * @return the jars tests are compiled against
+     */
+    static List<File> testClasspath(File moduleJar) {
+        return List.of(moduleJar, new File(standaloneJunitJarPath), new File(junitJupiterApiJarPath));
+    }
+
+    /**
+     * Compiles tests with the autograder's own Java compiler, avoiding a javac JVM startup
+     *
+     * @return the compile errors, or null if the tests compiled
+     */
+    private static String compileInProcess(File testsLocation, List<File> classpath, File outputDirectory)
+            throws IOException {
+        TestCompiler.Result result = TestCompiler.compile(testsLocation, classpath, outputDirectory);
+        return result.success() ? null : result.errors();
+    }
+
+    /**
+     * Compiles tests by running javac, for when the autograder runs on a JVM without a compiler
+     *
+     * @return the compile errors, or null if the tests compiled
+     */
+    private static String compileWithJavac(File testsLocation, File chessJarWithDeps, File outputDirectory)
+            throws ProcessUtils.ProcessException {
+        /* Find files to compile */
+        List<String> findCommands = getFindCommands();
+
+        ProcessBuilder findProcessBuilder = new ProcessBuilder()
+                .directory(testsLocation)
+                .command(findCommands);
+
+        // The official tests' file list is small and javac needs all of it
+        String findOutput = ProcessUtils.runProcess(findProcessBuilder, OutputCapture.all(), OutputCapture.all())
+                .stdOut().replace("\n", " ");
+
+        /* Compile files */
+        List<String> compileCommands = getCompileCommands(outputDirectory.getPath(), chessJarWithDeps.getPath());
+
+        ProcessBuilder compileProcessBuilder =
+                new ProcessBuilder()
+                        .directory(testsLocation)
+                        .command(compileCommands);
+
+        ProcessUtils.ProcessOutput compileOutput = ProcessUtils.runProcess(compileProcessBuilder, findOutput);
+        return compileOutput.statusCode() == 0 ? null : compileOutput.stdErr();
+    }
+
     private static List<String> getFindCommands() {
         List<String> commands = new ArrayList<>();
         commands.add("find");
@@ -105,55 +185,206 @@ public class TestHelper {
         return commands;
     }
 
-    private static List<String> getCompileCommands(String stagePath, String chessJarWithDeps) {
+    private static List<String> getCompileCommands(String outputDirectory, String chessJarWithDeps) {
         List<String> commands = new ArrayList<>();
         commands.add("xargs");
         commands.add("javac");
+        // Students' jars are on the classpath, and may declare annotation processors
+        commands.add("-proc:none");
         commands.add("-d");
-        commands.add(stagePath + "/tests");
+        commands.add(outputDirectory);
         commands.add("-cp");
         commands.add(".:" + chessJarWithDeps + ":" + standaloneJunitJarPath + ":" + junitJupiterApiJarPath);
         return commands;
     }
 
+    /**
+     * Compiled tests to run, with what is needed to score them
+     *
+     * @param compiledTests      The directory containing the compiled test classes.
+     * @param packagesToTest     A set of packages to test. Example: {"package1", "package2"}
+     * @param concurrentPackages The packages to test whose test classes can run at the same time
+     * @param extraCreditTests   A set of extra credit tests. Example: {"ExtraCreditTest1", "ExtraCreditTest2"}
+     * @param configuration      JUnit configuration parameters for the tests. Fail-fast only applies on a test worker.
+     * @param name               The name of the tests shown to the student, e.g. "passoff"
+     * @param observer           Receives each test's result as it finishes on a test worker, or null
+     */
+    record TestSet(File compiledTests, Set<String> packagesToTest, Set<String> concurrentPackages,
+                   Set<String> extraCreditTests, Map<String, String> configuration, String name,
+                   GradingObserver observer) { }
+
     /**
      * Runs the JUnit tests in the given directory
      *
-     * @param uberJar          The jar file containing the compiled classes to be tested.
-     * @param compiledTests    The directory containing the compiled test classes.
-     * @param packagesToTest   A set of packages to test. Example: {"package1", "package2"}
-     * @param extraCreditTests A set of extra credit tests. Example: {"ExtraCreditTest1", "ExtraCreditTest2"}
+     * @param uberJar   The jar file containing the compiled classes to be tested.
+     * @param tests     The tests to run
+     * @param workspace The workspace leased to the run, whose test worker runs the tests, or null
      * @return A TestNode object containing the results of the tests.
      */
-    TestAnalysis runJUnitTests(File uberJar, File compiledTests, Set<String> packagesToTest,
-                               Set<String> extraCreditTests) throws GradingException {
+    TestAnalysis runJUnitTests(File uberJar, TestSet tests, Workspace workspace) throws GradingException {
+        JUnitWorkerPool workers = workspace == null ? null : JUnitWorkerPool.getInstance();
+        if (workers != null) return runJUnitTests(uberJar, List.of(tests), workspace, workers).getFirst();
+
         // Process cannot handle relative paths or wildcards,
         // so we need to only use absolute paths and find
         // to get the files
 
         String uberJarPath = uberJar.getAbsolutePath();
+        File compiledTests = tests.compiledTests();
+        File testOutputDirectory = new File(compiledTests, "test-output");
 
-        List<String> commands = getRunCommands(packagesToTest, uberJarPath);
+        // A single console launcher can only run everything concurrently or nothing
+        Map<String, String> configuration = new HashMap<>(tests.configuration());
+        if (tests.concurrentPackages().containsAll(tests.packagesToTest())) {
+            configuration.putAll(concurrentConfiguration());
+        }
 
-        ProcessBuilder processBuilder = new ProcessBuilder()
-                .directory(compiledTests)
-                .command(commands);
+        try (ResourceBudget.Lease ignored = ResourceBudget.getInstance().acquire(ResourceBudget.Stage.TEST)) {
+            ProcessBuilder processBuilder = new ProcessBuilder()
+                    .directory(compiledTests)
+                    .command(getRunCommands(tests.packagesToTest(), configuration, uberJarPath));
+            ProcessUtils.ProcessOutput processOutput = ProcessUtils.runProcess(processBuilder, null, TEST_TIMEOUT,
+                    stdOutCapture(), stdErrCapture());
+            return analyze(List.of(testOutputDirectory), tests.extraCreditTests(), processOutput.stdErr());
+        } catch (ProcessUtils.ProcessException e) {
+            LOGGER.error("Error running tests", e);
+            throw new GradingException("Error running tests", e);
+        }
+    }
 
-        try {
-            ProcessUtils.ProcessOutput processOutput = ProcessUtils.runProcess(processBuilder);
-            String error = processOutput.stdErr();
+    /**
+     * Runs several sets of tests in a single launch on the workspace's test worker. Each set runs in its own class
+     * loader, in order, and gets its own report and output, so its results are the same as if it ran alone.
+     * <br>
+     * A set's concurrent packages run first with their test classes spread over a fixed number of threads, then
+     * the rest of its packages one test class at a time, sharing the set's output.
+     * <br>
+     * Each test's result is sent to the set's observer as the test finishes, building the set's results as it goes.
+     * The XML reports are only read if the worker died before it finished.
+     *
+     * @param uberJar   The jar file containing the compiled classes to be tested.
+     * @param testSets  The sets of tests to run
+     * @param workspace The workspace leased to the run
+     * @param workers   The pool holding the workspace's test worker
+     * @return the results of each set, in order, or null for a set that didn't run because a set before it stopped at
+     * its first failure
+     */
+    List<TestAnalysis> runJUnitTests(File uberJar, List<TestSet> testSets, Workspace workspace,
+                                     JUnitWorkerPool workers) throws GradingException {
+        try (ResourceBudget.Lease ignored = ResourceBudget.getInstance().acquire(ResourceBudget.Stage.TEST)) {
+            List<JUnitWorkerPool.Partition> partitions = new ArrayList<>();
+            List<List<File>> reports = new ArrayList<>();
+            List<OutputCapture> stdErrs = new ArrayList<>();
+            List<LiveTestResults> liveResults = new ArrayList<>();
+            List<Integer> firstPartitions = new ArrayList<>();
+            for (TestSet testSet : testSets) {
+                firstPartitions.add(partitions.size());
+                List<File> classpath = List.of(testSet.compiledTests(), uberJar, new File(junitJupiterApiJarPath));
+                OutputCapture stdOut = stdOutCapture();
+                OutputCapture stdErr = stdErrCapture();
+                List<File> setReports = new ArrayList<>();
+                LiveTestResults setResults = new LiveTestResults(testSet.name(), testSet.extraCreditTests(),
+                        testSet.observer());
 
-            TestAnalyzer testAnalyzer = new TestAnalyzer();
-            File testOutputDirectory = new File(compiledTests, "test-output");
-            File junitXmlOutput = new File(testOutputDirectory, "TEST-junit-jupiter.xml");
-            return testAnalyzer.parse(junitXmlOutput, extraCreditTests, removeSparkLines(error));
+                Set<String> concurrent = concurrentPackages(testSet);
+                Set<String> sameThread = new HashSet<>(testSet.packagesToTest());
+                sameThread.removeAll(concurrent);
+                if (!concurrent.isEmpty()) {
+                    Map<String, String> configuration = new HashMap<>(testSet.configuration());
+                    configuration.putAll(concurrentConfiguration());
+                    File reportsDirectory = new File(testSet.compiledTests(), "test-output-concurrent");
+                    partitions.add(new JUnitWorkerPool.Partition(classpath, concurrent, configuration,
+                            reportsDirectory, stdOut, stdErr, setResults));
+                    setReports.add(reportsDirectory);
+                }
+                if (!sameThread.isEmpty()) {
+                    File reportsDirectory = new File(testSet.compiledTests(), "test-output");
+                    partitions.add(new JUnitWorkerPool.Partition(classpath, sameThread, testSet.configuration(),
+                            reportsDirectory, stdOut, stdErr, setResults));
+                    setReports.add(reportsDirectory);
+                }
+                reports.add(setReports);
+                stdErrs.add(stdErr);
+                liveResults.add(setResults);
+            }
+            JUnitWorkerPool.Result result = partitions.isEmpty() ? new JUnitWorkerPool.Result(0, 0)
+                    : workers.run(workspace, partitions, TEST_TIMEOUT * testSets.size());
+
+            List<TestAnalysis> results = new ArrayList<>();
+            for (int i = 0; i < testSets.size(); i++) {
+                boolean hasPartitions = i + 1 < testSets.size() ? firstPartitions.get(i + 1) > firstPartitions.get(i)
+                        : partitions.size() > firstPartitions.get(i);
+                if (hasPartitions && firstPartitions.get(i) >= result.partitionsRun()) {
+                    results.add(null);
+                    continue;
+                }
+                String stdErr = stdErrs.get(i).text();
+                if (result.exitCode() == 0) {
+                    results.add(liveResults.get(i).analysis(stdErr.stripTrailing()));
+                } else {
+                    results.add(analyze(reports.get(i), testSets.get(i).extraCreditTests(), stdErr));
+                }
+            }
+            return results;
         } catch (ProcessUtils.ProcessException e) {
             LOGGER.error("Error running tests", e);
             throw new GradingException("Error running tests", e);
         }
     }
 
-    private static List<String> getRunCommands(Set<String> packagesToTest, String uberJarPath) {
+    /**
+     * @return the packages of the set to run concurrently, or none if a package would be selected by both launches
+     */
+    private static Set<String> concurrentPackages(TestSet testSet) {
+        if (ApplicationProperties.testParallelism() <= 1) return Set.of();
+        Set<String> concurrent = new HashSet<>(testSet.packagesToTest());
+        concurrent.retainAll(testSet.concurrentPackages());
+        for (String packageName : concurrent) {
+            for (String other : testSet.packagesToTest()) {
+                // Selecting a package selects its subpackages too
+                if (concurrent.contains(other)) continue;
+                if (other.startsWith(packageName + ".") || packageName.startsWith(other + ".")) return Set.of();
+            }
+        }
+        return concurrent;
+    }
+
+    /**
+     * Test classes run at the same time on a fixed number of threads, and each class's tests run one at a time
+     */
+    private static Map<String, String> concurrentConfiguration() {
+        return Map.of(
+                "junit.jupiter.execution.parallel.enabled", "true",
+                "junit.jupiter.execution.parallel.mode.default", "same_thread",
+                "junit.jupiter.execution.parallel.mode.classes.default", "concurrent",
+                "junit.jupiter.execution.parallel.config.strategy", "fixed",
+                "junit.jupiter.execution.parallel.config.fixed.parallelism",
+                String.valueOf(ApplicationProperties.testParallelism()));
+    }
+
+    private static TestAnalysis analyze(List<File> testOutputDirectories, Set<String> extraCreditTests, String stdErr)
+            throws GradingException {
+        List<File> junitXmlOutputs = new ArrayList<>();
+        for (File testOutputDirectory : testOutputDirectories) {
+            junitXmlOutputs.add(new File(testOutputDirectory, JUnitWorkerMain.REPORT_NAME));
+        }
+        return new TestAnalyzer().parse(junitXmlOutputs, extraCreditTests, stdErr.stripTrailing());
+    }
+
+    /**
+     * Students' tests may print without end; only the start and end of their output is kept
+     */
+    private static OutputCapture stdOutCapture() {
+        return OutputCapture.bounded(MAX_TEST_OUTPUT, MAX_TEST_OUTPUT);
+    }
+
+    private static OutputCapture stdErrCapture() {
+        return OutputCapture.bounded(MAX_TEST_OUTPUT, MAX_TEST_OUTPUT)
+                .filter(line -> !SPARK_LINE.matcher(line).matches());
+    }
+
+    private static List<String> getRunCommands(Set<String> packagesToTest, Map<String, String> configuration,
+                                               String uberJarPath) {
         List<String> commands = new ArrayList<>();
         commands.add("java");
         commands.add("-jar");
@@ -163,6 +394,7 @@ public class TestHelper {
         commands.add(".:" + uberJarPath + ":" + junitJupiterApiJarPath);
         commands.add("--details=none");
         commands.add("--reports-dir=./test-output");
+        configuration.forEach((key, value) -> commands.add("--config=" + key + "=" + value));
 
         for (String packageToTest : packagesToTest) {
             commands.add("-p");
@@ -170,10 +402,4 @@ public class TestHelper {
         }
         return commands;
     }
-
-    private static String removeSparkLines(String errorOutput) {
-        List<String> lines = new ArrayList<>(Arrays.asList(errorOutput.split("\n")));
-        lines.removeIf(s -> s.matches("^\\[(main|Thread-\\d*)] INFO.*$"));
-        return String.join("\n", lines);
-    }
 }
@@ -0,0 +1,138 @@
+package edu.byu.cs.controller;
+
+import org.eclipse.jetty.websocket.api.Session;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The sessions subscribed to a student's submission, along with the events sent so far for it.
+ * <br>
+ * A session that subscribes after grading has started is sent every event it missed before any new ones,
+ * so clients don't need the grader to wait for them to connect. Replaying and publishing are synchronized
+ * so a subscriber never misses or repeats an event. Messages are handed to the {@link NotificationHub},
+ * so holding the lock never waits on a client.
+ * <br>
+ * Test results are sent as a running tally of each set of tests, so the log keeps only the latest tally of each
+ * set, in the place of the set's first one.
+ */
+public class GradingEventLog {
+
+    /**
+     * The most events kept for replay. A run sends a handful of updates and one tally per set of tests, so this is
+     * only reached by a misbehaving run; the oldest events are dropped first.
+     */
+    static final int MAX_EVENTS = 200;
+
+    static final String TALLY_TYPE = "testResult";
+
+    private final NotificationHub hub;
+
+    private final List<Session> sessions = new ArrayList<>();
+
+    private final List<Map<String, Object>> events = new ArrayList<>();
+
+    private Instant finishedAt;
+
+    public GradingEventLog() {
+        this(NotificationHub.getInstance());
+    }
+
+    GradingEventLog(NotificationHub hub) {
+        this.hub = hub;
+    }
+
+    /**
+     * Sends the session every event published so far and subscribes it to future events
+     *
+     * @param session the session to subscribe
+     * @return false if the session was already subscribed
+     */
+    public synchronized boolean subscribe(Session session) {
+        if (sessions.contains(session)) return false;
+        for (Map<String, Object> event : events) {
+            hub.send(session, event);
+        }
+        sessions.add(session);
+        return true;
+    }
+
+    /**
+     * Records an event of the grading run and sends it to the subscribed sessions
+     *
+     * @param event the message to send
+     */
+    public synchronized void publish(Map<String, Object> event) {
+        if (!replaceTally(event)) {
+            if (events.size() >= MAX_EVENTS) events.removeFirst();
+            events.addLast(event);
+        }
+        broadcast(event);
+    }
+
+    /**
+     * @return true if the event is a tally that replaced the recorded tally of the same set of tests
+     */
+    private boolean replaceTally(Map<String, Object> event) {
+        if (!isTally(event)) return false;
+        for (int i = events.size() - 1; i >= 0; i--) {
+            if (isTally(events.get(i)) && Objects.equals(events.get(i).get("tests"), event.get("tests"))) {
+                events.set(i, event);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isTally(Map<String, Object> event) {
+        return TALLY_TYPE.equals(event.get("type"));
+    }
+
+    /**
+     * Sends a message to the subscribed sessions without recording it, for messages like queue positions
+     * that are only meaningful when they are sent
+     *
+     * @param message the message to send
+     */
+    public synchronized void broadcast(Map<String, Object> message) {
+        sessions.removeIf(session -> !session.isOpen());
+        for (Session session : sessions) {
+            hub.send(session, message);
+        }
+    }
+
+    /**
+     * Forgets the events of a submission that was replaced by a newer one. Subscribers stay subscribed.
+     */
+    public synchronized void restart() {
+        events.clear();
+        finishedAt = null;
+    }
+
+    /**
+     * Marks the grading run as finished. The log is kept for a short while so a client that subscribes late
+     * still receives the results.
+     */
+    public synchronized void finish() {
+        if (finishedAt == null) finishedAt = Instant.now();
+    }
+
+    public synchronized boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    /**
+     * @param cutoff the time before which finished logs are no longer needed
+     * @return true if the run finished before the cutoff
+     */
+    public synchronized boolean finishedBefore(Instant cutoff) {
+        return finishedAt != null && finishedAt.isBefore(cutoff);
+    }
+
+    synchronized List<Map<String, Object>> events() {
+        return List.copyOf(events);
+    }
+}
@@ -0,0 +1,172 @@
+package edu.byu.cs.controller;
+
+import edu.byu.cs.util.Serializer;
+import org.eclipse.jetty.websocket.api.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Delivers websocket messages without blocking the caller.
+ * <br>
+ * Each session has its own bounded outbox, drained in order by a virtual thread, so a slow browser only
+ * delays its own messages and never the grader that sent them. Consecutive queue position updates are
+ * coalesced so only the latest one is sent. A test tally replaces the waiting tally of the same set of tests, in its
+ * place, since it counts everything the earlier one did; a run's many test results never push out its status updates.
+ */
+public class NotificationHub {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationHub.class);
+
+    /**
+     * The most messages waiting for one session. When a session falls this far behind, its oldest
+     * messages are dropped.
+     */
+    static final int MAX_PENDING = 100;
+
+    private static final String COALESCED_TYPE = "queueStatus";
+
+    /**
+     * Queued after a session's last message to close it once everything before it was sent
+     */
+    private static final Map<String, Object> CLOSE = Map.of();
+
+    private static final NotificationHub INSTANCE = new NotificationHub(Executors.newVirtualThreadPerTaskExecutor());
+
+    private final Executor executor;
+
+    private final Map<Session, Outbox> outboxes = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor runs the tasks that drain each outbox
+     */
+    NotificationHub(Executor executor) {
+        this.executor = executor;
+    }
+
+    public static NotificationHub getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues a message to be sent to the session
+     *
+     * @param session the session to send the message to
+     * @param message the message
+     */
+    public void send(Session session, Map<String, Object> message) {
+        outboxes.computeIfAbsent(session, Outbox::new).offer(message);
+    }
+
+    /**
+     * Closes the session after the messages already queued for it are sent
+     *
+     * @param session the session to close
+     */
+    public void close(Session session) {
+        outboxes.computeIfAbsent(session, Outbox::new).offer(CLOSE);
+    }
+
+    /**
+     * Discards the messages waiting for a session that disconnected
+     *
+     * @param session the disconnected session
+     */
+    public void remove(Session session) {
+        outboxes.remove(session);
+    }
+
+    int pending(Session session) {
+        Outbox outbox = outboxes.get(session);
+        return outbox == null ? 0 : outbox.size();
+    }
+
+    private final class Outbox {
+        private final Session session;
+        private final LinkedList<Map<String, Object>> pending = new LinkedList<>();
+        private boolean draining = false;
+
+        private Outbox(Session session) {
+            this.session = session;
+        }
+
+        synchronized void offer(Map<String, Object> message) {
+            if (!replaceTally(message)) {
+                Map<String, Object> last = pending.peekLast();
+                if (last != null && isCoalesced(last) && isCoalesced(message)) {
+                    pending.removeLast();
+                } else if (pending.size() >= MAX_PENDING) {
+                    LOGGER.warn("Dropping websocket message for a session that isn't keeping up");
+                    pending.removeFirst();
+                }
+                pending.addLast(message);
+            }
+
+            if (!draining) {
+                draining = true;
+                executor.execute(this::drain);
+            }
+        }
+
+        synchronized int size() {
+            return pending.size();
+        }
+
+        private void drain() {
+            while (true) {
+                Map<String, Object> message;
+                synchronized (this) {
+                    message = pending.pollFirst();
+                    if (message == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                deliver(message);
+            }
+        }
+
+        private void deliver(Map<String, Object> message) {
+            if (message == CLOSE) {
+                outboxes.remove(session, this);
+                session.close();
+                return;
+            }
+            if (!session.isOpen()) {
+                outboxes.remove(session, this);
+                return;
+            }
+            try {
+                session.getRemote().sendString(Serializer.serialize(message));
+            } catch (Exception e) {
+                LOGGER.warn("Exception thrown while sending: ", e);
+            }
+        }
+
+        /**
+         * @return true if the message is a tally that replaced the waiting tally of the same set of tests
+         */
+        private boolean replaceTally(Map<String, Object> message) {
+            if (!GradingEventLog.isTally(message)) return false;
+            for (ListIterator<Map<String, Object>> it = pending.listIterator(); it.hasNext(); ) {
+                Map<String, Object> waiting = it.next();
+                if (GradingEventLog.isTally(waiting) && Objects.equals(waiting.get("tests"), message.get("tests"))) {
+                    it.set(message);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isCoalesced(Map<String, Object> message) {
+            return COALESCED_TYPE.equals(message.get("type"));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package edu.byu.cs.controller;
 
+import edu.byu.cs.autograder.compile.BuildCache;
 import edu.byu.cs.controller.exception.BadRequestException;
 import edu.byu.cs.controller.netmodel.ApprovalRequest;
 import edu.byu.cs.controller.netmodel.GradeRequest;
@@ -68,12 +69,6 @@ public class SubmissionController {
 
     private static GradeRequest validateAndUnpackRequest(Request req) throws DataAccessException {
         User user = req.session().attribute("user");
-        String netId = user.netId();
-
-        if (DaoService.getQueueDao().isAlreadyInQueue(netId)) {
-            halt(400, "You are already in the queue");
-            return null;
-        }
 
         GradeRequest request;
         try {
@@ -101,10 +96,11 @@ public class SubmissionController {
         String netId = user.netId();
 
         boolean inQueue = SubmissionService.isAlreadyInQueue(netId);
+        int position = inQueue ? SubmissionService.getQueuePosition(netId) : 0;
 
         res.status(200);
 
-        return Serializer.serialize(Map.of("inQueue", inQueue));
+        return Serializer.serialize(Map.of("inQueue", inQueue, "position", position));
     };
 
     public static final Route latestSubmissionForMeGet = (req, res) -> {
@@ -182,7 +178,10 @@ public class SubmissionController {
         res.status(200);
         res.type("application/json");
 
-        return Serializer.serialize(Map.of("currentlyGrading", currentlyGrading, "inQueue", inQueue));
+        Map<String, Object> status = new HashMap<>(Map.of("currentlyGrading", currentlyGrading, "inQueue", inQueue));
+        BuildCache buildCache = BuildCache.getInstance();
+        if (buildCache != null) status.put("buildCache", buildCache.statistics());
+        return Serializer.serialize(status);
     };
 
     public static final Route studentSubmissionsGet = (req, res) -> {
@@ -208,8 +207,35 @@ public class SubmissionController {
         return "{}";
     };
 
+    public static final Route submissionCancelPost = (req, res) -> {
+        User adminUser = req.session().attribute("user");
+        String netId = req.params(":netId");
+
+        try {
+            SubmissionService.cancelSubmission(adminUser.netId(), netId);
+        } catch (BadRequestException e) {
+            halt(400, e.getMessage());
+            return null;
+        } catch (DataAccessException e) {
+            halt(500, e.getMessage());
+            return null;
+        }
+
+        res.status(200);
+        res.type("application/json");
+
+        return Serializer.serialize(Map.of("message", "cancelled the submission from " + netId));
+    };
+
+    public static final Route queueEstimatesGet = (req, res) -> {
+        res.status(200);
+        res.type("application/json");
+
+        return Serializer.serialize(SubmissionService.getQueueEstimates());
+    };
+
     public static final Route submissionsReRunPost = (req, res) -> {
-        SubmissionService.reRunSubmissionsInQueue();
+        SubmissionService.reRunSubmissionsInQueue(Boolean.parseBoolean(req.queryParams("force")));
 
         res.status(200);
         res.type("application/json");
@@ -1,36 +1,125 @@
 package edu.byu.cs.controller;
 
 import edu.byu.cs.autograder.Grader;
+import edu.byu.cs.autograder.scheduling.SchedulingPolicy;
+import edu.byu.cs.autograder.scheduling.WaitTimeEstimator;
+import edu.byu.cs.autograder.scheduling.WaitingQueue;
 import edu.byu.cs.dataAccess.DaoService;
 import edu.byu.cs.dataAccess.DataAccessException;
+import edu.byu.cs.dataAccess.QueueDao;
 import edu.byu.cs.model.QueueItem;
-import org.eclipse.jetty.websocket.api.Session;
+import edu.byu.cs.model.Submission;
+import edu.byu.cs.properties.ApplicationProperties;
+import edu.byu.cs.service.SubmissionService;
+import edu.byu.cs.util.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Map;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Controller for handling the queue of graders
+ * <br>
+ * The queue table is the source of truth for pending work. Each grader thread claims the submission
+ * chosen by the {@link SchedulingPolicy}, holding a lease that is renewed while it grades. Any number
+ * of autograder instances can share the same database; if an instance dies, its leases expire and
+ * another instance picks the submissions back up.
  */
 public class TrafficController {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficController.class);
+
     /**
-     * A map of netIds to sessions that are subscribed to updates for that netId
+     * How long a claim on a submission lasts without being renewed
      */
-    public static final ConcurrentHashMap<String, List<Session>> sessions = new ConcurrentHashMap<>();
+    private static final Duration LEASE_DURATION = Duration.ofMinutes(2);
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(30);
 
     /**
-     * The executor service that runs the graders
+     * How often idle grader threads check the queue for work added by other instances
      */
-    private final ExecutorService executorService = Executors.newFixedThreadPool(1);
+    private static final long IDLE_POLL_MILLIS = 2000;
+
+    /**
+     * How often subscribers are sent progress on submissions graded by other instances
+     */
+    private static final long RELAY_INTERVAL_MILLIS = 2000;
+
+    /**
+     * How often the index of waiting submissions is rebuilt from the queue table, picking up changes
+     * made by other instances and fair share adjustments that drifted
+     */
+    private static final long QUEUE_SYNC_INTERVAL_MILLIS = 15000;
+
+    /**
+     * How long the events of a finished run are kept for clients that subscribe late
+     */
+    private static final Duration FINISHED_RETENTION = Duration.ofMinutes(1);
+
+    /**
+     * A map of netIds to the sessions that are subscribed to updates for that netId and the events sent to them
+     */
+    public static final ConcurrentHashMap<String, GradingEventLog> sessions = new ConcurrentHashMap<>();
 
     private static final TrafficController trafficController = new TrafficController();
 
+    /**
+     * Identifies this instance's claims in the queue
+     */
+    private final String workerId = ManagementFactory.getRuntimeMXBean().getName() + "-" +
+            UUID.randomUUID().toString().substring(0, 8);
+
+    private final SchedulingPolicy schedulingPolicy = SchedulingPolicy.fromName(ApplicationProperties.schedulingPolicy());
+
+    private final WaitingQueue waitingQueue = new WaitingQueue(schedulingPolicy);
+
+    /**
+     * The submissions being graded by this instance and, as of the last sync, by other instances.
+     * Grading started on another instance is assumed to have started when this instance first saw it.
+     */
+    private final Map<String, WaitTimeEstimator.Running> localRuns = new ConcurrentHashMap<>();
+    private final Map<String, WaitTimeEstimator.Running> remoteRuns = new ConcurrentHashMap<>();
+
+    private final Object workAvailable = new Object();
+
+    /**
+     * The netIds of the submissions being graded by this instance
+     */
+    private final Set<String> gradingLocally = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The graders running on this instance, so they can be cancelled when a newer submission supersedes them
+     * or an admin stops them
+     */
+    private final Map<String, Grader> localGraders = new ConcurrentHashMap<>();
+
+    /**
+     * Submissions graded by other instances that local subscribers are waiting on
+     */
+    private final Map<String, QueueItem> relayedItems = new ConcurrentHashMap<>();
+
+    /**
+     * The executor service that runs the graders. Each thread grades one submission at a time;
+     * the stages that launch student JVMs are further limited by the
+     * {@link edu.byu.cs.autograder.resources.ResourceBudget}.
+     */
+    private ExecutorService executorService;
+    private ScheduledExecutorService maintenanceService;
+
+    /**
+     * Set when the grader threads should stop claiming submissions. Cancelling a run interrupts the thread grading
+     * it, so a thread's interrupt flag can't be what stops it.
+     */
+    private volatile boolean stopped = false;
+
     private TrafficController() {
     }
 
@@ -39,47 +128,347 @@ public class TrafficController {
     }
 
     /**
-     * Broadcasts the current queue status to all connected clients.
-     * Each client will be notified of their specific position in the queue.
+     * Starts the grader threads and the background tasks which keep this instance's leases alive
+     * and relay progress from other instances to local subscribers
+     *
+     * @param relayRemoteProgress if subscribers connect to this instance
+     */
+    public synchronized void start(boolean relayRemoteProgress) {
+        if (maintenanceService != null) return;
+
+        int graderThreads = ApplicationProperties.graderThreads();
+        LOGGER.info("Starting {} grader threads as worker {}", graderThreads, workerId);
+        if (graderThreads > 0) {
+            executorService = Executors.newFixedThreadPool(graderThreads);
+            for (int i = 0; i < graderThreads; i++) {
+                executorService.submit(this::gradeFromQueue);
+            }
+        }
+
+        maintenanceService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "queue-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenanceService.scheduleAtFixedRate(this::renewLeases, HEARTBEAT_INTERVAL.toMillis(),
+                HEARTBEAT_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        maintenanceService.scheduleWithFixedDelay(this::syncQueuePeriodically, 0,
+                QUEUE_SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        maintenanceService.scheduleWithFixedDelay(this::purgeFinishedRuns, FINISHED_RETENTION.toMillis(),
+                FINISHED_RETENTION.toMillis(), TimeUnit.MILLISECONDS);
+        if (relayRemoteProgress) {
+            maintenanceService.scheduleWithFixedDelay(this::relayRemoteProgress, RELAY_INTERVAL_MILLIS,
+                    RELAY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Rebuilds the index of waiting submissions from the queue table. Only the students whose
+     * position changed are sent their new position.
+     */
+    public void syncQueue() throws DataAccessException {
+        List<QueueItem> waiting = new ArrayList<>();
+        Set<String> started = new HashSet<>();
+        Instant now = Instant.now();
+        for (QueueItem item : DaoService.getQueueDao().getAll()) {
+            if (!item.started()) {
+                waiting.add(item);
+            } else if (!localRuns.containsKey(item.netId())) {
+                started.add(item.netId());
+                remoteRuns.putIfAbsent(item.netId(), new WaitTimeEstimator.Running(item.phase(), now));
+            }
+        }
+        remoteRuns.keySet().retainAll(started);
+        sendPositions(waitingQueue.sync(waiting, now));
+    }
+
+    private void syncQueuePeriodically() {
+        try {
+            syncQueue();
+        } catch (Exception e) {
+            LOGGER.error("Error syncing the grading queue", e);
+        }
+    }
+
+    /**
+     * Adds a submission this instance put in the queue table to the index of waiting submissions,
+     * and tells the students behind it their new position
+     *
+     * @param item the waiting submission
+     */
+    public void queued(QueueItem item) {
+        sendPositions(waitingQueue.add(item, Instant.now()));
+    }
+
+    /**
+     * Removes a submission that is no longer waiting from the index of waiting submissions,
+     * and tells the students behind it their new position
+     *
+     * @param netId the student whose submission is no longer waiting
+     */
+    public void dequeued(String netId) {
+        sendPositions(waitingQueue.remove(netId));
+    }
+
+    /**
+     * @param netId the student
+     * @return the student's 1-based position in line, or 0 if they have no submission waiting
+     */
+    public int queuePosition(String netId) {
+        return waitingQueue.position(netId);
+    }
+
+    /**
+     * Sends a student their current position in line, e.g. when they first subscribe
+     *
+     * @param netId the student
      */
-    public static void broadcastQueueStatus() throws DataAccessException {
+    public void sendQueueStatus(String netId) {
+        int position = waitingQueue.position(netId);
+        if (position > 0) sendPositions(Map.of(netId, position));
+    }
 
-        List<QueueItem> usersWaitingInQueue = new ArrayList<>();
-        for (QueueItem item : DaoService.getQueueDao().getAll())
-            if (!item.started())
-                usersWaitingInQueue.add(item);
+    /**
+     * @return how many submissions can be graded at once. Other instances may be grading too, so this is
+     * at least the number of submissions being graded.
+     */
+    public int workerCount() {
+        return Math.max(ApplicationProperties.graderThreads(), localRuns.size() + remoteRuns.size());
+    }
 
-        usersWaitingInQueue.sort(Comparator.comparing(QueueItem::timeAdded));
+    /**
+     * @return when each waiting submission is expected to start and finish grading, in the order they
+     * will be graded
+     */
+    public Map<String, WaitTimeEstimator.Estimate> estimates() {
+        List<WaitTimeEstimator.Running> running = new ArrayList<>(localRuns.values());
+        running.addAll(remoteRuns.values());
+        return WaitTimeEstimator.getInstance().estimate(waitingQueue.inOrder(), running, workerCount(), Instant.now());
+    }
 
-        int i = 1;
-        for (QueueItem item : usersWaitingInQueue) {
-            getInstance().notifySubscribers(item.netId(), Map.of(
+    private void sendPositions(Map<String, Integer> positions) {
+        if (positions.isEmpty()) return;
+        int total = waitingQueue.size();
+        Map<String, WaitTimeEstimator.Estimate> estimates = estimates();
+        positions.forEach((netId, position) -> {
+            Map<String, Object> message = new HashMap<>(Map.of(
                     "type", "queueStatus",
-                    "position", i,
-                    "total", usersWaitingInQueue.size()
+                    "position", position,
+                    "total", total
             ));
-            i++;
+            WaitTimeEstimator.Estimate estimate = estimates.get(netId);
+            if (estimate != null) {
+                message.put("estimatedStart", estimate.start());
+                message.put("estimatedCompletion", estimate.completion());
+            }
+            notifySubscribers(netId, message);
+        });
+    }
+
+    /**
+     * Wakes idle grader threads after a submission was added to the queue
+     */
+    public void notifyWorkAvailable() {
+        synchronized (workAvailable) {
+            workAvailable.notifyAll();
         }
     }
 
     /**
-     * Adds a grader to the queue. The grader will be run when there is an available thread
+     * Claims the waiting submission the scheduling policy ranks highest. Other instances may claim
+     * submissions at the same time, so each is tried in order until a claim succeeds. If none can be
+     * claimed, submissions abandoned by crashed workers are reclaimed oldest first.
+     * <br>
+     * When nothing is waiting locally, the index is synced first so submissions added through other
+     * instances are graded in policy order too.
      *
-     * @param grader the grader to add
+     * @return the claimed submission, or null if there is nothing to grade
+     */
+    private QueueItem claimNext() throws DataAccessException {
+        QueueDao queueDao = DaoService.getQueueDao();
+        if (waitingQueue.size() == 0) syncQueue();
+        for (QueueItem item : waitingQueue.inOrder()) {
+            QueueItem claimed = queueDao.claim(item.netId(), workerId, LEASE_DURATION);
+            dequeued(item.netId());
+            if (claimed != null) return claimed;
+        }
+        QueueItem claimed = queueDao.claimNext(workerId, LEASE_DURATION);
+        if (claimed != null) dequeued(claimed.netId());
+        return claimed;
+    }
+
+    /**
+     * Stops the grader threads from claiming more submissions. Submissions being graded are finished first.
      */
-    public void addGrader(Grader grader) {
-        executorService.submit(grader);
+    public synchronized void stop() {
+        stopped = true;
+        notifyWorkAvailable();
+        if (executorService != null) executorService.shutdown();
     }
 
+    private void gradeFromQueue() {
+        while (!stopped) {
+            QueueItem item = null;
+            try {
+                item = claimNext();
+            } catch (DataAccessException e) {
+                LOGGER.error("Error claiming submission from queue", e);
+            }
 
-    public void notifySubscribers(String netId, Map<String, Object> message) {
-        List<Session> sessionList = sessions.get(netId);
+            if (item == null) {
+                try {
+                    synchronized (workAvailable) {
+                        if (!stopped) workAvailable.wait(IDLE_POLL_MILLIS);
+                    }
+                } catch (InterruptedException e) {
+                    LOGGER.debug("Grader thread was interrupted while waiting for work", e);
+                }
+                continue;
+            }
+
+            grade(item);
+        }
+    }
+
+    private void grade(QueueItem item) {
+        gradingLocally.add(item.netId());
+        localRuns.put(item.netId(), new WaitTimeEstimator.Running(item.phase(), Instant.now()));
+        remoteRuns.remove(item.netId());
+        try {
+            Grader grader = SubmissionService.getGrader(item, workerId);
+            if (grader != null) {
+                localGraders.put(item.netId(), grader);
+                grader.run();
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error grading submission for {}", item.netId(), e);
+        } finally {
+            localGraders.remove(item.netId());
+            localRuns.remove(item.netId());
+            gradingLocally.remove(item.netId());
+            // A cancelled grader may leave this thread interrupted; it still has more submissions to grade
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Cancels the grading of a submission on this instance, if it is being graded here.
+     * Instances grading a submission elsewhere notice at their next heartbeat that their claim was released.
+     *
+     * @param netId  the student whose submission should stop being graded
+     * @param reason why the run was cancelled
+     * @return true if the submission was being graded on this instance
+     */
+    public boolean cancelLocal(String netId, String reason) {
+        Grader grader = localGraders.get(netId);
+        if (grader == null) return false;
+        LOGGER.info("Cancelling grading run for {}: {}", netId, reason);
+        grader.cancel(reason);
+        return true;
+    }
 
-        if (sessionList == null) return;
-        for (Session session : sessionList) {
-            if (session.isOpen()) {
-                WebSocketController.send(session, message);
+    private void renewLeases() {
+        if (gradingLocally.isEmpty()) return;
+        try {
+            Collection<String> held = DaoService.getQueueDao().renewLeases(workerId, LEASE_DURATION);
+            for (String netId : gradingLocally) {
+                if (!held.contains(netId)) cancelLocal(netId, "claim was released");
             }
+        } catch (Exception e) {
+            LOGGER.error("Error renewing queue leases", e);
         }
     }
+
+    /**
+     * Sends local subscribers the progress of submissions being graded by another instance.
+     * Detailed updates are only available from the instance doing the grading, so subscribers
+     * are told when grading starts and are sent the results once the submission leaves the queue.
+     */
+    private void relayRemoteProgress() {
+        try {
+            boolean queueChanged = false;
+            for (Map.Entry<String, GradingEventLog> entry : sessions.entrySet()) {
+                String netId = entry.getKey();
+                if (gradingLocally.contains(netId) || entry.getValue().isFinished()) {
+                    relayedItems.remove(netId);
+                    continue;
+                }
+
+                QueueItem item = DaoService.getQueueDao().get(netId);
+                QueueItem previous = item == null ? relayedItems.remove(netId) : relayedItems.put(netId, item);
+                if (item == null) {
+                    if (previous != null) {
+                        relayFinished(netId, previous);
+                        queueChanged = true;
+                    }
+                } else if (item.started() && (previous == null || !previous.started())) {
+                    publish(netId, Map.of("type", "started"));
+                    queueChanged = true;
+                }
+            }
+            relayedItems.keySet().retainAll(sessions.keySet());
+            if (queueChanged) syncQueue();
+        } catch (Exception e) {
+            LOGGER.error("Error relaying grading progress", e);
+        }
+    }
+
+    private void relayFinished(String netId, QueueItem item) throws DataAccessException {
+        Submission submission = DaoService.getSubmissionDao().getLastSubmissionForUser(netId);
+        if (submission != null && !submission.timestamp().isBefore(item.timeAdded())) {
+            publish(netId, Map.of("type", "results", "results", Serializer.serialize(submission)));
+        } else {
+            publish(netId, Map.of("type", "error",
+                    "message", "Grading finished without results. Try submitting again or come see a TA"));
+        }
+        finish(netId);
+    }
+
+    /**
+     * Starts a new event log for a submission added to the queue
+     *
+     * @param netId the student who submitted
+     */
+    public void openRun(String netId) {
+        sessions.put(netId, new GradingEventLog());
+    }
+
+    /**
+     * Marks a student's grading run as finished. Its events stay available to late subscribers for
+     * {@link #FINISHED_RETENTION}.
+     *
+     * @param netId the student whose run finished
+     */
+    public void finish(String netId) {
+        GradingEventLog log = sessions.get(netId);
+        if (log != null) log.finish();
+    }
+
+    private void purgeFinishedRuns() {
+        Instant cutoff = Instant.now().minus(FINISHED_RETENTION);
+        sessions.values().removeIf(log -> log.finishedBefore(cutoff));
+    }
+
+    /**
+     * Records an event of a student's grading run and sends it to their subscribers.
+     * Clients that subscribe later are sent it too.
+     *
+     * @param netId   the student the event is for
+     * @param message the event
+     */
+    public void publish(String netId, Map<String, Object> message) {
+        GradingEventLog log = sessions.get(netId);
+        if (log != null) log.publish(message);
+    }
+
+    /**
+     * Sends a message to a student's subscribers without recording it
+     *
+     * @param netId   the student the message is for
+     * @param message the message
+     */
+    public void notifySubscribers(String netId, Map<String, Object> message) {
+        GradingEventLog log = sessions.get(netId);
+        if (log != null) log.broadcast(message);
+    }
 }
@@ -1,10 +1,11 @@
 package edu.byu.cs.controller;
 
+import edu.byu.cs.dataAccess.DaoService;
 import edu.byu.cs.dataAccess.DataAccessException;
 import edu.byu.cs.util.JwtUtils;
-import edu.byu.cs.util.Serializer;
 import org.eclipse.jetty.websocket.api.CloseException;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketError;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
@@ -23,6 +24,11 @@ public class WebSocketController {
             LOGGER.error("WebSocket error: ", t);
     }
 
+    @OnWebSocketClose
+    public void onClose(Session session, int statusCode, String reason) {
+        NotificationHub.getInstance().remove(session);
+    }
+
     @OnWebSocketMessage
     public void onMessage(Session session, String message) {
         String netId;
@@ -32,41 +38,44 @@ public class WebSocketController {
             LOGGER.warn("Exception thrown while validating token: ", e);
 
             sendError(session, "Invalid token");
-            session.close();
+            NotificationHub.getInstance().close(session);
             return;
         }
 
-        if (!TrafficController.sessions.containsKey(netId)) {
-            sendError(session, "You are not in the queue");
-            session.close();
-            return;
+        GradingEventLog log = TrafficController.sessions.get(netId);
+        if (log == null) {
+            // The submission may have been made through another instance of the autograder
+            boolean inQueue;
+            try {
+                inQueue = DaoService.getQueueDao().isAlreadyInQueue(netId);
+            } catch (DataAccessException e) {
+                LOGGER.error("Error checking queue", e);
+                inQueue = false;
+            }
+            if (!inQueue) {
+                sendError(session, "You are not in the queue");
+                NotificationHub.getInstance().close(session);
+                return;
+            }
+            log = TrafficController.sessions.computeIfAbsent(netId, k -> new GradingEventLog());
         }
 
-        if (TrafficController.sessions.get(netId).contains(session))
+        // Sends the session everything it missed since grading started
+        if (!log.subscribe(session))
             return;
 
-        TrafficController.sessions.get(netId).add(session);
-        try {
-            TrafficController.broadcastQueueStatus();
-        } catch (DataAccessException e) {
-            LOGGER.error("Error broadcasting queue status", e);
-            throw new RuntimeException("Error broadcasting queue status", e);
-        }
+        TrafficController.getInstance().sendQueueStatus(netId);
     }
 
     /**
-     * Sends a message to the given session
+     * Sends a message to the given session. The message is queued and the method returns without
+     * waiting for the client to receive it.
      *
      * @param session the session to send the message to
      * @param message the message
      */
     public static void send(Session session, Map<String, Object> message) {
-        String jsonMessage = Serializer.serialize(message);
-        try {
-            session.getRemote().sendString(jsonMessage);
-        } catch (Exception e) {
-            LOGGER.warn("Exception thrown while sending: ", e);
-        }
+        NotificationHub.getInstance().send(session, message);
     }
 
     /**
@@ -2,6 +2,7 @@ package edu.byu.cs.dataAccess;
 
 import edu.byu.cs.model.QueueItem;
 
+import java.time.Duration;
 import java.util.Collection;
 
 public interface QueueDao {
@@ -13,11 +14,45 @@ public interface QueueDao {
     void add(QueueItem item) throws DataAccessException;
 
     /**
-     * Removes the next item from the queue
+     * Atomically claims the oldest item that is waiting to be graded, or whose worker stopped renewing its lease.
+     * The claimed item is marked as started and leased to the worker. No two workers, on this or any other
+     * autograder instance, can hold a lease on the same item at once.
      *
-     * @return the next item in the queue
+     * @param workerId the id of the claiming worker
+     * @param lease    how long the claim lasts unless renewed
+     * @return the claimed item, or null if there is nothing to grade
      */
-    QueueItem pop() throws DataAccessException;
+    QueueItem claimNext(String workerId, Duration lease) throws DataAccessException;
+
+    /**
+     * Atomically claims a specific item, if it is waiting to be graded or its worker stopped renewing its lease
+     *
+     * @param netId    the netId of the item to claim
+     * @param workerId the id of the claiming worker
+     * @param lease    how long the claim lasts unless renewed
+     * @return the claimed item, or null if the item is gone or another worker holds it
+     */
+    QueueItem claim(String netId, String workerId, Duration lease) throws DataAccessException;
+
+    /**
+     * Extends the lease on every item claimed by the worker
+     *
+     * @param workerId the id of the worker
+     * @param lease    how long the claims last from now unless renewed again
+     * @return the netIds of the items the worker still holds. Items missing from the result were
+     * superseded or reclaimed, and the worker should stop grading them.
+     */
+    Collection<String> renewLeases(String workerId, Duration lease) throws DataAccessException;
+
+    /**
+     * Replaces an item with a newer submission for the same student, keeping its place in the queue. The newer
+     * submission's time replaces the old one's, since it is the hand in date the submission is graded by. If the item was being graded, the worker's claim is released and the item waits to be graded again.
+     *
+     * @param item the newer submission
+     * @return true if the student's item for the same phase was replaced, or false if the student has no such item,
+     * e.g. because it finished grading after it was read
+     */
+    boolean supersede(QueueItem item) throws DataAccessException;
 
     /**
      * Removes an item from the queue
@@ -26,6 +61,14 @@ public interface QueueDao {
      */
     void remove(String netId) throws DataAccessException;
 
+    /**
+     * Removes an item from the queue, if the worker still holds a claim on it
+     *
+     * @param netId    the netId of the item to remove
+     * @param workerId the id of the worker
+     */
+    void removeClaimed(String netId, String workerId) throws DataAccessException;
+
     /**
      * Gets all items in the queue
      *
@@ -48,8 +91,21 @@ public interface QueueDao {
      */
     void markStarted(String netId) throws DataAccessException;
 
+    /**
+     * Returns an item to the waiting state, releasing any worker's claim on it
+     *
+     * @param netId the netId of the item to mark
+     */
     void markNotStarted(String netId) throws DataAccessException;
 
+    /**
+     * Returns every item whose claim has lapsed to the waiting state. Items whose worker is still renewing its lease
+     * are left alone.
+     *
+     * @return how many items were released
+     */
+    int releaseExpiredClaims() throws DataAccessException;
+
     /**
      * Gets an item from the queue
      *
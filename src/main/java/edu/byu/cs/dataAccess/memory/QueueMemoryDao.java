@@ -3,68 +3,138 @@ package edu.byu.cs.dataAccess.memory;
 import edu.byu.cs.dataAccess.QueueDao;
 import edu.byu.cs.model.QueueItem;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
 
 public class QueueMemoryDao implements QueueDao {
     private final List<QueueItem> queue = new ArrayList<>();
+
+    private record Lease(String workerId, Instant expires) { }
+
+    private final Map<String, Lease> leases = new HashMap<>();
+
     @Override
-    public void add(QueueItem item) {
+    public synchronized void add(QueueItem item) {
         queue.add(item);
     }
 
     @Override
-    public QueueItem pop() {
-        if (queue.isEmpty()) {
+    public synchronized QueueItem claimNext(String workerId, Duration lease) {
+        Instant now = Instant.now();
+        QueueItem next = queue.stream()
+                .filter(item -> isClaimable(item, now))
+                .min(Comparator.comparing(QueueItem::queuedAt))
+                .orElse(null);
+        if (next == null) {
             return null;
         }
-        QueueItem item = queue.getFirst();
-        queue.removeFirst();
-        return item;
+        leases.put(next.netId(), new Lease(workerId, now.plus(lease)));
+        return replace(next.netId(), true);
     }
 
     @Override
-    public void remove(String netId) {
-        queue.removeIf(item -> item.netId().equals(netId));
+    public synchronized QueueItem claim(String netId, String workerId, Duration lease) {
+        Instant now = Instant.now();
+        QueueItem item = get(netId);
+        if (item == null || !isClaimable(item, now)) {
+            return null;
+        }
+        leases.put(netId, new Lease(workerId, now.plus(lease)));
+        return replace(netId, true);
     }
 
-    @Override
-    public Collection<QueueItem> getAll() {
-        return queue;
+    private boolean isClaimable(QueueItem item, Instant now) {
+        Lease lease = leases.get(item.netId());
+        return !item.started() || lease == null || lease.expires().isBefore(now);
     }
 
     @Override
-    public boolean isAlreadyInQueue(String netId) {
-        return queue.stream().anyMatch(item -> item.netId().equals(netId));
+    public synchronized Collection<String> renewLeases(String workerId, Duration lease) {
+        Instant expires = Instant.now().plus(lease);
+        leases.replaceAll((netId, current) ->
+                current.workerId().equals(workerId) ? new Lease(workerId, expires) : current);
+        return leases.entrySet().stream()
+                .filter(entry -> entry.getValue().workerId().equals(workerId))
+                .map(Map.Entry::getKey)
+                .toList();
     }
 
     @Override
-    public void markStarted(String netId) {
+    public synchronized boolean supersede(QueueItem item) {
         for (int i = 0; i < queue.size(); i++) {
-            if (queue.get(i).netId().equals(netId)) {
-                QueueItem oldItem = queue.get(i);
-                QueueItem newItem = new QueueItem(oldItem.netId(), oldItem.phase(), oldItem.timeAdded(), true);
-                queue.set(i, newItem);
-                return;
+            QueueItem oldItem = queue.get(i);
+            if (oldItem.netId().equals(item.netId()) && oldItem.phase() == item.phase()) {
+                leases.remove(item.netId());
+                queue.set(i, new QueueItem(oldItem.netId(), item.phase(), item.timeAdded(), false,
+                        item.repoUrl(), item.admin(), oldItem.queuedAt()));
+                return true;
             }
         }
+        return false;
+    }
+
+    @Override
+    public synchronized void remove(String netId) {
+        queue.removeIf(item -> item.netId().equals(netId));
+        leases.remove(netId);
+    }
+
+    @Override
+    public synchronized void removeClaimed(String netId, String workerId) {
+        Lease lease = leases.get(netId);
+        if (lease != null && lease.workerId().equals(workerId)) {
+            remove(netId);
+        }
+    }
+
+    @Override
+    public synchronized Collection<QueueItem> getAll() {
+        return new ArrayList<>(queue);
+    }
+
+    @Override
+    public synchronized boolean isAlreadyInQueue(String netId) {
+        return queue.stream().anyMatch(item -> item.netId().equals(netId));
     }
 
     @Override
-    public void markNotStarted(String netId) {
+    public synchronized void markStarted(String netId) {
+        replace(netId, true);
+    }
+
+    @Override
+    public synchronized void markNotStarted(String netId) {
+        leases.remove(netId);
+        replace(netId, false);
+    }
+
+    @Override
+    public synchronized int releaseExpiredClaims() {
+        Instant now = Instant.now();
+        List<String> expired = queue.stream()
+                .filter(item -> item.started() && isClaimable(item, now))
+                .map(QueueItem::netId)
+                .toList();
+        expired.forEach(this::markNotStarted);
+        return expired.size();
+    }
+
+    private QueueItem replace(String netId, boolean started) {
         for (int i = 0; i < queue.size(); i++) {
             if (queue.get(i).netId().equals(netId)) {
                 QueueItem oldItem = queue.get(i);
-                QueueItem newItem = new QueueItem(oldItem.netId(), oldItem.phase(), oldItem.timeAdded(), false);
+                QueueItem newItem = new QueueItem(oldItem.netId(), oldItem.phase(), oldItem.timeAdded(), started,
+                        oldItem.repoUrl(), oldItem.admin(), oldItem.queuedAt());
                 queue.set(i, newItem);
-                return;
+                return newItem;
             }
         }
+        return null;
     }
 
     @Override
-    public QueueItem get(String netId) {
+    public synchronized QueueItem get(String netId) {
         return queue.stream().filter(item -> item.netId().equals(netId)).findFirst().orElse(null);
     }
 }
@@ -7,8 +7,12 @@ import edu.byu.cs.dataAccess.sql.helpers.SqlReader;
 import edu.byu.cs.model.Phase;
 import edu.byu.cs.model.QueueItem;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
 
 public class QueueSqlDao implements QueueDao {
@@ -18,13 +22,22 @@ public class QueueSqlDao implements QueueDao {
             new ColumnDefinition<QueueItem>("phase", q -> q.phase().name()),
             new ColumnDefinition<QueueItem>("started", QueueItem::started),
             new ColumnDefinition<QueueItem>("time_added", QueueItem::timeAdded),
+            new ColumnDefinition<QueueItem>("repo_url", QueueItem::repoUrl),
+            new ColumnDefinition<QueueItem>("admin", QueueItem::admin),
+            new ColumnDefinition<QueueItem>("queued_at", QueueItem::queuedAt),
     };
     private static QueueItem readQueueItem(ResultSet rs) throws SQLException {
+        Instant timeAdded = rs.getTimestamp("time_added").toInstant();
+        // Items queued by an autograder version without the column took their place in line when they were made
+        Timestamp queuedAt = rs.getTimestamp("queued_at");
         return new QueueItem(
                 rs.getString("net_id"),
                 Phase.valueOf(rs.getString("phase")),
-                rs.getTimestamp("time_added").toInstant(),
-                rs.getBoolean("started")
+                timeAdded,
+                rs.getBoolean("started"),
+                rs.getString("repo_url"),
+                rs.getBoolean("admin"),
+                queuedAt == null ? timeAdded : queuedAt.toInstant()
         );
     }
 
@@ -36,26 +49,118 @@ public class QueueSqlDao implements QueueDao {
         sqlReader.insertItem(item);
     }
 
+    /**
+     * Items whose lease has expired are reclaimed. Items marked started without a lease were
+     * started by an autograder version that didn't lease work, and are reclaimed as well.
+     */
     @Override
-    public QueueItem pop() throws DataAccessException {
-        try (var connection = SqlDb.getConnection();
-            var statement = connection.prepareStatement(
-                    """
-                            DELETE FROM %s
-                            WHERE net_id = (
+    public QueueItem claimNext(String workerId, Duration lease) throws DataAccessException {
+        try (Connection connection = SqlDb.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                String netId;
+                try (var statement = connection.prepareStatement(
+                        """
                                 SELECT net_id
-                                FROM %1$s
-                                ORDER BY time_added
+                                FROM %s
+                                WHERE NOT COALESCE(started, FALSE) OR lease_expires IS NULL OR lease_expires < NOW()
+                                ORDER BY COALESCE(queued_at, time_added)
                                 LIMIT 1
-                            )
-                            """.formatted(sqlReader.getTableName()))) {
-            var topItems = sqlReader.readItems(statement);
-            return sqlReader.expectOneItem(topItems);
-        } catch (Exception e) {
-            throw new DataAccessException("Error popping item from queue", e);
+                                FOR UPDATE SKIP LOCKED
+                                """.formatted(sqlReader.getTableName()));
+                     var resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        connection.commit();
+                        return null;
+                    }
+                    netId = resultSet.getString("net_id");
+                }
+
+                try (var statement = connection.prepareStatement(
+                        """
+                                UPDATE %s
+                                SET started = TRUE, worker_id = ?, lease_expires = TIMESTAMPADD(SECOND, ?, NOW())
+                                WHERE net_id = ?
+                                """.formatted(sqlReader.getTableName()))) {
+                    statement.setString(1, workerId);
+                    statement.setLong(2, lease.toSeconds());
+                    statement.setString(3, netId);
+                    statement.executeUpdate();
+                }
+
+                QueueItem item;
+                try (var statement = connection.prepareStatement(sqlReader.selectAllStmt("WHERE net_id = ?"))) {
+                    statement.setString(1, netId);
+                    item = sqlReader.expectOneItem(sqlReader.readItems(statement));
+                }
+                connection.commit();
+                return item;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Error claiming item from queue", e);
         }
     }
 
+    @Override
+    public QueueItem claim(String netId, String workerId, Duration lease) throws DataAccessException {
+        int claimed = sqlReader.executeUpdate(
+                """
+                        UPDATE %s
+                        SET started = TRUE, worker_id = ?, lease_expires = TIMESTAMPADD(SECOND, ?, NOW())
+                        WHERE net_id = ?
+                        AND (NOT COALESCE(started, FALSE) OR lease_expires IS NULL OR lease_expires < NOW())
+                        """.formatted(sqlReader.getTableName()),
+                ps -> {
+                    ps.setString(1, workerId);
+                    ps.setLong(2, lease.toSeconds());
+                    ps.setString(3, netId);
+                }
+        );
+        return claimed == 1 ? get(netId) : null;
+    }
+
+    @Override
+    public Collection<String> renewLeases(String workerId, Duration lease) throws DataAccessException {
+        sqlReader.executeUpdate(
+                """
+                    UPDATE %s
+                    SET lease_expires = TIMESTAMPADD(SECOND, ?, NOW())
+                    WHERE worker_id = ? AND started = TRUE
+                    """.formatted(sqlReader.getTableName()),
+                ps -> {
+                    ps.setLong(1, lease.toSeconds());
+                    ps.setString(2, workerId);
+                }
+        );
+        return sqlReader.executeQuery(
+                "WHERE worker_id = ? AND started = TRUE",
+                ps -> ps.setString(1, workerId)
+        ).stream().map(QueueItem::netId).toList();
+    }
+
+    @Override
+    public boolean supersede(QueueItem item) throws DataAccessException {
+        int superseded = sqlReader.executeUpdate(
+                """
+                    UPDATE %s
+                    SET queued_at = COALESCE(queued_at, time_added), time_added = ?, repo_url = ?, admin = ?,
+                        started = FALSE, worker_id = NULL, lease_expires = NULL
+                    WHERE net_id = ? AND phase = ?
+                    """.formatted(sqlReader.getTableName()),
+                ps -> {
+                    ps.setTimestamp(1, Timestamp.from(item.timeAdded()));
+                    ps.setString(2, item.repoUrl());
+                    ps.setBoolean(3, item.admin());
+                    ps.setString(4, item.netId());
+                    ps.setString(5, item.phase().name());
+                }
+        );
+        return superseded == 1;
+    }
+
     @Override
     public void remove(String netId) throws DataAccessException {
         sqlReader.executeUpdate(
@@ -67,6 +172,20 @@ public class QueueSqlDao implements QueueDao {
         );
     }
 
+    @Override
+    public void removeClaimed(String netId, String workerId) throws DataAccessException {
+        sqlReader.executeUpdate(
+                """
+                    DELETE FROM %s
+                    WHERE net_id = ? AND worker_id = ?
+                    """.formatted(sqlReader.getTableName()),
+                ps -> {
+                    ps.setString(1, netId);
+                    ps.setString(2, workerId);
+                }
+        );
+    }
+
     @Override
     public Collection<QueueItem> getAll() throws DataAccessException {
         return sqlReader.executeQuery("");
@@ -87,7 +206,26 @@ public class QueueSqlDao implements QueueDao {
 
     @Override
     public void markNotStarted(String netId) throws DataAccessException {
-        updatedStartedField(netId, false);
+        sqlReader.executeUpdate(
+                """
+                     UPDATE %s
+                     SET started = FALSE, worker_id = NULL, lease_expires = NULL
+                     WHERE net_id = ?
+                     """.formatted(sqlReader.getTableName()),
+                ps -> ps.setString(1, netId)
+        );
+    }
+
+    @Override
+    public int releaseExpiredClaims() throws DataAccessException {
+        return sqlReader.executeUpdate(
+                """
+                     UPDATE %s
+                     SET started = FALSE, worker_id = NULL, lease_expires = NULL
+                     WHERE started = TRUE AND (lease_expires IS NULL OR lease_expires < NOW())
+                     """.formatted(sqlReader.getTableName()),
+                null
+        );
     }
 
     private void updatedStartedField(String netId, boolean started) throws DataAccessException {
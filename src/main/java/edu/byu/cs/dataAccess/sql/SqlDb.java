@@ -7,6 +7,8 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
@@ -77,10 +79,20 @@ public class SqlDb {
                                 `phase` VARCHAR(9) NOT NULL,
                                 `time_added` DATETIME NOT NULL,
                                 `started` BOOL,
+                                `repo_url` VARCHAR(200),
+                                `admin` BOOL NOT NULL DEFAULT FALSE,
+                                `worker_id` VARCHAR(100),
+                                `lease_expires` DATETIME,
+                                `queued_at` DATETIME,
                                 PRIMARY KEY (`net_id`)
                             ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
                         """);
             }
+            addColumnIfMissing(connection, "queue", "repo_url", "VARCHAR(200)");
+            addColumnIfMissing(connection, "queue", "admin", "BOOL NOT NULL DEFAULT FALSE");
+            addColumnIfMissing(connection, "queue", "worker_id", "VARCHAR(100)");
+            addColumnIfMissing(connection, "queue", "lease_expires", "DATETIME");
+            addColumnIfMissing(connection, "queue", "queued_at", "DATETIME");
             try (Statement createRubricConfigTableStatement = connection.createStatement()) {
                 createRubricConfigTableStatement.executeUpdate("""
                         CREATE TABLE IF NOT EXISTS `rubric_config` (
@@ -121,6 +133,28 @@ public class SqlDb {
         }
     }
 
+    /**
+     * Adds a column to a table created by an earlier version of the autograder
+     */
+    private static void addColumnIfMissing(Connection connection, String table, String column, String definition)
+            throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("""
+                SELECT COUNT(*)
+                FROM information_schema.COLUMNS
+                WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? AND COLUMN_NAME = ?
+                """)) {
+            ps.setString(1, DB_NAME);
+            ps.setString(2, table);
+            ps.setString(3, column);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) return;
+            }
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE `" + table + "` ADD COLUMN `" + column + "` " + definition);
+        }
+    }
+
     public static Connection getConnection() throws DataAccessException {
         try {
             Connection connection = DriverManager.getConnection(CONNECTION_STRING, DB_USER, DB_PASSWORD);
@@ -282,8 +282,9 @@ public class SqlReader <T> {
      *
      * @param statement The string statement to prepare
      * @param statementPreparer A method that finishes preparing the statement (usually be filling wildcards)
+     * @return The number of rows affected
      */
-    public void executeUpdate(
+    public int executeUpdate(
             @NonNull String statement,
             @Nullable StatementPreparer statementPreparer
     ) throws DataAccessException {
@@ -292,7 +293,7 @@ public class SqlReader <T> {
                 PreparedStatement ps = connection.prepareStatement(statement)
         ) {
             if (statementPreparer != null) statementPreparer.prepare(ps);
-            ps.executeUpdate();
+            return ps.executeUpdate();
         } catch (Exception e) {
             throw new DataAccessException("Error executing update", e);
         }
@@ -2,11 +2,32 @@ package edu.byu.cs.model;
 
 import java.time.Instant;
 
+/**
+ * A submission waiting to be graded, or being graded
+ *
+ * @param netId     the netId of the student
+ * @param phase     the phase to grade
+ * @param timeAdded when the submission was made. Used as the hand in date.
+ * @param started   whether a worker has claimed the submission
+ * @param repoUrl   the repository to grade
+ * @param admin     whether this is an admin submission
+ * @param queuedAt  when the submission took its place in line. A submission that supersedes an earlier one keeps
+ *                  the earlier one's place, so this can be before timeAdded.
+ */
 public record QueueItem(
         String netId,
         Phase phase,
         Instant timeAdded,
-        boolean started
+        boolean started,
+        String repoUrl,
+        boolean admin,
+        Instant queuedAt
 ) {
 
+    /**
+     * A submission that takes its place in line when it is made
+     */
+    public QueueItem(String netId, Phase phase, Instant timeAdded, boolean started, String repoUrl, boolean admin) {
+        this(netId, phase, timeAdded, started, repoUrl, admin, timeAdded);
+    }
 }
@@ -71,4 +71,123 @@ public class ApplicationProperties {
     public static boolean runCompilation() {
         return Boolean.parseBoolean(get("run-compilation", "true"));
     }
+
+    /**
+     * @return the number of submissions that may be graded at the same time
+     */
+    public static int graderThreads() {
+        return Integer.parseInt(get("grader-threads", "1"));
+    }
+
+    /**
+     * @return the number of student JVMs (maven, javac, junit, checkstyle) that may run at the same time.
+     * Defaults to the number of grader threads.
+     */
+    public static int maxStudentJvms() {
+        return Integer.parseInt(get("max-student-jvms", String.valueOf(graderThreads())));
+    }
+
+    /**
+     * @return true if this instance only grades submissions from the shared queue, without serving the web app
+     */
+    public static boolean graderOnly() {
+        return Boolean.parseBoolean(get("grader-only", "false"));
+    }
+
+    /**
+     * @return the name of the policy ordering the grading queue, either "fair" or "fifo"
+     */
+    public static String schedulingPolicy() {
+        return get("scheduling-policy", "fair");
+    }
+
+    /**
+     * @return the local maven repository grading builds share. It is warmed at startup so builds can run offline.
+     */
+    public static String mavenRepository() {
+        return get("maven-repository", "maven-repository");
+    }
+
+    /**
+     * @return true to run each grading run's tests on a test runner JVM started with the run, rather than starting
+     * a JVM for every test grader
+     */
+    public static boolean junitWorkers() {
+        return Boolean.parseBoolean(get("junit-workers", "true"));
+    }
+
+    /**
+     * @return true to compile every test grader's tests up front and run them in one launch on the run's test
+     * runner JVM, rather than one launch per grader
+     */
+    public static boolean combinedTests() {
+        return Boolean.parseBoolean(get("combined-tests", "true"));
+    }
+
+    /**
+     * @return true to stop the previous phases' tests at the first failure, which fails the submission anyway
+     */
+    public static boolean previousPhaseFailFast() {
+        return Boolean.parseBoolean(get("previous-phase-fail-fast", "true"));
+    }
+
+    /**
+     * @return how many test classes of side-effect free passoff tests run at once. 1 runs them one at a time.
+     */
+    public static int testParallelism() {
+        return Integer.parseInt(get("test-parallelism", "2"));
+    }
+
+    /**
+     * @return the directory holding recent builds, so identical code isn't built again
+     */
+    public static String buildCache() {
+        return get("build-cache", "build-cache");
+    }
+
+    /**
+     * @return how much disk in MB the build cache may use, or 0 to turn it off
+     */
+    public static int buildCacheMb() {
+        return Integer.parseInt(get("build-cache-mb", "2048"));
+    }
+
+    /**
+     * @return true to build students' modules with the autograder's own compiler when the maven repository is warm,
+     * falling back to maven for anything that doesn't build that way
+     */
+    public static boolean directBuild() {
+        return Boolean.parseBoolean(get("direct-build", "true"));
+    }
+
+
+    /**
+     * @return a copy of the starter code, built with the canonical poms, to precompile the official tests against at
+     * startup, or null to compile the tests for every submission
+     */
+    public static String starterCode() {
+        return get("starter-code", null);
+    }
+
+    /**
+     * @return the delegated cgroup v2 directory to create a cgroup in for each grading run,
+     * or null to run student code without memory and CPU caps
+     */
+    public static String cgroupRoot() {
+        return get("cgroup-root", null);
+    }
+
+    /**
+     * @return the memory cap in megabytes for everything one grading run launches, or 0 for no cap
+     */
+    public static long cgroupMemoryMb() {
+        return Long.parseLong(get("cgroup-memory-mb", "2048"));
+    }
+
+    /**
+     * @return how many cores' worth of CPU time one grading run may use, or 0 for no cap
+     */
+    public static double cgroupCpus() {
+        return Double.parseDouble(get("cgroup-cpus", "2"));
+    }
 }
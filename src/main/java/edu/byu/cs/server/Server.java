@@ -84,6 +84,10 @@ public class Server {
                     get("/student/:netId", provider.studentSubmissionsGet());
 
                     post("/rerun", provider.submissionsReRunPost());
+
+                    post("/cancel/:netId", provider.submissionCancelPost());
+
+                    get("/estimates", provider.queueEstimatesGet());
                 });
 
                 get("/test_mode", provider.testModeGet());
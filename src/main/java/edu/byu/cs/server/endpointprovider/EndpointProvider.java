@@ -55,6 +55,8 @@ public interface EndpointProvider {
     Route studentSubmissionsGet();
     Route approveSubmissionPost();
     Route submissionsReRunPost();
+    Route submissionCancelPost();
+    Route queueEstimatesGet();
 
     // UserController
 
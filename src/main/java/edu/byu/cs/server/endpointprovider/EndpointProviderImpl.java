@@ -192,6 +192,16 @@ public class EndpointProviderImpl implements EndpointProvider {
         return SubmissionController.submissionsReRunPost;
     }
 
+    @Override
+    public Route submissionCancelPost() {
+        return SubmissionController.submissionCancelPost;
+    }
+
+    @Override
+    public Route queueEstimatesGet() {
+        return SubmissionController.queueEstimatesGet;
+    }
+
     // UserController
 
     @Override
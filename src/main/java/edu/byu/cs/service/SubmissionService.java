@@ -4,8 +4,10 @@ import edu.byu.cs.autograder.Grader;
 import edu.byu.cs.autograder.GradingException;
 import edu.byu.cs.autograder.GradingObserver;
 import edu.byu.cs.autograder.GradingObserverImpl;
+import edu.byu.cs.autograder.scheduling.WaitTimeEstimator;
 import edu.byu.cs.controller.exception.BadRequestException;
 import edu.byu.cs.controller.exception.InternalServerException;
+import edu.byu.cs.controller.GradingEventLog;
 import edu.byu.cs.controller.TrafficController;
 import edu.byu.cs.controller.netmodel.ApprovalRequest;
 import edu.byu.cs.controller.netmodel.GradeRequest;
@@ -52,24 +54,38 @@ public class SubmissionService {
         startGrader(netId, request.phase(), request.repoUrl(), true);
     }
 
-    private static void startGrader(String netId, Phase phase, String repoUrl, boolean adminSubmission) throws DataAccessException, BadRequestException, InternalServerException {
-        QueueItem qItem = new QueueItem(netId, phase, Instant.now(), false);
-        DaoService.getQueueDao().add(qItem);
-
-        TrafficController.sessions.put(netId, new ArrayList<>());
-
-        try {
-            Grader grader = getGrader(netId, phase, repoUrl, adminSubmission);
-
-            TrafficController.getInstance().addGrader(grader);
+    /**
+     * Adds a submission to the queue. If the student already has a submission for the same phase in the queue,
+     * the new submission takes its place in line and the old one is dropped. An old submission that is being
+     * graded is cancelled, since only the newest commit matters.
+     */
+    private static void startGrader(String netId, Phase phase, String repoUrl, boolean adminSubmission) throws DataAccessException, BadRequestException {
+        QueueDao queueDao = DaoService.getQueueDao();
+        QueueItem qItem = new QueueItem(netId, phase, Instant.now(), false, repoUrl, adminSubmission);
 
-        } catch (IllegalArgumentException e) {
-            LOGGER.error("Invalid phase", e);
-            throw new BadRequestException("Invalid phase", e);
-        } catch (Exception e) {
-            LOGGER.error("Error starting grader", e);
-            throw new InternalServerException("Error starting grader", e);
+        QueueItem existing = queueDao.get(netId);
+        if (existing != null && existing.phase() != phase) {
+            throw new BadRequestException("You are already in the queue for " + existing.phase());
+        }
+        // The old submission may leave the queue between reading and replacing it, in which case this one is
+        // queued as a new submission
+        if (existing != null && queueDao.supersede(qItem)) {
+            LOGGER.info("Submission from {} for phase {} supersedes the one already in the queue", netId, phase);
+            TrafficController.sessions.computeIfAbsent(netId, k -> new GradingEventLog()).restart();
+            TrafficController.getInstance().queued(new QueueItem(netId, phase, qItem.timeAdded(), false,
+                    repoUrl, adminSubmission, existing.queuedAt()));
+            // It may also have been claimed since it was read; a grader that isn't running here notices when its
+            // lease can't be renewed
+            TrafficController.getInstance().cancelLocal(netId, "superseded by a newer submission");
+            TrafficController.getInstance().publish(netId, Map.of("type", "update",
+                    "message", "A newer submission replaced the one in the queue. Your latest commit will be graded."));
+        } else {
+            TrafficController.getInstance().openRun(netId);
+            queueDao.add(qItem);
+            TrafficController.getInstance().queued(qItem);
         }
+
+        TrafficController.getInstance().notifyWorkAvailable();
     }
 
     private static void assertHasNewCommits(User user, Phase phase) throws DataAccessException, BadRequestException {
@@ -105,6 +121,14 @@ public class SubmissionService {
         return mostRecent;
     }
 
+    /**
+     * @param netId the student
+     * @return the student's 1-based position in line, or 0 if they have no submission waiting
+     */
+    public static int getQueuePosition(String netId) {
+        return TrafficController.getInstance().queuePosition(netId);
+    }
+
     public static boolean isAlreadyInQueue(String netId) throws DataAccessException {
         return DaoService.getQueueDao().isAlreadyInQueue(netId);
     }
@@ -180,43 +204,132 @@ public class SubmissionService {
     }
 
     /**
-     * Creates a grader for the given request with an observer that sends messages to the subscribed sessions
+     * Creates a grader for a claimed queue item with an observer that sends messages to the subscribed sessions.
+     * If no grader can be created, the subscribers are notified and the item is removed from the queue.
      *
-     * @param netId           the netId of the user
-     * @param phase           the phase to grade
-     * @param adminSubmission if the grader should run in admin mode
-     * @return the grader
-     * @throws IOException if there is an error creating the grader
+     * @param queueItem the claimed queue item
+     * @param workerId  the worker holding the claim
+     * @return the grader, or null if the item can't be graded
      */
-    private static Grader getGrader(String netId, Phase phase, String repoUrl, boolean adminSubmission) throws IOException, GradingException {
-        GradingObserver observer = new GradingObserverImpl(netId);
-        return new Grader(repoUrl, netId, observer, phase, adminSubmission);
+    public static Grader getGrader(QueueItem queueItem, String workerId) throws DataAccessException {
+        GradingObserver observer = new GradingObserverImpl(queueItem.netId(), workerId);
+        String repoUrl = queueItem.repoUrl();
+        boolean admin = queueItem.admin();
+        if (repoUrl == null) {
+            // Queued by an earlier version of the autograder, which didn't store the repo
+            User user = DaoService.getUserDao().getUser(queueItem.netId());
+            repoUrl = user != null ? user.repoUrl() : null;
+            admin = user != null && user.role() == User.Role.ADMIN;
+        }
+        if (repoUrl == null) {
+            observer.notifyError("No repository to grade");
+            return null;
+        }
+
+        try {
+            return new Grader(repoUrl, queueItem.netId(), observer, queueItem.phase(), admin);
+        } catch (IOException | GradingException e) {
+            LOGGER.error("Error starting grader for {}", queueItem.netId(), e);
+            observer.notifyError(e.getMessage());
+            return null;
+        }
     }
 
     /**
-     * Takes any submissions currently in the queue and reruns them through the grader.
-     * Used if the queue got stuck or if the server crashed while submissions were
-     * waiting in the queue.
+     * Removes a student's submission from the queue, stopping the grading run if it has started.
+     * A run on this instance is stopped right away; a run on another instance stops at its next heartbeat.
+     *
+     * @param adminNetId the admin cancelling the run
+     * @param netId      the student whose submission should be cancelled
      */
-    public static void reRunSubmissionsInQueue() throws IOException, DataAccessException, GradingException {
+    public static void cancelSubmission(String adminNetId, String netId) throws DataAccessException, BadRequestException {
         QueueDao queueDao = DaoService.getQueueDao();
-        UserDao userDao = DaoService.getUserDao();
-        Collection<QueueItem> inQueue = queueDao.getAll();
+        QueueItem item = queueDao.get(netId);
+        if (item == null) {
+            throw new BadRequestException(netId + " has no submission in the queue");
+        }
 
-        for (QueueItem queueItem : inQueue) {
-            User currentUser = userDao.getUser(queueItem.netId());
-            if (currentUser.repoUrl() != null) {
-                queueDao.markNotStarted(queueItem.netId());
+        LOGGER.info("{} cancelled the {} submission from {}", adminNetId, item.phase(), netId);
+        queueDao.remove(netId);
+        TrafficController.getInstance().cancelLocal(netId, "cancelled by " + adminNetId);
 
-                TrafficController.getInstance().addGrader(
-                        getGrader(queueItem.netId(),
-                                queueItem.phase(),
-                                currentUser.repoUrl(),
-                                currentUser.role() == User.Role.ADMIN));
-            } else {
-                queueDao.remove(queueItem.netId());
+        TrafficController.getInstance().publish(netId, Map.of("type", "error",
+                "message", "Grading was cancelled by a TA. Come see a TA if you have questions"));
+        TrafficController.getInstance().finish(netId);
+        TrafficController.getInstance().dequeued(netId);
+    }
+
+    /**
+     * Summarizes how long grading takes and when each waiting submission is expected to be graded,
+     * for deciding when more grader capacity is needed
+     *
+     * @return the worker count, the recent durations of each phase and its stages, and the estimate
+     * for each waiting submission
+     */
+    public static Map<String, Object> getQueueEstimates() {
+        WaitTimeEstimator estimator = WaitTimeEstimator.getInstance();
+        Map<String, Object> phases = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            int samples = estimator.samples(phase);
+            if (samples == 0) continue;
+            Map<String, Long> stageSeconds = new LinkedHashMap<>();
+            estimator.expectedStageDurations(phase).forEach((stage, duration) ->
+                    stageSeconds.put(stage.name(), duration.toSeconds()));
+            Map<String, Long> stageCpuSeconds = new LinkedHashMap<>();
+            Map<String, Long> stagePeakMemoryMb = new LinkedHashMap<>();
+            estimator.expectedStageUsage(phase).forEach((stage, usage) -> {
+                stageCpuSeconds.put(stage.name(), usage.cpuTime().toSeconds());
+                stagePeakMemoryMb.put(stage.name(), usage.peakRssBytes() / (1024 * 1024));
+            });
+            phases.put(phase.name(), Map.of(
+                    "samples", samples,
+                    "averageSeconds", estimator.expectedDuration(phase).toSeconds(),
+                    "stageSeconds", stageSeconds,
+                    "stageCpuSeconds", stageCpuSeconds,
+                    "stagePeakMemoryMb", stagePeakMemoryMb));
+        }
+
+        List<Map<String, Object>> queue = new ArrayList<>();
+        int position = 1;
+        for (Map.Entry<String, WaitTimeEstimator.Estimate> entry : TrafficController.getInstance().estimates().entrySet()) {
+            queue.add(Map.of(
+                    "netId", entry.getKey(),
+                    "position", position++,
+                    "estimatedStart", entry.getValue().start(),
+                    "estimatedCompletion", entry.getValue().completion()));
+        }
+
+        return Map.of(
+                "workers", TrafficController.getInstance().workerCount(),
+                "phases", phases,
+                "queue", queue);
+    }
+
+    /**
+     * Returns stuck submissions to the queue so they are graded again. Used if the queue got stuck.
+     * Only claims whose lease has lapsed are released, since a worker still renewing its lease is grading the
+     * submission. Submissions abandoned by a crashed instance are also picked back up automatically once their
+     * leases expire.
+     * <br>
+     * A forced re-run releases every claim. Graders on this instance are cancelled first; graders on other instances
+     * stop at their next heartbeat, when they find their claim gone.
+     *
+     * @param force true to re-run submissions that are still being graded
+     */
+    public static void reRunSubmissionsInQueue(boolean force) throws DataAccessException {
+        QueueDao queueDao = DaoService.getQueueDao();
+        if (force) {
+            for (QueueItem queueItem : queueDao.getAll()) {
+                if (!queueItem.started()) continue;
+                TrafficController.getInstance().cancelLocal(queueItem.netId(), "re-run by an admin");
+                queueDao.markNotStarted(queueItem.netId());
             }
+        } else {
+            int released = queueDao.releaseExpiredClaims();
+            LOGGER.info("Released {} stuck submissions from the queue", released);
         }
+        TrafficController.getInstance().syncQueue();
+        TrafficController.getInstance().notifyWorkAvailable();
     }
 
 }
@@ -0,0 +1,91 @@
+package edu.byu.cs.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a process's output line by line like {@link java.io.BufferedReader#readLine()}, but never holds more than a
+ * fixed number of characters of one line. A longer line keeps its start, followed by a note of how many characters
+ * were omitted, so a program that prints without line breaks can't fill the heap before its output is captured.
+ */
+public class BoundedLineReader implements Closeable {
+
+    /**
+     * How many characters of a line are kept by default
+     */
+    public static final int MAX_LINE_LENGTH = 256 * 1024;
+
+    private final Reader in;
+    private final int maxLineLength;
+
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+
+    /**
+     * Set after a carriage return, so a line feed right after it doesn't end another line
+     */
+    private boolean skipLineFeed = false;
+
+    public BoundedLineReader(Reader in) {
+        this(in, MAX_LINE_LENGTH);
+    }
+
+    /**
+     * @param in            the output to read
+     * @param maxLineLength how many characters of each line to keep
+     */
+    public BoundedLineReader(Reader in, int maxLineLength) {
+        this.in = in;
+        this.maxLineLength = maxLineLength;
+    }
+
+    /**
+     * @return the next line without its terminator, or null at the end of the output
+     * @throws IOException if the output couldn't be read
+     */
+    public String readLine() throws IOException {
+        StringBuilder line = null;
+        long omitted = 0;
+        while (true) {
+            if (position >= limit) {
+                position = 0;
+                limit = Math.max(0, in.read(buffer, 0, buffer.length));
+                if (limit == 0) return line == null ? null : finish(line, omitted);
+            }
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+            if (line == null) line = new StringBuilder();
+
+            int start = position;
+            while (position < limit && buffer[position] != '\n' && buffer[position] != '\r') {
+                position++;
+            }
+            int keep = Math.min(position - start, maxLineLength - line.length());
+            line.append(buffer, start, keep);
+            omitted += position - start - keep;
+
+            if (position < limit) {
+                skipLineFeed = buffer[position] == '\r';
+                position++;
+                return finish(line, omitted);
+            }
+        }
+    }
+
+    private static String finish(StringBuilder line, long omitted) {
+        if (omitted > 0) line.append("[... ").append(omitted).append(" characters of this line omitted ...]");
+        return line.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
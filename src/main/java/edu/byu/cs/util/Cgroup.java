@@ -0,0 +1,124 @@
+package edu.byu.cs.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A cgroup v2 that caps the memory and CPU of every process launched into it.
+ * <br>
+ * The parent directory must be a cgroup delegated to the user running the autograder, with the memory and cpu
+ * controllers enabled in its cgroup.subtree_control. Processes join the cgroup before they start the real command,
+ * so everything they fork is capped and counted too.
+ */
+public class Cgroup implements AutoCloseable {
+
+    private static final long CPU_PERIOD_MICROS = 100_000;
+
+    private final Path path;
+
+    private Cgroup(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Creates a cgroup
+     *
+     * @param parent      the delegated cgroup to create it in
+     * @param name        the name of the new cgroup
+     * @param memoryMaxMb the memory cap in megabytes, or 0 for no cap. Swap is disabled when memory is capped.
+     * @param cpus        how many cores' worth of CPU time the processes may use, or 0 for no cap
+     * @return the new cgroup
+     * @throws IOException if the cgroup couldn't be created or configured
+     */
+    public static Cgroup create(Path parent, String name, long memoryMaxMb, double cpus) throws IOException {
+        Path path = parent.resolve(name);
+        Files.createDirectories(path);
+        Cgroup cgroup = new Cgroup(path);
+        try {
+            if (memoryMaxMb > 0) {
+                cgroup.write("memory.max", String.valueOf(memoryMaxMb * 1024 * 1024));
+                if (Files.exists(path.resolve("memory.swap.max"))) {
+                    cgroup.write("memory.swap.max", "0");
+                }
+            }
+            if (cpus > 0) {
+                cgroup.write("cpu.max", Math.round(cpus * CPU_PERIOD_MICROS) + " " + CPU_PERIOD_MICROS);
+            }
+        } catch (IOException e) {
+            cgroup.close();
+            throw e;
+        }
+        return cgroup;
+    }
+
+    /**
+     * @param command a command to run
+     * @return a command that moves itself into this cgroup and then runs the given command
+     */
+    List<String> wrap(List<String> command) {
+        List<String> wrapped = new ArrayList<>(List.of("/bin/sh", "-c",
+                "echo $$ > \"$0\" && exec \"$@\"", path.resolve("cgroup.procs").toString()));
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    /**
+     * @return the CPU time used by every process that has run in the cgroup, and the cgroup's peak memory
+     * if the kernel reports it
+     */
+    public ResourceUsage usage() {
+        Duration cpuTime = Duration.ZERO;
+        long peakBytes = 0;
+        try {
+            for (String line : Files.readAllLines(path.resolve("cpu.stat"))) {
+                if (line.startsWith("usage_usec ")) {
+                    cpuTime = Duration.ofNanos(Long.parseLong(line.substring("usage_usec ".length()).trim()) * 1000);
+                }
+            }
+            Path peak = path.resolve("memory.peak");
+            if (Files.exists(peak)) {
+                peakBytes = Long.parseLong(Files.readString(peak).trim());
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Report what could be read
+        }
+        return new ResourceUsage(cpuTime, peakBytes);
+    }
+
+    /**
+     * Kills anything still running in the cgroup and removes it
+     */
+    @Override
+    public void close() {
+        try {
+            if (Files.exists(path.resolve("cgroup.kill"))) {
+                write("cgroup.kill", "1");
+            }
+            // The kernel refuses to remove a cgroup until its processes are gone
+            for (int attempt = 0; attempt < 10; attempt++) {
+                try {
+                    Files.deleteIfExists(path);
+                    return;
+                } catch (IOException e) {
+                    Thread.sleep(100);
+                }
+            }
+        } catch (IOException e) {
+            // Leave the empty cgroup behind; it holds no resources
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    private void write(String file, String value) throws IOException {
+        Files.writeString(path.resolve(file), value);
+    }
+}
@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
@@ -176,6 +177,51 @@ public class FileUtils {
         }
     }
 
+    /**
+     * Copies a class file out of the autograder into a new temporary directory, so the class can be run in a JVM
+     * on some other classpath. The class files of its nested classes are copied along with it.
+     *
+     * @param type the class to copy
+     * @return the temporary directory, to be put on the other JVM's classpath
+     * @throws IOException if the class file couldn't be found or copied
+     */
+    public static File extractClass(Class<?> type) throws IOException {
+        Path directory = Files.createTempDirectory(type.getSimpleName());
+        for (Class<?> member : type.getNestMembers()) {
+            String classFile = member.getName().replace('.', '/') + ".class";
+            Path target = directory.resolve(classFile);
+            Files.createDirectories(target.getParent());
+            try (InputStream in = type.getClassLoader().getResourceAsStream(classFile)) {
+                if (in == null) throw new IOException("Couldn't find " + classFile);
+                Files.copy(in, target);
+            }
+        }
+        return directory.toFile();
+    }
+
+    /**
+     * Recursively copies a directory and all of its contents
+     *
+     * @param sourceDir the directory to copy
+     * @param targetDir the directory to create
+     */
+    public static void copyDirectory(File sourceDir, File targetDir) {
+        Path source = sourceDir.toPath();
+        Path target = targetDir.toPath();
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : paths.toList()) {
+                Path destination = target.resolve(source.relativize(path));
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(destination);
+                } else {
+                    Files.copy(path, destination, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to copy directory: " + e.getMessage());
+        }
+    }
+
     /**
      * @param filePath The path to file/directory to find all the file names and the associated absolute paths
      * @return A map of the file names and the associated absolute paths given a path
@@ -0,0 +1,89 @@
+package edu.byu.cs.util;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A long-lived process that serves several requests, such as a warm test runner.
+ * <br>
+ * Like a process run through {@link ProcessUtils}, it is launched in the cgroup of the {@link ProcessAccount} bound
+ * to the launching thread, and its process tree is sampled while it runs. Each request is reported with the CPU time
+ * the process used since the previous one, to the process statistics and to the account bound to the requesting
+ * thread. The cgroup's own counters aren't used, since other processes of the run use the cgroup between requests.
+ */
+public class MeteredProcess {
+
+    private final Process process;
+    private final ProcessTreeSampler sampler;
+    private final Duration spawnLatency;
+
+    /**
+     * CPU time already reported with earlier requests
+     */
+    private Duration reportedCpuTime = Duration.ZERO;
+    private boolean spawnReported = false;
+
+    private MeteredProcess(Process process, Duration spawnLatency) {
+        this.process = process;
+        this.sampler = ProcessTreeSampler.start(process);
+        this.spawnLatency = spawnLatency;
+    }
+
+    /**
+     * Launches a process, in the cgroup of the account bound to the calling thread if it has one
+     *
+     * @param processBuilder the process to launch
+     * @return the running process
+     * @throws IOException if the process couldn't be launched
+     */
+    public static MeteredProcess start(ProcessBuilder processBuilder) throws IOException {
+        ProcessAccount account = ProcessAccount.current();
+        Cgroup cgroup = account == null ? null : account.cgroup();
+
+        Instant launched = Instant.now();
+        Process process;
+        List<String> command = processBuilder.command();
+        try {
+            if (cgroup != null) processBuilder.command(cgroup.wrap(command));
+            process = processBuilder.start();
+        } finally {
+            processBuilder.command(command);
+        }
+        return new MeteredProcess(process, Duration.between(launched, Instant.now()));
+    }
+
+    public Process process() {
+        return process;
+    }
+
+    /**
+     * Reports a request the process served, with the CPU time it used since the previous request and its peak
+     * memory so far. The first request also carries how long the process took to launch.
+     *
+     * @param program  what to report the process as, e.g. "java (junit worker)"
+     * @param started  when the request was made
+     * @param exitCode the request's exit code, or -1 if it timed out or failed
+     */
+    public synchronized void record(String program, Instant started, int exitCode) {
+        ResourceUsage usage = sampler.usage();
+        Duration cpuTime = usage.cpuTime().minus(reportedCpuTime);
+        reportedCpuTime = usage.cpuTime();
+        Duration spawned = spawnReported ? Duration.ZERO : spawnLatency;
+        spawnReported = true;
+
+        ProcessMetrics metrics = new ProcessMetrics(program, started, spawned, Duration.between(started, Instant.now()),
+                exitCode, 0, 0, new ResourceUsage(cpuTime, usage.peakRssBytes()));
+        ProcessStatistics.getInstance().record(metrics);
+        ProcessAccount account = ProcessAccount.current();
+        if (account != null) account.record(metrics);
+    }
+
+    /**
+     * Kills the process along with every process it started
+     */
+    public void destroy() {
+        ProcessUtils.destroyProcessTree(process);
+    }
+}
@@ -0,0 +1,126 @@
+package edu.byu.cs.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Collects the output of a process line by line as it is produced.
+ * <br>
+ * {@link #all()} keeps every line, for output that is trusted, small and has to be complete. A bounded capture,
+ * which {@link ProcessUtils#runProcess(ProcessBuilder)} uses by default, keeps only the start and the end of the
+ * output: the first lines up to a size limit, and a ring buffer of the most recent lines. Everything in between is dropped and counted, so a student program that prints in a loop
+ * can't fill the heap. Lines can be filtered before they are kept, and listeners see every line as it arrives.
+ */
+public class OutputCapture {
+
+    private final int headLimit;
+    private final int tailLimit;
+
+    private final StringBuilder head = new StringBuilder();
+    private final Deque<String> tail = new ArrayDeque<>();
+    private int tailSize = 0;
+
+    private long droppedCharacters = 0;
+    private long droppedLines = 0;
+
+    private Predicate<String> filter = line -> true;
+    private final List<Consumer<String>> listeners = new ArrayList<>();
+
+    private OutputCapture(int headLimit, int tailLimit) {
+        this.headLimit = headLimit;
+        this.tailLimit = tailLimit;
+    }
+
+    /**
+     * @return a capture that keeps all output
+     */
+    public static OutputCapture all() {
+        return new OutputCapture(Integer.MAX_VALUE, 0);
+    }
+
+    /**
+     * @param headLimit how many characters to keep from the start of the output
+     * @param tailLimit how many characters to keep from the end of the output
+     * @return a capture that keeps at most the given number of characters from each end of the output
+     */
+    public static OutputCapture bounded(int headLimit, int tailLimit) {
+        return new OutputCapture(headLimit, tailLimit);
+    }
+
+    /**
+     * Only keeps lines that match the filter. Filtered lines aren't counted as dropped.
+     *
+     * @param keep returns true for lines that should be kept. Called once per line, in order.
+     * @return this capture
+     */
+    public OutputCapture filter(Predicate<String> keep) {
+        this.filter = keep;
+        return this;
+    }
+
+    /**
+     * Subscribes to every line of output, including lines that are filtered out or dropped
+     *
+     * @param listener called with each line, without its line terminator, from the thread reading the output
+     * @return this capture
+     */
+    public OutputCapture onLine(Consumer<String> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Adds a line of output. {@link ProcessUtils} calls this for the processes it runs; other sources of output,
+     * like a long-lived worker process, call it themselves.
+     *
+     * @param line the line, without its line terminator
+     */
+    public synchronized void accept(String line) {
+        for (Consumer<String> listener : listeners) {
+            listener.accept(line);
+        }
+        if (!filter.test(line)) return;
+
+        int size = line.length() + 1;
+        if (droppedLines == 0 && tail.isEmpty() && head.length() + size <= headLimit) {
+            head.append(line).append('\n');
+            return;
+        }
+
+        tail.addLast(line);
+        tailSize += size;
+        while (tailSize > tailLimit && !tail.isEmpty()) {
+            String dropped = tail.removeFirst();
+            tailSize -= dropped.length() + 1;
+            droppedCharacters += dropped.length() + 1;
+            droppedLines++;
+        }
+    }
+
+    /**
+     * @return the kept output. If anything was dropped, a note with how much replaces it.
+     */
+    public synchronized String text() {
+        StringBuilder text = new StringBuilder(head);
+        if (droppedLines > 0) {
+            text.append("[... ").append(droppedLines).append(" lines (")
+                    .append(droppedCharacters).append(" characters) of output omitted ...]\n");
+        }
+        for (String line : tail) {
+            text.append(line).append('\n');
+        }
+        return text.toString();
+    }
+
+    public synchronized long droppedCharacters() {
+        return droppedCharacters;
+    }
+
+    public synchronized long droppedLines() {
+        return droppedLines;
+    }
+}
@@ -110,6 +110,20 @@ public class PhaseUtils {
         };
     }
 
+    /**
+     * Whether a phase's passoff tests only exercise game logic, without a database, server or shared files, so
+     * their test classes can run at the same time
+     *
+     * @param phase the phase in question
+     * @return true if the phase's passoff test classes can run concurrently
+     */
+    public static boolean passoffTestsRunConcurrently(Phase phase) {
+        return switch (phase) {
+            case Phase0, Phase1 -> true;
+            case Phase3, Phase4, Phase5, Phase6, Quality, GitHub, Commits -> false;
+        };
+    }
+
     public static Set<String> unitTestPackagesToTest(Phase phase) throws GradingException {
         return switch (phase) {
             case Phase0, Phase1, Phase6, Quality, GitHub, Commits -> throw new GradingException("No unit tests for this phase");
@@ -0,0 +1,57 @@
+package edu.byu.cs.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Collects the resource usage of the processes a grading run launches. While an account is bound to a thread,
+ * {@link ProcessUtils} reports every process that thread runs to it, and launches them in its {@link Cgroup}
+ * if it has one.
+ */
+public class ProcessAccount {
+
+    private static final ThreadLocal<ProcessAccount> CURRENT = new ThreadLocal<>();
+
+    private final Cgroup cgroup;
+    private final Consumer<ProcessMetrics> listener;
+
+    /**
+     * @param cgroup   the cgroup to launch processes in, or null to launch them without limits
+     * @param listener called with the metrics of each process once it has exited
+     */
+    public ProcessAccount(Cgroup cgroup, Consumer<ProcessMetrics> listener) {
+        this.cgroup = cgroup;
+        this.listener = listener;
+    }
+
+    /**
+     * Reports processes launched by the calling thread to this account
+     */
+    public void bind() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Stops reporting processes launched by the calling thread
+     */
+    public void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return the account bound to the calling thread, or null if there isn't one
+     */
+    static ProcessAccount current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return the cgroup processes are launched in, or null if there isn't one
+     */
+    Cgroup cgroup() {
+        return cgroup;
+    }
+
+    void record(ProcessMetrics metrics) {
+        listener.accept(metrics);
+    }
+}
@@ -0,0 +1,20 @@
+package edu.byu.cs.util;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * What one process launched through {@link ProcessUtils} cost
+ *
+ * @param program       the program that was run, without its arguments
+ * @param started       when the process was launched
+ * @param spawnLatency  how long it took to launch the process
+ * @param wallTime      how long the process ran, from launch until it exited or was killed
+ * @param exitCode      the exit code, or -1 if the process timed out or was killed
+ * @param stdOutBytes   how many bytes the process wrote to standard out
+ * @param stdErrBytes   how many bytes the process wrote to standard error
+ * @param usage         the CPU time and peak memory of the process and everything it started
+ */
+public record ProcessMetrics(String program, Instant started, Duration spawnLatency, Duration wallTime,
+                             int exitCode, long stdOutBytes, long stdErrBytes, ResourceUsage usage) {
+}
@@ -0,0 +1,75 @@
+package edu.byu.cs.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Keeps the {@link ProcessMetrics} of recently launched processes, and running totals for each program, so it's
+ * possible to see where a grading run spends its time launching and waiting on processes.
+ */
+public class ProcessStatistics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessStatistics.class);
+
+    /**
+     * How many recent processes are kept
+     */
+    static final int MAX_RECENT = 500;
+
+    private static final ProcessStatistics INSTANCE = new ProcessStatistics();
+
+    /**
+     * Running totals for one program
+     *
+     * @param launches     how many times the program was launched
+     * @param failures     how many of those exited with a non-zero code, timed out or were killed
+     * @param spawnLatency the total time spent launching it
+     * @param wallTime     the total time it ran
+     * @param bytes        the total bytes it wrote to standard out and standard error
+     * @param usage        its total CPU time, and the largest peak memory of any one launch
+     */
+    public record Totals(long launches, long failures, Duration spawnLatency, Duration wallTime, long bytes,
+                         ResourceUsage usage) {
+        private static final Totals NONE = new Totals(0, 0, Duration.ZERO, Duration.ZERO, 0, ResourceUsage.NONE);
+
+        private Totals add(ProcessMetrics metrics) {
+            return new Totals(launches + 1, failures + (metrics.exitCode() == 0 ? 0 : 1),
+                    spawnLatency.plus(metrics.spawnLatency()), wallTime.plus(metrics.wallTime()),
+                    bytes + metrics.stdOutBytes() + metrics.stdErrBytes(), usage.plus(metrics.usage()));
+        }
+    }
+
+    private final Deque<ProcessMetrics> recent = new ArrayDeque<>();
+    private final Map<String, Totals> totals = new TreeMap<>();
+
+    ProcessStatistics() {
+    }
+
+    public static ProcessStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void record(ProcessMetrics metrics) {
+        if (recent.size() >= MAX_RECENT) recent.removeFirst();
+        recent.addLast(metrics);
+        totals.merge(metrics.program(), Totals.NONE.add(metrics), (old, added) -> old.add(metrics));
+        LOGGER.debug("{}", metrics);
+    }
+
+    /**
+     * @return the most recent processes, oldest first
+     */
+    public synchronized List<ProcessMetrics> recent() {
+        return List.copyOf(recent);
+    }
+
+    /**
+     * @return the totals for every program launched since startup, by program
+     */
+    public synchronized Map<String, Totals> totals() {
+        return Collections.unmodifiableMap(new TreeMap<>(totals));
+    }
+}
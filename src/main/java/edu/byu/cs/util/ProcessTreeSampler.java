@@ -0,0 +1,106 @@
+package edu.byu.cs.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Measures the CPU time and peak memory of a process and every process it starts, by sampling the tree while
+ * it runs. Memory is read from /proc, so on other systems only CPU time is measured.
+ * <br>
+ * Sampling misses whatever a process does after the last sample before it exits, so short-lived processes are
+ * under-counted. When a grading run has a {@link Cgroup}, its CPU time comes from the cgroup instead, which is exact.
+ */
+class ProcessTreeSampler {
+
+    /**
+     * How often the process tree is sampled
+     */
+    static final long SAMPLE_MILLIS = 100;
+
+    private static final Path PROC = Path.of("/proc");
+
+    private static final ExecutorService SAMPLERS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Process process;
+
+    /**
+     * The latest CPU time seen for each process in the tree, by pid
+     */
+    private final Map<Long, Duration> cpuTimes = new HashMap<>();
+    private long peakRssBytes = 0;
+
+    private ProcessTreeSampler(Process process) {
+        this.process = process;
+    }
+
+    /**
+     * Starts sampling a process tree until the process exits
+     *
+     * @param process the root of the tree
+     * @return the sampler, to read the usage from once the process has exited
+     */
+    static ProcessTreeSampler start(Process process) {
+        ProcessTreeSampler sampler = new ProcessTreeSampler(process);
+        SAMPLERS.submit(sampler::sampleUntilExit);
+        return sampler;
+    }
+
+    /**
+     * @return the usage measured so far
+     */
+    synchronized ResourceUsage usage() {
+        Duration cpuTime = cpuTimes.values().stream().reduce(Duration.ZERO, Duration::plus);
+        return new ResourceUsage(cpuTime, peakRssBytes);
+    }
+
+    private void sampleUntilExit() {
+        try {
+            while (process.isAlive()) {
+                sample();
+                Thread.sleep(SAMPLE_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sample() {
+        List<ProcessHandle> tree = Stream.concat(Stream.of(process.toHandle()), process.descendants()).toList();
+        long rssBytes = 0;
+        Map<Long, Duration> sampled = new HashMap<>();
+        for (ProcessHandle handle : tree) {
+            handle.info().totalCpuDuration().ifPresent(cpu -> sampled.put(handle.pid(), cpu));
+            rssBytes += rssBytes(handle.pid());
+        }
+        synchronized (this) {
+            cpuTimes.putAll(sampled);
+            peakRssBytes = Math.max(peakRssBytes, rssBytes);
+        }
+    }
+
+    /**
+     * @param pid a process id
+     * @return the resident set size of the process, or 0 if it can't be read
+     */
+    private static long rssBytes(long pid) {
+        try {
+            for (String line : Files.readAllLines(PROC.resolve(String.valueOf(pid)).resolve("status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    String kilobytes = line.substring("VmRSS:".length()).trim().split("\\s+")[0];
+                    return Long.parseLong(kilobytes) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // The process exited between listing and reading it, or there is no /proc
+        }
+        return 0;
+    }
+}
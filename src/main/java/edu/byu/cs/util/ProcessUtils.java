@@ -1,12 +1,27 @@
 package edu.byu.cs.util;
 
 import java.io.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.concurrent.*;
 
 public class ProcessUtils {
 
     private static final long DEFAULT_TIMEOUT = 90000;
 
+    /**
+     * How many characters the default capture keeps from each end of a stream, the same limit the test runs use.
+     * Callers whose output is trusted and small, and must be complete, pass {@link OutputCapture#all()} themselves.
+     */
+    public static final int MAX_OUTPUT = 64 * 1024;
+
+    /**
+     * Drains the output pipes of every process. Each pipe gets its own virtual thread, so a launch no longer
+     * pays for creating and tearing down a thread pool.
+     */
+    private static final ExecutorService PUMPS = Executors.newVirtualThreadPerTaskExecutor();
+
     /**
      * Runs a process given by a process builder and returns process output
      * @param processBuilder process to run
@@ -37,7 +52,8 @@ public class ProcessUtils {
     }
 
     /**
-     * Runs a process given by a process builder and returns process output
+     * Runs a process given by a process builder and returns process output. Each stream keeps at most
+     * {@link #MAX_OUTPUT} characters from its start and from its end; the middle of longer output is dropped.
      * @param processBuilder process to run
      * @param input string to write to standard in for process
      * @param timeout length to wait for in ms
@@ -45,56 +61,176 @@ public class ProcessUtils {
      */
     public static ProcessOutput runProcess(ProcessBuilder processBuilder, String input, long timeout)
             throws ProcessException {
-        try (ExecutorService processOutputExecutor = Executors.newFixedThreadPool(2)){
-
-            Process process = processBuilder.start();
+        return runProcess(processBuilder, input, timeout, OutputCapture.bounded(MAX_OUTPUT, MAX_OUTPUT),
+                OutputCapture.bounded(MAX_OUTPUT, MAX_OUTPUT));
+    }
 
-            /*
-            Grab the output from the process asynchronously. Without this concurrency, if this is computed
-            synchronously after the process terminates, the pipe from the process may fill up, causing the process
-            writes to block, resulting in the process never finishing. This is usually the result of the tested
-            code printing out too many lines to stdout as a means of logging/debugging
-             */
-            Future<String> processOutputFuture = processOutputExecutor.submit(() -> getOutputFromInputStream(process.getInputStream()));
-            Future<String> processErrorFuture = processOutputExecutor.submit(() -> getOutputFromInputStream(process.getErrorStream()));
+    /**
+     * Runs a process given by a process builder, streaming its output into the given captures
+     * @param processBuilder process to run
+     * @param stdOut collects standard out
+     * @param stdErr collects standard error
+     * @return the output kept by the captures
+     */
+    public static ProcessOutput runProcess(ProcessBuilder processBuilder, OutputCapture stdOut, OutputCapture stdErr)
+            throws ProcessException {
+        return runProcess(processBuilder, null, DEFAULT_TIMEOUT, stdOut, stdErr);
+    }
 
+    /**
+     * Runs a process given by a process builder, streaming its output into the given captures
+     * @param processBuilder process to run
+     * @param input string to write to standard in for process
+     * @param timeout length to wait for in ms
+     * @param stdOut collects standard out, e.g. {@link OutputCapture#bounded(int, int)} for output that may be huge
+     * @param stdErr collects standard error
+     * @return the output kept by the captures
+     */
+    public static ProcessOutput runProcess(ProcessBuilder processBuilder, String input, long timeout,
+                                           OutputCapture stdOut, OutputCapture stdErr) throws ProcessException {
+        String program = program(processBuilder);
+        ProcessAccount account = ProcessAccount.current();
+        Cgroup cgroup = account == null ? null : account.cgroup();
+        ResourceUsage cgroupBefore = cgroup == null ? null : cgroup.usage();
+
+        Instant launched = Instant.now();
+        Process process;
+        List<String> command = processBuilder.command();
+        try {
+            if (cgroup != null) processBuilder.command(cgroup.wrap(command));
+            process = processBuilder.start();
+        } catch (IOException e) {
+            throw new ProcessException(e);
+        } finally {
+            processBuilder.command(command);
+        }
+        Instant started = Instant.now();
+        ProcessTreeSampler sampler = ProcessTreeSampler.start(process);
+        // Reaped by the JDK's process reaper, which also notes when the process exited
+        CompletableFuture<Process> exit = process.onExit();
+        CompletableFuture<Instant> exited = exit.thenApply(p -> Instant.now());
+
+        /*
+        Grab the output from the process asynchronously. Without this concurrency, if this is computed
+        synchronously after the process terminates, the pipe from the process may fill up, causing the process
+        writes to block, resulting in the process never finishing. This is usually the result of the tested
+        code printing out too many lines to stdout as a means of logging/debugging
+         */
+        CountingInputStream outStream = new CountingInputStream(process.getInputStream());
+        CountingInputStream errStream = new CountingInputStream(process.getErrorStream());
+        Future<String> processOutputFuture = PUMPS.submit(() -> getOutputFromInputStream(outStream, stdOut));
+        Future<String> processErrorFuture = PUMPS.submit(() -> getOutputFromInputStream(errStream, stdErr));
+
+        int exitCode = -1;
+        try {
             if(input != null) {
                 try (OutputStream os = process.getOutputStream()) {
                     os.write(input.getBytes());
                 }
             }
 
-            if (!process.waitFor(timeout, TimeUnit.MILLISECONDS)) {
-                process.destroyForcibly();
+            try {
+                exitCode = exit.get(timeout, TimeUnit.MILLISECONDS).exitValue();
+            } catch (TimeoutException e) {
+                destroyProcessTree(process);
                 throw new ProcessException("Process timed out. Try again or come see a TA if this error persists");
+            } catch (InterruptedException e) {
+                // The grading run was cancelled. Don't leave the process running or the output readers waiting on it
+                destroyProcessTree(process);
+                Thread.currentThread().interrupt();
+                throw new ProcessException(e);
             }
             String output = processOutputFuture.get(1000, TimeUnit.MILLISECONDS);
             String error = processErrorFuture.get(1000, TimeUnit.MILLISECONDS);
 
-            return new ProcessOutput(output, error, process.waitFor());
+            return new ProcessOutput(output, error, exitCode);
         } catch (IOException | InterruptedException | ExecutionException | TimeoutException e) {
+            destroyProcessTree(process);
             throw new ProcessException(e);
+        } finally {
+            Instant ended = exited.getNow(Instant.now());
+            ResourceUsage usage = sampler.usage();
+            if (cgroup != null) {
+                // The cgroup counts CPU time exactly, including processes that exited between samples
+                Duration cpuTime = cgroup.usage().cpuTime().minus(cgroupBefore.cpuTime());
+                usage = new ResourceUsage(cpuTime, usage.peakRssBytes());
+            }
+            ProcessMetrics metrics = new ProcessMetrics(program, launched, Duration.between(launched, started),
+                    Duration.between(started, ended), exitCode, outStream.count(), errStream.count(), usage);
+            ProcessStatistics.getInstance().record(metrics);
+            if (account != null) account.record(metrics);
         }
     }
 
+    /**
+     * Forcibly kills a process along with every process it started. Killing only the direct child
+     * leaves Maven forks, surefire JVMs and student servers running, holding CPU and ports.
+     * <br>
+     * Descendants are collected before the process is killed, since they are reparented once it exits.
+     *
+     * @param process the process to kill
+     */
+    public static void destroyProcessTree(Process process) {
+        List<ProcessHandle> descendants = process.descendants().toList();
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+        // Catch anything forked while the tree was being collected
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+    }
+
     /**
      * Extracts the output as a string from an input stream
      *
      * @param is The input stream to extract the output from
-     * @return The output of the process as a string
+     * @param capture Collects the lines of output as they are read. Lines are cut off at
+     *                {@link BoundedLineReader#MAX_LINE_LENGTH} characters before the capture sees them.
+     * @return The output kept by the capture
      * @throws IOException If an error occurs while reading the output
      */
-    private static String getOutputFromInputStream(InputStream is) throws IOException {
-        try (InputStreamReader isr = new InputStreamReader(is);
-             BufferedReader br = new BufferedReader(isr)){
+    private static String getOutputFromInputStream(InputStream is, OutputCapture capture) throws IOException {
+        try (BoundedLineReader br = new BoundedLineReader(new InputStreamReader(is))) {
 
             String line;
-            StringBuilder sb = new StringBuilder();
             while ((line = br.readLine()) != null) {
-                sb.append(line);
-                sb.append('\n');
+                capture.accept(line);
             }
-            return sb.toString();
+            return capture.text();
+        }
+    }
+
+    private static String program(ProcessBuilder processBuilder) {
+        List<String> command = processBuilder.command();
+        if (command.isEmpty()) return "";
+        String program = command.getFirst();
+        return program.substring(program.lastIndexOf(File.separatorChar) + 1);
+    }
+
+    /**
+     * Counts the bytes read through it, so output that a capture drops or filters is still measured
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) count += read;
+            return read;
+        }
+
+        private long count() {
+            return count;
         }
     }
 
@@ -0,0 +1,24 @@
+package edu.byu.cs.util;
+
+import java.time.Duration;
+
+/**
+ * CPU and memory used by a process tree, or by everything a grading stage launched
+ *
+ * @param cpuTime      the user and system CPU time used
+ * @param peakRssBytes the largest resident set size seen at once, in bytes
+ */
+public record ResourceUsage(Duration cpuTime, long peakRssBytes) {
+
+    public static final ResourceUsage NONE = new ResourceUsage(Duration.ZERO, 0);
+
+    /**
+     * Combines the usage of processes that ran one after another: CPU time adds up, and the peak is the larger peak
+     *
+     * @param other the usage to add
+     * @return the combined usage
+     */
+    public ResourceUsage plus(ResourceUsage other) {
+        return new ResourceUsage(cpuTime.plus(other.cpuTime), Math.max(peakRssBytes, other.peakRssBytes));
+    }
+}
@@ -33,9 +33,19 @@ export const testStudentModeGet = (): Promise<null> => {
   return ServerCommunicator.getRequestGuaranteed<null>("/api/admin/test_mode", null);
 };
 
+export type BuildCacheStatistics = {
+  hits: number;
+  misses: number;
+  stores: number;
+  evictions: number;
+  entries: number;
+  bytes: number;
+};
+
 type QueueStatusResponse = {
   currentlyGrading: string[];
   inQueue: string[];
+  buildCache?: BuildCacheStatistics;
 };
 export const getQueueStatus = (): Promise<QueueStatusResponse> => {
   return ServerCommunicator.getRequestGuaranteed<QueueStatusResponse>(
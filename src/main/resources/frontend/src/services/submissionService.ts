@@ -33,6 +33,10 @@ export const submitGet = async (): Promise<boolean> => {
   return (await ServerCommunicator.getRequest<SubmitGetResponse>("/api/submit")).inQueue;
 };
 
-export const reRunSubmissionsPost = () => {
-  return ServerCommunicator.postRequest("/api/admin/submissions/rerun");
+export const reRunSubmissionsPost = (force: boolean) => {
+  return ServerCommunicator.postRequest(`/api/admin/submissions/rerun?force=${force}`);
+};
+
+export const cancelSubmissionPost = (netId: string) => {
+  return ServerCommunicator.postRequest(`/api/admin/submissions/cancel/${netId}`);
 };
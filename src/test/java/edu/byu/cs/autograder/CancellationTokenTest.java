@@ -0,0 +1,50 @@
+package edu.byu.cs.autograder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CancellationTokenTest {
+
+    @AfterEach
+    void clearInterrupt() {
+        Thread.interrupted();
+    }
+
+    @Test
+    void cancel__interruptsBoundThread() {
+        CancellationToken token = new CancellationToken();
+        token.bind();
+
+        token.cancel("superseded");
+
+        assertTrue(Thread.currentThread().isInterrupted());
+        assertTrue(token.isCancelled());
+        assertEquals("superseded", token.reason());
+    }
+
+    @Test
+    void cancel__afterUnbindLeavesThreadAlone() {
+        CancellationToken token = new CancellationToken();
+        token.bind();
+        token.unbind();
+
+        token.cancel("superseded");
+
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertTrue(token.isCancelled());
+    }
+
+    @Test
+    void bind__interruptsIfAlreadyCancelled() {
+        CancellationToken token = new CancellationToken();
+        token.cancel("stopped by an admin");
+        token.cancel("superseded");
+
+        token.bind();
+
+        assertTrue(Thread.currentThread().isInterrupted());
+        assertEquals("stopped by an admin", token.reason());
+    }
+}
@@ -0,0 +1,165 @@
+package edu.byu.cs.autograder.compile;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BuildCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File stageRepo;
+    private File cacheDirectory;
+
+    @BeforeEach
+    void setUp() throws IOException, GitAPIException {
+        stageRepo = tempDir.resolve("repo").toFile();
+        cacheDirectory = tempDir.resolve("cache").toFile();
+        write("shared/src/main/java/model/Piece.java", "class Piece { }");
+        write("server/src/main/java/server/Server.java", "class Server { }");
+        write("README.md", "readme");
+        commit();
+    }
+
+    @Test
+    void key__followsModuleTreesAndPoms() throws IOException, GitAPIException {
+        String key = BuildCache.key(stageRepo, "poms");
+
+        write("README.md", "changed readme");
+        commit();
+        assertEquals(key, BuildCache.key(stageRepo, "poms"));
+        assertNotEquals(key, BuildCache.key(stageRepo, "other poms"));
+
+        write("server/src/main/java/server/Server.java", "class Server { int port; }");
+        commit();
+        assertNotEquals(key, BuildCache.key(stageRepo, "poms"));
+    }
+
+    @Test
+    void key__withoutCommits() throws IOException, GitAPIException {
+        File empty = tempDir.resolve("empty").toFile();
+        Git.init().setDirectory(empty).call().close();
+
+        assertNull(BuildCache.key(empty, "poms"));
+    }
+
+    @Test
+    void restore__storedBuild() throws IOException {
+        BuildCache cache = new BuildCache(cacheDirectory, 1024 * 1024);
+        write("server/target/server-test-dependencies.jar", "server jar");
+        write("client/target/client-test-dependencies.jar", "client jar");
+
+        assertFalse(cache.restore("abc", stageRepo));
+        cache.store("abc", stageRepo);
+        Files.delete(stageRepo.toPath().resolve("server/target/server-test-dependencies.jar"));
+
+        assertTrue(cache.restore("abc", stageRepo));
+        assertEquals("server jar", Files.readString(stageRepo.toPath().resolve("server/target/server-test-dependencies.jar")));
+        assertEquals(new BuildCache.Statistics(1, 1, 1, 0, 1, 20), cache.statistics());
+    }
+
+    @Test
+    void restore__putsBackTheRunsOwnResources() throws IOException {
+        BuildCache cache = new BuildCache(cacheDirectory, 1024 * 1024);
+        Path jar = stageRepo.toPath().resolve("server/target/server-test-dependencies.jar");
+        Files.createDirectories(jar.getParent());
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("db.properties"));
+            out.write("db.user=first_run".getBytes(StandardCharsets.UTF_8));
+            out.putNextEntry(new JarEntry("server/Server.class"));
+            out.write(new byte[]{1, 2, 3});
+        }
+        write("server/src/main/resources/db.properties", "db.user=first_run");
+        cache.store("abc", stageRepo);
+
+        try (FileSystem cached = FileSystems.newFileSystem(cacheDirectory.toPath().resolve("abc/server-test-dependencies.jar"))) {
+            assertFalse(Files.exists(cached.getPath("db.properties")));
+        }
+
+        write("server/src/main/resources/db.properties", "db.user=second_run");
+        assertTrue(cache.restore("abc", stageRepo));
+        try (FileSystem restored = FileSystems.newFileSystem(jar)) {
+            assertEquals("db.user=second_run", Files.readString(restored.getPath("db.properties")));
+            assertTrue(Files.exists(restored.getPath("server/Server.class")));
+        }
+    }
+
+    @Test
+    void restoreTests__storedTests() throws IOException {
+        BuildCache cache = new BuildCache(cacheDirectory, 1024 * 1024);
+        String key = BuildCache.testsKey("build", "sources");
+        assertNotEquals(key, BuildCache.testsKey("other build", "sources"));
+        assertNotEquals(key, BuildCache.testsKey("build", "other sources"));
+        write("compiled/passoff/BoardTest.class", "board test");
+
+        File output = tempDir.resolve("output").toFile();
+        assertFalse(cache.restoreTests(key, output));
+        cache.storeTests(key, new File(stageRepo, "compiled"));
+        Files.createDirectories(output.toPath().resolve("passoff"));
+        Files.writeString(output.toPath().resolve("passoff/OtherTest.class"), "other location");
+
+        assertTrue(cache.restoreTests(key, output));
+        assertEquals("board test", Files.readString(output.toPath().resolve("passoff/BoardTest.class")));
+        assertTrue(Files.exists(output.toPath().resolve("passoff/OtherTest.class")));
+        assertEquals(new BuildCache.Statistics(1, 1, 1, 0, 1, 10), cache.statistics());
+    }
+
+    @Test
+    void store__evictsLeastRecentlyUsed() throws IOException {
+        BuildCache cache = new BuildCache(cacheDirectory, 25);
+        write("server/target/server-test-dependencies.jar", "0123456789");
+        cache.store("first", stageRepo);
+        cache.store("second", stageRepo);
+        assertTrue(cache.restore("first", stageRepo));
+
+        cache.store("third", stageRepo);
+
+        assertTrue(cache.restore("first", stageRepo));
+        assertFalse(cache.restore("second", stageRepo));
+        assertTrue(cache.restore("third", stageRepo));
+        assertEquals(1, cache.statistics().evictions());
+        assertFalse(new File(cacheDirectory, "second").exists());
+    }
+
+    @Test
+    void entriesSurviveRestart() throws IOException {
+        write("server/target/server-test-dependencies.jar", "server jar");
+        new BuildCache(cacheDirectory, 1024).store("abc", stageRepo);
+        Files.createDirectories(cacheDirectory.toPath().resolve("def.partial"));
+
+        BuildCache restarted = new BuildCache(cacheDirectory, 1024);
+
+        assertTrue(restarted.restore("abc", stageRepo));
+        assertEquals(1, restarted.statistics().entries());
+        assertFalse(Files.exists(cacheDirectory.toPath().resolve("def.partial")));
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = stageRepo.toPath().resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private void commit() throws GitAPIException {
+        try (Git git = Git.init().setDirectory(stageRepo).call()) {
+            git.add().addFilepattern("shared").addFilepattern("server").addFilepattern("README.md").call();
+            git.commit().setMessage("commit").setAuthor("student", "student@example.com")
+                    .setCommitter("student", "student@example.com").setSign(false).call();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package edu.byu.cs.autograder.compile;
+
+import edu.byu.cs.autograder.test.TestCompiler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.jar.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectModuleBuildTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path stageRepo;
+    private final Map<String, File> layers = new HashMap<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path library = tempDir.resolve("library-src");
+        write(library.resolve("library/Library.java"), "package library; public class Library { public static int one() { return 1; } }");
+        for (String module : MavenRepository.MODULES) {
+            write(library.resolve(MavenRepository.WARMUP_PACKAGE + "/Warmup" + module + ".java"),
+                    "package " + MavenRepository.WARMUP_PACKAGE + "; public class Warmup" + module + " { }");
+        }
+        File libraryClasses = tempDir.resolve("library-classes").toFile();
+        assertTrue(TestCompiler.compile(library.toFile(), List.of(), libraryClasses).success());
+        for (String module : MavenRepository.MODULES) {
+            layers.put(module, jar(libraryClasses.toPath(), tempDir.resolve(module + "-layer.jar")));
+        }
+
+        stageRepo = tempDir.resolve("repo");
+        write(stageRepo.resolve("pom.xml"), "<project><properties><maven.compiler.release>21</maven.compiler.release></properties></project>");
+        write(stageRepo.resolve("shared/src/main/java/model/Piece.java"),
+                "package model; public record Piece(int value) { public Piece() { this(library.Library.one()); } }");
+        write(stageRepo.resolve("shared/src/main/resources/piece.txt"), "piece");
+        write(stageRepo.resolve("server/src/main/java/server/Server.java"),
+                "package server; public class Server { model.Piece piece = new model.Piece(); }");
+        write(stageRepo.resolve("server/src/test/java/server/ServerTest.java"),
+                "package server; class ServerTest { Server server = new Server(); }");
+        write(stageRepo.resolve("client/src/main/java/client/Client.java"),
+                "package client; public class Client { model.Piece piece = new model.Piece(); }");
+    }
+
+    @Test
+    void build__assemblesTestDependencyJars() throws IOException {
+        assertTrue(new DirectModuleBuild(stageRepo.toFile(), layers::get).build());
+
+        List<String> server = entries(stageRepo.resolve("server/target/server-test-dependencies.jar"));
+        assertEquals(JarFile.MANIFEST_NAME, server.getFirst());
+        assertTrue(server.containsAll(List.of("server/Server.class", "model/Piece.class", "piece.txt",
+                "library/Library.class")));
+        assertFalse(server.contains("server/ServerTest.class"));
+        assertTrue(server.stream().noneMatch(name -> name.startsWith(MavenRepository.WARMUP_PACKAGE)));
+
+        List<String> client = entries(stageRepo.resolve("client/target/client-test-dependencies.jar"));
+        assertTrue(client.containsAll(List.of("client/Client.class", "model/Piece.class", "library/Library.class")));
+        assertFalse(client.contains("server/Server.class"));
+    }
+
+    @Test
+    void build__compileErrorLeavesItToMaven() throws IOException {
+        write(stageRepo.resolve("client/src/main/java/client/Client.java"), "package client; public class Client { missing }");
+
+        assertFalse(new DirectModuleBuild(stageRepo.toFile(), layers::get).build());
+        for (String module : MavenRepository.MODULES) {
+            assertFalse(Files.exists(stageRepo.resolve(module).resolve("target")));
+        }
+    }
+
+    @Test
+    void build__brokenStudentTestsLeaveItToMaven() throws IOException {
+        write(stageRepo.resolve("server/src/test/java/server/ServerTest.java"),
+                "package server; class ServerTest { Missing missing; }");
+
+        assertFalse(new DirectModuleBuild(stageRepo.toFile(), layers::get).build());
+    }
+
+    @Test
+    void build__withoutLayers() {
+        layers.remove("server");
+
+        assertFalse(new DirectModuleBuild(stageRepo.toFile(), layers::get).build());
+    }
+
+    @Test
+    void compilerOptions__followPom() {
+        assertEquals(List.of("-g", "-proc:none", "--release", "21"), new DirectModuleBuild(stageRepo.toFile(), layers::get).compilerOptions());
+    }
+
+    private static File jar(Path classes, Path jar) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar), manifest);
+             Stream<Path> files = Files.walk(classes)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                out.putNextEntry(new JarEntry(classes.relativize(file).toString()));
+                Files.copy(file, out);
+                out.closeEntry();
+            }
+        }
+        return jar.toFile();
+    }
+
+    private static List<String> entries(Path jar) throws IOException {
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            return Collections.list(jarFile.entries()).stream().map(JarEntry::getName).toList();
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
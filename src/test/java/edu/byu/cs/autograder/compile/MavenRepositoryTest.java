@@ -0,0 +1,75 @@
+package edu.byu.cs.autograder.compile;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MavenRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path repositoryDirectory;
+    private Path rootPom;
+    private MavenRepository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repositoryDirectory = tempDir.resolve("repository");
+        Path phases = tempDir.resolve("phases");
+        rootPom = phases.resolve("pom/pom.xml");
+        Files.createDirectories(phases.resolve("pom/server"));
+        Files.writeString(rootPom, "<project>root</project>");
+        Files.writeString(phases.resolve("pom/server/pom.xml"), "<project>server</project>");
+        repository = new MavenRepository(repositoryDirectory.toFile(), phases.toFile());
+    }
+
+    @Test
+    void isWarm__onlyForPomsItWasWarmedWith() throws IOException {
+        assertFalse(repository.isWarm());
+
+        markWarm();
+        assertTrue(repository.isWarm());
+
+        Files.writeString(rootPom, "<project>changed</project>");
+        assertFalse(repository.isWarm());
+    }
+
+    @Test
+    void invalidate__goesBackOnline() throws IOException {
+        markWarm();
+
+        repository.invalidate();
+
+        assertFalse(repository.isWarm());
+    }
+
+    @Test
+    void mavenArguments__useSharedRepository() {
+        String repoArgument = "-Dmaven.repo.local=" + repositoryDirectory.toAbsolutePath();
+
+        assertEquals(List.of(repoArgument, "--offline"), repository.mavenArguments(true));
+        assertEquals(List.of(repoArgument), repository.mavenArguments(false));
+    }
+
+    @Test
+    void isOfflineResolutionFailure() {
+        assertTrue(MavenRepository.isOfflineResolutionFailure("[ERROR] Failed to execute goal on project server: " +
+                "Cannot access central in offline mode and the artifact com.google.code.gson:gson:jar:2.10.1 " +
+                "has not been downloaded from it before."));
+        assertFalse(MavenRepository.isOfflineResolutionFailure(
+                "[ERROR] /server/src/main/java/Main.java:[3,1] class, interface, enum, or record expected"));
+    }
+
+    private void markWarm() throws IOException {
+        Files.createDirectories(repositoryDirectory);
+        Files.writeString(repositoryDirectory.resolve(MavenRepository.MARKER), repository.fingerprint());
+    }
+}
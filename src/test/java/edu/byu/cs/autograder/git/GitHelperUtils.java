@@ -1,6 +1,7 @@
 package edu.byu.cs.autograder.git;
 
 import edu.byu.cs.analytics.CommitThreshold;
+import edu.byu.cs.autograder.CancellationToken;
 import edu.byu.cs.autograder.GradingContext;
 import edu.byu.cs.autograder.GradingObserver;
 import edu.byu.cs.model.Phase;
@@ -276,7 +277,7 @@ public class GitHelperUtils {
         var cvConfig = new CommitVerificationConfig(requiredCommits, requiredDaysWithCommits, minimumLinesChangedPerCommit, commitVerificationPenaltyPct, forgivenessMinutes);
         return new GradingContext(
                 null, Phase.Phase0, null, null, null, null,
-                cvConfig, mockObserver, false);
+                cvConfig, mockObserver, false, null, new CancellationToken());
     }
 
     void assertCommitVerification(CommitVerificationResult expected, CommitVerificationResult actual) {
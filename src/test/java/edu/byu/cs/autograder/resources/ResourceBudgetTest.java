@@ -0,0 +1,102 @@
+package edu.byu.cs.autograder.resources;
+
+import edu.byu.cs.autograder.GradingException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceBudgetTest {
+
+    private static class FakeProbe implements ResourceBudget.ResourceProbe {
+        volatile long freeMemoryMb = 16_000;
+        volatile double loadAverage = 0;
+
+        @Override
+        public long freeMemoryMb() {
+            return freeMemoryMb;
+        }
+
+        @Override
+        public double loadAverage() {
+            return loadAverage;
+        }
+    }
+
+    @Test
+    void acquire__firstLeaseAlwaysGranted() throws GradingException {
+        FakeProbe probe = new FakeProbe();
+        probe.freeMemoryMb = 1;
+        probe.loadAverage = 100;
+        ResourceBudget budget = new ResourceBudget(1, 1, probe);
+
+        try (ResourceBudget.Lease lease = budget.acquire(ResourceBudget.Stage.COMPILE)) {
+            assertEquals(ResourceBudget.Stage.COMPILE, lease.stage());
+            assertEquals(1, budget.activeLeases());
+        }
+        assertEquals(0, budget.activeLeases());
+    }
+
+    @Test
+    void acquire__waitsForStudentJvmSlot() throws Exception {
+        ResourceBudget budget = new ResourceBudget(1, 8, new FakeProbe());
+        ResourceBudget.Lease first = budget.acquire(ResourceBudget.Stage.TEST);
+
+        CompletableFuture<ResourceBudget.Lease> second = CompletableFuture.supplyAsync(() -> acquire(budget));
+        assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+
+        first.close();
+        second.get(2, TimeUnit.SECONDS).close();
+        assertEquals(0, budget.activeLeases());
+    }
+
+    @Test
+    void acquire__waitsForMemory() throws Exception {
+        FakeProbe probe = new FakeProbe();
+        ResourceBudget budget = new ResourceBudget(4, 8, probe);
+        ResourceBudget.Lease first = budget.acquire(ResourceBudget.Stage.TEST);
+
+        probe.freeMemoryMb = ResourceBudget.Stage.COMPILE.memoryMb() - 1;
+        CompletableFuture<ResourceBudget.Lease> second = CompletableFuture.supplyAsync(() -> acquire(budget));
+        assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+
+        probe.freeMemoryMb = ResourceBudget.Stage.COMPILE.memoryMb();
+        second.get(2, TimeUnit.SECONDS).close();
+        first.close();
+    }
+
+    @Test
+    void acquire__waitsForCpu() throws Exception {
+        ResourceBudget budget = new ResourceBudget(4, 2, new FakeProbe());
+        ResourceBudget.Lease first = budget.acquire(ResourceBudget.Stage.COMPILE);
+
+        CompletableFuture<ResourceBudget.Lease> second = CompletableFuture.supplyAsync(() -> acquire(budget));
+        assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+
+        first.close();
+        second.get(2, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    void close__isIdempotent() throws GradingException {
+        ResourceBudget budget = new ResourceBudget(2, 8, new FakeProbe());
+        ResourceBudget.Lease lease = budget.acquire(ResourceBudget.Stage.QUALITY);
+        ResourceBudget.Lease other = budget.acquire(ResourceBudget.Stage.QUALITY);
+
+        lease.close();
+        lease.close();
+        assertEquals(1, budget.activeLeases());
+        other.close();
+    }
+
+    private static ResourceBudget.Lease acquire(ResourceBudget budget) {
+        try {
+            return budget.acquire(ResourceBudget.Stage.COMPILE);
+        } catch (GradingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package edu.byu.cs.autograder.resources;
+
+import edu.byu.cs.autograder.GradingException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkspaceAllocatorTest {
+
+    @TempDir
+    File root;
+
+    private final List<String> droppedDatabases = new ArrayList<>();
+
+    private WorkspaceAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new WorkspaceAllocator(root, (database, user) -> droppedDatabases.add(database));
+    }
+
+    @Test
+    void allocate__workspacesDoNotShareResources() throws GradingException {
+        Set<String> ids = new HashSet<>();
+        Set<File> directories = new HashSet<>();
+        Set<String> databases = new HashSet<>();
+        Set<String> users = new HashSet<>();
+
+        for (int i = 0; i < 50; i++) {
+            Workspace workspace = allocator.allocate();
+            assertTrue(workspace.directory().isDirectory());
+            assertTrue(workspace.databaseUser().length() <= 32);
+            ids.add(workspace.id());
+            directories.add(workspace.directory());
+            databases.add(workspace.databaseName());
+            users.add(workspace.databaseUser());
+        }
+
+        assertEquals(50, ids.size());
+        assertEquals(50, directories.size());
+        assertEquals(50, databases.size());
+        assertEquals(50, users.size());
+    }
+
+    @Test
+    void release__deletesDirectory() throws GradingException {
+        Workspace first = allocator.allocate();
+        allocator.release(first);
+
+        assertFalse(first.directory().exists());
+        assertEquals(0, allocator.activeCount());
+    }
+
+    @Test
+    void reapAbandoned__keepsActiveWorkspaces() throws GradingException {
+        Workspace workspace = allocator.allocate();
+
+        assertEquals(0, allocator.reapAbandoned());
+        assertTrue(workspace.directory().exists());
+        assertTrue(droppedDatabases.isEmpty());
+    }
+
+    @Test
+    void reapAbandoned__reclaimsCrashedWorkspace() throws GradingException, IOException {
+        Workspace crashed = allocator.allocate();
+
+        // Simulate a restart: the new allocator has no record of the workspace
+        WorkspaceAllocator restarted = new WorkspaceAllocator(root, (database, user) -> droppedDatabases.add(database));
+        expireLease(crashed);
+
+        assertEquals(1, restarted.reapAbandoned());
+        assertFalse(crashed.directory().exists());
+        assertEquals(List.of(crashed.databaseName()), droppedDatabases);
+    }
+
+    @Test
+    void reapAbandoned__reclaimsLegacyStageDirectories() {
+        File legacy = new File(root, "tmp--12345-1700000000");
+        File unrelated = new File(root, "tmp-section-3");
+        assertTrue(legacy.mkdirs());
+        assertTrue(unrelated.mkdirs());
+        long anHourAgo = Instant.now().minus(Duration.ofHours(1)).toEpochMilli();
+        assertTrue(legacy.setLastModified(anHourAgo));
+        assertTrue(unrelated.setLastModified(anHourAgo));
+
+        assertEquals(1, allocator.reapAbandoned());
+        assertFalse(legacy.exists());
+        assertTrue(unrelated.exists());
+    }
+
+    private static void expireLease(Workspace workspace) throws IOException {
+        Properties lease = new Properties();
+        lease.setProperty("id", workspace.id());
+        lease.setProperty("database", workspace.databaseName());
+        lease.setProperty("user", workspace.databaseUser());
+        lease.setProperty("owner", "-1");
+        lease.setProperty("heartbeat", String.valueOf(Instant.now().minus(Duration.ofHours(1)).toEpochMilli()));
+        try (FileOutputStream os = new FileOutputStream(new File(workspace.directory(), ".lease"))) {
+            lease.store(os, null);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package edu.byu.cs.autograder.scheduling;
+
+import edu.byu.cs.model.Phase;
+import edu.byu.cs.model.QueueItem;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FairSchedulingPolicyTest {
+
+    private static final Instant START = Instant.parse("2024-03-01T12:00:00Z");
+
+    private static class FakeHistory implements SchedulingHistory {
+        final Map<String, List<Instant>> graded = new HashMap<>();
+        final Map<Phase, Instant> dueDates = new EnumMap<>(Phase.class);
+
+        @Override
+        public int gradedSince(String netId, Instant since) {
+            return (int) graded.getOrDefault(netId, List.of()).stream().filter(time -> time.isAfter(since)).count();
+        }
+
+        @Override
+        public boolean hasSubmitted(String netId, Phase phase) {
+            return graded.containsKey(netId);
+        }
+
+        @Override
+        public Instant dueDate(String netId, Phase phase) {
+            return dueDates.get(phase);
+        }
+
+        void grade(String netId, Instant time) {
+            graded.computeIfAbsent(netId, k -> new ArrayList<>()).add(time);
+        }
+    }
+
+    @Test
+    void order__adminFirst() {
+        FakeHistory history = new FakeHistory();
+        QueueItem student = item("student", Phase.Phase3, START, false);
+        QueueItem admin = item("admin", Phase.Phase3, START.plusSeconds(600), true);
+
+        List<QueueItem> order = new FairSchedulingPolicy(history).order(List.of(student, admin), START.plusSeconds(601));
+
+        assertEquals(List.of(admin, student), order);
+    }
+
+    @Test
+    void order__firstSubmissionBoosted() {
+        FakeHistory history = new FakeHistory();
+        history.grade("returning", START.minus(Duration.ofDays(2)));
+        QueueItem returning = item("returning", Phase.Phase3, START, false);
+        QueueItem newcomer = item("newcomer", Phase.Phase3, START.plusSeconds(60), false);
+
+        List<QueueItem> order = new FairSchedulingPolicy(history).order(List.of(returning, newcomer), START.plusSeconds(61));
+
+        assertEquals(List.of(newcomer, returning), order);
+    }
+
+    @Test
+    void order__recentResubmittersPenalized() {
+        FakeHistory history = new FakeHistory();
+        history.grade("frequent", START.minusSeconds(600));
+        history.grade("frequent", START.minusSeconds(300));
+        history.grade("occasional", START.minus(Duration.ofDays(1)));
+        QueueItem frequent = item("frequent", Phase.Phase3, START, false);
+        QueueItem occasional = item("occasional", Phase.Phase3, START.plusSeconds(60), false);
+
+        List<QueueItem> order = new FairSchedulingPolicy(history).order(List.of(frequent, occasional), START.plusSeconds(61));
+
+        assertEquals(List.of(occasional, frequent), order);
+    }
+
+    @Test
+    void order__nearestDeadlineBoosted() {
+        FakeHistory history = new FakeHistory();
+        history.grade("a", START.minus(Duration.ofDays(2)));
+        history.grade("b", START.minus(Duration.ofDays(2)));
+        history.dueDates.put(Phase.Phase4, START.plus(Duration.ofHours(1)));
+        history.dueDates.put(Phase.Phase5, START.plus(Duration.ofDays(7)));
+        QueueItem later = item("a", Phase.Phase5, START, false);
+        QueueItem dueSoon = item("b", Phase.Phase4, START.plusSeconds(60), false);
+
+        List<QueueItem> order = new FairSchedulingPolicy(history).order(List.of(later, dueSoon), START.plusSeconds(61));
+
+        assertEquals(List.of(dueSoon, later), order);
+    }
+
+    @Test
+    void order__adjustmentsBounded() {
+        FakeHistory history = new FakeHistory();
+        for (int i = 0; i < 50; i++) history.grade("frequent", START.minusSeconds(i));
+        QueueItem frequent = item("frequent", Phase.Phase3, START, false);
+        Duration maxAdjustment = FairSchedulingPolicy.MAX_FAIR_SHARE_PENALTY.plus(FairSchedulingPolicy.FIRST_SUBMISSION_BOOST);
+        Instant later = START.plus(maxAdjustment).plusSeconds(1);
+        QueueItem newcomer = item("newcomer", Phase.Phase3, later, false);
+
+        List<QueueItem> order = new FairSchedulingPolicy(history).order(List.of(newcomer, frequent), later);
+
+        assertEquals(List.of(frequent, newcomer), order);
+    }
+
+    /**
+     * Simulates a deadline surge: a few students resubmit as soon as their results arrive
+     * while everyone else trickles in with their first submission.
+     */
+    @Test
+    void simulate__firstTimeSubmittersTailLatency() {
+        SimulationResult fifo = simulate(history -> new FifoSchedulingPolicy());
+        SimulationResult fair = simulate(FairSchedulingPolicy::new);
+
+        double fifoP95 = percentile(fifo.firstTimeWaits(), 95);
+        double fairP95 = percentile(fair.firstTimeWaits(), 95);
+
+        assertTrue(fairP95 < fifoP95 / 2,
+                "Expected fair share p95 wait (" + fairP95 + "s) to be under half of FIFO (" + fifoP95 + "s)");
+        assertTrue(fair.resubmitterGradings() > 0, "Resubmitters must not be starved");
+    }
+
+    private record SimulationResult(List<Long> firstTimeWaits, int resubmitterGradings) { }
+
+    private SimulationResult simulate(Function<SchedulingHistory, SchedulingPolicy> policyFactory) {
+        final int workers = 2;
+        final Duration gradingTime = Duration.ofMinutes(4);
+        final Duration resubmitDelay = Duration.ofMinutes(1);
+        final int resubmitters = 6;
+        final int firstTimers = 20;
+        final Duration arrivalWindow = Duration.ofMinutes(60);
+        final Duration tick = Duration.ofSeconds(10);
+
+        FakeHistory history = new FakeHistory();
+        SchedulingPolicy policy = policyFactory.apply(history);
+
+        Map<Instant, List<QueueItem>> arrivals = new TreeMap<>();
+        for (int i = 0; i < resubmitters; i++) {
+            // The surge is already underway: resubmitters were graded several times in the last hour
+            for (int j = 1; j <= 3; j++) {
+                history.grade("resubmitter" + i, START.minus(Duration.ofMinutes(15L * j)));
+            }
+            arrivals.computeIfAbsent(START, k -> new ArrayList<>())
+                    .add(item("resubmitter" + i, Phase.Phase3, START, false));
+        }
+        for (int i = 0; i < firstTimers; i++) {
+            Instant arrival = START.plusSeconds(arrivalWindow.toSeconds() * i / firstTimers);
+            arrivals.computeIfAbsent(arrival, k -> new ArrayList<>())
+                    .add(item("student" + i, Phase.Phase3, arrival, false));
+        }
+
+        List<QueueItem> waiting = new ArrayList<>();
+        Map<QueueItem, Instant> running = new HashMap<>();
+        List<Long> firstTimeWaits = new ArrayList<>();
+        int resubmitterGradings = 0;
+
+        Instant end = START.plus(arrivalWindow).plus(Duration.ofHours(2));
+        for (Instant now = START; now.isBefore(end) && firstTimeWaits.size() < firstTimers; now = now.plus(tick)) {
+            for (var iterator = running.entrySet().iterator(); iterator.hasNext(); ) {
+                var entry = iterator.next();
+                if (!entry.getValue().isAfter(now)) {
+                    QueueItem done = entry.getKey();
+                    history.grade(done.netId(), now);
+                    iterator.remove();
+                    if (done.netId().startsWith("resubmitter")) {
+                        Instant resubmit = now.plus(resubmitDelay);
+                        arrivals.computeIfAbsent(resubmit, k -> new ArrayList<>())
+                                .add(item(done.netId(), done.phase(), resubmit, false));
+                    }
+                }
+            }
+
+            Instant current = now;
+            arrivals.entrySet().removeIf(entry -> {
+                if (entry.getKey().isAfter(current)) return false;
+                waiting.addAll(entry.getValue());
+                return true;
+            });
+
+            while (running.size() < workers && !waiting.isEmpty()) {
+                QueueItem next = policy.order(waiting, now).getFirst();
+                waiting.remove(next);
+                running.put(next, now.plus(gradingTime));
+                if (next.netId().startsWith("resubmitter")) {
+                    resubmitterGradings++;
+                } else {
+                    firstTimeWaits.add(Duration.between(next.timeAdded(), now).toSeconds());
+                }
+            }
+        }
+
+        assertEquals(firstTimers, firstTimeWaits.size(), "Every first time submission should be graded");
+        return new SimulationResult(firstTimeWaits, resubmitterGradings);
+    }
+
+    private static double percentile(List<Long> values, int percentile) {
+        List<Long> sorted = values.stream().sorted().toList();
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    private static QueueItem item(String netId, Phase phase, Instant timeAdded, boolean admin) {
+        return new QueueItem(netId, phase, timeAdded, false, "https://github.com/" + netId + "/chess", admin);
+    }
+}
@@ -0,0 +1,166 @@
+package edu.byu.cs.autograder.scheduling;
+
+import edu.byu.cs.model.Phase;
+import edu.byu.cs.model.QueueItem;
+import edu.byu.cs.util.ProcessMetrics;
+import edu.byu.cs.util.ResourceUsage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaitTimeEstimatorTest {
+
+    private static final Instant NOW = Instant.parse("2024-03-01T12:00:00Z");
+
+    @Test
+    void expectedDuration__defaultsWithoutHistory() {
+        WaitTimeEstimator estimator = new WaitTimeEstimator();
+
+        assertEquals(WaitTimeEstimator.DEFAULT_DURATION, estimator.expectedDuration(Phase.Phase3));
+    }
+
+    @Test
+    void expectedDuration__averagesRecentRunsOfPhase() {
+        WaitTimeEstimator estimator = new WaitTimeEstimator();
+        estimator.record(Phase.Phase3, Map.of(), Duration.ofMinutes(2));
+        estimator.record(Phase.Phase3, Map.of(), Duration.ofMinutes(4));
+        estimator.record(Phase.Phase0, Map.of(), Duration.ofSeconds(30));
+
+        assertEquals(Duration.ofMinutes(3), estimator.expectedDuration(Phase.Phase3));
+        assertEquals(Duration.ofSeconds(30), estimator.expectedDuration(Phase.Phase0));
+        assertEquals(2, estimator.samples(Phase.Phase3));
+    }
+
+    @Test
+    void expectedDuration__fallsBackToOtherPhases() {
+        WaitTimeEstimator estimator = new WaitTimeEstimator();
+        estimator.record(Phase.Phase3, Map.of(), Duration.ofMinutes(2));
+
+        assertEquals(Duration.ofMinutes(2), estimator.expectedDuration(Phase.Phase4));
+    }
+
+    @Test
+    void expectedDuration__rollingWindow() {
+        WaitTimeEstimator estimator = new WaitTimeEstimator();
+        for (int i = 0; i < WaitTimeEstimator.WINDOW; i++) {
+            estimator.record(Phase.Phase3, Map.of(), Duration.ofMinutes(10));
+        }
+        for (int i = 0; i < WaitTimeEstimator.WINDOW; i++) {
+            estimator.record(Phase.Phase3, Map.of(), Duration.ofMinutes(1));
+        }
+
+        assertEquals(Duration.ofMinutes(1), estimator.expectedDuration(Phase.Phase3));
+        assertEquals(WaitTimeEstimator.WINDOW, estimator.samples(Phase.Phase3));
+    }
+
+    @Test
+    void estimate__sharesWorkers() {
+        WaitTimeEstimator estimator = new WaitTimeEstimator();
+        estimator.record(Phase.Phase3, Map.of(), Duration.ofMinutes(2));
+        List<QueueItem> waiting = List.of(item("a"), item("b"), item("c"));
+        List<WaitTimeEstimator.Running> running =
+                List.of(new WaitTimeEstimator.Running(Phase.Phase3, NOW.minus(Duration.ofMinutes(1))));
+
+        Map<String, WaitTimeEstimator.Estimate> estimates = estimator.estimate(waiting, running, 2, NOW);
+
+        assertEquals(List.of("a", "b", "c"), List.copyOf(estimates.keySet()));
+        assertEquals(new WaitTimeEstimator.Estimate(NOW, NOW.plus(Duration.ofMinutes(2))), estimates.get("a"));
+        assertEquals(new WaitTimeEstimator.Estimate(NOW.plus(Duration.ofMinutes(1)), NOW.plus(Duration.ofMinutes(3))),
+                estimates.get("b"));
+        assertEquals(new WaitTimeEstimator.Estimate(NOW.plus(Duration.ofMinutes(2)), NOW.plus(Duration.ofMinutes(4))),
+                estimates.get("c"));
+    }
+
+    @Test
+    void estimate__overdueRunsFinishNow() {
+        WaitTimeEstimator estimator = new WaitTimeEstimator();
+        List<WaitTimeEstimator.Running> running =
+                List.of(new WaitTimeEstimator.Running(Phase.Phase3, NOW.minus(Duration.ofHours(1))));
+
+        Map<String, WaitTimeEstimator.Estimate> estimates = estimator.estimate(List.of(item("a")), running, 1, NOW);
+
+        assertEquals(NOW, estimates.get("a").start());
+    }
+
+    @Test
+    void gradingTimings__recordsStages() {
+        MutableClock clock = new MutableClock();
+        GradingTimings timings = new GradingTimings(Phase.Phase3, clock);
+        timings.begin(GradingTimings.Stage.CLONE);
+        clock.advance(Duration.ofSeconds(5));
+        timings.begin(GradingTimings.Stage.COMPILE);
+        clock.advance(Duration.ofSeconds(20));
+        timings.begin(GradingTimings.Stage.CLONE);
+        clock.advance(Duration.ofSeconds(1));
+
+        WaitTimeEstimator estimator = new WaitTimeEstimator();
+        timings.finish(estimator);
+
+        assertEquals(Map.of(GradingTimings.Stage.CLONE, Duration.ofSeconds(6),
+                GradingTimings.Stage.COMPILE, Duration.ofSeconds(20)), timings.stages());
+        assertEquals(Duration.ofSeconds(26), estimator.expectedDuration(Phase.Phase3));
+        assertEquals(Duration.ofSeconds(20),
+                estimator.expectedStageDurations(Phase.Phase3).get(GradingTimings.Stage.COMPILE));
+    }
+
+    @Test
+    void gradingTimings__recordsProcessUsagePerStage() {
+        MutableClock clock = new MutableClock();
+        GradingTimings timings = new GradingTimings(Phase.Phase3, clock);
+        timings.begin(GradingTimings.Stage.COMPILE);
+        timings.addProcess(process(Duration.ofSeconds(3), 300));
+        timings.addProcess(process(Duration.ofSeconds(2), 500));
+        timings.begin(GradingTimings.Stage.PASSOFF_TESTS);
+        timings.addProcess(process(Duration.ofSeconds(10), 800));
+
+        WaitTimeEstimator estimator = new WaitTimeEstimator();
+        timings.finish(estimator);
+        estimator.record(Phase.Phase3, Map.of(),
+                Map.of(GradingTimings.Stage.COMPILE, new ResourceUsage(Duration.ofSeconds(1), 100)), Duration.ZERO);
+
+        assertEquals(new ResourceUsage(Duration.ofSeconds(5), 500), timings.usage().get(GradingTimings.Stage.COMPILE));
+        Map<GradingTimings.Stage, ResourceUsage> expected = estimator.expectedStageUsage(Phase.Phase3);
+        assertEquals(new ResourceUsage(Duration.ofSeconds(3), 300), expected.get(GradingTimings.Stage.COMPILE));
+        assertEquals(new ResourceUsage(Duration.ofSeconds(10), 800), expected.get(GradingTimings.Stage.PASSOFF_TESTS));
+    }
+
+    private static ProcessMetrics process(Duration cpuTime, long peakRssBytes) {
+        return new ProcessMetrics("java", NOW, Duration.ZERO, Duration.ZERO, 0, 0, 0,
+                new ResourceUsage(cpuTime, peakRssBytes));
+    }
+
+    private static QueueItem item(String netId) {
+        return new QueueItem(netId, Phase.Phase3, NOW, false, "https://github.com/" + netId + "/chess", false);
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = NOW;
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
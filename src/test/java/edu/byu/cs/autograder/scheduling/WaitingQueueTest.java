@@ -0,0 +1,138 @@
+package edu.byu.cs.autograder.scheduling;
+
+import edu.byu.cs.model.Phase;
+import edu.byu.cs.model.QueueItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaitingQueueTest {
+
+    private static final Instant START = Instant.parse("2024-03-01T12:00:00Z");
+
+    private WaitingQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new WaitingQueue(new FifoSchedulingPolicy());
+        for (int i = 0; i < 5; i++) {
+            queue.add(item("student" + i, START.plusSeconds(i * 10L), false), START);
+        }
+    }
+
+    @Test
+    void position__inPolicyOrder() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i + 1, queue.position("student" + i));
+        }
+        assertEquals(0, queue.position("missing"));
+        assertEquals(5, queue.size());
+    }
+
+    @Test
+    void add__onlyReportsStudentsBehind() {
+        Map<String, Integer> changed = queue.add(item("newcomer", START.plusSeconds(25), false), START);
+
+        assertEquals(Map.of("newcomer", 4, "student3", 5, "student4", 6), changed);
+    }
+
+    @Test
+    void add__atEndOnlyReportsNewStudent() {
+        Map<String, Integer> changed = queue.add(item("last", START.plusSeconds(100), false), START);
+
+        assertEquals(Map.of("last", 6), changed);
+    }
+
+    @Test
+    void add__replacesExistingSubmission() {
+        Map<String, Integer> changed = queue.add(item("student1", START.plusSeconds(35), false), START);
+
+        assertEquals(Map.of("student2", 2, "student3", 3, "student1", 4), changed);
+        assertEquals(5, queue.size());
+    }
+
+    @Test
+    void remove__onlyReportsStudentsBehind() {
+        Map<String, Integer> changed = queue.remove("student3");
+
+        assertEquals(Map.of("student4", 4), changed);
+        assertEquals(0, queue.position("student3"));
+        assertEquals(Map.of(), queue.remove("student3"));
+    }
+
+    @Test
+    void sync__reportsOnlyChangedPositions() {
+        List<QueueItem> waiting = List.of(
+                item("student0", START, false),
+                item("student2", START.plusSeconds(20), false),
+                item("student3", START.plusSeconds(30), false),
+                item("student4", START.plusSeconds(40), false),
+                item("remote", START.plusSeconds(50), false));
+
+        Map<String, Integer> changed = queue.sync(waiting, START);
+
+        assertEquals(Map.of("student2", 2, "student3", 3, "student4", 4, "remote", 5), changed);
+        assertEquals(List.of("student0", "student2", "student3", "student4", "remote"),
+                queue.inOrder().stream().map(QueueItem::netId).toList());
+    }
+
+    @Test
+    void position__fairPolicyPutsAdminsFirst() {
+        WaitingQueue fairQueue = new WaitingQueue(new FairSchedulingPolicy(new SchedulingHistory() {
+            @Override
+            public int gradedSince(String netId, Instant since) {
+                return 0;
+            }
+
+            @Override
+            public boolean hasSubmitted(String netId, Phase phase) {
+                return true;
+            }
+
+            @Override
+            public Instant dueDate(String netId, Phase phase) {
+                return null;
+            }
+        }));
+        fairQueue.add(item("student", START, false), START);
+        fairQueue.add(item("admin", START.plusSeconds(60), true), START);
+
+        assertEquals(1, fairQueue.position("admin"));
+        assertEquals(2, fairQueue.position("student"));
+    }
+
+    @Test
+    void add__lookupsDoNotHoldTheLock() throws Exception {
+        CountDownLatch lookingUp = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WaitingQueue slowQueue = new WaitingQueue((item, now) -> {
+            lookingUp.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new FifoSchedulingPolicy().priority(item, now);
+        });
+        Thread adding = Thread.ofVirtual().start(() -> slowQueue.add(item("slow", START, false), START));
+
+        assertTrue(lookingUp.await(5, TimeUnit.SECONDS));
+        assertEquals(0, slowQueue.position("slow"));
+        assertEquals(0, slowQueue.size());
+
+        release.countDown();
+        adding.join();
+        assertEquals(1, slowQueue.position("slow"));
+    }
+
+    private static QueueItem item(String netId, Instant timeAdded, boolean admin) {
+        return new QueueItem(netId, Phase.Phase3, timeAdded, false, "https://github.com/" + netId + "/chess", admin);
+    }
+}
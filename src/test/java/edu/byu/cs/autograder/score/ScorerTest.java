@@ -1,5 +1,6 @@
 package edu.byu.cs.autograder.score;
 
+import edu.byu.cs.autograder.CancellationToken;
 import edu.byu.cs.autograder.GradingContext;
 import edu.byu.cs.autograder.GradingException;
 import edu.byu.cs.autograder.GradingObserver;
@@ -100,14 +101,14 @@ class ScorerTest {
         DaoService.getConfigurationDao().setConfiguration(ConfigurationDao.Configuration.PHASE3_ASSIGNMENT_NUMBER, 0, Integer.class);
 
         DaoService.getUserDao().insertUser(new User("testNetId", 123, "testFirst", "testLast", "testRepoUrl", User.Role.STUDENT));
-        DaoService.getQueueDao().add(new QueueItem("testNetId", Phase.Phase0, Instant.now(), false));
+        DaoService.getQueueDao().add(new QueueItem("testNetId", Phase.Phase0, Instant.now(), false, "testRepoUrl", false));
 
         mockObserver = Mockito.mock(GradingObserver.class);
 
         gradingContext = new GradingContext(
                 "testNetId", Phase.Phase0, "testPhasesPath", "testStagePath",
                 "testRepoUrl", new File(""),
-                standardCVConfig, mockObserver, false);
+                standardCVConfig, mockObserver, false, null, new CancellationToken());
 
 
     }
@@ -191,7 +192,7 @@ class ScorerTest {
         gradingContext = new GradingContext(
                 "testNetId", Phase.Phase0, "testPhasesPath", "testStagePath",
                 "testRepoUrl", new File(""),
-                standardCVConfig, mockObserver, true);
+                standardCVConfig, mockObserver, true, null, new CancellationToken());
 
         Submission submission = scoreRubric(constructRubric(1f));
 
@@ -213,8 +214,8 @@ class ScorerTest {
         gradingContext = new GradingContext(
                 "testNetId", Phase.Quality, "testPhasesPath", "testStagePath",
                 "testRepoUrl", new File(""),
-                standardCVConfig, mockObserver, false);
-        addQueueItem(new QueueItem("testNetId", Phase.Phase0, Instant.now(), true));
+                standardCVConfig, mockObserver, false, null, new CancellationToken());
+        addQueueItem(new QueueItem("testNetId", Phase.Phase0, Instant.now(), true, "testRepoUrl", false));
 
         Rubric emptyRubric = new Rubric(new EnumMap<>(Rubric.RubricType.class), true, "testNotes");
         Submission submission = scoreRubric(emptyRubric);
@@ -360,7 +361,7 @@ class ScorerTest {
         gradingContext = new GradingContext(
                 "testNetId", Phase.Phase3, "testPhasesPath", "testStagePath",
                 "testRepoUrl", new File(""),
-                standardCVConfig, mockObserver, false);
+                standardCVConfig, mockObserver, false, null, new CancellationToken());
 
         for (int i = 0; i < values.length; i++) {
             Phase3SubmissionValues value = values[i];
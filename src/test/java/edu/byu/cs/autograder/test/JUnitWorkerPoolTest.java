@@ -0,0 +1,343 @@
+package edu.byu.cs.autograder.test;
+
+import edu.byu.cs.autograder.GradingException;
+import edu.byu.cs.autograder.resources.Workspace;
+import edu.byu.cs.model.TestNode;
+import edu.byu.cs.util.Cgroup;
+import edu.byu.cs.util.OutputCapture;
+import edu.byu.cs.util.ProcessAccount;
+import edu.byu.cs.util.ProcessMetrics;
+import edu.byu.cs.util.ProcessUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JUnitWorkerPoolTest {
+
+    private static final String SAMPLE_TEST = """
+            package sample;
+            class SampleTest {
+                @org.junit.jupiter.api.Test
+                void prints() {
+                    System.out.println("pid " + ProcessHandle.current().pid());
+                    System.err.println("error output");
+                }
+            }
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private JUnitWorkerPool pool;
+    private Workspace workspace;
+
+    /**
+     * Classes from each jar the worker needs, which the JVM running these tests has loaded somewhere
+     */
+    private static final List<String> RUNTIME_CLASSES = List.of(
+            "org.junit.platform.launcher.core.LauncherFactory",
+            "org.junit.platform.engine.discovery.DiscoverySelectors",
+            "org.junit.platform.commons.util.ReflectionUtils",
+            "org.junit.jupiter.engine.JupiterTestEngine",
+            "org.junit.jupiter.api.Test",
+            "org.opentest4j.AssertionFailedError",
+            "org.apiguardian.api.API");
+
+    /**
+     * @return the jars of the JUnit Platform running these tests, for a worker to run on
+     */
+    static List<File> runtime() throws URISyntaxException {
+        Set<File> runtime = new LinkedHashSet<>();
+        for (String className : RUNTIME_CLASSES) {
+            try {
+                Class<?> type = Class.forName(className, false, Thread.currentThread().getContextClassLoader());
+                runtime.add(new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()));
+            } catch (ClassNotFoundException e) {
+                Assumptions.abort("The JUnit Platform isn't visible to the tests: " + className);
+            }
+        }
+        return List.copyOf(runtime);
+    }
+
+    @BeforeEach
+    void setUp() throws URISyntaxException {
+        pool = new JUnitWorkerPool(runtime());
+        workspace = new Workspace("test", tempDir.toFile(), "db", "user", "password");
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void run__reusesWorkerWithinRun() throws IOException, ProcessUtils.ProcessException {
+        File tests = compile("sample", SAMPLE_TEST);
+        pool.prepare(workspace);
+
+        OutputCapture firstErr = OutputCapture.all();
+        String first = run(tests, firstErr);
+        String second = run(tests, OutputCapture.all());
+
+        assertEquals(first, second);
+        assertEquals("error output", firstErr.text().strip());
+    }
+
+    @Test
+    void recycle__startsFreshWorker() throws IOException, ProcessUtils.ProcessException {
+        File tests = compile("sample", SAMPLE_TEST);
+        String first = run(tests, OutputCapture.all());
+
+        pool.recycle(workspace);
+
+        assertNotEquals(first, run(tests, OutputCapture.all()));
+    }
+
+    @Test
+    void run__leftoverThreadsRetireWorker() throws IOException, ProcessUtils.ProcessException {
+        File tests = compile("sample", SAMPLE_TEST);
+        File leaky = compile("leaky", """
+                package leaky;
+                class LeakyTest {
+                    @org.junit.jupiter.api.Test
+                    void leaks() {
+                        new Thread(() -> { try { Thread.sleep(60000); } catch (InterruptedException e) { } }).start();
+                    }
+                }
+                """);
+        String first = run(tests, OutputCapture.all());
+
+        run(leaky, "leaky", OutputCapture.all(), OutputCapture.all());
+
+        assertNotEquals(first, run(tests, OutputCapture.all()));
+    }
+
+    @Test
+    void run__testExitingJvm() throws IOException, ProcessUtils.ProcessException {
+        File exiting = compile("exiting", """
+                package exiting;
+                class ExitingTest {
+                    @org.junit.jupiter.api.Test
+                    void exits() {
+                        System.err.println("leaving");
+                        System.exit(3);
+                    }
+                }
+                """);
+        OutputCapture stdErr = OutputCapture.all();
+
+        assertEquals(1, run(exiting, "exiting", OutputCapture.all(), stdErr));
+        assertTrue(stdErr.text().contains("leaving"));
+        assertTrue(run(compile("sample", SAMPLE_TEST), OutputCapture.all()).startsWith("pid "));
+    }
+
+    @Test
+    void run__partitionsKeepTheirOwnClassesAndOutput() throws IOException, ProcessUtils.ProcessException {
+        File first = compile("sample", SAMPLE_TEST);
+        File second = tempDir.resolve("shadow-classes").toFile();
+        Path sources = tempDir.resolve("shadow-src").resolve("sample");
+        Files.createDirectories(sources);
+        Files.writeString(sources.resolve("SampleTest.java"), """
+                package sample;
+                class SampleTest {
+                    @org.junit.jupiter.api.Test
+                    void prints() {
+                        System.out.print("shadow");
+                        System.err.println("shadow error");
+                    }
+                }
+                """);
+        File jupiterApi = new File(org.junit.jupiter.api.Test.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+        assertTrue(TestCompiler.compile(sources.getParent().toFile(), List.of(jupiterApi), second).success());
+        OutputCapture firstOut = OutputCapture.all();
+        OutputCapture firstErr = OutputCapture.all();
+        OutputCapture secondOut = OutputCapture.all();
+        OutputCapture secondErr = OutputCapture.all();
+
+        JUnitWorkerPool.Result result = pool.run(workspace, List.of(
+                new JUnitWorkerPool.Partition(List.of(first), Set.of("sample"), Map.of(), new File(first, "reports"), firstOut, firstErr, outcome -> { }),
+                new JUnitWorkerPool.Partition(List.of(second), Set.of("sample"), Map.of(), new File(second, "reports"), secondOut, secondErr, outcome -> { })),
+                30000);
+
+        assertEquals(0, result.exitCode());
+        assertTrue(firstOut.text().startsWith("pid "));
+        assertEquals("error output", firstErr.text().strip());
+        assertEquals("shadow", secondOut.text().strip());
+        assertEquals("shadow error", secondErr.text().strip());
+    }
+
+    @Test
+    void run__failFastStopsAtFirstFailure() throws IOException, ProcessUtils.ProcessException, GradingException {
+        File failing = compile("failing", """
+                package failing;
+                @org.junit.jupiter.api.TestMethodOrder(org.junit.jupiter.api.MethodOrderer.OrderAnnotation.class)
+                class FailingTest {
+                    @org.junit.jupiter.api.Test @org.junit.jupiter.api.Order(1)
+                    void passes() { }
+                    @org.junit.jupiter.api.Test @org.junit.jupiter.api.Order(2)
+                    void fails() { org.junit.jupiter.api.Assertions.fail("broken"); }
+                    @org.junit.jupiter.api.Test @org.junit.jupiter.api.Order(3)
+                    void runsLater() { System.out.println("ran after the failure"); }
+                }
+                """);
+        File reports = tempDir.resolve("fail-fast-reports").toFile();
+        OutputCapture stdOut = OutputCapture.all();
+        OutputCapture stdErr = OutputCapture.all();
+        OutputCapture laterOut = OutputCapture.all();
+        String before = run(compile("sample", SAMPLE_TEST), OutputCapture.all());
+
+        JUnitWorkerPool.Result result = pool.run(workspace, List.of(
+                new JUnitWorkerPool.Partition(List.of(failing), Set.of("failing"),
+                        Map.of(JUnitWorkerMain.FAIL_FAST, "true"), reports, stdOut, stdErr, outcome -> { }),
+                new JUnitWorkerPool.Partition(List.of(tempDir.resolve("sample-classes").toFile()), Set.of("sample"),
+                        Map.of(), tempDir.resolve("later-reports").toFile(), laterOut, OutputCapture.all(), outcome -> { })),
+                30000);
+
+        assertEquals(0, result.exitCode());
+        assertEquals(1, result.partitionsRun());
+        assertFalse(stdOut.text().contains("ran after the failure"));
+        assertEquals("", laterOut.text());
+        assertTrue(stdErr.text().contains("Stopped at the first failing test"));
+        TestNode root = new TestAnalyzer().parse(new File(reports, JUnitWorkerMain.REPORT_NAME), Set.of(), "").root();
+        assertEquals(1, root.getNumTestsPassed());
+        assertEquals(1, root.getNumTestsFailed());
+        assertNotEquals(before, run(tempDir.resolve("sample-classes").toFile(), OutputCapture.all()));
+    }
+
+    @Test
+    void run__failFastIgnoresExemptFailures() throws IOException, ProcessUtils.ProcessException {
+        File extraCredit = compile("castling", """
+                package castling;
+                class CastlingTest {
+                    @org.junit.jupiter.api.Test
+                    void fails() { org.junit.jupiter.api.Assertions.fail("not implemented"); }
+                    @org.junit.jupiter.api.Test
+                    void runsAfterTheFailure() { System.out.println("still running"); }
+                }
+                """);
+        OutputCapture stdOut = OutputCapture.all();
+        OutputCapture laterOut = OutputCapture.all();
+
+        JUnitWorkerPool.Result result = pool.run(workspace, List.of(
+                new JUnitWorkerPool.Partition(List.of(extraCredit), Set.of("castling"),
+                        Map.of(JUnitWorkerMain.FAIL_FAST, "true", JUnitWorkerMain.FAIL_FAST_EXEMPT, "EnPassantTest;CastlingTest"),
+                        tempDir.resolve("castling-reports").toFile(), stdOut, OutputCapture.all(), outcome -> { }),
+                new JUnitWorkerPool.Partition(List.of(compile("sample", SAMPLE_TEST)), Set.of("sample"), Map.of(),
+                        tempDir.resolve("reports").toFile(), laterOut, OutputCapture.all(), outcome -> { })),
+                30000);
+
+        assertEquals(0, result.exitCode());
+        assertEquals(2, result.partitionsRun());
+        assertTrue(stdOut.text().contains("still running"));
+        assertTrue(laterOut.text().startsWith("pid "));
+    }
+
+    @Test
+    void run__reportsEachOutcomeAsItFinishes() throws IOException, ProcessUtils.ProcessException {
+        File tests = compile("outcomes", """
+                package outcomes;
+                class OutcomesTest {
+                    @org.junit.jupiter.api.Test @org.junit.jupiter.api.DisplayName("Passes Quietly")
+                    void passes() { System.out.print("no line break"); }
+                    @org.junit.jupiter.api.Test
+                    void fails() { org.junit.jupiter.api.Assertions.fail("broken"); }
+                    @org.junit.jupiter.api.Test @org.junit.jupiter.api.Disabled
+                    void disabled() { }
+                    @org.junit.jupiter.api.Nested
+                    class Inner {
+                        @org.junit.jupiter.api.Test
+                        void nested() { }
+                    }
+                }
+                """);
+        OutputCapture stdOut = OutputCapture.all();
+        List<JUnitWorkerPool.TestOutcome> outcomes = new ArrayList<>();
+        LiveTestResults liveResults = new LiveTestResults("sample", Set.of(), null);
+
+        JUnitWorkerPool.Result result = pool.run(workspace, List.of(new JUnitWorkerPool.Partition(List.of(tests), Set.of("outcomes"),
+                Map.of(), tempDir.resolve("reports").toFile(), stdOut, OutputCapture.all(), outcome -> {
+                    outcomes.add(outcome);
+                    liveResults.accept(outcome);
+                })), 30000);
+
+        assertEquals(0, result.exitCode());
+        assertEquals("no line break", stdOut.text().strip());
+        assertEquals(4, outcomes.size());
+        JUnitWorkerPool.TestOutcome failed = outcomes.stream()
+                .filter(outcome -> outcome.name().equals("fails()")).findFirst().orElseThrow();
+        assertEquals("outcomes.OutcomesTest", failed.className());
+        assertTrue(failed.failure().contains("broken"));
+
+        TestNode root = liveResults.analysis("").root();
+        assertEquals(3, root.getNumTestsPassed());
+        assertEquals(1, root.getNumTestsFailed());
+        TestNode testClass = root.getChildren().get("OutcomesTest");
+        assertTrue(testClass.getChildren().get("Passes Quietly").getPassed());
+        assertFalse(testClass.getChildren().get("fails()").getPassed());
+        assertTrue(root.getChildren().get("OutcomesTest$Inner").getChildren().get("nested()").getPassed());
+    }
+
+    @Test
+    void prepare__startsWorkerInTheBoundAccountsCgroup() throws IOException, ProcessUtils.ProcessException {
+        File tests = compile("sample", SAMPLE_TEST);
+        // Without caps the cgroup only writes the pids that join it, so a plain directory stands in for it
+        Cgroup cgroup = Cgroup.create(tempDir.resolve("cgroup"), "run", 0, 0);
+        List<ProcessMetrics> reported = new ArrayList<>();
+        ProcessAccount account = new ProcessAccount(cgroup, reported::add);
+        account.bind();
+        String pid;
+        try {
+            pool.prepare(workspace);
+            pid = run(tests, OutputCapture.all());
+        } finally {
+            account.unbind();
+        }
+
+        assertEquals(pid, "pid " + Files.readString(cgroup.path().resolve("cgroup.procs")).strip());
+        assertEquals(1, reported.size());
+        assertEquals("java (junit worker)", reported.getFirst().program());
+        assertEquals(0, reported.getFirst().exitCode());
+    }
+
+    /**
+     * @return what the sample test printed to standard out: the worker's pid
+     */
+    private String run(File tests, OutputCapture stdErr) throws ProcessUtils.ProcessException {
+        OutputCapture stdOut = OutputCapture.all();
+        assertEquals(0, run(tests, "sample", stdOut, stdErr));
+        return stdOut.text().lines().filter(line -> line.startsWith("pid ")).findFirst().orElseThrow();
+    }
+
+    private int run(File tests, String packageName, OutputCapture stdOut, OutputCapture stdErr)
+            throws ProcessUtils.ProcessException {
+        return pool.run(workspace, List.of(new JUnitWorkerPool.Partition(List.of(tests), Set.of(packageName), Map.of(),
+                tempDir.resolve("reports").toFile(), stdOut, stdErr, outcome -> { })), 30000).exitCode();
+    }
+
+    private File compile(String name, String source) throws IOException {
+        Path sources = tempDir.resolve(name + "-src");
+        Path file = sources.resolve(name).resolve(source.contains("SampleTest") ? "SampleTest.java"
+                : Character.toUpperCase(name.charAt(0)) + name.substring(1) + "Test.java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, source);
+        File classes = tempDir.resolve(name + "-classes").toFile();
+        File jupiterApi = new File(org.junit.jupiter.api.Test.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+        assertTrue(TestCompiler.compile(sources.toFile(), List.of(jupiterApi), classes).success());
+        return classes;
+    }
+}
@@ -0,0 +1,79 @@
+package edu.byu.cs.autograder.test;
+
+import edu.byu.cs.autograder.GradingException;
+import edu.byu.cs.autograder.GradingObserver;
+import edu.byu.cs.model.TestAnalysis;
+import edu.byu.cs.model.TestNode;
+import edu.byu.cs.util.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveTestResultsTest {
+
+    private static final String FAILURE = """
+            org.opentest4j.AssertionFailedError: expected: <true> but was: <false>
+            	at passoff.chess.ChessBoardTests.addPiece(ChessBoardTests.java:31)
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void analysis__matchesParsedReport() throws GradingException {
+        String xml = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <testsuite name="JUnit Jupiter" tests="3" skipped="0" failures="1" errors="0" time="0.025">
+                <testcase name="addPiece()" classname="passoff.chess.ChessBoardTests" time="0">
+                <failure message="expected: &lt;true&gt; but was: &lt;false&gt;" type="org.opentest4j.AssertionFailedError"><![CDATA[%s]]></failure>
+                <system-out><![CDATA[
+                unique-id: [engine:junit-jupiter]/[class:passoff.chess.ChessBoardTests]/[method:addPiece()]
+                display-name: Add Piece
+                ]]></system-out>
+                </testcase>
+                <testcase name="[1] WHITE" classname="passoff.chess.piece.PawnMoveTests" time="0">
+                <system-out><![CDATA[
+                unique-id: [engine:junit-jupiter]/[class:passoff.chess.piece.PawnMoveTests]/[test-template:promotion(ChessGame$TeamColor)]/[test-template-invocation:#1]
+                display-name: Promotion
+                ]]></system-out>
+                </testcase>
+                <testcase name="castleWhite()" classname="passoff.chess.extracredit.CastlingTests" time="0">
+                <system-out><![CDATA[
+                unique-id: [engine:junit-jupiter]/[class:passoff.chess.extracredit.CastlingTests]/[method:castleWhite()]
+                display-name: castleWhite()
+                ]]></system-out>
+                </testcase>
+                </testsuite>
+                """.formatted(FAILURE);
+        File report = tempDir.resolve("TEST-junit-jupiter.xml").toFile();
+        FileUtils.writeStringToFile(xml, report);
+        GradingObserver observer = Mockito.mock(GradingObserver.class);
+        LiveTestResults liveResults = new LiveTestResults("passoff", Set.of("CastlingTests"), observer);
+
+        liveResults.accept(new JUnitWorkerPool.TestOutcome("passoff.chess.ChessBoardTests", "addPiece()",
+                "Add Piece", FAILURE));
+        liveResults.accept(new JUnitWorkerPool.TestOutcome("passoff.chess.piece.PawnMoveTests", "[1] WHITE",
+                "Promotion", null));
+        liveResults.accept(new JUnitWorkerPool.TestOutcome("passoff.chess.extracredit.CastlingTests", "castleWhite()",
+                "castleWhite()", null));
+
+        TestAnalysis live = liveResults.analysis("error");
+        TestAnalysis parsed = new TestAnalyzer().parse(report, Set.of("CastlingTests"), "error");
+        assertEquals(parsed.root().toString(), live.root().toString());
+        assertEquals(parsed.extraCredit().toString(), live.extraCredit().toString());
+        assertEquals("error", live.error());
+        Mockito.verify(observer).notifyTestResult(Mockito.eq("passoff"), Mockito.eq("ChessBoardTests"),
+                ArgumentMatchers.argThat(test -> test.getTestName().equals("Add Piece") && !test.getPassed()));
+        Mockito.verify(observer).notifyTestResult(Mockito.eq("passoff"), Mockito.eq("PawnMoveTests"),
+                ArgumentMatchers.argThat(test -> test.getTestName().equals("Promotion [1] WHITE") && test.getPassed()));
+        Mockito.verify(observer).notifyTestResult(Mockito.eq("passoff"), Mockito.eq("CastlingTests"),
+                ArgumentMatchers.<TestNode>any());
+    }
+}
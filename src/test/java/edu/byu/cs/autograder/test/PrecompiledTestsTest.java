@@ -0,0 +1,152 @@
+package edu.byu.cs.autograder.test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecompiledTestsTest {
+
+    private static final String BOARD_TEST = """
+            package passoff;
+            import chess.ChessBoard;
+            class BoardTest {
+                int size = new ChessBoard().size();
+                String name = ChessBoard.NAME.trim();
+                Object copy = new ChessBoard[0].clone();
+            }
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private File tests;
+    private String hash;
+    private PrecompiledTests cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tests = tempDir.resolve("tests").toFile();
+        write(tests.toPath().resolve("passoff/BoardTest.java"), BOARD_TEST);
+        hash = PrecompiledTests.hashSources(tests);
+        cache = new PrecompiledTests();
+
+        File studentJar = studentJar("v1", "public int size() { return 8; }");
+        File compiled = tempDir.resolve("compiled").toFile();
+        assertTrue(TestCompiler.compile(tests, List.of(studentJar), compiled).success());
+        cache.store(hash, compiled);
+    }
+
+    @Test
+    void restore__sameApi() throws IOException {
+        File output = tempDir.resolve("output").toFile();
+
+        assertTrue(cache.restore(hash, List.of(studentJar("v2", "public int size() { return 10; }")), output));
+        assertTrue(new File(output, "passoff/BoardTest.class").exists());
+    }
+
+    @Test
+    void restore__inheritedMember() throws IOException {
+        File studentJar = studentJar("inherited", """
+                public int other() { return 0; }
+                """, "extends chess.Base", "package chess; public class Base { public int size() { return 8; } }");
+
+        assertTrue(cache.restore(hash, List.of(studentJar), tempDir.resolve("output").toFile()));
+    }
+
+    @Test
+    void restore__changedSignature() throws IOException {
+        File output = tempDir.resolve("output").toFile();
+
+        assertFalse(cache.restore(hash, List.of(studentJar("long", "public long size() { return 8; }")), output));
+        assertFalse(output.exists());
+    }
+
+    @Test
+    void restore__inaccessibleMember() throws IOException {
+        File studentJar = studentJar("private", "private int size() { return 8; }");
+
+        assertFalse(cache.restore(hash, List.of(studentJar), tempDir.resolve("output").toFile()));
+    }
+
+    @Test
+    void restore__changedSources() throws IOException {
+        Files.writeString(tests.toPath().resolve("passoff/BoardTest.java"), BOARD_TEST + "\n// changed");
+
+        assertNotEquals(hash, PrecompiledTests.hashSources(tests));
+        assertFalse(cache.restore(PrecompiledTests.hashSources(tests),
+                List.of(studentJar("v2", "public int size() { return 8; }")), tempDir.resolve("output").toFile()));
+    }
+
+    @Test
+    void restore__missingJar() throws IOException {
+        assertFalse(cache.restore(hash, List.of(tempDir.resolve("missing.jar").toFile()),
+                tempDir.resolve("output").toFile()));
+    }
+
+    @Test
+    void seed__compilesAgainstStarterCode() throws IOException {
+        File phases = tempDir.resolve("phases").toFile();
+        write(phases.toPath().resolve("phase0/passoff/BoardTest.java"), BOARD_TEST);
+        write(phases.toPath().resolve("phase1/passoff/GameTest.java"), "package passoff; class GameTest { chess.ChessGame game; }");
+        File starterCode = tempDir.resolve("starter").toFile();
+        File starterJar = new File(starterCode, "shared/target/shared-test-dependencies.jar");
+        Files.createDirectories(starterJar.getParentFile().toPath());
+        Files.copy(studentJar("starter", "public int size() { throw new RuntimeException(\"Not implemented\"); }")
+                .toPath(), starterJar.toPath());
+
+        PrecompiledTests seeded = new PrecompiledTests();
+        seeded.seed(phases, starterCode);
+
+        File studentJar = studentJar("v2", "public int size() { return 8; }");
+        assertTrue(seeded.restore(PrecompiledTests.hashSources(new File(phases, "phase0")), List.of(studentJar),
+                tempDir.resolve("output").toFile()));
+        // The phase 1 tests don't compile against the starter code, so they're left to each submission
+        assertFalse(seeded.restore(PrecompiledTests.hashSources(new File(phases, "phase1")), List.of(studentJar),
+                tempDir.resolve("output1").toFile()));
+    }
+
+    /**
+     * Builds a jar with a chess.ChessBoard class holding the given size method
+     */
+    private File studentJar(String name, String sizeMethod) throws IOException {
+        return studentJar(name, sizeMethod, "", null);
+    }
+
+    private File studentJar(String name, String sizeMethod, String extendsClause, String extraSource)
+            throws IOException {
+        Path sources = tempDir.resolve(name + "-src");
+        write(sources.resolve("chess/ChessBoard.java"), "package chess; public class ChessBoard " + extendsClause +
+                " { public static final String NAME = new String(\" board \"); " + sizeMethod + " }");
+        if (extraSource != null) write(sources.resolve("chess/Base.java"), extraSource);
+        File classes = tempDir.resolve(name + "-classes").toFile();
+        assertTrue(TestCompiler.compile(sources.toFile(), List.of(), classes).success());
+
+        File jar = tempDir.resolve(name + ".jar").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar.toPath()));
+             Stream<Path> files = Files.walk(classes.toPath())) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                out.putNextEntry(new ZipEntry(classes.toPath().relativize(file).toString()));
+                Files.copy(file, (OutputStream) out);
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
@@ -0,0 +1,107 @@
+package edu.byu.cs.autograder.test;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import edu.byu.cs.autograder.GradingException;
+import edu.byu.cs.model.TestNode;
+import edu.byu.cs.util.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares parsing a large report as a stream against reading it into a string and materializing it with Jackson,
+ * as reports used to be parsed. Writes a report of tests that printed a lot and failed with long stack traces, so it
+ * only runs with -Dbenchmark.tests=true.
+ */
+@EnabledIfSystemProperty(named = "benchmark.tests", matches = "true")
+class TestAnalyzerBenchmarkTest {
+
+    private static final int RUNS = 10;
+
+    private static final int TEST_CASES = 2000;
+
+    private static final int OUTPUT_LINES = 200;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void streamingParseIsFasterAndSmaller() throws IOException, GradingException {
+        File report = writeReport(tempDir.resolve(JUnitWorkerMain.REPORT_NAME));
+
+        // One run of each first, so neither side pays for loading the classes and warming up the JIT
+        TestNode root = new TestAnalyzer().parse(report, Set.of(), "").root();
+        assertEquals(TEST_CASES, root.getNumTestsPassed() + root.getNumTestsFailed());
+        materialize(report);
+
+        long streamingTime = 0;
+        long streamingBytes = 0;
+        long materializedTime = 0;
+        long materializedBytes = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            new TestAnalyzer().parse(report, Set.of(), "");
+            streamingTime += System.nanoTime() - start;
+            streamingBytes += allocatedBytes() - bytes;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            materialize(report);
+            materializedTime += System.nanoTime() - start;
+            materializedBytes += allocatedBytes() - bytes;
+        }
+
+        System.out.printf("%d MB report: streaming %d ms, %d MB allocated; materialized %d ms, %d MB allocated%n",
+                report.length() / 1_000_000, streamingTime / RUNS / 1_000_000, streamingBytes / RUNS / 1_000_000,
+                materializedTime / RUNS / 1_000_000, materializedBytes / RUNS / 1_000_000);
+    }
+
+    private static void materialize(File report) throws IOException {
+        new XmlMapper().readTree(FileUtils.readStringFromFile(report));
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Writes a report in the legacy layout whose tests each printed many lines, every tenth failing with a long
+     * stack trace
+     */
+    private static File writeReport(Path path) throws IOException {
+        String outputLine = "moving piece from e2 to e4 and checking the board ".repeat(2) + "\n";
+        String frame = "\tat passoff.chess.ChessGameTests.makeMove(ChessGameTests.java:123)\n";
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<testsuite name=\"JUnit Jupiter\" tests=\"" + TEST_CASES + "\">\n");
+            for (int i = 0; i < TEST_CASES; i++) {
+                String className = "passoff.chess.Generated" + (i / 50) + "Tests";
+                writer.write("<testcase name=\"test" + i + "()\" classname=\"" + className + "\" time=\"0\">\n");
+                if (i % 10 == 0) {
+                    writer.write("<failure message=\"broken\" type=\"org.opentest4j.AssertionFailedError\"><![CDATA[");
+                    writer.write("org.opentest4j.AssertionFailedError: broken\n");
+                    writer.write(frame.repeat(1000));
+                    writer.write("]]></failure>\n");
+                }
+                writer.write("<system-out><![CDATA[\nunique-id: [engine:junit-jupiter]/[class:" + className
+                        + "]/[method:test" + i + "()]\ndisplay-name: Generated Test " + i + "\n");
+                writer.write(outputLine.repeat(OUTPUT_LINES));
+                writer.write("]]></system-out>\n</testcase>\n");
+            }
+            writer.write("</testsuite>\n");
+        }
+        return path.toFile();
+    }
+}
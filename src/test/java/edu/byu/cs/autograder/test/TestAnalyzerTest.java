@@ -10,6 +10,7 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -265,6 +266,106 @@ class TestAnalyzerTest {
 //        assertNull(root.getChildren().get("ChessGameTests").getEcCategory());
 //    }
 
+    @Test
+    @DisplayName("Reports of several launches")
+    void parse__several_reports() throws GradingException, IOException {
+        String concurrentReport =
+                """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <testsuite name="JUnit Jupiter" tests="1" skipped="0" failures="0" errors="0">
+                <testcase name="pawnMiddleOfBoardWhite()" classname="passoff.chess.piece.PawnMoveTests" time="0">
+                <system-out><![CDATA[
+                display-name: pawnMiddleOfBoardWhite()
+                ]]></system-out>
+                </testcase>
+                </testsuite>
+                """;
+        String sameThreadReport =
+                """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <testsuite name="JUnit Jupiter" tests="1" skipped="0" failures="1" errors="0">
+                <testcase name="clear()" classname="passoff.server.StandardAPITests" time="0">
+                <failure message="expected 200" type="org.opentest4j.AssertionFailedError"><![CDATA[expected 200]]></failure>
+                <system-out><![CDATA[
+                display-name: Clear Test
+                ]]></system-out>
+                </testcase>
+                </testsuite>
+                """;
+        File missing = new File(xmlFromString(concurrentReport).getParentFile(), "missing-" + System.nanoTime() + ".xml");
+
+        TestNode root = new TestAnalyzer().parse(List.of(xmlFromString(concurrentReport), missing,
+                xmlFromString(sameThreadReport)), extraCreditTests, null).root();
+
+        assertEquals(1, root.getNumTestsPassed());
+        assertEquals(1, root.getNumTestsFailed());
+    }
+
+    @Test
+    @DisplayName("Oversized failures are truncated")
+    void parse__oversized_failure() throws GradingException, IOException {
+        String longMessage = "x".repeat(TestAnalyzer.MAX_FAILURE_LENGTH + 100);
+        String input =
+                """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <testsuite name="JUnit Jupiter" tests="1" skipped="0" failures="1" errors="0">
+                <testcase name="clear()" classname="passoff.server.StandardAPITests" time="0">
+                <failure message="too long" type="org.opentest4j.AssertionFailedError"><![CDATA[%s]]></failure>
+                <system-out><![CDATA[
+                display-name: Clear Test
+                ]]></system-out>
+                </testcase>
+                </testsuite>
+                """.formatted(longMessage);
+
+        TestNode root = new TestAnalyzer().parse(xmlFromString(input), extraCreditTests, null).root();
+
+        TestNode test = root.getChildren().get("Clear Test");
+        assertFalse(test.getPassed());
+        assertTrue(test.getErrorMessage().startsWith("x".repeat(TestAnalyzer.MAX_FAILURE_LENGTH) + "\n"));
+        assertTrue(test.getErrorMessage().endsWith("100 characters of the failure omitted ...]"));
+        assertEquals(test.getErrorMessage(), JUnitWorkerMain.truncateFailure(longMessage));
+    }
+
+    @Test
+    @DisplayName("Only the test's own display name is used")
+    void parse__display_name_from_output() throws GradingException, IOException {
+        String input =
+                """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <testsuite name="JUnit Jupiter" tests="2" skipped="1" failures="0" errors="0">
+                <testcase name="[2] BLACK" classname="passoff.chess.ChessGameTests" time="0">
+                <system-out><![CDATA[
+                unique-id: [engine:junit-jupiter]/[class:passoff.chess.ChessGameTests]/[test-template:stalemate(ChessGame$TeamColor)]/[test-template-invocation:#2]
+                display-name: Stalemate
+                report-entry: display-name: printed by the test
+                ]]></system-out>
+                <system-err><![CDATA[display-name: not this one]]></system-err>
+                </testcase>
+                <testcase name="disabled()" classname="passoff.chess.ChessGameTests" time="0">
+                <skipped><![CDATA[void passoff.chess.ChessGameTests.disabled() is @Disabled]]></skipped>
+                <system-out><![CDATA[
+                display-name: Disabled Test
+                ]]></system-out>
+                </testcase>
+                </testsuite>
+                """;
+
+        TestNode root = new TestAnalyzer().parse(xmlFromString(input), extraCreditTests, null).root();
+
+        assertEquals("JUnit Jupiter.passoff.chess.ChessGameTests", root.getTestName());
+        assertEquals(Set.of("Stalemate [2] BLACK", "Disabled Test"), root.getChildren().keySet());
+        assertEquals(2, root.getNumTestsPassed());
+    }
+
+    @Test
+    @DisplayName("Malformed reports are reported as grading errors")
+    void parse__malformed_report() throws IOException {
+        File report = xmlFromString("<testsuite><testcase name=\"unfinished()\"");
+
+        assertThrows(GradingException.class, () -> new TestAnalyzer().parse(report, extraCreditTests, null));
+    }
+
     private File xmlFromString(String xml) throws IOException {
         File file = File.createTempFile("tmp-" + System.currentTimeMillis(), "xml");
         FileUtils.writeStringToFile(xml, file);
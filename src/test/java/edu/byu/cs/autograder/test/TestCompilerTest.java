@@ -0,0 +1,99 @@
+package edu.byu.cs.autograder.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestCompilerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void compile__writesClasses() throws IOException {
+        Path sources = tempDir.resolve("src");
+        write(sources.resolve("passoff/Helper.java"), "package passoff; public class Helper { static int two() { return 2; } }");
+        write(sources.resolve("passoff/ExampleTest.java"), "package passoff; class ExampleTest { int x = Helper.two(); }");
+        File output = tempDir.resolve("out").toFile();
+
+        TestCompiler.Result result = TestCompiler.compile(sources.toFile(), List.of(), output);
+
+        assertTrue(result.success());
+        assertEquals("", result.errors());
+        assertTrue(new File(output, "passoff/ExampleTest.class").exists());
+    }
+
+    @Test
+    void compile__reportsErrorsWithLocation() throws IOException {
+        Path sources = tempDir.resolve("src");
+        write(sources.resolve("passoff/BrokenTest.java"), "package passoff;\nclass BrokenTest {\n int x = missing();\n}");
+
+        TestCompiler.Result result = TestCompiler.compile(sources.toFile(), List.of(), tempDir.resolve("out").toFile());
+
+        assertFalse(result.success());
+        TestCompiler.CompilerMessage message = result.messages().getFirst();
+        assertEquals(Path.of("passoff", "BrokenTest.java").toString(), message.file());
+        assertEquals(3, message.line());
+        assertEquals(Diagnostic.Kind.ERROR, message.kind());
+        assertTrue(result.errors().startsWith("passoff/BrokenTest.java:3: error: cannot find symbol"));
+    }
+
+    @Test
+    void compile__ignoresAnnotationProcessorsOnClasspath() throws IOException {
+        Path marker = tempDir.resolve("processor-ran");
+        Path processorSources = tempDir.resolve("processor-src");
+        write(processorSources.resolve("student/Processor.java"), """
+                package student;
+                @javax.annotation.processing.SupportedAnnotationTypes("*")
+                public class Processor extends javax.annotation.processing.AbstractProcessor {
+                    @Override
+                    public void init(javax.annotation.processing.ProcessingEnvironment environment) {
+                        try {
+                            java.nio.file.Files.writeString(java.nio.file.Path.of("%s"), "ran");
+                        } catch (java.io.IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                    @Override
+                    public boolean process(java.util.Set<? extends javax.lang.model.element.TypeElement> annotations,
+                                           javax.annotation.processing.RoundEnvironment round) {
+                        return false;
+                    }
+                }
+                """.formatted(marker.toString().replace("\\", "\\\\")));
+        File studentClasses = tempDir.resolve("student-classes").toFile();
+        assertTrue(TestCompiler.compile(processorSources.toFile(), List.of(), studentClasses).success());
+        write(studentClasses.toPath().resolve("META-INF/services/javax.annotation.processing.Processor"), "student.Processor");
+        Path sources = tempDir.resolve("src");
+        write(sources.resolve("passoff/ExampleTest.java"), "package passoff; class ExampleTest { }");
+
+        TestCompiler.Result result = TestCompiler.compile(sources.toFile(), List.of(studentClasses),
+                tempDir.resolve("out").toFile());
+
+        assertTrue(result.success(), result.errors());
+        assertFalse(Files.exists(marker));
+    }
+
+    @Test
+    void compile__noSources() throws IOException {
+        Files.createDirectories(tempDir.resolve("empty"));
+
+        TestCompiler.Result result =
+                TestCompiler.compile(tempDir.resolve("empty").toFile(), List.of(), tempDir.resolve("out").toFile());
+
+        assertTrue(result.success());
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
@@ -0,0 +1,78 @@
+package edu.byu.cs.autograder.test;
+
+import edu.byu.cs.autograder.GradingException;
+import edu.byu.cs.autograder.resources.Workspace;
+import edu.byu.cs.model.TestAnalysis;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestHelperTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JUnitWorkerPool pool;
+    private Workspace workspace;
+
+    @BeforeEach
+    void setUp() throws URISyntaxException {
+        pool = new JUnitWorkerPool(JUnitWorkerPoolTest.runtime());
+        workspace = new Workspace("test", tempDir.toFile(), "db", "user", "password");
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void runJUnitTests__setsAfterAnAbortedSetDidNotRun() throws IOException, GradingException {
+        File previousPhase = compile("previous", """
+                package previous;
+                class PreviousTest {
+                    @org.junit.jupiter.api.Test
+                    void fails() { org.junit.jupiter.api.Assertions.fail("broken"); }
+                }
+                """);
+        File passoff = compile("passoff", """
+                package passoff;
+                class PassoffTest {
+                    @org.junit.jupiter.api.Test
+                    void passes() { }
+                }
+                """);
+
+        List<TestAnalysis> results = new TestHelper().runJUnitTests(tempDir.resolve("student.jar").toFile(), List.of(
+                new TestHelper.TestSet(previousPhase, Set.of("previous"), Set.of(), Set.of(),
+                        Map.of(JUnitWorkerMain.FAIL_FAST, "true"), "previous phase passoff", null),
+                new TestHelper.TestSet(passoff, Set.of("passoff"), Set.of(), Set.of(), Map.of(), "passoff", null)),
+                workspace, pool);
+
+        assertEquals(1, results.getFirst().root().getNumTestsFailed());
+        assertNull(results.get(1));
+    }
+
+    private File compile(String name, String source) throws IOException {
+        Path sources = tempDir.resolve(name + "-src");
+        Path file = sources.resolve(name).resolve(Character.toUpperCase(name.charAt(0)) + name.substring(1) + "Test.java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, source);
+        File classes = tempDir.resolve(name + "-classes").toFile();
+        File jupiterApi = new File(org.junit.jupiter.api.Test.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+        assertTrue(TestCompiler.compile(sources.toFile(), List.of(jupiterApi), classes).success());
+        return classes;
+    }
+}
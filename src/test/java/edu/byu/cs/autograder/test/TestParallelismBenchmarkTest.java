@@ -0,0 +1,99 @@
+package edu.byu.cs.autograder.test;
+
+import edu.byu.cs.autograder.resources.Workspace;
+import edu.byu.cs.util.OutputCapture;
+import edu.byu.cs.util.ProcessUtils;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares running the phase 0 and 1 passoff tests one test class at a time against running their classes
+ * concurrently on a test worker. Needs the bundled passoff tests in phases/ and a chess implementation to run them
+ * against, so it only runs with -Dbenchmark.tests=true -Dbenchmark.chessJar=path/to/shared-test-dependencies.jar.
+ */
+@EnabledIfSystemProperty(named = "benchmark.tests", matches = "true")
+class TestParallelismBenchmarkTest {
+
+    private static final int RUNS = 5;
+
+    private static final int PARALLELISM = 4;
+
+    private static final Set<String> PACKAGES =
+            Set.of("passoff.chess", "passoff.chess.piece", "passoff.chess.game", "passoff.chess.extracredit");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void concurrentClassesAreFaster() throws IOException, URISyntaxException, ProcessUtils.ProcessException {
+        String chessJarPath = System.getProperty("benchmark.chessJar");
+        Assumptions.assumeTrue(chessJarPath != null, "No chess implementation given");
+        File chessJar = new File(chessJarPath);
+        File phases = new File("phases");
+        Assumptions.assumeTrue(new File(phases, "phase0").isDirectory() && new File(phases, "phase1").isDirectory(),
+                "The passoff tests aren't in phases/");
+
+        File compiledTests = tempDir.resolve("tests").toFile();
+        File jupiterApi = new File(org.junit.jupiter.api.Test.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        for (String phase : List.of("phase0", "phase1")) {
+            TestCompiler.Result result = TestCompiler.compile(new File(phases, phase), List.of(chessJar, jupiterApi),
+                    compiledTests);
+            assertTrue(result.success(), result.errors());
+        }
+        List<File> classpath = List.of(compiledTests, chessJar, jupiterApi);
+
+        Map<String, String> concurrent = Map.of(
+                "junit.jupiter.execution.parallel.enabled", "true",
+                "junit.jupiter.execution.parallel.mode.default", "same_thread",
+                "junit.jupiter.execution.parallel.mode.classes.default", "concurrent",
+                "junit.jupiter.execution.parallel.config.strategy", "fixed",
+                "junit.jupiter.execution.parallel.config.fixed.parallelism", String.valueOf(PARALLELISM));
+
+        JUnitWorkerPool pool = new JUnitWorkerPool(JUnitWorkerPoolTest.runtime());
+        Workspace workspace = new Workspace("benchmark", tempDir.toFile(), "db", "user", "password");
+        long sameThread = 0;
+        long parallel = 0;
+        try {
+            // One run of each kind first, so neither side pays for loading the classes and warming up the JIT
+            run(pool, workspace, classpath, Map.of());
+            run(pool, workspace, classpath, concurrent);
+            for (int i = 0; i < RUNS; i++) {
+                sameThread += run(pool, workspace, classpath, Map.of());
+                parallel += run(pool, workspace, classpath, concurrent);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        long sameThreadAverage = sameThread / RUNS / 1_000_000;
+        long parallelAverage = parallel / RUNS / 1_000_000;
+        System.out.printf("same thread: %d ms, %d threads on %d cores: %d ms, saved %d ms per run%n", sameThreadAverage,
+                PARALLELISM, Runtime.getRuntime().availableProcessors(), parallelAverage, sameThreadAverage - parallelAverage);
+    }
+
+    /**
+     * @return how long the run took in nanoseconds
+     */
+    private long run(JUnitWorkerPool pool, Workspace workspace, List<File> classpath, Map<String, String> configuration)
+            throws ProcessUtils.ProcessException {
+        long start = System.nanoTime();
+        JUnitWorkerPool.Result result = pool.run(workspace, List.of(new JUnitWorkerPool.Partition(classpath, PACKAGES, configuration,
+                tempDir.resolve("reports").toFile(), OutputCapture.all(), OutputCapture.all(), outcome -> { })), 120000);
+        long elapsed = System.nanoTime() - start;
+        assertEquals(0, result.exitCode());
+        return elapsed;
+    }
+}
@@ -0,0 +1,111 @@
+package edu.byu.cs.controller;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+class GradingEventLogTest {
+
+    @Test
+    void subscribe__replaysEarlierEventsFirst() throws Exception {
+        GradingEventLog log = newLog();
+        log.publish(Map.of("type", "started"));
+        log.publish(Map.of("type", "update", "message", "first"));
+
+        RemoteEndpoint remote = Mockito.mock(RemoteEndpoint.class);
+        Session session = mockSession(remote);
+        assertTrue(log.subscribe(session));
+        log.publish(Map.of("type", "update", "message", "second"));
+
+        InOrder inOrder = inOrder(remote);
+        inOrder.verify(remote).sendString(contains("started"));
+        inOrder.verify(remote).sendString(contains("first"));
+        inOrder.verify(remote).sendString(contains("second"));
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    void subscribe__onlyOnce() throws Exception {
+        GradingEventLog log = newLog();
+        log.publish(Map.of("type", "started"));
+        RemoteEndpoint remote = Mockito.mock(RemoteEndpoint.class);
+        Session session = mockSession(remote);
+
+        assertTrue(log.subscribe(session));
+        assertFalse(log.subscribe(session));
+
+        verify(remote, times(1)).sendString(anyString());
+    }
+
+    @Test
+    void broadcast__notReplayed() throws Exception {
+        GradingEventLog log = newLog();
+        log.broadcast(Map.of("type", "queueStatus", "position", 1, "total", 1));
+
+        RemoteEndpoint remote = Mockito.mock(RemoteEndpoint.class);
+        log.subscribe(mockSession(remote));
+
+        verify(remote, never()).sendString(anyString());
+    }
+
+    @Test
+    void publish__bounded() {
+        GradingEventLog log = newLog();
+        for (int i = 0; i < GradingEventLog.MAX_EVENTS + 10; i++) {
+            log.publish(Map.of("type", "update", "message", String.valueOf(i)));
+        }
+
+        assertEquals(GradingEventLog.MAX_EVENTS, log.events().size());
+        assertEquals("10", log.events().getFirst().get("message"));
+    }
+
+    @Test
+    void publish__keepsLatestTallyOfEachSet() {
+        GradingEventLog log = newLog();
+        log.publish(Map.of("type", "started"));
+        for (int i = 1; i <= GradingEventLog.MAX_EVENTS; i++) {
+            log.publish(Map.of("type", "testResult", "tests", "passoff", "passed", i, "failed", 0));
+        }
+        log.publish(Map.of("type", "update", "message", "Running unit tests"));
+        log.publish(Map.of("type", "testResult", "tests", "unit", "passed", 1, "failed", 0));
+
+        assertEquals(4, log.events().size());
+        assertEquals("started", log.events().getFirst().get("type"));
+        assertEquals(GradingEventLog.MAX_EVENTS, log.events().get(1).get("passed"));
+        assertEquals("unit", log.events().getLast().get("tests"));
+    }
+
+    @Test
+    void finish__keptUntilCutoff() {
+        GradingEventLog log = newLog();
+        log.finish();
+
+        assertTrue(log.isFinished());
+        assertFalse(log.finishedBefore(Instant.now().minusSeconds(60)));
+        assertTrue(log.finishedBefore(Instant.now().plusSeconds(1)));
+
+        log.restart();
+        assertFalse(log.isFinished());
+    }
+
+    private static GradingEventLog newLog() {
+        // Deliver on the calling thread so sends can be verified right away
+        return new GradingEventLog(new NotificationHub(Runnable::run));
+    }
+
+    private static Session mockSession(RemoteEndpoint remote) {
+        Session session = Mockito.mock(Session.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getRemote()).thenReturn(remote);
+        return session;
+    }
+}
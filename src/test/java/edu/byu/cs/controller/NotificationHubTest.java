@@ -0,0 +1,123 @@
+package edu.byu.cs.controller;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+class NotificationHubTest {
+
+    /**
+     * Holds drain tasks until the test runs them, standing in for a client that hasn't read its messages yet
+     */
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    private final NotificationHub hub = new NotificationHub(tasks::add);
+
+    @Test
+    void send__doesNotBlockOnSlowClient() throws Exception {
+        RemoteEndpoint remote = Mockito.mock(RemoteEndpoint.class);
+        Session session = mockSession(remote);
+
+        hub.send(session, Map.of("type", "update", "message", "first"));
+        hub.send(session, Map.of("type", "update", "message", "second"));
+
+        verify(remote, never()).sendString(anyString());
+        assertEquals(2, hub.pending(session));
+
+        runTasks();
+        InOrder inOrder = inOrder(remote);
+        inOrder.verify(remote).sendString(contains("first"));
+        inOrder.verify(remote).sendString(contains("second"));
+    }
+
+    @Test
+    void send__coalescesQueueStatus() throws Exception {
+        RemoteEndpoint remote = Mockito.mock(RemoteEndpoint.class);
+        Session session = mockSession(remote);
+
+        hub.send(session, Map.of("type", "queueStatus", "position", 3, "total", 3));
+        hub.send(session, Map.of("type", "queueStatus", "position", 2, "total", 3));
+        hub.send(session, Map.of("type", "started"));
+        hub.send(session, Map.of("type", "queueStatus", "position", 1, "total", 2));
+        runTasks();
+
+        InOrder inOrder = inOrder(remote);
+        inOrder.verify(remote).sendString(contains("\"position\":2"));
+        inOrder.verify(remote).sendString(contains("started"));
+        inOrder.verify(remote).sendString(contains("\"position\":1"));
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    void send__replacesWaitingTally() throws Exception {
+        RemoteEndpoint remote = Mockito.mock(RemoteEndpoint.class);
+        Session session = mockSession(remote);
+
+        hub.send(session, Map.of("type", "testResult", "tests", "passoff", "passed", 1, "failed", 0));
+        hub.send(session, Map.of("type", "update", "message", "Running unit tests"));
+        for (int i = 2; i <= NotificationHub.MAX_PENDING * 2; i++) {
+            hub.send(session, Map.of("type", "testResult", "tests", "passoff", "passed", i, "failed", 0));
+        }
+        hub.send(session, Map.of("type", "testResult", "tests", "unit", "passed", 1, "failed", 0));
+
+        assertEquals(3, hub.pending(session));
+        runTasks();
+        InOrder inOrder = inOrder(remote);
+        inOrder.verify(remote).sendString(contains("\"passed\":" + NotificationHub.MAX_PENDING * 2));
+        inOrder.verify(remote).sendString(contains("Running unit tests"));
+        inOrder.verify(remote).sendString(contains("unit"));
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    void send__bounded() throws Exception {
+        RemoteEndpoint remote = Mockito.mock(RemoteEndpoint.class);
+        Session session = mockSession(remote);
+
+        for (int i = 0; i < NotificationHub.MAX_PENDING + 5; i++) {
+            hub.send(session, Map.of("type", "update", "message", "message" + i));
+        }
+
+        assertEquals(NotificationHub.MAX_PENDING, hub.pending(session));
+        runTasks();
+        verify(remote, never()).sendString(contains("\"message4\""));
+        verify(remote).sendString(contains("\"message5\""));
+    }
+
+    @Test
+    void close__afterPendingMessages() throws Exception {
+        RemoteEndpoint remote = Mockito.mock(RemoteEndpoint.class);
+        Session session = mockSession(remote);
+
+        hub.send(session, Map.of("type", "error", "message", "Invalid token"));
+        hub.close(session);
+        runTasks();
+
+        InOrder inOrder = inOrder(remote, session);
+        inOrder.verify(remote).sendString(contains("Invalid token"));
+        inOrder.verify(session).close();
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.removeFirst().run();
+        }
+    }
+
+    private static Session mockSession(RemoteEndpoint remote) {
+        Session session = Mockito.mock(Session.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getRemote()).thenReturn(remote);
+        return session;
+    }
+}
@@ -0,0 +1,125 @@
+package edu.byu.cs.dataAccess.memory;
+
+import edu.byu.cs.model.Phase;
+import edu.byu.cs.model.QueueItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueMemoryDaoTest {
+
+    private QueueMemoryDao queueDao;
+
+    @BeforeEach
+    void setUp() {
+        queueDao = new QueueMemoryDao();
+        Instant now = Instant.now();
+        queueDao.add(new QueueItem("second", Phase.Phase1, now, false, "repo2", false));
+        queueDao.add(new QueueItem("first", Phase.Phase0, now.minusSeconds(10), false, "repo1", false));
+    }
+
+    @Test
+    void claimNext__oldestFirst() {
+        QueueItem claimed = queueDao.claimNext("worker", Duration.ofMinutes(1));
+
+        assertEquals("first", claimed.netId());
+        assertTrue(claimed.started());
+        assertTrue(queueDao.get("first").started());
+    }
+
+    @Test
+    void claimNext__itemsClaimedOnce() {
+        assertEquals("first", queueDao.claimNext("a", Duration.ofMinutes(1)).netId());
+        assertEquals("second", queueDao.claimNext("b", Duration.ofMinutes(1)).netId());
+        assertNull(queueDao.claimNext("c", Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void claimNext__reclaimsExpiredLeases() {
+        queueDao.claimNext("crashed", Duration.ofSeconds(-1));
+
+        assertEquals("first", queueDao.claimNext("healthy", Duration.ofMinutes(1)).netId());
+    }
+
+    @Test
+    void renewLeases__keepsClaim() {
+        queueDao.claimNext("worker", Duration.ofSeconds(-1));
+        queueDao.renewLeases("worker", Duration.ofMinutes(1));
+
+        assertEquals("second", queueDao.claimNext("other", Duration.ofMinutes(1)).netId());
+        assertNull(queueDao.claimNext("other", Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void renewLeases__returnsHeldClaims() {
+        queueDao.claimNext("worker", Duration.ofMinutes(1));
+        queueDao.supersede(new QueueItem("first", Phase.Phase0, Instant.now(), false, "repo1", false));
+
+        assertTrue(queueDao.renewLeases("worker", Duration.ofMinutes(1)).isEmpty());
+    }
+
+    @Test
+    void supersede__keepsPlaceInLine() {
+        Instant originalTime = queueDao.get("first").timeAdded();
+        queueDao.claimNext("worker", Duration.ofMinutes(1));
+
+        Instant newTime = Instant.now().plusSeconds(60);
+        queueDao.supersede(new QueueItem("first", Phase.Phase0, newTime, false, "newRepo", true));
+
+        QueueItem superseded = queueDao.get("first");
+        // The newer submission is graded by its own hand in date, but waits in the old one's place
+        assertEquals(newTime, superseded.timeAdded());
+        assertEquals(originalTime, superseded.queuedAt());
+        assertEquals("newRepo", superseded.repoUrl());
+        assertTrue(superseded.admin());
+        assertFalse(superseded.started());
+        assertEquals("first", queueDao.claimNext("other", Duration.ofMinutes(1)).netId());
+    }
+
+    @Test
+    void supersede__nothingToReplace() {
+        queueDao.remove("first");
+
+        assertFalse(queueDao.supersede(new QueueItem("first", Phase.Phase0, Instant.now(), false, "newRepo", false)));
+        assertFalse(queueDao.supersede(new QueueItem("second", Phase.Phase3, Instant.now(), false, "newRepo", false)));
+        assertNull(queueDao.get("first"));
+        assertEquals("repo2", queueDao.get("second").repoUrl());
+    }
+
+    @Test
+    void releaseExpiredClaims__keepsLiveClaims() {
+        queueDao.claimNext("crashed", Duration.ofSeconds(-1));
+        queueDao.claim("second", "healthy", Duration.ofMinutes(1));
+
+        assertEquals(1, queueDao.releaseExpiredClaims());
+
+        assertFalse(queueDao.get("first").started());
+        assertTrue(queueDao.get("second").started());
+        assertEquals(List.of("second"), List.copyOf(queueDao.renewLeases("healthy", Duration.ofMinutes(1))));
+    }
+
+    @Test
+    void removeClaimed__onlyByClaimHolder() {
+        queueDao.claimNext("stale", Duration.ofMinutes(1));
+        queueDao.supersede(new QueueItem("first", Phase.Phase0, Instant.now(), false, "repo1", false));
+        queueDao.claimNext("fresh", Duration.ofMinutes(1));
+
+        queueDao.removeClaimed("first", "stale");
+        assertNotNull(queueDao.get("first"));
+
+        queueDao.removeClaimed("first", "fresh");
+        assertNull(queueDao.get("first"));
+    }
+
+    @Test
+    void claimNext__reclaimsStartedItemsWithoutLease() {
+        queueDao.markStarted("first");
+
+        assertEquals("first", queueDao.claimNext("worker", Duration.ofMinutes(1)).netId());
+    }
+}
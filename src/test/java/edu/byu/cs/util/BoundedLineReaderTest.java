@@ -0,0 +1,63 @@
+package edu.byu.cs.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedLineReaderTest {
+
+    @Test
+    void readLine__splitsLikeBufferedReader() throws IOException {
+        assertEquals(List.of("a", "", "b", "c", "d"), lines(new StringReader("a\n\nb\r\nc\rd"), 100));
+        assertEquals(List.of("a"), lines(new StringReader("a\n"), 100));
+        assertEquals(List.of(), lines(new StringReader(""), 100));
+    }
+
+    @Test
+    void readLine__cutsOffLongLines() throws IOException {
+        String longLine = "x".repeat(20000);
+
+        List<String> lines = lines(new StringReader(longLine + "\nshort\n"), 10);
+
+        assertEquals(List.of("xxxxxxxxxx[... 19990 characters of this line omitted ...]", "short"), lines);
+    }
+
+    @Test
+    void readLine__lineFeedInNextRead() throws IOException {
+        // A carriage return at the end of one read and a line feed at the start of the next end a single line
+        Reader reader = new Reader() {
+            private final String[] chunks = {"a\r", "\nb"};
+            private int next = 0;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if (next == chunks.length) return -1;
+                String chunk = chunks[next++];
+                chunk.getChars(0, chunk.length(), buffer, offset);
+                return chunk.length();
+            }
+
+            @Override
+            public void close() { }
+        };
+
+        assertEquals(List.of("a", "b"), lines(reader, 100));
+    }
+
+    private static List<String> lines(Reader in, int maxLineLength) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BoundedLineReader reader = new BoundedLineReader(in, maxLineLength)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,80 @@
+package edu.byu.cs.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputCaptureTest {
+
+    @Test
+    void all__keepsEverything() {
+        OutputCapture capture = OutputCapture.all();
+        for (int i = 0; i < 1000; i++) {
+            capture.accept("line " + i);
+        }
+
+        assertTrue(capture.text().startsWith("line 0\nline 1\n"));
+        assertTrue(capture.text().endsWith("line 999\n"));
+        assertEquals(0, capture.droppedLines());
+    }
+
+    @Test
+    void bounded__keepsHeadAndTail() {
+        OutputCapture capture = OutputCapture.bounded(12, 12);
+        for (int i = 0; i < 10; i++) {
+            capture.accept("line" + i);
+        }
+
+        assertEquals("line0\nline1\n[... 6 lines (36 characters) of output omitted ...]\nline8\nline9\n",
+                capture.text());
+        assertEquals(6, capture.droppedLines());
+        assertEquals(36, capture.droppedCharacters());
+    }
+
+    @Test
+    void bounded__underLimitKeepsEverything() {
+        OutputCapture capture = OutputCapture.bounded(100, 100);
+        capture.accept("a");
+        capture.accept("b");
+
+        assertEquals("a\nb\n", capture.text());
+        assertEquals(0, capture.droppedLines());
+    }
+
+    @Test
+    void filter__skipsLinesWithoutCountingThem() {
+        OutputCapture capture = OutputCapture.bounded(100, 100).filter(line -> !line.startsWith("INFO"));
+        capture.accept("INFO starting");
+        capture.accept("error");
+        capture.accept("INFO done");
+
+        assertEquals("error\n", capture.text());
+        assertEquals(0, capture.droppedLines());
+    }
+
+    @Test
+    void onLine__seesDroppedAndFilteredLines() {
+        List<String> seen = new ArrayList<>();
+        OutputCapture capture = OutputCapture.bounded(0, 0).filter(line -> !line.equals("skip")).onLine(seen::add);
+        capture.accept("skip");
+        capture.accept("drop");
+
+        assertEquals(List.of("skip", "drop"), seen);
+        assertEquals(1, capture.droppedLines());
+    }
+
+    @Test
+    void runProcess__boundedCapture() throws ProcessUtils.ProcessException {
+        ProcessBuilder processBuilder = new ProcessBuilder("seq", "1", "10000");
+        OutputCapture stdOut = OutputCapture.bounded(6, 6);
+
+        ProcessUtils.ProcessOutput output =
+                ProcessUtils.runProcess(processBuilder, null, 5000, stdOut, OutputCapture.all());
+
+        assertEquals("1\n2\n3\n[... 9996 lines (48882 characters) of output omitted ...]\n10000\n", output.stdOut());
+        assertEquals(9996, stdOut.droppedLines());
+    }
+}
@@ -2,6 +2,15 @@ package edu.byu.cs.util;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ProcessUtilsTest {
@@ -53,6 +62,50 @@ class ProcessUtilsTest {
         assertThrows(ProcessUtils.ProcessException.class, () -> ProcessUtils.runProcess(processBuilder, input, timeout));
     }
 
+    @Test
+    void runProcess__timeoutKillsChildren() throws Exception {
+        File pidFile = File.createTempFile("child", ".pid");
+        pidFile.deleteOnExit();
+        ProcessBuilder processBuilder = new ProcessBuilder("bash", "-c", "sleep 30 & echo $! > " + pidFile + "; wait");
+
+        assertThrows(ProcessUtils.ProcessException.class, () -> ProcessUtils.runProcess(processBuilder, null, 1000));
+
+        assertChildKilled(pidFile);
+    }
+
+    @Test
+    void runProcess__interruptKillsChildren() throws Exception {
+        File pidFile = File.createTempFile("child", ".pid");
+        pidFile.deleteOnExit();
+        ProcessBuilder processBuilder = new ProcessBuilder("bash", "-c", "sleep 30 & echo $! > " + pidFile + "; wait");
+
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread runner = new Thread(() -> {
+            try {
+                ProcessUtils.runProcess(processBuilder, null, 30000);
+            } catch (ProcessUtils.ProcessException e) {
+                thrown.set(e);
+            }
+        });
+        runner.start();
+        Thread.sleep(1000);
+        runner.interrupt();
+        runner.join(5000);
+
+        assertFalse(runner.isAlive(), "An interrupted process should stop waiting");
+        assertNotNull(thrown.get());
+        assertChildKilled(pidFile);
+    }
+
+    private static void assertChildKilled(File pidFile) throws Exception {
+        long pid = Long.parseLong(Files.readString(pidFile.toPath()).trim());
+        Optional<ProcessHandle> child = ProcessHandle.of(pid);
+        if (child.isPresent()) {
+            child.get().onExit().get(5, TimeUnit.SECONDS);
+        }
+        assertFalse(ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false), "Child process should be killed");
+    }
+
     @Test
     void runProcess__massiveStdOut() {
         ProcessBuilder processBuilder = new ProcessBuilder("bash", "-c", "for i in {1..1000000}; do echo $i; done");
@@ -61,7 +114,8 @@ class ProcessUtilsTest {
 
         ProcessUtils.ProcessOutput processOutput = null;
         try {
-            processOutput = ProcessUtils.runProcess(processBuilder, input, timeout);
+            processOutput = ProcessUtils.runProcess(processBuilder, input, timeout, OutputCapture.all(),
+                    OutputCapture.all());
         } catch (ProcessUtils.ProcessException e) {
             fail("Process failed to run", e);
         }
@@ -80,7 +134,8 @@ class ProcessUtilsTest {
 
         ProcessUtils.ProcessOutput processOutput = null;
         try {
-            processOutput = ProcessUtils.runProcess(processBuilder, input, timeout);
+            processOutput = ProcessUtils.runProcess(processBuilder, input, timeout, OutputCapture.all(),
+                    OutputCapture.all());
         } catch (ProcessUtils.ProcessException e) {
             fail("Process failed to run", e);
         }
@@ -99,7 +154,8 @@ class ProcessUtilsTest {
 
         ProcessUtils.ProcessOutput processOutput = null;
         try {
-            processOutput = ProcessUtils.runProcess(processBuilder, input, timeout);
+            processOutput = ProcessUtils.runProcess(processBuilder, input, timeout, OutputCapture.all(),
+                    OutputCapture.all());
         } catch (ProcessUtils.ProcessException e) {
             fail("Process failed to run", e);
         }
@@ -110,6 +166,25 @@ class ProcessUtilsTest {
         assertEquals(0, processOutput.statusCode());
     }
 
+    @Test
+    void runProcess__defaultCaptureIsBounded() {
+        ProcessBuilder processBuilder = new ProcessBuilder("bash", "-c", "for i in {1..1000000}; do echo $i; done");
+
+        ProcessUtils.ProcessOutput processOutput = null;
+        try {
+            processOutput = ProcessUtils.runProcess(processBuilder, null, 15000);
+        } catch (ProcessUtils.ProcessException e) {
+            fail("Process failed to run", e);
+        }
+
+        assertNotNull(processOutput);
+        assertTrue(processOutput.stdOut().length() < 3 * ProcessUtils.MAX_OUTPUT);
+        assertTrue(processOutput.stdOut().startsWith("1\n2\n"));
+        assertTrue(processOutput.stdOut().endsWith("999999\n1000000\n"));
+        assertTrue(processOutput.stdOut().contains("omitted"));
+        assertEquals(0, processOutput.statusCode());
+    }
+
     @Test
     void runProcess__invalidCommand() {
         ProcessBuilder processBuilder = new ProcessBuilder("this_command_does_not_exist");
@@ -137,4 +212,60 @@ class ProcessUtilsTest {
         assertEquals("", processOutput.stdErr());
         assertEquals(1, processOutput.statusCode());
     }
+
+    @Test
+    void runProcess__recordsMetrics() throws ProcessUtils.ProcessException {
+        ProcessBuilder processBuilder = new ProcessBuilder("bash", "-c", "printf abc; printf de >&2; exit 3");
+
+        ProcessUtils.runProcess(processBuilder, null, 1000);
+
+        ProcessMetrics metrics = ProcessStatistics.getInstance().recent().getLast();
+        assertEquals("bash", metrics.program());
+        assertEquals(3, metrics.exitCode());
+        assertEquals(3, metrics.stdOutBytes());
+        assertEquals(2, metrics.stdErrBytes());
+        assertFalse(metrics.wallTime().isNegative());
+        assertTrue(ProcessStatistics.getInstance().totals().get("bash").failures() > 0);
+    }
+
+    @Test
+    void runProcess__reportsUsageToBoundAccount() throws ProcessUtils.ProcessException {
+        List<ProcessMetrics> reported = new ArrayList<>();
+        ProcessAccount account = new ProcessAccount(null, reported::add);
+        ProcessBuilder processBuilder = new ProcessBuilder("bash", "-c", "end=$((SECONDS+1)); while [ $SECONDS -lt $end ]; do :; done");
+
+        account.bind();
+        try {
+            ProcessUtils.runProcess(processBuilder, null, 5000);
+        } finally {
+            account.unbind();
+        }
+        ProcessUtils.runProcess(new ProcessBuilder("true"), null, 1000);
+
+        assertEquals(1, reported.size());
+        assertTrue(reported.getFirst().usage().cpuTime().toMillis() > 0);
+        assertTrue(reported.getFirst().usage().peakRssBytes() > 0);
+    }
+
+    @Test
+    void runProcess__joinsAccountCgroup() throws Exception {
+        // A plain directory stands in for the cgroup filesystem, which isn't writable here
+        Path root = Files.createTempDirectory("cgroups");
+        Cgroup cgroup = Cgroup.create(root, "run", 512, 1.5);
+        ProcessAccount account = new ProcessAccount(cgroup, metrics -> { });
+        ProcessBuilder processBuilder = new ProcessBuilder("bash", "-c", "echo $$");
+
+        account.bind();
+        ProcessUtils.ProcessOutput output;
+        try {
+            output = ProcessUtils.runProcess(processBuilder, null, 1000);
+        } finally {
+            account.unbind();
+        }
+
+        assertEquals(List.of("bash", "-c", "echo $$"), processBuilder.command());
+        assertEquals(output.stdOut(), Files.readString(cgroup.path().resolve("cgroup.procs")));
+        assertEquals(String.valueOf(512L * 1024 * 1024), Files.readString(cgroup.path().resolve("memory.max")));
+        assertEquals("150000 100000", Files.readString(cgroup.path().resolve("cpu.max")));
+    }
 }